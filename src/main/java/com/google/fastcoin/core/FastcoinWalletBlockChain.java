@@ -15,12 +15,11 @@
  */
 package com.google.fastcoin.core;
 
-import java.io.File;
 import java.util.List;
 
 import com.google.fastcoin.store.BlockStore;
 import com.google.fastcoin.store.BlockStoreException;
-import com.google.fastcoin.store.SPVBlockStore;
+import com.google.fastcoin.store.FastcoinWalletSPVBlockStore;
 
 /**
  * Extension of fastcoinj BlockChain for use with block chain replay.
@@ -40,21 +39,26 @@ public class FastcoinWalletBlockChain extends BlockChain {
     }
     
     /**
-     * Set the chainhead, clear any cached blocks and truncate the blockchain .
+     * Set the chainhead and truncate the blockchain.
      * (Used for blockchain replay).
+     * 
+     * The block store is truncated so that the chain head is its only block. Blocks after
+     * the chain head can then no longer be found, so blocks still arriving from peers cannot
+     * connect to them and reorganise the chain back to where it was before the replay.
+     * 
      * @param chainHead
-     * @throws BlockStoreException
+     * @throws BlockStoreException If the block store cannot be truncated
      */
-    public void setChainHeadClearCachesAndTruncateBlockStore(StoredBlock chainHead, String blockStoreFilename) throws BlockStoreException {
-        if (blockStore instanceof SPVBlockStore) {
-            // Delete the blockstore and recreate it.
-            ((SPVBlockStore) blockStore).close();
-
-            File blockStoreFile = new File(blockStoreFilename);
-            blockStoreFile.delete();
-        } else {
-            blockStore.setChainHead(chainHead);
+    public void setChainHeadAndTruncateBlockStore(StoredBlock chainHead) throws BlockStoreException {
+        if (!(blockStore instanceof FastcoinWalletSPVBlockStore)) {
+            throw new BlockStoreException("Cannot truncate a block store of type " + blockStore.getClass().getName());
+        }
+        lock.lock();
+        try {
+            ((FastcoinWalletSPVBlockStore) blockStore).truncate(chainHead);
             super.setChainHead(chainHead);
+        } finally {
+            lock.unlock();
         }
     }
 }
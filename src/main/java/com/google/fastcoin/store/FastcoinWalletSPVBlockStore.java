@@ -0,0 +1,97 @@
+/**
+ * Copyright 2013 wallet.org
+ *
+ * Licensed under the MIT license (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://opensource.org/licenses/mit-license.php
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.fastcoin.store;
+
+import java.io.File;
+
+import com.google.fastcoin.core.NetworkParameters;
+import com.google.fastcoin.core.Sha256Hash;
+import com.google.fastcoin.core.StoredBlock;
+
+/**
+ * SPV block store that can be truncated, for use with block chain replay.
+ *
+ * The blocks of an SPVBlockStore are kept in a ring buffer and cannot be removed, so the
+ * block store is truncated by deleting its file and opening a new SPVBlockStore in its place.
+ * The FastcoinWalletSPVBlockStore itself is kept, so the blockchain and peergroup using it
+ * do not need to be recreated.
+ */
+public class FastcoinWalletSPVBlockStore implements BlockStore {
+
+    private final NetworkParameters params;
+
+    private final File file;
+
+    private SPVBlockStore blockStore;
+
+    public FastcoinWalletSPVBlockStore(NetworkParameters params, File file) throws BlockStoreException {
+        this.params = params;
+        this.file = file;
+        blockStore = new SPVBlockStore(params, file);
+    }
+
+    @Override
+    public synchronized void put(StoredBlock block) throws BlockStoreException {
+        blockStore.put(block);
+    }
+
+    @Override
+    public synchronized StoredBlock get(Sha256Hash hash) throws BlockStoreException {
+        return blockStore.get(hash);
+    }
+
+    @Override
+    public synchronized StoredBlock getChainHead() throws BlockStoreException {
+        return blockStore.getChainHead();
+    }
+
+    @Override
+    public synchronized void setChainHead(StoredBlock chainHead) throws BlockStoreException {
+        blockStore.setChainHead(chainHead);
+    }
+
+    @Override
+    public synchronized void close() throws BlockStoreException {
+        blockStore.close();
+    }
+
+    /**
+     * Truncate the block store so that the chain head is the only block in it.
+     * Blocks after the chain head can then no longer be found, so the blockchain cannot
+     * reorganise back onto them.
+     *
+     * If the block store file cannot be deleted the existing block store is reopened
+     * unchanged and a BlockStoreException is thrown.
+     *
+     * @param chainHead The new chain head
+     * @throws BlockStoreException
+     */
+    public synchronized void truncate(StoredBlock chainHead) throws BlockStoreException {
+        blockStore.close();
+
+        // Garbage collect any closed references to the block store file so that it can be deleted.
+        System.gc();
+        file.setWritable(true);
+        boolean deletedOk = file.delete();
+
+        blockStore = new SPVBlockStore(params, file);
+        if (!deletedOk) {
+            throw new BlockStoreException("Could not delete the block store file '" + file.getAbsolutePath() + "' to truncate it");
+        }
+        blockStore.put(chainHead);
+        blockStore.setChainHead(chainHead);
+    }
+}
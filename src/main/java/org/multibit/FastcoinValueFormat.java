@@ -0,0 +1,107 @@
+/**
+ * Copyright 2013 wallet.org
+ *
+ * Licensed under the MIT license (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://opensource.org/licenses/mit-license.php
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.multibit;
+
+import java.text.DecimalFormat;
+import java.text.DecimalFormatSymbols;
+import java.text.NumberFormat;
+
+/**
+ * Formats a number of satoshi as FST with up to 8 decimal places, giving the same text as the
+ * Localiser's NumberFormat but working on a long, so no BigDecimal or double is needed.
+ *
+ * FastcoinValueFormats are immutable so they can be used from any thread without locking.
+ *
+ * @author jim
+ */
+final class FastcoinValueFormat {
+
+    private static final int NUMBER_OF_FRACTION_DIGITS = Localiser.NUMBER_OF_FRACTION_DIGITS_FOR_FASTCOIN;
+
+    private static final long SATOSHI_IN_ONE_FASTCOIN = 100000000L;
+
+    /**
+     * The largest number of satoshi formatted. The NumberFormat formats a double, which holds 15 significant digits
+     * exactly, so above this the NumberFormat's text can differ from the exact amount.
+     */
+    static final long MAXIMUM_VALUE = 999999999999999L;
+
+    private final char zeroDigit;
+    private final char decimalSeparator;
+    private final char groupingSeparator;
+
+    /**
+     * The number of digits in a group, or 0 if the digits are not grouped.
+     */
+    private final int groupingSize;
+
+    private FastcoinValueFormat(DecimalFormatSymbols symbols, int groupingSize) {
+        this.zeroDigit = symbols.getZeroDigit();
+        this.decimalSeparator = symbols.getDecimalSeparator();
+        this.groupingSeparator = symbols.getGroupingSeparator();
+        this.groupingSize = groupingSize;
+    }
+
+    /**
+     * Create a FastcoinValueFormat that formats as the numberFormat does.
+     * @return the FastcoinValueFormat, or null if the numberFormat has a prefix or suffix that is not copied
+     */
+    static FastcoinValueFormat create(NumberFormat numberFormat) {
+        if (!(numberFormat instanceof DecimalFormat)) {
+            return null;
+        }
+        DecimalFormat decimalFormat = (DecimalFormat) numberFormat;
+        if (!"".equals(decimalFormat.getPositivePrefix()) || !"".equals(decimalFormat.getPositiveSuffix())
+                || decimalFormat.getMinimumIntegerDigits() != 1 || decimalFormat.getMinimumFractionDigits() != 0
+                || decimalFormat.getMaximumFractionDigits() != NUMBER_OF_FRACTION_DIGITS) {
+            return null;
+        }
+        int groupingSize = decimalFormat.isGroupingUsed() ? decimalFormat.getGroupingSize() : 0;
+        return new FastcoinValueFormat(decimalFormat.getDecimalFormatSymbols(), groupingSize);
+    }
+
+    /**
+     * Append a positive number of satoshi, no more than MAXIMUM_VALUE, as FST.
+     */
+    void append(StringBuilder builder, long value) {
+        long integerPart = value / SATOSHI_IN_ONE_FASTCOIN;
+        long fractionPart = value % SATOSHI_IN_ONE_FASTCOIN;
+
+        // The integer digits, least significant first.
+        char[] digits = new char[19];
+        int numberOfDigits = 0;
+        do {
+            digits[numberOfDigits++] = (char) (zeroDigit + (int) (integerPart % 10));
+            integerPart /= 10;
+        } while (integerPart != 0);
+
+        for (int i = numberOfDigits - 1; i >= 0; i--) {
+            builder.append(digits[i]);
+            if (groupingSize > 0 && i > 0 && i % groupingSize == 0) {
+                builder.append(groupingSeparator);
+            }
+        }
+
+        if (fractionPart != 0) {
+            builder.append(decimalSeparator);
+            // Trailing zeros are not shown.
+            for (long divisor = SATOSHI_IN_ONE_FASTCOIN / 10; fractionPart != 0; divisor /= 10) {
+                builder.append((char) (zeroDigit + (int) (fractionPart / divisor)));
+                fractionPart %= divisor;
+            }
+        }
+    }
+}
@@ -21,13 +21,14 @@ import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.math.BigDecimal;
 import java.math.BigInteger;
-import java.text.MessageFormat;
 import java.text.NumberFormat;
 import java.util.Locale;
 import java.util.MissingResourceException;
 import java.util.Properties;
 import java.util.PropertyResourceBundle;
 import java.util.ResourceBundle;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import org.joda.money.BigMoney;
 import org.slf4j.Logger;
@@ -59,8 +60,10 @@ public class Localiser {
 
     public static final String FALLBACK_LANGUAGE_CODE = "en";
 
-    private ResourceBundle resourceBundle;
-    private MessageFormat formatter;
+    /**
+     * The messages for the current locale. Replaced, never changed, by setLocale so getString needs no lock.
+     */
+    private volatile Messages messages;
 
     private Properties versionProperties;
 
@@ -72,11 +75,55 @@ public class Localiser {
     
     private NumberFormat numberFormat;
     private NumberFormat numberFormatNotLocalised;
+
+    /**
+     * Lock free formatters for FST amounts, equivalent to numberFormat and numberFormatNotLocalised.
+     * Null if the NumberFormat cannot be copied, in which case the NumberFormat is used.
+     */
+    private volatile FastcoinValueFormat fastcoinValueFormat;
+    private volatile FastcoinValueFormat fastcoinValueFormatNotLocalised;
+
+    /**
+     * A StringBuilder for each thread formatting FST amounts.
+     */
+    private static final ThreadLocal<StringBuilder> fastcoinValueBuilder = new ThreadLocal<StringBuilder>() {
+        @Override
+        protected StringBuilder initialValue() {
+            return new StringBuilder(32);
+        }
+    };
     
     public static final int NUMBER_OF_FRACTION_DIGITS_FOR_FASTCOIN = 8;
     
     private java.text.DecimalFormatSymbols decimalFormatSymbols;
 
+    /**
+     * A resource bundle and the message templates parsed from it, by key.
+     */
+    private static final class Messages {
+        final ResourceBundle resourceBundle;
+        final Locale formatLocale;
+        final ConcurrentMap<String, MessageTemplate> templates = new ConcurrentHashMap<String, MessageTemplate>();
+
+        Messages(ResourceBundle resourceBundle, Locale formatLocale) {
+            this.resourceBundle = resourceBundle;
+            this.formatLocale = formatLocale;
+        }
+
+        MessageTemplate getTemplate(String key) {
+            MessageTemplate template = templates.get(key);
+            if (template == null) {
+                String pattern = resourceBundle.getString(key);
+                // Change any apostrophes to  \u2032 as MessageFormatter swallows them
+                pattern = pattern.replace('\'', '\u2032');
+                template = new MessageTemplate(pattern, formatLocale);
+                // Another thread may have parsed it too - either template will do.
+                templates.put(key, template);
+            }
+            return template;
+        }
+    }
+
     /**
      * Localiser hardwired to English - mainly for testing
      */
@@ -91,8 +138,6 @@ public class Localiser {
      * @param locale
      */
     public Localiser(Locale locale) {
-        formatter = new MessageFormat("");
-
         languageProperties = new Properties();
         try {
             java.net.URL languagePropertiesURL = Localiser.class.getResource(LANGUAGE_PROPERTIES_FILENAME);
@@ -107,13 +152,15 @@ public class Localiser {
         
         numberFormat = NumberFormat.getInstance(locale);
         numberFormat.setMaximumFractionDigits(NUMBER_OF_FRACTION_DIGITS_FOR_FASTCOIN);
+        fastcoinValueFormat = FastcoinValueFormat.create(numberFormat);
         numberFormatNotLocalised = NumberFormat.getInstance(Locale.ENGLISH);
         numberFormatNotLocalised.setMaximumFractionDigits(NUMBER_OF_FRACTION_DIGITS_FOR_FASTCOIN);
+        fastcoinValueFormatNotLocalised = FastcoinValueFormat.create(numberFormatNotLocalised);
         
         decimalFormatSymbols = new java.text.DecimalFormatSymbols(locale);
     }
 
-    synchronized public String getString(String key) {
+    public String getString(String key) {
         if (key == null) {
             return "";
         }
@@ -126,9 +173,10 @@ public class Localiser {
             }
         }
 
-        if (resourceBundle != null) {
+        Messages currentMessages = messages;
+        if (currentMessages != null && currentMessages.resourceBundle != null) {
             try {
-                return resourceBundle.getString(key);
+                return currentMessages.resourceBundle.getString(key);
             } catch (NullPointerException npe) {
                 return MISSING_RESOURCE_TEXT + key + " (npe)";
             } catch (ClassCastException cce) {
@@ -141,18 +189,15 @@ public class Localiser {
         }
     }
 
-    synchronized public String getString(String key, Object[] parameters) {
+    public String getString(String key, Object[] parameters) {
         if (key == null) {
             return "";
         }
 
-        if (resourceBundle != null) {
+        Messages currentMessages = messages;
+        if (currentMessages != null && currentMessages.resourceBundle != null) {
             try {
-                String pattern = resourceBundle.getString(key);
-                // Change any apostrophes to  \u2032 as MessageFormatter swallows them
-                pattern = pattern.replaceAll("\u0027", "\u2032");
-                formatter.applyPattern(pattern);
-                return formatter.format(parameters);
+                return currentMessages.getTemplate(key).format(parameters);
             } catch (NullPointerException npe) {
                 return MISSING_RESOURCE_TEXT + key + " (npe)";
             } catch (IllegalArgumentException iae) {
@@ -191,13 +236,13 @@ public class Localiser {
             this.locale = locale;
         }
 
-        formatter.setLocale(locale);
-
         numberFormat = NumberFormat.getInstance(locale);
         numberFormat.setMaximumFractionDigits(NUMBER_OF_FRACTION_DIGITS_FOR_FASTCOIN);
+        fastcoinValueFormat = FastcoinValueFormat.create(numberFormat);
         
         decimalFormatSymbols = new java.text.DecimalFormatSymbols(locale);
 
+        ResourceBundle resourceBundle = null;
         boolean foundIt = false;
         try {
             InputStream inputStream = Localiser.class.getResourceAsStream(propertyFilename);
@@ -226,6 +271,12 @@ public class Localiser {
 
             }
         }
+
+        if (resourceBundle == null && messages != null) {
+            // Keep the current messages.
+            resourceBundle = messages.resourceBundle;
+        }
+        messages = new Messages(resourceBundle, locale);
     }
 
     /**
@@ -261,62 +312,51 @@ public class Localiser {
      * This function is localised. 
      **/
     public String fastcoinValueToString(BigInteger value, boolean addUnit, boolean blankZero) {
-        if (blankZero && value.compareTo(BigInteger.ZERO) == 0) {
-            return "";
-        }
-
-        boolean negative = value.compareTo(BigInteger.ZERO) < 0;
-        if (negative) {
-            value = value.negate();
-        }
-
-        String toReturn = "";
-        if (negative) {
-            toReturn = "-";
-        }
-        
-        if (value == null) {
-            throw new IllegalArgumentException("Value cannot be null");
-        }
-                
-        BigDecimal valueInFST = new BigDecimal(value).divide(new BigDecimal(Utils.COIN));
-        toReturn = toReturn + numberFormat.format(valueInFST.doubleValue());
-
-        if (addUnit) {
-            toReturn = toReturn + " " + getString("sendFastcoinPanel.amountUnitLabel");
-        }
-        return toReturn;     
+        return fastcoinValueToString(value, addUnit, blankZero, fastcoinValueFormat, numberFormat);
     }
+
     /**
      * Returns the given value in nanocoins as a 0.12345678 type string.
      * This function is NOT localised. 
      **/
     public String fastcoinValueToStringNotLocalised(BigInteger value, boolean addUnit, boolean blankZero) {
-        if (blankZero && value.compareTo(BigInteger.ZERO) == 0) {
+        return fastcoinValueToString(value, addUnit, blankZero, fastcoinValueFormatNotLocalised, numberFormatNotLocalised);
+    }
+
+    private String fastcoinValueToString(BigInteger value, boolean addUnit, boolean blankZero,
+            FastcoinValueFormat valueFormat, NumberFormat numberFormatToUse) {
+        if (value == null) {
+            throw new IllegalArgumentException("Value cannot be null");
+        }
+
+        if (blankZero && value.signum() == 0) {
             return "";
         }
 
-        boolean negative = value.compareTo(BigInteger.ZERO) < 0;
+        boolean negative = value.signum() < 0;
         if (negative) {
             value = value.negate();
         }
 
-        String toReturn = "";
+        StringBuilder builder = fastcoinValueBuilder.get();
+        builder.setLength(0);
         if (negative) {
-            toReturn = "-";
+            builder.append('-');
         }
-        
-        if (value == null) {
-            throw new IllegalArgumentException("Value cannot be null");
+
+        if (valueFormat != null && value.bitLength() < 64 && value.longValue() <= FastcoinValueFormat.MAXIMUM_VALUE) {
+            valueFormat.append(builder, value.longValue());
+        } else {
+            BigDecimal valueInFST = new BigDecimal(value).divide(new BigDecimal(Utils.COIN));
+            synchronized (numberFormatToUse) {
+                builder.append(numberFormatToUse.format(valueInFST.doubleValue()));
+            }
         }
-                
-        BigDecimal valueInFST = new BigDecimal(value).divide(new BigDecimal(Utils.COIN));
-        toReturn = toReturn + numberFormatNotLocalised.format(valueInFST.doubleValue());
 
         if (addUnit) {
-            toReturn = toReturn + " " + getString("sendFastcoinPanel.amountUnitLabel");
+            builder.append(' ').append(getString("sendFastcoinPanel.amountUnitLabel"));
         }
-        return toReturn;     
+        return builder.toString();
     }
     
     /**
@@ -0,0 +1,148 @@
+/**
+ * Copyright 2013 wallet.org
+ *
+ * Licensed under the MIT license (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://opensource.org/licenses/mit-license.php
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.multibit;
+
+import java.text.DateFormat;
+import java.text.MessageFormat;
+import java.text.NumberFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * A localised message pattern, parsed once. MessageTemplates are immutable so the Localiser can share them
+ * between threads without locking.
+ *
+ * Patterns whose arguments are all plain, e.g. {0}, are split into literal text and argument numbers and are
+ * formatted here as MessageFormat would format them. Patterns with format types, e.g. {0,number}, keep a parsed
+ * MessageFormat which is cloned for each format as MessageFormats are not thread safe.
+ *
+ * @author jim
+ */
+final class MessageTemplate {
+
+    private final Locale locale;
+
+    /**
+     * The literal text before each argument, and after the last one. Null if the pattern has format types.
+     */
+    private final String[] literals;
+
+    /**
+     * The argument numbers, in order. Null if the pattern has format types.
+     */
+    private final int[] argumentNumbers;
+
+    /**
+     * The parsed pattern, used only when the pattern has format types. Never formatted with directly.
+     */
+    private final MessageFormat messageFormat;
+
+    /**
+     * @param pattern The pattern, with apostrophes already replaced so that there is no quoting
+     * @throws IllegalArgumentException if the pattern is invalid
+     */
+    MessageTemplate(String pattern, Locale locale) {
+        this.locale = locale;
+
+        List<String> literalList = new ArrayList<String>();
+        List<Integer> argumentNumberList = new ArrayList<Integer>();
+        boolean plain = true;
+        int start = 0;
+        int open = pattern.indexOf('{');
+        while (open >= 0) {
+            int close = pattern.indexOf('}', open);
+            if (close < 0) {
+                // Unmatched brace - let MessageFormat report it.
+                plain = false;
+                break;
+            }
+            String argument = pattern.substring(open + 1, close);
+            if (!isArgumentNumber(argument)) {
+                plain = false;
+                break;
+            }
+            literalList.add(pattern.substring(start, open));
+            argumentNumberList.add(Integer.valueOf(argument));
+            start = close + 1;
+            open = pattern.indexOf('{', start);
+        }
+
+        if (plain) {
+            literalList.add(pattern.substring(start));
+            literals = literalList.toArray(new String[literalList.size()]);
+            argumentNumbers = new int[argumentNumberList.size()];
+            for (int i = 0; i < argumentNumbers.length; i++) {
+                argumentNumbers[i] = argumentNumberList.get(i);
+            }
+            messageFormat = null;
+        } else {
+            literals = null;
+            argumentNumbers = null;
+            messageFormat = new MessageFormat(pattern, locale);
+        }
+    }
+
+    private static boolean isArgumentNumber(String argument) {
+        if (argument.length() == 0 || argument.length() > 9) {
+            return false;
+        }
+        for (int i = 0; i < argument.length(); i++) {
+            if (argument.charAt(i) < '0' || argument.charAt(i) > '9') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    String format(Object[] parameters) {
+        if (messageFormat != null) {
+            return ((MessageFormat) messageFormat.clone()).format(parameters);
+        }
+
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < argumentNumbers.length; i++) {
+            builder.append(literals[i]);
+            appendArgument(builder, argumentNumbers[i], parameters);
+        }
+        builder.append(literals[argumentNumbers.length]);
+        return builder.toString();
+    }
+
+    /**
+     * Append an argument with no format type as MessageFormat does.
+     */
+    private void appendArgument(StringBuilder builder, int argumentNumber, Object[] parameters) {
+        if (parameters == null || argumentNumber >= parameters.length) {
+            builder.append('{').append(argumentNumber).append('}');
+            return;
+        }
+        Object parameter = parameters[argumentNumber];
+        if (parameter == null) {
+            builder.append("null");
+        } else if (parameter instanceof Number) {
+            builder.append(NumberFormat.getInstance(locale).format(parameter));
+        } else if (parameter instanceof Date) {
+            builder.append(DateFormat.getDateTimeInstance(DateFormat.SHORT, DateFormat.SHORT, locale).format(parameter));
+        } else if (parameter instanceof String) {
+            builder.append((String) parameter);
+        } else {
+            String text = parameter.toString();
+            builder.append(text == null ? "null" : text);
+        }
+    }
+}
@@ -26,9 +26,13 @@ import org.multibit.controller.core.CoreController;
 import org.multibit.controller.exchange.ExchangeController;
 import org.multibit.controller.fastcoin.FastcoinController;
 import org.multibit.exchange.CurrencyConverter;
+import org.multibit.exchange.ExchangeRateCache;
 import org.multibit.file.BackupManager;
 import org.multibit.file.FileHandler;
+import org.multibit.file.ParallelWalletLoader;
+import org.multibit.file.WalletFileWatcher;
 import org.multibit.file.WalletLoadException;
+import org.multibit.file.WalletPersistenceService;
 import org.multibit.message.Message;
 import org.multibit.message.MessageManager;
 import org.multibit.model.core.CoreModel;
@@ -208,6 +212,31 @@ public final class MultiBitWallet {
 
                     // Initialise replay manager.
                     ReplayManager.INSTANCE.initialise(fastcoinController, false);
+                    ReplayJournal.INSTANCE.initialise(fastcoinController);
+
+                    // Initialise the Bloom filter metrics.
+                    BloomFilterManager.INSTANCE.initialise(fastcoinController);
+
+                    // Initialise the background pinging of peers.
+                    PeerHealthService.INSTANCE.initialise(fastcoinController);
+
+                    // Initialise the generation of checkpoints from the downloaded blocks.
+                    CheckpointGenerator.INSTANCE.initialise(fastcoinController);
+
+                    // Initialise the background wallet writer.
+                    long walletSaveDelay = WalletPersistenceService.DEFAULT_SAVE_DELAY;
+                    String walletSaveDelayString = userPreferences.getProperty(FastcoinModel.WALLET_SAVE_DELAY);
+                    if (walletSaveDelayString != null && !"".equals(walletSaveDelayString)) {
+                        try {
+                            walletSaveDelay = Long.parseLong(walletSaveDelayString.trim());
+                        } catch (NumberFormatException nfe) {
+                            log.error("Could not parse " + FastcoinModel.WALLET_SAVE_DELAY + " of '" + walletSaveDelayString + "'");
+                        }
+                    }
+                    WalletPersistenceService.INSTANCE.initialise(fastcoinController, walletSaveDelay);
+
+                    // Initialise the watcher for changes to wallet files by other processes.
+                    WalletFileWatcher.INSTANCE.initialise(fastcoinController);
 
                     log.debug("Setting look and feel");
                     try {
@@ -248,6 +277,9 @@ public final class MultiBitWallet {
                     FontSizer.INSTANCE.initialise(controller);
                     CurrencyConverter.INSTANCE.initialise(finalController);
 
+                    // Show the cached exchange rates until the tickers have fetched new ones.
+                    ExchangeRateCache.INSTANCE.initialise(exchangeController);
+
                     // This is when the GUI is first displayed to the user.
                     log.debug("Creating user interface with initial view : " + controller.getCurrentView());
                     swingViewSystem = new FastcoinWalletFrame(coreController, fastcoinController, exchangeController, genericApplication, controller.getCurrentView());
@@ -446,73 +478,88 @@ public final class MultiBitWallet {
                                 boolean thereWasAnErrorLoadingTheWallet = false;
 
                                 ((FastcoinWalletFrame) swingViewSystem).setCursor(Cursor.getPredefinedCursor(Cursor.WAIT_CURSOR));
-                                for (String actualOrder : actualOrderToLoad) {
-                                    log.debug("Loading wallet from '{}'", actualOrder);
-                                    Message message = new Message(controller.getLocaliser().getString("fastcoinWallet.openingWallet",
-                                            new Object[]{actualOrder}));
-                                    message.setShowInStatusBar(false);
-                                    MessageManager.INSTANCE.addMessage(message);
-                                    try {
-                                        // Check if this is the first time this wallet has been opened post addition of data directories.
-                                        String topLevelWalletDirectory = BackupManager.INSTANCE.calculateTopLevelBackupDirectoryName(new File(actualOrder));
-                                        boolean firstUsageSinceWalletDirectoriesIntroduced = !(new File(topLevelWalletDirectory).exists());
-
-                                        WalletData perWalletModelData = null;
-                                        if (activeWalletFilename != null && activeWalletFilename.equals(actualOrder)) {
-                                            perWalletModelData = fastcoinController.addWalletFromFilename(actualOrder);
-                                            fastcoinController.getModel().setActiveWalletByFilename(actualOrder);
-                                        } else {
-                                            perWalletModelData = fastcoinController.addWalletFromFilename(actualOrder);
-                                        }
-                                        Message message2 = new Message(controller.getLocaliser().getString("fastcoinWallet.openingWalletIsDone",
-                                                new Object[]{actualOrder}));
-                                        message2.setShowInStatusBar(false);
-                                        MessageManager.INSTANCE.addMessage(message2);
 
-                                        if (firstUsageSinceWalletDirectoriesIntroduced) {
-                                            if (perWalletModelData != null && perWalletModelData.getWallet() != null) {
-                                                // Backup the wallet and wallet info.
-                                                BackupManager.INSTANCE.backupPerWalletModelData(fastcoinController.getFileHandler(), perWalletModelData);
+                                // Check which wallets are being opened for the first time post addition of data directories
+                                // before any of the directories are created.
+                                Set<String> firstUsageSinceWalletDirectoriesIntroduced = new HashSet<String>();
+                                for (String actualOrder : actualOrderToLoad) {
+                                    String topLevelWalletDirectory = BackupManager.INSTANCE.calculateTopLevelBackupDirectoryName(new File(actualOrder));
+                                    if (!(new File(topLevelWalletDirectory).exists())) {
+                                        firstUsageSinceWalletDirectoriesIntroduced.add(actualOrder);
+                                    }
+                                }
 
-                                                // Move any timestamped key and wallet files into their appropriate directories
-                                                BackupManager.INSTANCE.moveSiblingTimestampedKeyAndWalletBackups(actualOrder);
+                                // Read all the wallets in parallel, then add them in order.
+                                ParallelWalletLoader parallelWalletLoader = new ParallelWalletLoader(fastcoinController.getFileHandler(), actualOrderToLoad);
+                                try {
+                                    for (String actualOrder : actualOrderToLoad) {
+                                        log.debug("Loading wallet from '{}'", actualOrder);
+                                        Message message = new Message(controller.getLocaliser().getString("fastcoinWallet.openingWallet",
+                                                new Object[]{actualOrder}));
+                                        message.setShowInStatusBar(false);
+                                        MessageManager.INSTANCE.addMessage(message);
+                                        try {
+                                            WalletData perWalletModelData = null;
+                                            if (parallelWalletLoader.isLoading(actualOrder)) {
+                                                perWalletModelData = fastcoinController.addParsedWallet(parallelWalletLoader.get(actualOrder));
+                                            } else {
+                                                perWalletModelData = fastcoinController.addWalletFromFilename(actualOrder);
+                                            }
+                                            if (activeWalletFilename != null && activeWalletFilename.equals(actualOrder)) {
+                                                fastcoinController.getModel().setActiveWalletByFilename(actualOrder);
                                             }
+                                            Message message2 = new Message(controller.getLocaliser().getString("fastcoinWallet.openingWalletIsDone",
+                                                    new Object[]{actualOrder}));
+                                            message2.setShowInStatusBar(false);
+                                            MessageManager.INSTANCE.addMessage(message2);
+
+                                            if (firstUsageSinceWalletDirectoriesIntroduced.contains(actualOrder)) {
+                                                if (perWalletModelData != null && perWalletModelData.getWallet() != null) {
+                                                    // Backup the wallet and wallet info.
+                                                    BackupManager.INSTANCE.backupPerWalletModelData(fastcoinController.getFileHandler(), perWalletModelData);
+
+                                                    // Move any timestamped key and wallet files into their appropriate directories
+                                                    BackupManager.INSTANCE.moveSiblingTimestampedKeyAndWalletBackups(actualOrder);
+                                                }
+                                            }
+                                        } catch (WalletLoadException e) {
+                                            message = new Message(controller.getLocaliser().getString("openWalletSubmitAction.walletNotLoaded",
+                                                    new Object[]{actualOrder, e.getMessage()}));
+                                            MessageManager.INSTANCE.addMessage(message);
+                                            log.error(message.getText());
+                                            thereWasAnErrorLoadingTheWallet = true;
+                                        } catch (WalletVersionException e) {
+                                            message = new Message(controller.getLocaliser().getString("openWalletSubmitAction.walletNotLoaded",
+                                                    new Object[]{actualOrder, e.getMessage()}));
+                                            MessageManager.INSTANCE.addMessage(message);
+                                            log.error(message.getText());
+                                            thereWasAnErrorLoadingTheWallet = true;
+                                        } catch (IOException e) {
+                                            message = new Message(controller.getLocaliser().getString("openWalletSubmitAction.walletNotLoaded",
+                                                    new Object[]{actualOrder, e.getMessage()}));
+                                            MessageManager.INSTANCE.addMessage(message);
+                                            log.error(message.getText());
+                                            thereWasAnErrorLoadingTheWallet = true;
+                                        } catch (Exception e) {
+                                            message = new Message(controller.getLocaliser().getString("openWalletSubmitAction.walletNotLoaded",
+                                                    new Object[]{actualOrder, e.getMessage()}));
+                                            MessageManager.INSTANCE.addMessage(message);
+                                            log.error(message.getText());
+                                            thereWasAnErrorLoadingTheWallet = true;
                                         }
-                                    } catch (WalletLoadException e) {
-                                        message = new Message(controller.getLocaliser().getString("openWalletSubmitAction.walletNotLoaded",
-                                                new Object[]{actualOrder, e.getMessage()}));
-                                        MessageManager.INSTANCE.addMessage(message);
-                                        log.error(message.getText());
-                                        thereWasAnErrorLoadingTheWallet = true;
-                                    } catch (WalletVersionException e) {
-                                        message = new Message(controller.getLocaliser().getString("openWalletSubmitAction.walletNotLoaded",
-                                                new Object[]{actualOrder, e.getMessage()}));
-                                        MessageManager.INSTANCE.addMessage(message);
-                                        log.error(message.getText());
-                                        thereWasAnErrorLoadingTheWallet = true;
-                                    } catch (IOException e) {
-                                        message = new Message(controller.getLocaliser().getString("openWalletSubmitAction.walletNotLoaded",
-                                                new Object[]{actualOrder, e.getMessage()}));
-                                        MessageManager.INSTANCE.addMessage(message);
-                                        log.error(message.getText());
-                                        thereWasAnErrorLoadingTheWallet = true;
-                                    } catch (Exception e) {
-                                        message = new Message(controller.getLocaliser().getString("openWalletSubmitAction.walletNotLoaded",
-                                                new Object[]{actualOrder, e.getMessage()}));
-                                        MessageManager.INSTANCE.addMessage(message);
-                                        log.error(message.getText());
-                                        thereWasAnErrorLoadingTheWallet = true;
-                                    }
 
-                                    if (thereWasAnErrorLoadingTheWallet) {
-                                        WalletData loopData = fastcoinController.getModel().getPerWalletModelDataByWalletFilename(actualOrder);
-                                        if (loopData != null) {
-                                            // Clear the backup wallet filename - this prevents it being automatically overwritten.
-                                            if (loopData.getWalletInfo() != null) {
-                                                loopData.getWalletInfo().put(FastcoinModel.WALLET_BACKUP_FILE, "");
+                                        if (thereWasAnErrorLoadingTheWallet) {
+                                            WalletData loopData = fastcoinController.getModel().getPerWalletModelDataByWalletFilename(actualOrder);
+                                            if (loopData != null) {
+                                                // Clear the backup wallet filename - this prevents it being automatically overwritten.
+                                                if (loopData.getWalletInfo() != null) {
+                                                    loopData.getWalletInfo().put(FastcoinModel.WALLET_BACKUP_FILE, "");
+                                                }
                                             }
                                         }
                                     }
+                                } finally {
+                                    parallelWalletLoader.shutdown();
                                 }
                             }
                         } catch (NumberFormatException nfe) {
@@ -600,6 +647,25 @@ public final class MultiBitWallet {
                             }
                         }
                     }
+
+                    // Resume any replay that was interrupted when MultiBitWallet was last closed.
+                    ReplayTask resumedReplayTask = ReplayJournal.INSTANCE.createResumeReplayTask();
+                    if (resumedReplayTask != null) {
+                        ReplayManager.INSTANCE.offerReplayTask(resumedReplayTask);
+
+                        // The remaining wallets are synced as usual.
+                        replayPerWalletModelList.removeAll(resumedReplayTask.getPerWalletModelDataToReplay());
+                        needToSync = !replayPerWalletModelList.isEmpty();
+                        syncFromHeight = -1;
+                        for (WalletData perWalletModelData : replayPerWalletModelList) {
+                            int lastBlockSeenHeight = perWalletModelData.getWallet().getLastBlockSeenHeight();
+                            if (syncFromHeight == -1) {
+                                syncFromHeight = lastBlockSeenHeight;
+                            } else {
+                                syncFromHeight = Math.min(syncFromHeight, lastBlockSeenHeight);
+                            }
+                        }
+                    }
                     log.debug("needToSync = " + needToSync);
 
                     if (needToSync) {
@@ -622,7 +688,7 @@ public final class MultiBitWallet {
                             replayTask = new ReplayTask(replayPerWalletModelList, syncDate, syncFromStoredBlock.getHeight());
                         }
                         ReplayManager.INSTANCE.offerReplayTask(replayTask);
-                    } else {
+                    } else if (resumedReplayTask == null) {
                         // Just sync the blockchain without a replay task being involved.
                         ReplayManager.INSTANCE.downloadBlockChain();
                     }
@@ -23,10 +23,12 @@ import org.multibit.controller.AbstractController;
 import org.multibit.controller.AbstractEventHandler;
 import org.multibit.controller.core.CoreController;
 import org.multibit.file.FileHandler;
+import org.multibit.file.ParsedWallet;
 import org.multibit.message.MessageManager;
 import org.multibit.model.fastcoin.FastcoinModel;
 import org.multibit.model.fastcoin.WalletBusyListener;
 import org.multibit.model.fastcoin.WalletData;
+import org.multibit.network.BloomFilterManager;
 import org.multibit.network.FastcoinWalletService;
 import org.multibit.viewsystem.View;
 import org.multibit.viewsystem.ViewSystem;
@@ -139,6 +141,21 @@ public class FastcoinController extends AbstractController<CoreController> imple
         return perWalletModelDataToReturn;
     }
 
+    /**
+     * Add a wallet that has already been read from disk.
+     * 
+     * @param parsedWallet The wallet read by the FileHandler
+     * 
+     * @return The model data
+     */
+    public WalletData addParsedWallet(ParsedWallet parsedWallet) {
+        WalletData perWalletModelDataToReturn = null;
+        if (fastcoinWalletService != null) {
+            perWalletModelDataToReturn = fastcoinWalletService.addParsedWallet(parsedWallet);
+        }
+        return perWalletModelDataToReturn;
+    }
+
     public void fireFilesHaveBeenChangedByAnotherProcess(WalletData perWalletModelData) {
         //log.debug("fireFilesHaveBeenChangedByAnotherProcess called");
         for (ViewSystem viewSystem : super.getViewSystem()) {
@@ -188,6 +205,8 @@ public class FastcoinController extends AbstractController<CoreController> imple
     @Override
     public void onCoinsReceived(Wallet wallet, Transaction transaction, BigInteger prevBalance, BigInteger newBalance) {
         //log.debug("onCoinsReceived called");
+        getModel().updateWalletTableData(this, wallet, transaction);
+        indexTransaction(wallet, transaction);
         for (ViewSystem viewSystem : super.getViewSystem()) {
             viewSystem.onCoinsReceived(wallet, transaction, prevBalance, newBalance);
         }
@@ -196,11 +215,25 @@ public class FastcoinController extends AbstractController<CoreController> imple
     @Override
     public void onCoinsSent(Wallet wallet, Transaction transaction, BigInteger prevBalance, BigInteger newBalance) {
         //log.debug("onCoinsSent called");
+        getModel().updateWalletTableData(this, wallet, transaction);
+        indexTransaction(wallet, transaction);
         for (ViewSystem viewSystem : super.getViewSystem()) {
             viewSystem.onCoinsSent(wallet, transaction, prevBalance, newBalance);
         }
     }
     
+    /**
+     * Index the outputs of a transaction so that transactions spending them are routed to the wallet.
+     */
+    private void indexTransaction(Wallet wallet, Transaction transaction) {
+        for (WalletData loopPerWalletModelData : getModel().getPerWalletModelDataList()) {
+            if (loopPerWalletModelData.getWallet() == wallet) {
+                getModel().getTransactionRoutingIndex().addTransaction(loopPerWalletModelData, transaction);
+                break;
+            }
+        }
+    }
+
     @Override
     public void onWalletChanged(Wallet wallet) {
         if (wallet == null) {
@@ -222,6 +255,7 @@ public class FastcoinController extends AbstractController<CoreController> imple
     @Override
     public void onTransactionConfidenceChanged(Wallet wallet, Transaction transaction) {
         //log.debug("onTransactionConfidenceChanged called");
+        getModel().updateWalletTableDataConfidence(this, wallet, transaction);
         for (ViewSystem viewSystem : super.getViewSystem()) {
             viewSystem.onTransactionConfidenceChanged(wallet, transaction);
         }
@@ -230,6 +264,21 @@ public class FastcoinController extends AbstractController<CoreController> imple
     @Override
     public void onKeysAdded(Wallet wallet, List<ECKey> keys) {
         log.debug("Keys added : " + keys.toString());
+        if (wallet == null) {
+            return;
+        }
+
+        // The Bloom filter metrics count the new keys.
+        BloomFilterManager.INSTANCE.keysAdded(wallet);
+
+        // The key addresses cached for the wallet are now out of date.
+        for (WalletData loopPerWalletModelData : getModel().getPerWalletModelDataList()) {
+            if (loopPerWalletModelData.getWallet() == wallet) {
+                loopPerWalletModelData.invalidateKeyAddresses();
+                getModel().getTransactionRoutingIndex().addKeys(loopPerWalletModelData, keys);
+                break;
+            }
+        }
     }
 
     @Override
@@ -249,6 +298,11 @@ public class FastcoinController extends AbstractController<CoreController> imple
             if (loopPerWalletModelData.getWallet().equals(wallet)) {
                 loopPerWalletModelData.setDirty(true);
                 log.debug("Marking wallet '" + loopPerWalletModelData.getWalletFilename() + "' as dirty.");
+
+                // Heights and dates of many transactions may have changed.
+                if (loopPerWalletModelData.getWalletTableDataStore().isInitialised()) {
+                    getModel().rebuildWalletTableData(this, loopPerWalletModelData);
+                }
             }
         }
         for (ViewSystem viewSystem : super.getViewSystem()) {
@@ -4,12 +4,14 @@ import com.google.fastcoin.core.*;
 import org.multibit.controller.Controller;
 import org.multibit.model.fastcoin.WalletData;
 import org.multibit.model.core.StatusEnum;
+import org.multibit.network.BloomFilterManager;
 import org.multibit.network.ReplayManager;
 import org.multibit.viewsystem.swing.view.panels.SendFastcoinConfirmPanel;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.List;
+import java.util.Set;
 
 public class FastcoinPeerEventListener implements PeerEventListener {
 
@@ -44,6 +46,9 @@ public class FastcoinPeerEventListener implements PeerEventListener {
   public void onPeerConnected(Peer peer, int peerCount) {
     if (peer != null) {
       log.debug("Connected to peer:" + peer.getPeerVersionMessage());
+      if (fastcoinController.getFastcoinWalletService() != null) {
+        fastcoinController.getFastcoinWalletService().getPeerAddressBook().peerConnected(peer.getAddress());
+      }
     }
     if (peerCount >= 1) {
       controller.setOnlineStatus(StatusEnum.ONLINE);
@@ -80,11 +85,18 @@ public class FastcoinPeerEventListener implements PeerEventListener {
       try {
         java.util.List<WalletData> perWalletModelDataList = fastcoinController.getModel().getPerWalletModelDataList();
 
+        boolean relevant = false;
         if (perWalletModelDataList != null) {
+          // Only the wallets the transaction touches need to check it.
+          Set<WalletData> touchedWallets = fastcoinController.getModel().getTransactionRoutingIndex().findWalletsTouchedBy(transaction);
           for (WalletData perWalletModelData : perWalletModelDataList) {
+            if (!touchedWallets.contains(perWalletModelData)) {
+              continue;
+            }
             Wallet loopWallet = perWalletModelData.getWallet();
             if (loopWallet != null) {
               if (loopWallet.isTransactionRelevant(transaction)) {
+                relevant = true;
                 if (!(transaction.isTimeLocked() && transaction.getConfidence().getSource() != TransactionConfidence.Source.SELF)) {
                   if (loopWallet.getTransaction(transaction.getHash()) == null) {
                     log.debug("MultiBitWallet adding a new pending transaction for the wallet '"
@@ -104,6 +116,9 @@ public class FastcoinPeerEventListener implements PeerEventListener {
             }
           }
         }
+
+        // Track how many of the transactions the peers send are false positives of the Bloom filter.
+        BloomFilterManager.INSTANCE.transactionReceived(relevant);
       } catch (ScriptException e) {
         log.error(e.getMessage(), e);
       } catch (VerificationException e) {
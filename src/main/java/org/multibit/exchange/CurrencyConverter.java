@@ -5,6 +5,7 @@ import java.math.BigInteger;
 import java.math.RoundingMode;
 import java.text.DecimalFormat;
 import java.text.ParseException;
+import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Date;
@@ -22,9 +23,6 @@ import org.slf4j.LoggerFactory;
 import org.joda.money.CurrencyUnit;
 import org.joda.money.IllegalCurrencyException;
 import org.joda.money.Money;
-import org.joda.money.format.MoneyAmountStyle;
-import org.joda.money.format.MoneyFormatter;
-import org.joda.money.format.MoneyFormatterBuilder;
 
 
 
@@ -37,6 +35,11 @@ public enum CurrencyConverter {
     
     private Collection<CurrencyConverterListener> listeners;
     
+    /**
+     * Shown after fiat amounts worked out with a stale exchange rate.
+     */
+    public static final String STALE_RATE_MARKER = "*";
+
     public static final BigInteger NUMBER_OF_SATOSHI_IN_ONE_FASTCOIN = BigInteger.valueOf(100000000); // 8 zeros
     public static final int NUMBER_OF_DECIMAL_POINTS_IN_A_FASTCOIN = 8;
     
@@ -52,14 +55,35 @@ public enum CurrencyConverter {
     private CurrencyUnit currencyUnit;  
 
     /**
-     * MoneyFormatter without currency code
+     * The fiat formatters for the current locale and currency unit. Replaced, never changed, by updateFormatters.
      */
-    MoneyFormatter moneyFormatter;
-    
+    private volatile FiatFormat fiatFormat;
+
+    /**
+     * The exchange rate as a fraction to multiply satoshi by to get fiat minor units, e.g. cents.
+     * Null if there is no rate or the rate does not fit in longs. Replaced, never changed, by setRate.
+     */
+    private volatile FiatConversion fiatConversion;
+
     /**
-     * MoneyFormatter with currency code
+     * DecimalFormats for parsing, by locale. DecimalFormats are not thread safe so each thread has its own.
      */
-    MoneyFormatter moneyFormatterWithCurrencyCode;
+    private static final ThreadLocal<Map<Locale, DecimalFormat>> parseFormatters = new ThreadLocal<Map<Locale, DecimalFormat>>() {
+        @Override
+        protected Map<Locale, DecimalFormat> initialValue() {
+            return new HashMap<Locale, DecimalFormat>();
+        }
+    };
+
+    /**
+     * DecimalFormats for formatting FST, by locale. DecimalFormats are not thread safe so each thread has its own.
+     */
+    private static final ThreadLocal<Map<Locale, DecimalFormat>> fstFormatters = new ThreadLocal<Map<Locale, DecimalFormat>>() {
+        @Override
+        protected Map<Locale, DecimalFormat> initialValue() {
+            return new HashMap<Locale, DecimalFormat>();
+        }
+    };
     
     /**
      * The exchange rate i.e the value of 1 FST in the currency.
@@ -70,8 +94,32 @@ public enum CurrencyConverter {
      * The rate rate in terms of satoshi i.e. value of 1 satoshi in the currency
      */
     private BigDecimal rateDividedByNumberOfSatoshiInOneFastcoin;
-      
-    private String groupingSeparator;
+
+    /**
+     * fiat minor units = satoshi * multiplier / divisor, rounded half even.
+     */
+    private static final class FiatConversion {
+        final CurrencyUnit currencyUnit;
+        final long multiplier;
+        final long divisor;
+
+        FiatConversion(CurrencyUnit currencyUnit, long multiplier, long divisor) {
+            this.currencyUnit = currencyUnit;
+            this.multiplier = multiplier;
+            this.divisor = divisor;
+        }
+    }
+
+    /**
+     * When the exchange rate was fetched.
+     */
+    private Date rateDate;
+
+    /**
+     * True when the exchange rate was read from the exchange rate cache and has not yet been refreshed from an exchange.
+     */
+    private boolean rateStale;
+
     
     /**
      * Map of currency code to currency info.
@@ -118,6 +166,9 @@ public enum CurrencyConverter {
         // Exchange rate is unknown.
         rate = null;
         rateDividedByNumberOfSatoshiInOneFastcoin = null;
+        rateDate = null;
+        rateStale = false;
+        fiatConversion = null;
         
         // Setup listeners
         listeners = new ArrayList<CurrencyConverterListener>();
@@ -305,11 +356,33 @@ public enum CurrencyConverter {
     }
     
     public void updateFormatters() {
-        moneyFormatter = getMoneyFormatter(false);
-        moneyFormatterWithCurrencyCode = getMoneyFormatter(true);
-        
-        DecimalFormat fiatFormatter = (DecimalFormat) DecimalFormat.getInstance(controller.getLocaliser().getLocale());
-        groupingSeparator = String.valueOf(fiatFormatter.getDecimalFormatSymbols().getGroupingSeparator());     
+        fiatFormat = createFiatFormat(controller.getLocaliser().getLocale(), currencyUnit);
+    }
+
+    /**
+     * Get the fiat formatters, creating them if the locale or currency unit has changed since they were created.
+     */
+    private FiatFormat getFiatFormat() {
+        FiatFormat fiatFormatToUse = fiatFormat;
+        Locale locale = controller.getLocaliser().getLocale();
+        CurrencyUnit currencyUnitToUse = currencyUnit;
+        if (fiatFormatToUse == null || !fiatFormatToUse.getLocale().equals(locale)
+                || !fiatFormatToUse.getCurrencyUnit().equals(currencyUnitToUse)) {
+            fiatFormatToUse = createFiatFormat(locale, currencyUnitToUse);
+            fiatFormat = fiatFormatToUse;
+        }
+        return fiatFormatToUse;
+    }
+
+    private static DecimalFormat getParseFormatter(Locale locale) {
+        Map<Locale, DecimalFormat> formatters = parseFormatters.get();
+        DecimalFormat formatter = formatters.get(locale);
+        if (formatter == null) {
+            formatter = (DecimalFormat) DecimalFormat.getInstance(locale);
+            formatter.setParseBigDecimal(true);
+            formatters.put(locale, formatter);
+        }
+        return formatter;
     }
 
     /**
@@ -332,6 +405,81 @@ public enum CurrencyConverter {
         }
     }
     
+    /**
+     * Work out the fraction to multiply satoshi by to get fiat minor units.
+     * @return the fraction, or null if it does not fit in longs
+     */
+    private static FiatConversion createFiatConversion(CurrencyUnit currencyUnit, BigDecimal rate) {
+        if (currencyUnit == null || rate == null || currencyUnit.getDecimalPlaces() < 0) {
+            return null;
+        }
+        BigDecimal strippedRate = rate.stripTrailingZeros();
+        int exponent = currencyUnit.getDecimalPlaces() - strippedRate.scale() - NUMBER_OF_DECIMAL_POINTS_IN_A_FASTCOIN;
+        BigInteger multiplier = strippedRate.unscaledValue();
+        BigInteger divisor = BigInteger.ONE;
+        if (exponent >= 0) {
+            multiplier = multiplier.multiply(BigInteger.TEN.pow(exponent));
+        } else {
+            divisor = BigInteger.TEN.pow(-exponent);
+        }
+        // Leave headroom in the divisor for doubling the remainder when rounding.
+        if (multiplier.bitLength() > 62 || divisor.bitLength() > 61) {
+            return null;
+        }
+        return new FiatConversion(currencyUnit, multiplier.longValue(), divisor.longValue());
+    }
+
+    /**
+     * Divide, rounding half even as Money.convertedTo does.
+     */
+    private static long divideRoundingHalfEven(long dividend, long divisor) {
+        long quotient = dividend / divisor;
+        long remainder = dividend % divisor;
+        if (remainder != 0) {
+            long twiceRemainder = Math.abs(remainder) * 2;
+            if (twiceRemainder > divisor || (twiceRemainder == divisor && (quotient & 1) != 0)) {
+                quotient += dividend < 0 ? -1 : 1;
+            }
+        }
+        return quotient;
+    }
+
+    /**
+     * Convert a number of satoshis to fiat and format it. The result is the same as
+     * getFiatAsLocalisedString(convertFromFSTToFiat(fastcoinAmountInSatoshi), ...) but, for the usual
+     * rates and currencies, no Money or BigDecimal is created so it is cheap enough to call for every table cell.
+     * @param fastcoinAmountInSatoshi in satoshis
+     * @return the formatted fiat amount, or null if the exchange rate is unknown
+     */
+    public String convertFromFSTToLocalisedFiatString(long fastcoinAmountInSatoshi, boolean addCurrencySymbol, boolean addParenthesis) {
+        FiatConversion fiatConversionToUse = fiatConversion;
+        FiatFormat fiatFormatToUse = getFiatFormat();
+        if (fiatConversionToUse != null && fiatConversionToUse.currencyUnit.equals(fiatFormatToUse.getCurrencyUnit())
+                && fiatFormatToUse.canAppendMinorUnits() && fastcoinAmountInSatoshi != Long.MIN_VALUE
+                && (fiatConversionToUse.multiplier == 0
+                    || Math.abs(fastcoinAmountInSatoshi) <= Long.MAX_VALUE / Math.abs(fiatConversionToUse.multiplier))) {
+            long fiatAmountInMinorUnits = divideRoundingHalfEven(fastcoinAmountInSatoshi * fiatConversionToUse.multiplier,
+                    fiatConversionToUse.divisor);
+
+            StringBuilder builder = new StringBuilder(32);
+            if (addParenthesis) {
+                builder.append("  (");
+            }
+            fiatFormatToUse.appendMinorUnits(builder, fiatAmountInMinorUnits, addCurrencySymbol);
+            if (addParenthesis) {
+                builder.append(')');
+            }
+            return builder.toString();
+        }
+
+        // Amount or rate too big for longs - use Money.
+        Money fiat = convertFromFSTToFiat(BigInteger.valueOf(fastcoinAmountInSatoshi));
+        if (fiat == null) {
+            return null;
+        }
+        return getFiatAsLocalisedString(fiat, addCurrencySymbol, addParenthesis);
+    }
+    
     public CurrencyConverterResult convertFromFiatToFST(String fiat) {
         if (rate == null || rate.equals(BigDecimal.ZERO)) {
             return new CurrencyConverterResult();
@@ -343,8 +491,7 @@ public enum CurrencyConverter {
             
             Money fstAmount = null;
             
-            DecimalFormat formatter = (DecimalFormat) DecimalFormat.getInstance(controller.getLocaliser().getLocale());
-            formatter.setParseBigDecimal(true);
+            DecimalFormat formatter = getParseFormatter(controller.getLocaliser().getLocale());
             
             // Convert spaces to non breakable space.
             fiat = fiat.replaceAll(" ", "\u00A0");
@@ -384,11 +531,9 @@ public enum CurrencyConverter {
         }
     }
     
-    private MoneyFormatter getMoneyFormatter(boolean addCurrencySymbol) {
-        MoneyFormatter moneyFormatter;
-        
+    private FiatFormat createFiatFormat(Locale locale, CurrencyUnit currencyUnitToFormat) {
         // Suffix currency codes.
-        String currencyCode = currencyUnit.getCurrencyCode();
+        String currencyCode = currencyUnitToFormat.getCurrencyCode();
         CurrencyInfo currencyInfo = currencyCodeToInfoMap.get(currencyCode);
         if (currencyInfo == null) {
             // Create a default currency info with the raw currency code as a suffix, including a separator space
@@ -396,55 +541,10 @@ public enum CurrencyConverter {
             currencyInfo.setHasSeparatingSpace(true);
         }
 
-        DecimalFormat formatter = (DecimalFormat) DecimalFormat.getInstance(controller.getLocaliser().getLocale());
+        DecimalFormat formatter = (DecimalFormat) DecimalFormat.getInstance(locale);
         char decimalSeparator = formatter.getDecimalFormatSymbols().getDecimalSeparator();
         char groupingSeparator = formatter.getDecimalFormatSymbols().getGroupingSeparator();
-        MoneyAmountStyle moneyAmountStyle;
-        if ('.' == decimalSeparator) {
-            if (',' == groupingSeparator) {
-                moneyAmountStyle = MoneyAmountStyle.ASCII_DECIMAL_POINT_GROUP3_COMMA;
-            } else if (' ' == groupingSeparator || '\u00A0' == groupingSeparator) {
-                moneyAmountStyle = MoneyAmountStyle.ASCII_DECIMAL_POINT_GROUP3_SPACE;
-            } else {
-                moneyAmountStyle = MoneyAmountStyle.ASCII_DECIMAL_POINT_NO_GROUPING;
-            }
-        } else {
-            if (',' == decimalSeparator) {
-                if ('.' == groupingSeparator) {
-                    moneyAmountStyle = MoneyAmountStyle.ASCII_DECIMAL_COMMA_GROUP3_DOT;
-                } else if (' ' == groupingSeparator || '\u00A0' == groupingSeparator) {
-                    moneyAmountStyle = MoneyAmountStyle.ASCII_DECIMAL_COMMA_GROUP3_SPACE;
-                } else {
-                    moneyAmountStyle = MoneyAmountStyle.ASCII_DECIMAL_COMMA_NO_GROUPING;
-                }
-            } else {
-                // Do not really know - keep it simple.
-                moneyAmountStyle = MoneyAmountStyle.ASCII_DECIMAL_POINT_NO_GROUPING;                
-            }
-        }
-        
-        String separator;
-        if (currencyInfo.hasSeparatingSpace) {
-            separator = " ";
-        } else {
-            separator = "";
-        }
-        if (currencyInfo.isPrefix()) {
-            // Prefix currency code.
-            if (addCurrencySymbol) {
-                moneyFormatter = new MoneyFormatterBuilder().appendLiteral(currencyInfo.getCurrencySymbol()).appendLiteral(separator).appendAmount(moneyAmountStyle).toFormatter(controller.getLocaliser().getLocale());
-            } else {
-                moneyFormatter = new MoneyFormatterBuilder().appendAmount(moneyAmountStyle).toFormatter(controller.getLocaliser().getLocale());
-            }
-        } else {
-             // Postfix currency code.
-            if (addCurrencySymbol) {
-                moneyFormatter = new MoneyFormatterBuilder().appendAmount(moneyAmountStyle).appendLiteral(separator).appendLiteral(currencyInfo.getCurrencySymbol()).toFormatter(controller.getLocaliser().getLocale());
-            } else {
-                moneyFormatter = new MoneyFormatterBuilder().appendAmount(moneyAmountStyle).toFormatter(controller.getLocaliser().getLocale());
-            }
-        }
-        return moneyFormatter;
+        return new FiatFormat(locale, currencyUnitToFormat, currencyInfo, decimalSeparator, groupingSeparator);
     }
     
     public String getFiatAsLocalisedString(Money money) {
@@ -456,33 +556,11 @@ public enum CurrencyConverter {
             return "";
         }
         
-        MoneyFormatter moneyFormatterToUse;
-        if (addCurrencySymbol) {
-            if (moneyFormatterWithCurrencyCode == null) {
-                moneyFormatterWithCurrencyCode = getMoneyFormatter(true);
-            }
-            moneyFormatterToUse = moneyFormatterWithCurrencyCode;
-        } else {
-            if (moneyFormatter == null) {
-                moneyFormatter = getMoneyFormatter(false);
-            }
-            moneyFormatterToUse = moneyFormatter;
-            
-        }
-   
-        if (groupingSeparator == null) {
-            DecimalFormat fiatFormatter = (DecimalFormat) DecimalFormat.getInstance(controller.getLocaliser().getLocale());
-            groupingSeparator = String.valueOf(fiatFormatter.getDecimalFormatSymbols().getGroupingSeparator());
-        }
+        FiatFormat fiatFormatToUse = getFiatFormat();
+        String toReturn = fiatFormatToUse.getMoneyFormatter(addCurrencySymbol).print(money);
 
-        String toReturn =  moneyFormatterToUse.print(money);
-        
         // Get rid of negative sign followed by thousand separator
-        if (".".equals(groupingSeparator)) {
-             // Escape regex.
-            groupingSeparator = "\\.";
-        }
-        toReturn = toReturn.replaceAll("-" + groupingSeparator, "-");
+        toReturn = fiatFormatToUse.removeNegativeSignAndGroupingSeparator(toReturn);
         
         if (addParenthesis) {
             toReturn = "  (" + toReturn + ")";
@@ -491,15 +569,20 @@ public enum CurrencyConverter {
     }
     
     public String getFSTAsLocalisedString(Money fstMoney) {
-        DecimalFormat formatter = (DecimalFormat) DecimalFormat.getInstance(controller.getLocaliser().getLocale());
-        formatter.setMaximumFractionDigits(NUMBER_OF_DECIMAL_POINTS_IN_A_FASTCOIN);
+        Locale locale = controller.getLocaliser().getLocale();
+        Map<Locale, DecimalFormat> formatters = fstFormatters.get();
+        DecimalFormat formatter = formatters.get(locale);
+        if (formatter == null) {
+            formatter = (DecimalFormat) DecimalFormat.getInstance(locale);
+            formatter.setMaximumFractionDigits(NUMBER_OF_DECIMAL_POINTS_IN_A_FASTCOIN);
+            formatters.put(locale, formatter);
+        }
         String fstString = formatter.format(fstMoney.getAmount().divide(new BigDecimal(NUMBER_OF_SATOSHI_IN_ONE_FASTCOIN)));
         return fstString;
     }
     
     public CurrencyConverterResult parseToFiat(String fiat) {
-        DecimalFormat formatter = (DecimalFormat) DecimalFormat.getInstance(controller.getLocaliser().getLocale());
-        formatter.setParseBigDecimal(true);
+        DecimalFormat formatter = getParseFormatter(controller.getLocaliser().getLocale());
 
         // Convert spaces to non breakable space.
         fiat = fiat.replaceAll(" ", "\u00A0");
@@ -560,8 +643,7 @@ public enum CurrencyConverter {
         
         Money fstAmount = null;
         
-        DecimalFormat formatter = (DecimalFormat) DecimalFormat.getInstance(locale);
-        formatter.setParseBigDecimal(true);
+        DecimalFormat formatter = getParseFormatter(locale);
         try {
             BigDecimal parsedFST = ((BigDecimal)formatter.parse(fstString)).movePointRight(NUMBER_OF_DECIMAL_POINTS_IN_A_FASTCOIN);
             //log.debug("For locale " + controller.getLocaliser().getLocale().toString() +  ", '" + fstString + "' parses to " + parsedFST.toPlainString());
@@ -629,12 +711,14 @@ public enum CurrencyConverter {
         if (this.currencyUnit != null && !this.currencyUnit.equals(currencyUnit)) {
             rate = null;
             rateDividedByNumberOfSatoshiInOneFastcoin = null;
+            rateDate = null;
+            rateStale = false;
+            fiatConversion = null;
         }
         this.currencyUnit = currencyUnit;
         
         // Reinitialise currency formatters.
-        moneyFormatter = getMoneyFormatter(false);
-        moneyFormatterWithCurrencyCode = getMoneyFormatter(true);
+        updateFormatters();
     }
 
     public BigDecimal getRate() {
@@ -642,9 +726,25 @@ public enum CurrencyConverter {
     }
 
     public void setRate(BigDecimal rate) {
+        setRate(rate, new Date(), false);
+    }
+
+    /**
+     * Use an exchange rate read from the exchange rate cache until a rate is fetched from an exchange.
+     * @param rate The cached exchange rate
+     * @param rateDate When the cached exchange rate was fetched
+     */
+    public void setCachedRate(BigDecimal rate, Date rateDate) {
+        setRate(rate, rateDate, true);
+    }
+
+    private void setRate(BigDecimal rate, Date rateDate, boolean rateStale) {
         boolean fireFoundInsteadOfUpdated = (rate== null);
         this.rate = rate;
         rateDividedByNumberOfSatoshiInOneFastcoin = rate.divide(new BigDecimal(CurrencyConverter.NUMBER_OF_SATOSHI_IN_ONE_FASTCOIN));
+        this.rateDate = rateDate;
+        this.rateStale = rateStale;
+        fiatConversion = createFiatConversion(currencyUnit, rate);
         
         if (fireFoundInsteadOfUpdated) {
             notifyFoundExchangeRate();
@@ -652,6 +752,47 @@ public enum CurrencyConverter {
             notifyUpdatedExchangeRate();
         }
     }
+
+    public Date getRateDate() {
+        return rateDate;
+    }
+
+    /**
+     * @return true if the exchange rate is from the exchange rate cache and may be out of date
+     */
+    public boolean isRateStale() {
+        return rateStale;
+    }
+
+    /**
+     * Mark a fiat amount worked out with a stale exchange rate.
+     * @return The fiat amount, followed by STALE_RATE_MARKER if the exchange rate is stale
+     */
+    public String addStaleRateMarker(String fiatAmount) {
+        if (rateStale && fiatAmount != null) {
+            return fiatAmount + STALE_RATE_MARKER;
+        }
+        return fiatAmount;
+    }
+
+    /**
+     * @return A tooltip saying when a stale exchange rate was fetched, or null if the exchange rate is not stale
+     */
+    public String getStaleRateToolTip() {
+        Date date = rateDate;
+        if (!rateStale || date == null) {
+            return null;
+        }
+        return getStaleRateToolTip(controller, date);
+    }
+
+    /**
+     * @return A tooltip saying when an exchange rate from the exchange rate cache was fetched
+     */
+    public static String getStaleRateToolTip(Controller controller, Date fetchDate) {
+        SimpleDateFormat dateFormatter = new SimpleDateFormat("dd MMM yyyy HH:mm", controller.getLocaliser().getLocale());
+        return controller.getLocaliser().getString("currencyConverter.staleRate", new Object[] { dateFormatter.format(fetchDate) });
+    }
     
     public void addCurrencyConverterListener(CurrencyConverterListener listener) {
         if (listeners == null) {
@@ -673,7 +814,7 @@ public enum CurrencyConverter {
             public void run() {
                 if (listeners != null) {
                     for (CurrencyConverterListener listener : listeners) {
-                        listener.foundExchangeRate(new ExchangeRate(currencyUnit, rate, new Date()));
+                        listener.foundExchangeRate(new ExchangeRate(currencyUnit, rate, rateDate));
                     }
                 }
             }
@@ -686,7 +827,7 @@ public enum CurrencyConverter {
             public void run() {
                 if (listeners != null) {
                     for (CurrencyConverterListener listener : listeners) {
-                        listener.updatedExchangeRate(new ExchangeRate(currencyUnit, rate, new Date()));
+                        listener.updatedExchangeRate(new ExchangeRate(currencyUnit, rate, rateDate));
                     }
                 }
             }
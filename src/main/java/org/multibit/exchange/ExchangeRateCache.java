@@ -0,0 +1,277 @@
+/**
+ * Copyright 2013 wallet.org
+ *
+ * Licensed under the MIT license (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://opensource.org/licenses/mit-license.php
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.multibit.exchange;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+
+import org.joda.money.BigMoney;
+import org.multibit.controller.exchange.ExchangeController;
+import org.multibit.model.exchange.ExchangeData;
+import org.multibit.model.exchange.ExchangeModel;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Keeps the latest exchange rates in the application data directory so that fiat amounts can be shown
+ * as soon as MultiBitWallet starts, before the exchanges have been asked for rates.
+ *
+ * The rates read at startup are put into the ExchangeModel and, for the first ticker row, into the
+ * CurrencyConverter, which marks the rate as stale until a rate is fetched. Rates older than MAXIMUM_AGE
+ * are not used.
+ *
+ * @author jim
+ */
+public enum ExchangeRateCache implements ExchangeRateSnapshotListener {
+    INSTANCE;
+
+    private static final Logger log = LoggerFactory.getLogger(ExchangeRateCache.class);
+
+    public static final String EXCHANGE_RATE_CACHE_FILE_NAME = "exchange-rates.properties";
+
+    private static final String LAST_SUFFIX = ".last";
+    private static final String BID_SUFFIX = ".bid";
+    private static final String ASK_SUFFIX = ".ask";
+    private static final String FETCH_TIME_SUFFIX = ".fetchTime";
+
+    /**
+     * Cached rates fetched longer ago than this are discarded.
+     */
+    public static final long MAXIMUM_AGE = 24L * 60 * 60 * 1000; // ms
+
+    private ExchangeController exchangeController;
+
+    private File cacheFile;
+
+    /**
+     * The cached snapshots, keyed on exchange and currency.
+     */
+    private final Map<String, ExchangeRateSnapshot> snapshots = new HashMap<String, ExchangeRateSnapshot>();
+
+    /**
+     * The exchanges and currencies whose rates have been read from the cache and not fetched since.
+     */
+    private final Set<String> staleKeys = new HashSet<String>();
+
+    /**
+     * Read the cached rates and put them into the ExchangeModel and CurrencyConverter.
+     * The CurrencyConverter must be initialised first.
+     */
+    public synchronized void initialise(ExchangeController exchangeController) {
+        this.exchangeController = exchangeController;
+
+        String applicationDataDirectory = exchangeController.getApplicationDataDirectoryLocator().getApplicationDataDirectory();
+        if ("".equals(applicationDataDirectory)) {
+            cacheFile = new File(EXCHANGE_RATE_CACHE_FILE_NAME);
+        } else {
+            cacheFile = new File(applicationDataDirectory + File.separator + EXCHANGE_RATE_CACHE_FILE_NAME);
+        }
+
+        load();
+        for (ExchangeRateSnapshot snapshot : snapshots.values()) {
+            putIntoExchangeModel(snapshot);
+        }
+        applyToCurrencyConverter();
+
+        ExchangeRateFetcher.INSTANCE.removeExchangeRateSnapshotListener(this);
+        ExchangeRateFetcher.INSTANCE.addExchangeRateSnapshotListener(this);
+    }
+
+    /**
+     * Give the CurrencyConverter the cached rate of the first ticker row, if it has no rate.
+     */
+    public synchronized void applyToCurrencyConverter() {
+        if (exchangeController == null || CurrencyConverter.INSTANCE.getRate() != null) {
+            return;
+        }
+        String exchange = exchangeController.getModel().getUserPreference(ExchangeModel.TICKER_FIRST_ROW_EXCHANGE);
+        String currency = exchangeController.getModel().getUserPreference(ExchangeModel.TICKER_FIRST_ROW_CURRENCY);
+        ExchangeRateSnapshot snapshot = snapshots.get(createKey(exchange, currency));
+        if (snapshot != null && snapshot.getLast() != null && !isTooOld(snapshot)) {
+            log.debug("Using cached exchange rate " + snapshot);
+            CurrencyConverter.INSTANCE.setCachedRate(snapshot.getLast().getAmount(), snapshot.getFetchDate());
+        }
+    }
+
+    /**
+     * @return When the rate shown for the exchange and currency was fetched, if it was read from the cache and has
+     * not been fetched since, or null otherwise
+     */
+    public synchronized Date getStaleFetchDate(String shortExchangeName, String currency) {
+        String key = createKey(shortExchangeName, currency);
+        if (!staleKeys.contains(key)) {
+            return null;
+        }
+        return snapshots.get(key).getFetchDate();
+    }
+
+    @Override
+    public void exchangeRateFetched(ExchangeRateSnapshot exchangeRateSnapshot) {
+        synchronized (this) {
+            if (cacheFile == null) {
+                return;
+            }
+            String key = createKey(exchangeRateSnapshot.getShortExchangeName(), exchangeRateSnapshot.getCurrency());
+            snapshots.put(key, exchangeRateSnapshot);
+            staleKeys.remove(key);
+            save();
+        }
+    }
+
+    private void putIntoExchangeModel(ExchangeRateSnapshot snapshot) {
+        ExchangeModel exchangeModel = exchangeController.getModel();
+        if (exchangeModel == null) {
+            return;
+        }
+        ExchangeData exchangeData = exchangeModel.getExchangeData(snapshot.getShortExchangeName());
+        if (exchangeData == null) {
+            exchangeData = new ExchangeData();
+            exchangeData.setShortExchangeName(snapshot.getShortExchangeName());
+            exchangeModel.getShortExchangeNameToExchangeMap().put(snapshot.getShortExchangeName(), exchangeData);
+        }
+        exchangeData.setLastPrice(snapshot.getCurrency(), snapshot.getLast());
+        exchangeData.setLastBid(snapshot.getCurrency(), snapshot.getBid());
+        exchangeData.setLastAsk(snapshot.getCurrency(), snapshot.getAsk());
+    }
+
+    /**
+     * Must be called holding the ExchangeRateCache lock.
+     */
+    private void load() {
+        snapshots.clear();
+        staleKeys.clear();
+        if (cacheFile == null || !cacheFile.exists()) {
+            return;
+        }
+
+        Properties properties = new Properties();
+        InputStream inputStream = null;
+        try {
+            inputStream = new FileInputStream(cacheFile);
+            properties.load(inputStream);
+        } catch (IOException e) {
+            log.error("Could not read exchange rate cache " + e.getClass().getName() + " " + e.getMessage());
+            return;
+        } finally {
+            if (inputStream != null) {
+                try {
+                    inputStream.close();
+                } catch (IOException e) {
+                    log.error(e.getClass().getName() + " " + e.getMessage());
+                }
+            }
+        }
+
+        for (String name : properties.stringPropertyNames()) {
+            if (!name.endsWith(FETCH_TIME_SUFFIX)) {
+                continue;
+            }
+            String key = name.substring(0, name.length() - FETCH_TIME_SUFFIX.length());
+            int separator = key.indexOf('|');
+            if (separator <= 0) {
+                continue;
+            }
+            try {
+                ExchangeRateSnapshot snapshot = new ExchangeRateSnapshot(key.substring(0, separator), key.substring(separator + 1),
+                        parseMoney(properties.getProperty(key + LAST_SUFFIX)), parseMoney(properties.getProperty(key + BID_SUFFIX)),
+                        parseMoney(properties.getProperty(key + ASK_SUFFIX)), Long.parseLong(properties.getProperty(name)));
+                if (isTooOld(snapshot)) {
+                    log.debug("Ignoring cached exchange rate " + snapshot + " as it is too old");
+                    continue;
+                }
+                snapshots.put(key, snapshot);
+                staleKeys.add(key);
+            } catch (IllegalArgumentException e) {
+                // Includes NumberFormatException.
+                log.debug("Ignoring cached exchange rate '" + key + "'. " + e.getMessage());
+            }
+        }
+        log.debug("Read " + snapshots.size() + " cached exchange rates from '" + cacheFile.getAbsolutePath() + "'");
+    }
+
+    /**
+     * Write the cache to a temporary file and rename it over the cache file, so a partly written cache is never read.
+     * Must be called holding the ExchangeRateCache lock.
+     */
+    private void save() {
+        Properties properties = new Properties();
+        for (Map.Entry<String, ExchangeRateSnapshot> entry : snapshots.entrySet()) {
+            String key = entry.getKey();
+            ExchangeRateSnapshot snapshot = entry.getValue();
+            setMoney(properties, key + LAST_SUFFIX, snapshot.getLast());
+            setMoney(properties, key + BID_SUFFIX, snapshot.getBid());
+            setMoney(properties, key + ASK_SUFFIX, snapshot.getAsk());
+            properties.setProperty(key + FETCH_TIME_SUFFIX, "" + snapshot.getFetchTime());
+        }
+
+        File temporaryFile = new File(cacheFile.getAbsolutePath() + ".tmp");
+        OutputStream outputStream = null;
+        try {
+            outputStream = new FileOutputStream(temporaryFile);
+            properties.store(outputStream, "Exchange rate cache");
+            outputStream.close();
+            outputStream = null;
+
+            if (!temporaryFile.renameTo(cacheFile)) {
+                cacheFile.delete();
+                if (!temporaryFile.renameTo(cacheFile)) {
+                    log.error("Could not write exchange rate cache '" + cacheFile.getAbsolutePath() + "'");
+                }
+            }
+        } catch (IOException e) {
+            log.error("Could not write exchange rate cache " + e.getClass().getName() + " " + e.getMessage());
+        } finally {
+            if (outputStream != null) {
+                try {
+                    outputStream.close();
+                } catch (IOException e) {
+                    log.error(e.getClass().getName() + " " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    private static boolean isTooOld(ExchangeRateSnapshot snapshot) {
+        return System.currentTimeMillis() - snapshot.getFetchTime() > MAXIMUM_AGE;
+    }
+
+    private static void setMoney(Properties properties, String name, BigMoney money) {
+        if (money != null) {
+            properties.setProperty(name, money.toString());
+        }
+    }
+
+    private static BigMoney parseMoney(String money) {
+        if (money == null || money.length() == 0) {
+            return null;
+        }
+        return BigMoney.parse(money);
+    }
+
+    private static String createKey(String shortExchangeName, String currency) {
+        return shortExchangeName + "|" + currency;
+    }
+}
@@ -0,0 +1,352 @@
+/**
+ * Copyright 2013 wallet.org
+ *
+ * Licensed under the MIT license (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://opensource.org/licenses/mit-license.php
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.multibit.exchange;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Timer;
+import java.util.TimerTask;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.multibit.model.exchange.ExchangeData;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.util.concurrent.Futures;
+import com.xeiam.xchange.Exchange;
+import com.xeiam.xchange.ExchangeFactory;
+import com.xeiam.xchange.ExchangeSpecification;
+import com.xeiam.xchange.currency.CurrencyPair;
+import com.xeiam.xchange.dto.marketdata.Ticker;
+import com.xeiam.xchange.service.polling.PollingMarketDataService;
+
+/**
+ * Fetches tickers from the currency exchanges for all the ticker rows and the CurrencyConverter.
+ *
+ * <ul>
+ * <li>The ticker tasks all run on one scheduler thread.</li>
+ * <li>Each exchange is created once and shared.</li>
+ * <li>A request for a ticker that is already being fetched, or was fetched in the last COALESCE_TIME, is given
+ * that fetch rather than asking the exchange again.</li>
+ * <li>Fetches run concurrently on a small pool and are waited for for at most FETCH_TIMEOUT.</li>
+ * <li>An exchange that fails is not asked again for a time that doubles with each failure, up to MAXIMUM_BACKOFF.</li>
+ * <li>The rates worked out from the tickers are published to listeners as immutable snapshots.</li>
+ * </ul>
+ *
+ * @author jim
+ */
+public enum ExchangeRateFetcher {
+    INSTANCE;
+
+    private static final Logger log = LoggerFactory.getLogger(ExchangeRateFetcher.class);
+
+    public static final long FETCH_TIMEOUT = 30000; // ms
+
+    /**
+     * A ticker fetched this recently is used again rather than fetched again.
+     */
+    public static final long COALESCE_TIME = 60000; // ms
+
+    private static final long INITIAL_BACKOFF = 60000; // ms
+    private static final long MAXIMUM_BACKOFF = 60 * 60 * 1000; // ms
+
+    private static final int NUMBER_OF_FETCH_THREADS = 4;
+
+    private Timer scheduler;
+
+    private ExecutorService fetchExecutor;
+
+    /**
+     * The exchanges created, keyed on exchange name and API key.
+     */
+    private final Map<String, ExchangeConnection> connections = new HashMap<String, ExchangeConnection>();
+
+    /**
+     * The fetch of each ticker and the time it was started, keyed on exchange, API key and currency pair.
+     */
+    private final Map<String, Future<Ticker>> fetches = new HashMap<String, Future<Ticker>>();
+    private final Map<String, Long> fetchStartTimes = new HashMap<String, Long>();
+
+    /**
+     * The backoff of each failing exchange, keyed on exchange name.
+     */
+    private final Map<String, Backoff> backoffs = new HashMap<String, Backoff>();
+
+    /**
+     * The latest snapshot of each exchange and currency.
+     */
+    private final Map<String, ExchangeRateSnapshot> latestSnapshots = new HashMap<String, ExchangeRateSnapshot>();
+
+    private final List<ExchangeRateSnapshotListener> listeners = new CopyOnWriteArrayList<ExchangeRateSnapshotListener>();
+
+    /**
+     * An exchange and its market data service.
+     */
+    public static class ExchangeConnection {
+        private final Exchange exchange;
+        private final PollingMarketDataService marketDataService;
+        private final List<CurrencyPair> exchangeSymbols;
+
+        ExchangeConnection(Exchange exchange, PollingMarketDataService marketDataService, List<CurrencyPair> exchangeSymbols) {
+            this.exchange = exchange;
+            this.marketDataService = marketDataService;
+            this.exchangeSymbols = exchangeSymbols;
+        }
+
+        public Exchange getExchange() {
+            return exchange;
+        }
+
+        public PollingMarketDataService getMarketDataService() {
+            return marketDataService;
+        }
+
+        public List<CurrencyPair> getExchangeSymbols() {
+            return exchangeSymbols;
+        }
+    }
+
+    private static class Backoff {
+        int numberOfFailures;
+        long nextAttemptTime;
+    }
+
+    /**
+     * Run a ticker task regularly on the shared scheduler thread.
+     */
+    public synchronized void schedule(TimerTask tickerTask, long delay, long period) {
+        if (scheduler == null) {
+            scheduler = new Timer("ExchangeRateFetcher", true);
+        }
+        scheduler.schedule(tickerTask, delay, period);
+    }
+
+    /**
+     * Get the shared exchange for an exchange name, creating it if it has not been created.
+     *
+     * @param apiKey The API key for exchanges that need one, otherwise null
+     * @return The exchange, or null if it cannot be created
+     */
+    public synchronized ExchangeConnection getConnection(String shortExchangeName, String apiKey) {
+        if (shortExchangeName == null) {
+            return null;
+        }
+        String connectionKey = createConnectionKey(shortExchangeName, apiKey);
+        ExchangeConnection connection = connections.get(connectionKey);
+        if (connection == null) {
+            Exchange exchange = createExchange(shortExchangeName, apiKey);
+            if (exchange == null) {
+                return null;
+            }
+            // Interested in the public market data feed (no authentication).
+            PollingMarketDataService marketDataService = exchange.getPollingMarketDataService();
+            log.debug("marketDataService = " + marketDataService);
+
+            // Get the list of available currencies.
+            List<CurrencyPair> exchangeSymbols = marketDataService.getExchangeSymbols();
+            log.debug("exchangeSymbols = " + exchangeSymbols);
+
+            connection = new ExchangeConnection(exchange, marketDataService, exchangeSymbols);
+            connections.put(connectionKey, connection);
+        }
+        return connection;
+    }
+
+    /**
+     * Start fetching a ticker, or join the fetch of it already under way.
+     *
+     * @return The fetch. It fails straight away if the exchange is backing off or cannot be created.
+     */
+    public synchronized Future<Ticker> fetchTicker(final String shortExchangeName, String apiKey, final String baseCurrency,
+            final String counterCurrency) {
+        final String fetchKey = createConnectionKey(shortExchangeName, apiKey) + "|" + baseCurrency + "/" + counterCurrency;
+        long now = System.currentTimeMillis();
+
+        Future<Ticker> fetch = fetches.get(fetchKey);
+        Long fetchStartTime = fetchStartTimes.get(fetchKey);
+        if (fetch != null && !fetch.isCancelled()
+                && (!fetch.isDone() || (fetchStartTime != null && now - fetchStartTime < COALESCE_TIME))) {
+            return fetch;
+        }
+
+        Backoff backoff = backoffs.get(shortExchangeName);
+        if (backoff != null && now < backoff.nextAttemptTime) {
+            return Futures.immediateFailedFuture(new IllegalStateException("Not asking " + shortExchangeName
+                    + " for a ticker for another " + (backoff.nextAttemptTime - now) + " ms as it has failed "
+                    + backoff.numberOfFailures + " times"));
+        }
+
+        final ExchangeConnection connection;
+        try {
+            connection = getConnection(shortExchangeName, apiKey);
+        } catch (RuntimeException e) {
+            recordFailure(shortExchangeName);
+            return Futures.immediateFailedFuture(e);
+        }
+        if (connection == null || connection.getMarketDataService() == null) {
+            return Futures.immediateFailedFuture(new IllegalStateException("Cannot create exchange " + shortExchangeName));
+        }
+
+        if (fetchExecutor == null) {
+            fetchExecutor = Executors.newFixedThreadPool(NUMBER_OF_FETCH_THREADS, new ThreadFactory() {
+                private int threadNumber = 0;
+
+                @Override
+                public synchronized Thread newThread(Runnable runnable) {
+                    Thread thread = new Thread(runnable, "ExchangeRateFetcher-" + threadNumber++);
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+
+        fetch = fetchExecutor.submit(new Callable<Ticker>() {
+            @Override
+            public Ticker call() throws Exception {
+                try {
+                    log.debug("Getting ticker for " + baseCurrency + " " + counterCurrency + " from " + shortExchangeName);
+                    Ticker ticker = connection.getMarketDataService().getTicker(baseCurrency, counterCurrency);
+                    recordSuccess(shortExchangeName);
+                    return ticker;
+                } catch (Exception e) {
+                    recordFailure(shortExchangeName);
+                    synchronized (ExchangeRateFetcher.this) {
+                        // Do not give the failed fetch to later requests.
+                        fetches.remove(fetchKey);
+                        fetchStartTimes.remove(fetchKey);
+                    }
+                    throw e;
+                }
+            }
+        });
+        fetches.put(fetchKey, fetch);
+        fetchStartTimes.put(fetchKey, now);
+        return fetch;
+    }
+
+    /**
+     * Wait for a fetch to complete, for at most FETCH_TIMEOUT.
+     */
+    public Ticker getTicker(String shortExchangeName, Future<Ticker> fetch) throws InterruptedException, ExecutionException,
+            TimeoutException {
+        try {
+            return fetch.get(FETCH_TIMEOUT, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            fetch.cancel(true);
+            recordFailure(shortExchangeName);
+            throw e;
+        }
+    }
+
+    /**
+     * Publish the rates worked out for an exchange and currency.
+     */
+    public void publish(ExchangeRateSnapshot exchangeRateSnapshot) {
+        if (exchangeRateSnapshot == null) {
+            return;
+        }
+        synchronized (this) {
+            latestSnapshots.put(exchangeRateSnapshot.getShortExchangeName() + "|" + exchangeRateSnapshot.getCurrency(),
+                    exchangeRateSnapshot);
+        }
+        for (ExchangeRateSnapshotListener listener : listeners) {
+            listener.exchangeRateFetched(exchangeRateSnapshot);
+        }
+    }
+
+    /**
+     * @return The latest rates published for an exchange and currency, or null if there are none
+     */
+    public synchronized ExchangeRateSnapshot getLatestSnapshot(String shortExchangeName, String currency) {
+        return latestSnapshots.get(shortExchangeName + "|" + currency);
+    }
+
+    public void addExchangeRateSnapshotListener(ExchangeRateSnapshotListener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeExchangeRateSnapshotListener(ExchangeRateSnapshotListener listener) {
+        listeners.remove(listener);
+    }
+
+    private synchronized void recordSuccess(String shortExchangeName) {
+        backoffs.remove(shortExchangeName);
+    }
+
+    private synchronized void recordFailure(String shortExchangeName) {
+        Backoff backoff = backoffs.get(shortExchangeName);
+        if (backoff == null) {
+            backoff = new Backoff();
+            backoffs.put(shortExchangeName, backoff);
+        }
+        backoff.numberOfFailures++;
+        long backoffTime = MAXIMUM_BACKOFF;
+        if (backoff.numberOfFailures <= 30) {
+            backoffTime = Math.min(INITIAL_BACKOFF << (backoff.numberOfFailures - 1), MAXIMUM_BACKOFF);
+        }
+        backoff.nextAttemptTime = System.currentTimeMillis() + backoffTime;
+        log.debug("Exchange " + shortExchangeName + " has failed " + backoff.numberOfFailures + " times. Backing off for "
+                + backoffTime + " ms");
+    }
+
+    private static String createConnectionKey(String shortExchangeName, String apiKey) {
+        return shortExchangeName + "|" + (apiKey == null ? "" : apiKey);
+    }
+
+    /**
+     * Create the exchange specified by the exchange short name e.g. ExchangeData.FASTCOIN_CHARTS_EXCHANGE_NAME.
+     */
+    private Exchange createExchange(String shortExchangeName, String apiKey) {
+        log.debug("creating exchange from exchangeShortname  = " + shortExchangeName);
+        try {
+            // Use the factory to get the exchange API using default settings.
+            String exchangeClassname = ExchangeData.convertExchangeShortNameToClassname(shortExchangeName);
+
+            if (exchangeClassname == null) {
+                return null;
+            }
+
+            if (ExchangeData.OPEN_EXCHANGE_RATES_EXCHANGE_NAME.equalsIgnoreCase(shortExchangeName)) {
+                ExchangeSpecification exchangeSpecification = new ExchangeSpecification(exchangeClassname);
+                exchangeSpecification.setPlainTextUri("http://openexchangerates.org");
+                exchangeSpecification.setApiKey(apiKey);
+                return ExchangeFactory.INSTANCE.createExchange(exchangeSpecification);
+            } else {
+                return ExchangeFactory.INSTANCE.createExchange(exchangeClassname);
+            }
+        } catch (com.xeiam.xchange.ExchangeException e) {
+            // Probably xchange is not on classpath - ticker will not run
+            // but error should not spread out from here to rest of MultiBitWallet.
+            log.error(e.getClass().getName() + " " + e.getMessage());
+        } catch (NoClassDefFoundError e) {
+            // Probably xchange is not on classpath - ticker will not run
+            // but error should not spread out from here to rest of MultiBitWallet.
+            log.error(e.getClass().getName() + " " + e.getMessage());
+        } catch (NullPointerException e) {
+            log.error(e.getClass().getName() + " " + e.getMessage());
+        }
+        return null;
+    }
+}
@@ -0,0 +1,85 @@
+/**
+ * Copyright 2013 wallet.org
+ *
+ * Licensed under the MIT license (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://opensource.org/licenses/mit-license.php
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.multibit.exchange;
+
+import java.util.Date;
+
+import org.joda.money.BigMoney;
+
+/**
+ * The rates of a currency on an exchange at one time. Snapshots are immutable so they can be passed between threads.
+ *
+ * @author jim
+ */
+public final class ExchangeRateSnapshot {
+
+    private final String shortExchangeName;
+
+    private final String currency;
+
+    private final BigMoney last;
+    private final BigMoney bid;
+    private final BigMoney ask;
+
+    /**
+     * The time the rates were fetched, in milliseconds since the epoch.
+     */
+    private final long fetchTime;
+
+    public ExchangeRateSnapshot(String shortExchangeName, String currency, BigMoney last, BigMoney bid, BigMoney ask,
+            long fetchTime) {
+        this.shortExchangeName = shortExchangeName;
+        this.currency = currency;
+        this.last = last;
+        this.bid = bid;
+        this.ask = ask;
+        this.fetchTime = fetchTime;
+    }
+
+    public String getShortExchangeName() {
+        return shortExchangeName;
+    }
+
+    public String getCurrency() {
+        return currency;
+    }
+
+    public BigMoney getLast() {
+        return last;
+    }
+
+    public BigMoney getBid() {
+        return bid;
+    }
+
+    public BigMoney getAsk() {
+        return ask;
+    }
+
+    public long getFetchTime() {
+        return fetchTime;
+    }
+
+    public Date getFetchDate() {
+        return new Date(fetchTime);
+    }
+
+    @Override
+    public String toString() {
+        return "ExchangeRateSnapshot [shortExchangeName=" + shortExchangeName + ", currency=" + currency + ", last=" + last
+                + ", bid=" + bid + ", ask=" + ask + ", fetchTime=" + fetchTime + "]";
+    }
+}
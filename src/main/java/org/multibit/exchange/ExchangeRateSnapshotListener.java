@@ -0,0 +1,10 @@
+package org.multibit.exchange;
+
+public interface ExchangeRateSnapshotListener {
+
+    /**
+     * New rates have been fetched from an exchange
+     * @param exchangeRateSnapshot
+     */
+    public void exchangeRateFetched(ExchangeRateSnapshot exchangeRateSnapshot);
+}
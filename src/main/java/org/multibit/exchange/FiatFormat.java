@@ -0,0 +1,209 @@
+/**
+ * Copyright 2013 wallet.org
+ *
+ * Licensed under the MIT license (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://opensource.org/licenses/mit-license.php
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.multibit.exchange;
+
+import java.util.Locale;
+
+import org.joda.money.CurrencyUnit;
+import org.joda.money.format.MoneyAmountStyle;
+import org.joda.money.format.MoneyFormatter;
+import org.joda.money.format.MoneyFormatterBuilder;
+
+/**
+ * The formatters for one locale and currency. FiatFormats are immutable (MoneyFormatters are immutable)
+ * so the CurrencyConverter can share one between threads and swap it when the locale or currency changes.
+ *
+ * As well as the MoneyFormatters a FiatFormat can print an amount held as a long number of minor units
+ * (e.g. cents) directly into a StringBuilder, giving the same text as the MoneyFormatters.
+ *
+ * @author jim
+ */
+final class FiatFormat {
+
+    private static final int GROUPING_SIZE = 3;
+
+    private final Locale locale;
+
+    private final CurrencyUnit currencyUnit;
+
+    private final MoneyFormatter moneyFormatter;
+
+    private final MoneyFormatter moneyFormatterWithCurrencyCode;
+
+    private final char decimalSeparator;
+
+    /**
+     * The grouping separator, or 0 if the amounts are not grouped.
+     */
+    private final char groupingSeparator;
+
+    /**
+     * A negative sign followed by the grouping separator, which is removed from formatted amounts.
+     */
+    private final String negativeSignAndGroupingSeparator;
+
+    private final String prefix;
+    private final String suffix;
+
+    FiatFormat(Locale locale, CurrencyUnit currencyUnit, CurrencyInfo currencyInfo, char localeDecimalSeparator,
+            char localeGroupingSeparator) {
+        this.locale = locale;
+        this.currencyUnit = currencyUnit;
+
+        MoneyAmountStyle moneyAmountStyle;
+        if ('.' == localeDecimalSeparator) {
+            decimalSeparator = '.';
+            if (',' == localeGroupingSeparator) {
+                moneyAmountStyle = MoneyAmountStyle.ASCII_DECIMAL_POINT_GROUP3_COMMA;
+                groupingSeparator = ',';
+            } else if (' ' == localeGroupingSeparator || '\u00A0' == localeGroupingSeparator) {
+                moneyAmountStyle = MoneyAmountStyle.ASCII_DECIMAL_POINT_GROUP3_SPACE;
+                groupingSeparator = ' ';
+            } else {
+                moneyAmountStyle = MoneyAmountStyle.ASCII_DECIMAL_POINT_NO_GROUPING;
+                groupingSeparator = 0;
+            }
+        } else {
+            if (',' == localeDecimalSeparator) {
+                decimalSeparator = ',';
+                if ('.' == localeGroupingSeparator) {
+                    moneyAmountStyle = MoneyAmountStyle.ASCII_DECIMAL_COMMA_GROUP3_DOT;
+                    groupingSeparator = '.';
+                } else if (' ' == localeGroupingSeparator || '\u00A0' == localeGroupingSeparator) {
+                    moneyAmountStyle = MoneyAmountStyle.ASCII_DECIMAL_COMMA_GROUP3_SPACE;
+                    groupingSeparator = ' ';
+                } else {
+                    moneyAmountStyle = MoneyAmountStyle.ASCII_DECIMAL_COMMA_NO_GROUPING;
+                    groupingSeparator = 0;
+                }
+            } else {
+                // Do not really know - keep it simple.
+                moneyAmountStyle = MoneyAmountStyle.ASCII_DECIMAL_POINT_NO_GROUPING;
+                decimalSeparator = '.';
+                groupingSeparator = 0;
+            }
+        }
+        negativeSignAndGroupingSeparator = "-" + localeGroupingSeparator;
+
+        String separator;
+        if (currencyInfo.hasSeparatingSpace) {
+            separator = " ";
+        } else {
+            separator = "";
+        }
+        moneyFormatter = new MoneyFormatterBuilder().appendAmount(moneyAmountStyle).toFormatter(locale);
+        if (currencyInfo.isPrefix()) {
+            // Prefix currency code.
+            moneyFormatterWithCurrencyCode = new MoneyFormatterBuilder().appendLiteral(currencyInfo.getCurrencySymbol())
+                    .appendLiteral(separator).appendAmount(moneyAmountStyle).toFormatter(locale);
+            prefix = currencyInfo.getCurrencySymbol() + separator;
+            suffix = "";
+        } else {
+            // Postfix currency code.
+            moneyFormatterWithCurrencyCode = new MoneyFormatterBuilder().appendAmount(moneyAmountStyle).appendLiteral(separator)
+                    .appendLiteral(currencyInfo.getCurrencySymbol()).toFormatter(locale);
+            prefix = "";
+            suffix = separator + currencyInfo.getCurrencySymbol();
+        }
+    }
+
+    Locale getLocale() {
+        return locale;
+    }
+
+    CurrencyUnit getCurrencyUnit() {
+        return currencyUnit;
+    }
+
+    MoneyFormatter getMoneyFormatter(boolean addCurrencySymbol) {
+        return addCurrencySymbol ? moneyFormatterWithCurrencyCode : moneyFormatter;
+    }
+
+    /**
+     * Get rid of a negative sign followed by a grouping separator.
+     */
+    String removeNegativeSignAndGroupingSeparator(String formattedAmount) {
+        int index = formattedAmount.indexOf(negativeSignAndGroupingSeparator);
+        if (index < 0) {
+            return formattedAmount;
+        }
+        StringBuilder builder = new StringBuilder(formattedAmount);
+        while (index >= 0) {
+            builder.deleteCharAt(index + 1);
+            index = builder.indexOf(negativeSignAndGroupingSeparator, index + 1);
+        }
+        return builder.toString();
+    }
+
+    /**
+     * @return true if amounts in this currency can be printed with appendMinorUnits
+     */
+    boolean canAppendMinorUnits() {
+        // appendMinorUnits only groups the integer part, which is all that is grouped with two or fewer decimal places.
+        return currencyUnit.getDecimalPlaces() >= 0 && currencyUnit.getDecimalPlaces() <= 2;
+    }
+
+    /**
+     * Print an amount in minor units of the currency, e.g. cents, as the MoneyFormatters would print it.
+     */
+    void appendMinorUnits(StringBuilder builder, long amountInMinorUnits, boolean addCurrencySymbol) {
+        if (addCurrencySymbol) {
+            builder.append(prefix);
+        }
+
+        long amount = amountInMinorUnits;
+        if (amount < 0) {
+            builder.append('-');
+        } else {
+            // Work with negative numbers so that Long.MIN_VALUE can be printed.
+            amount = -amount;
+        }
+
+        int decimalPlaces = currencyUnit.getDecimalPlaces();
+        long minorUnitsInOne = 1;
+        for (int i = 0; i < decimalPlaces; i++) {
+            minorUnitsInOne *= 10;
+        }
+        long integerPart = amount / minorUnitsInOne;
+        long fractionPart = amount % minorUnitsInOne;
+
+        // The integer digits, least significant first.
+        char[] digits = new char[20];
+        int numberOfDigits = 0;
+        do {
+            digits[numberOfDigits++] = (char) ('0' - (integerPart % 10));
+            integerPart /= 10;
+        } while (integerPart != 0);
+
+        for (int i = numberOfDigits - 1; i >= 0; i--) {
+            builder.append(digits[i]);
+            if (groupingSeparator != 0 && i > 0 && i % GROUPING_SIZE == 0) {
+                builder.append(groupingSeparator);
+            }
+        }
+
+        if (decimalPlaces > 0) {
+            builder.append(decimalSeparator);
+            for (long divisor = minorUnitsInOne / 10; divisor > 0; divisor /= 10) {
+                builder.append((char) ('0' - (fractionPart / divisor) % 10));
+            }
+        }
+
+        if (addCurrencySymbol) {
+            builder.append(suffix);
+        }
+    }
+}
@@ -20,6 +20,7 @@ import java.math.RoundingMode;
 import java.util.Collection;
 import java.util.List;
 import java.util.TimerTask;
+import java.util.concurrent.Future;
 
 import org.joda.money.BigMoney;
 import org.joda.money.CurrencyUnit;
@@ -34,15 +35,13 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.xeiam.xchange.Exchange;
-import com.xeiam.xchange.ExchangeFactory;
-import com.xeiam.xchange.ExchangeSpecification;
 import com.xeiam.xchange.currency.Currencies;
 import com.xeiam.xchange.currency.CurrencyPair;
 import com.xeiam.xchange.dto.marketdata.Ticker;
-import com.xeiam.xchange.service.polling.PollingMarketDataService;
 
 /**
- * TimerTask to poll currency exchanges for ticker data process
+ * TimerTask to poll currency exchanges for ticker data process.
+ * The tickers are fetched through the shared ExchangeRateFetcher.
  */
 public class TickerTimerTask extends TimerTask {
 
@@ -65,7 +64,6 @@ public class TickerTimerTask extends TimerTask {
     private String shortExchangeName;
     private String currency;
     private Exchange exchange;
-    private PollingMarketDataService marketDataService;
     private List<CurrencyPair> exchangeSymbols;
 
     /**
@@ -120,7 +118,7 @@ public class TickerTimerTask extends TimerTask {
                 }
             }
 
-            if (marketDataService != null) {
+            if (exchange != null) {
                 if (exchangeSymbols != null) {
                     // Only get data from server if ticker is being shown if
                     // currency conversion is switched on.
@@ -173,13 +171,16 @@ public class TickerTimerTask extends TimerTask {
                             Ticker loopTicker;
 
                             if (ExchangeData.OPEN_EXCHANGE_RATES_EXCHANGE_NAME.equals(shortExchangeName)) {
-                                log.debug("Getting loopTicker for " + currency + " USD");
-                                loopTicker = marketDataService.getTicker(currency, "USD");
-                                System.out.println("loopTicker = " + loopTicker);
-                                Ticker fstUsdTicker = null;
-                                log.debug("Getting fstUsdTicker for FST/USD");
-                                fstUsdTicker = marketDataService.getTicker(CurrenciesLocal.FST, Currencies.USD);
-                                System.out.println("fstUsdTicker = " + fstUsdTicker);
+                                // Fetch both tickers at once. The FST/USD ticker is shared by both rows.
+                                log.debug("Getting loopTicker for " + currency + " USD and fstUsdTicker for FST/USD");
+                                Future<Ticker> loopTickerFetch = ExchangeRateFetcher.INSTANCE.fetchTicker(shortExchangeName,
+                                        getApiKey(shortExchangeName), currency, "USD");
+                                Future<Ticker> fstUsdTickerFetch = ExchangeRateFetcher.INSTANCE.fetchTicker(shortExchangeName,
+                                        getApiKey(shortExchangeName), CurrenciesLocal.FST, Currencies.USD);
+                                loopTicker = ExchangeRateFetcher.INSTANCE.getTicker(shortExchangeName, loopTickerFetch);
+                                log.debug("loopTicker = " + loopTicker);
+                                Ticker fstUsdTicker = ExchangeRateFetcher.INSTANCE.getTicker(shortExchangeName, fstUsdTickerFetch);
+                                log.debug("fstUsdTicker = " + fstUsdTicker);
 
                                 BigMoney usdFstRateMoney = fstUsdTicker.getLast();
                                 BigDecimal usdFstRate = null;
@@ -198,8 +199,9 @@ public class TickerTimerTask extends TimerTask {
                             } else {
                                 log.debug("Getting ticker for " + currencyPairToUse.baseCurrency + " "
                                         + currencyPairToUse.counterCurrency);
-                                loopTicker = marketDataService.getTicker(currencyPairToUse.baseCurrency,
-                                        currencyPairToUse.counterCurrency);
+                                loopTicker = ExchangeRateFetcher.INSTANCE.getTicker(shortExchangeName,
+                                        ExchangeRateFetcher.INSTANCE.fetchTicker(shortExchangeName, getApiKey(shortExchangeName),
+                                                currencyPairToUse.baseCurrency, currencyPairToUse.counterCurrency));
 
                                 log.debug("Got ticker for " + currencyPairToUse.baseCurrency + " "
                                         + currencyPairToUse.counterCurrency);
@@ -253,6 +255,9 @@ public class TickerTimerTask extends TimerTask {
                             this.exchangeController.getModel().getExchangeData(shortExchangeName).setLastAsk(currency, ask);
                             log.debug("Exchange = " + shortExchangeName);
 
+                            ExchangeRateFetcher.INSTANCE.publish(new ExchangeRateSnapshot(shortExchangeName, currency, last, bid, ask,
+                                    System.currentTimeMillis()));
+
                             // Put the exchange rate into the currency converter.
                             if (isFirstExchange) {
                                 String newCurrencyCode = currency;
@@ -283,16 +288,19 @@ public class TickerTimerTask extends TimerTask {
     }
 
     public void createExchangeObjects(String newExchangeName) {
-        exchange = createExchange(newExchangeName);
+        // The exchange is shared with any other ticker rows using it.
+        ExchangeRateFetcher.ExchangeConnection connection = ExchangeRateFetcher.INSTANCE.getConnection(newExchangeName,
+                getApiKey(newExchangeName));
+        exchange = connection == null ? null : connection.getExchange();
 
         if (exchange != null) {
-            // Interested in the public market data feed (no authentication).
-            marketDataService = exchange.getPollingMarketDataService();
-            log.debug("marketDataService = " + marketDataService);
+            if (this.exchangeController.getModel().getExchangeData(newExchangeName) == null) {
+                ExchangeData exchangeData = new ExchangeData();
+                exchangeData.setShortExchangeName(newExchangeName);
+                this.exchangeController.getModel().getShortExchangeNameToExchangeMap().put(newExchangeName, exchangeData);
+            }
 
-            // Get the list of available currencies.
-            exchangeSymbols = marketDataService.getExchangeSymbols();
-            log.debug("exchangeSymbols = " + exchangeSymbols);
+            exchangeSymbols = connection.getExchangeSymbols();
 
             if (exchangeSymbols != null) {
                 Collection<String> availableCurrencies = new java.util.TreeSet<String>();
@@ -329,54 +337,11 @@ public class TickerTimerTask extends TimerTask {
     }
 
     /**
-     * Create the exchange specified by the exchange class name specified e.g.
-     * FastcoinChartsExchange.class.getName();
-     * 
-     * @param exchangeClassName
+     * @return The API key for exchanges that need one, otherwise null
      */
-    private Exchange createExchange(String exchangeShortname) {
-        log.debug("creating exchange from exchangeShortname  = " + exchangeShortname);
-        if (exchangeShortname == null) {
-            return null;
-        }
-
-        try {
-            // Demonstrate the public market data service.
-            // Use the factory to get the exchange API using default settings.
-            String exchangeClassname = ExchangeData.convertExchangeShortNameToClassname(exchangeShortname);
-
-            if (exchangeClassname == null) {
-                return null;
-            }
-
-            Exchange exchangeToReturn;
-            if (ExchangeData.OPEN_EXCHANGE_RATES_EXCHANGE_NAME.equalsIgnoreCase(exchangeShortname)) {
-                ExchangeSpecification exchangeSpecification = new ExchangeSpecification(exchangeClassname);
-                exchangeSpecification.setPlainTextUri("http://openexchangerates.org");
-                exchangeSpecification
-                        .setApiKey(controller.getModel().getUserPreference(ExchangeModel.OPEN_EXCHANGE_RATES_API_CODE));
-                exchangeToReturn = ExchangeFactory.INSTANCE.createExchange(exchangeSpecification);
-            } else {
-                exchangeToReturn = ExchangeFactory.INSTANCE.createExchange(exchangeClassname);
-            }
-            
-            if (this.exchangeController.getModel().getExchangeData(shortExchangeName) == null) {
-                ExchangeData exchangeData = new ExchangeData();
-                exchangeData.setShortExchangeName(shortExchangeName);
-                this.exchangeController.getModel().getShortExchangeNameToExchangeMap().put(exchangeShortname, exchangeData);
-            }
-
-            return exchangeToReturn;
-        } catch (com.xeiam.xchange.ExchangeException e) {
-            // Probably xchange is not on classpath - ticker will not run
-            // but error should not spread out from here to rest of MultiBitWallet.
-            log.error(e.getClass().getName() + " " + e.getMessage());
-        }catch (NoClassDefFoundError e) {
-            // Probably xchange is not on classpath - ticker will not run
-            // but error should not spread out from here to rest of MultiBitWallet.
-            log.error(e.getClass().getName() + " " + e.getMessage());
-        } catch (NullPointerException e) {
-            log.error(e.getClass().getName() + " " + e.getMessage());
+    private String getApiKey(String exchangeShortname) {
+        if (ExchangeData.OPEN_EXCHANGE_RATES_EXCHANGE_NAME.equalsIgnoreCase(exchangeShortname)) {
+            return controller.getModel().getUserPreference(ExchangeModel.OPEN_EXCHANGE_RATES_API_CODE);
         }
         return null;
     }
@@ -59,6 +59,14 @@ public class FileHandler {
     private static final int MAX_FILE_SIZE = 1024 * 1024 * 1024; // Dont read files greater than 1 gigabyte.
 
     private FastcoinWalletProtobufSerializer walletProtobufSerializer;
+
+    private static final String TEMPORARY_FILE_SUFFIX = ".tmp";
+
+    // Minimum time between rolling backups of a wallet.
+    private static final long ROLLING_BACKUP_INTERVAL_IN_MILLISECONDS = 10 * 60 * 1000; // 10 minutes.
+
+    // Time of the last rolling backup of each wallet in this session, keyed on the absolute wallet filename.
+    private final Map<String, Long> lastRollingBackupTimes = new HashMap<String, Long>();
     
     // Nonsense bytes to fill up deleted files - these have no meaning.
     private static byte[] NONSENSE_BYTES = new byte[] { (byte) 0xF0, (byte) 0xA6, (byte) 0x55, (byte) 0xAA, (byte) 0x33,
@@ -103,6 +111,26 @@ public class FileHandler {
             return null;
         }
 
+        return addParsedWallet(parseFromFile(walletFile));
+    }
+
+    /**
+     * Read a wallet and its wallet info from disk without adding them to the model.
+     * If the main wallet cannot be loaded, the most recent backup is tried, 
+     * followed by the next recent.
+     * 
+     * This does not touch the model so can be called for several wallets in parallel.
+     * 
+     * @param walletFile
+     * @return ParsedWallet - the wallet read, or null if neither it nor any backups could be read
+     * @throws WalletLoadException
+     * @throws WalletVersionException
+     */
+    public ParsedWallet parseFromFile(File walletFile) throws WalletLoadException, WalletVersionException {
+        if (walletFile == null) {
+            return null;
+        }
+
         String walletFilenameToUseInModel = walletFile.getAbsolutePath();
 
         try {
@@ -188,7 +216,7 @@ public class FileHandler {
                 }
             }
 
-            WalletData perWalletModelData = null;
+            ParsedWallet parsedWallet = null;
 
             if (walletWasLoadedSuccessfully) {
                 if (walletInfo != null) {
@@ -210,33 +238,9 @@ public class FileHandler {
                     walletInfo.setWalletVersion(wallet.getVersion());
                 }
 
-                // Ensure that the directories for the backups of the private
-                // keys, rolling backups and regular backups exist.
-                BackupManager.INSTANCE.createBackupDirectories(walletFile);
-
-                // Add the new wallet into the model.
                 wallet.setNetworkParameters(fastcoinController.getModel().getNetworkParameters());
 
-                perWalletModelData = fastcoinController.getModel().addWallet(this.fastcoinController, wallet,
-                        walletFilenameToUseInModel);
-
-                perWalletModelData.setWalletInfo(walletInfo);
-
-                // If the backup files were used save them immediately and don't
-                // delete any rolling backups.
-                if (useBackupWallets) {
-                    // Wipe the wallet backup property so that the rolling
-                    // backup file will not be overwritten
-                    walletInfo.put(FastcoinModel.WALLET_BACKUP_FILE, "");
-
-                    // Save the wallet immediately just to be on the safe side.
-                    savePerWalletModelData(perWalletModelData, true);
-                }
-
-                synchronized (walletInfo) {
-                    rememberFileSizesAndLastModified(new File(walletFilenameToUseInModel), walletInfo);
-                    perWalletModelData.setDirty(false);
-                }
+                parsedWallet = new ParsedWallet(walletFile, wallet, walletInfo, useBackupWallets);
             } else {
                 // No wallet was loaded successfully.
                 // Wipe the rolling backup property to ensure that file wont be deleted.
@@ -258,10 +262,62 @@ public class FileHandler {
                 }
                 MessageManager.INSTANCE.addMessage(new Message(messageText));
             }
+            return parsedWallet;
+        } catch (WalletVersionException wve) {
+            // We want this to propagate out.
+            throw wve;
+        } catch (Exception e) {
+            e.printStackTrace();
+            log.error(e.getClass().getCanonicalName() + " " + e.getMessage());
+            throw new WalletLoadException(e.getClass().getCanonicalName() + " " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Add a wallet read by parseFromFile into the model.
+     * 
+     * @param parsedWallet
+     * @return WalletData - the walletData for the created wallet, or null if there was no wallet
+     */
+    public WalletData addParsedWallet(ParsedWallet parsedWallet) throws WalletLoadException, WalletVersionException {
+        if (parsedWallet == null) {
+            return null;
+        }
+
+        try {
+            WalletInfoData walletInfo = parsedWallet.getWalletInfo();
+
+            // Ensure that the directories for the backups of the private
+            // keys, rolling backups and regular backups exist.
+            BackupManager.INSTANCE.createBackupDirectories(parsedWallet.getWalletFile());
+
+            // Add the new wallet into the model.
+            WalletData perWalletModelData = fastcoinController.getModel().addWallet(this.fastcoinController, parsedWallet.getWallet(),
+                    parsedWallet.getWalletFilename());
+
+            perWalletModelData.setWalletInfo(walletInfo);
+
+            // If the backup files were used save them immediately and don't
+            // delete any rolling backups.
+            if (parsedWallet.isLoadedFromBackup()) {
+                // Wipe the wallet backup property so that the rolling
+                // backup file will not be overwritten
+                walletInfo.put(FastcoinModel.WALLET_BACKUP_FILE, "");
+
+                // Save the wallet immediately just to be on the safe side.
+                savePerWalletModelData(perWalletModelData, true);
+            }
+
+            synchronized (walletInfo) {
+                WalletFileWatcher.INSTANCE.startWatching(perWalletModelData);
+                perWalletModelData.setDirty(false);
+            }
             return perWalletModelData;
         } catch (WalletVersionException wve) {
             // We want this to propagate out.
             throw wve;
+        } catch (WalletLoadException wle) {
+            throw wle;
         } catch (Exception e) {
             e.printStackTrace();
             log.error(e.getClass().getCanonicalName() + " " + e.getMessage());
@@ -318,13 +374,18 @@ public class FileHandler {
 
                     if (!filesHaveChanged || forceWrite) {
                         // Normal write of data.
+                        // Changes made after this point are picked up by the next write.
+                        long generation = perWalletModelData.getChangeGeneration();
                         String walletInfoFilename = WalletInfoData.createWalletInfoFilename(perWalletModelData.getWalletFilename());
-                        saveWalletAndWalletInfo(perWalletModelData, perWalletModelData.getWalletFilename(), walletInfoFilename);
-
-                        rememberFileSizesAndLastModified(walletFile, walletInfo);
+                        WalletFileWatcher.INSTANCE.beginOwnWrite(perWalletModelData.getWalletFilename());
+                        try {
+                            saveWalletAndWalletInfo(perWalletModelData, perWalletModelData.getWalletFilename(), walletInfoFilename);
+                        } finally {
+                            WalletFileWatcher.INSTANCE.endOwnWrite(perWalletModelData.getWalletFilename());
+                        }
 
-                        // The perWalletModelData is no longer dirty.
-                        perWalletModelData.setDirty(false);
+                        // The perWalletModelData is no longer dirty (as of the generation written).
+                        perWalletModelData.markSaved(generation);
                     } else {
                         // Write to backup files.
                         BackupManager.INSTANCE.backupPerWalletModelData(this, perWalletModelData);
@@ -422,18 +483,23 @@ public class FileHandler {
     }
 
     /**
-     * To protect the wallet data, the write is in steps: 1) Create a backup
-     * file called <wallet file name>-<yyyymmddhhmmss>.wallet and copy the
-     * original wallet to that 2) Write the new wallet to the walletFilename 3)
-     * Delete the old backup file 4) Make the backup file in step 1) the new
-     * backup file
+     * To protect the wallet data, the write is in steps: 1) Write the new
+     * wallet to a temporary file in the same directory as the wallet and sync
+     * it to disk 2) If a rolling backup is due, copy the existing wallet to a
+     * new rolling backup file called <wallet file name>-<yyyymmddhhmmss>.wallet
+     * and delete the old rolling backup 3) Rename the temporary file over the
+     * wallet.
+     * 
+     * A partially written wallet can therefore never replace a good one, there is
+     * always a wallet file at the wallet's path and in between rolling backups a
+     * save costs a single write of the wallet.
      * 
      **/
     private void saveWalletAndWalletInfo(WalletData perWalletModelData, String walletFilename, String walletInfoFilename) {
         File walletFile = new File(walletFilename);
         WalletInfoData walletInfo = perWalletModelData.getWalletInfo();
 
-        FileOutputStream fileOutputStream = null;
+        File temporaryWalletFile = null;
 
         // Save the wallet file
         try {
@@ -451,87 +517,111 @@ public class FileHandler {
                         perWalletModelData.getWallet().setDescription(walletDescriptionInInfoFile);
                     }
                 }
-                String oldBackupFilename = perWalletModelData.getWalletInfo().getProperty(FastcoinModel.WALLET_BACKUP_FILE);
-                File oldBackupFile = null;
-                String newBackupFilename = null;
-                if (null != oldBackupFilename && !"".equals(oldBackupFilename)) {
-                    oldBackupFile = new File(oldBackupFilename);
-                }
-                if (FastcoinWalletVersion.PROTOBUF == walletInfo.getWalletVersion()
-                        || FastcoinWalletVersion.PROTOBUF_ENCRYPTED == walletInfo.getWalletVersion()) {
-                    newBackupFilename = copyExistingWalletToBackupAndDeleteOriginal(walletFile);
-                }
 
                 log.debug("Saving wallet file '" + walletFile.getAbsolutePath() + "' ...");
                 if (FastcoinWalletVersion.SERIALIZED == walletInfo.getWalletVersion()) {
                     throw new WalletSaveException("Cannot save wallet '" + walletFile.getAbsolutePath() + "'. Serialized wallets are no longer supported.");
-                } else {
-                    // See if there are any encrypted private keys - if there
-                    // are the wallet will be saved
-                    // as encrypted and the version set to PROTOBUF_ENCRYPTED.
-                    boolean walletIsActuallyEncrypted = false;
-                    Wallet wallet = perWalletModelData.getWallet();
-                    // Check all the keys individually.
-                    for (ECKey key : wallet.getKeychain()) {
-                        if (key.isEncrypted()) {
-                            walletIsActuallyEncrypted = true;
-                            break;
-                        }
-                    }
+                }
 
-                    if (walletIsActuallyEncrypted) {
-                        walletInfo.setWalletVersion(FastcoinWalletVersion.PROTOBUF_ENCRYPTED);
+                // See if there are any encrypted private keys - if there
+                // are the wallet will be saved
+                // as encrypted and the version set to PROTOBUF_ENCRYPTED.
+                boolean walletIsActuallyEncrypted = false;
+                Wallet wallet = perWalletModelData.getWallet();
+                // Check all the keys individually.
+                for (ECKey key : wallet.getKeychain()) {
+                    if (key.isEncrypted()) {
+                        walletIsActuallyEncrypted = true;
+                        break;
                     }
+                }
 
-                    if (FastcoinWalletVersion.PROTOBUF == walletInfo.getWalletVersion()) {
-                        // Save as a MultiBitWallet message.
-                        perWalletModelData.getWallet().saveToFile(walletFile);
-                    } else if (FastcoinWalletVersion.PROTOBUF_ENCRYPTED == walletInfo.getWalletVersion()) {
-                        fileOutputStream = new FileOutputStream(walletFile);
+                if (walletIsActuallyEncrypted) {
+                    walletInfo.setWalletVersion(FastcoinWalletVersion.PROTOBUF_ENCRYPTED);
+                }
 
-                        // Save as a MultiBitWallet message with a mandatory extension
-                        // to prevent loading by older versions of wallet.
-                        walletProtobufSerializer.writeWallet(perWalletModelData.getWallet(), fileOutputStream);
+                if (FastcoinWalletVersion.PROTOBUF != walletInfo.getWalletVersion()
+                        && FastcoinWalletVersion.PROTOBUF_ENCRYPTED != walletInfo.getWalletVersion()) {
+                    throw new WalletVersionException("Cannot save wallet '" + perWalletModelData.getWalletFilename()
+                            + "'. Its wallet version is '" + walletInfo.getWalletVersion().toString()
+                            + "' but this version of MultiBitWallet does not understand that format.");
+                }
+
+                // Write the new wallet alongside the existing one.
+                temporaryWalletFile = writeWalletToTemporaryFile(perWalletModelData, walletFile);
+
+                // Copy the existing wallet to the rolling backup, if one is due.
+                String oldBackupFilename = walletInfo.getProperty(FastcoinModel.WALLET_BACKUP_FILE);
+                String newBackupFilename = null;
+                if (isRollingBackupDue(walletFile, oldBackupFilename)) {
+                    newBackupFilename = copyExistingWalletToBackup(walletFile);
+                }
+
+                // Replace the wallet with the new one.
+                try {
+                    replaceFile(temporaryWalletFile, walletFile);
+                    temporaryWalletFile = null;
+                } catch (IOException ioe) {
+                    if (walletFile.exists()) {
+                        // The existing wallet is still in place.
+                        throw ioe;
+                    }
+
+                    // The existing wallet has been deleted but the new one could not be renamed into place.
+                    if (copyWholeFile(temporaryWalletFile, walletFile)) {
+                        log.debug("Copied the new wallet to '" + walletFile.getAbsolutePath() + "' as it could not be renamed. "
+                                + ioe.getMessage());
                     } else {
-                        throw new WalletVersionException("Cannot save wallet '" + perWalletModelData.getWalletFilename()
-                                + "'. Its wallet version is '" + walletInfo.getWalletVersion().toString()
-                                + "' but this version of MultiBitWallet does not understand that format.");
+                        // Put the existing wallet back where it was if there is a copy of it.
+                        if (newBackupFilename != null) {
+                            copyWholeFile(new File(newBackupFilename), walletFile);
+                        }
+
+                        // Never delete the temporary file now - it may be the only copy of the wallet.
+                        String keptWalletFilename = temporaryWalletFile.getAbsolutePath();
+                        temporaryWalletFile = null;
+                        throw new IOException("Could not replace the wallet '" + walletFile.getAbsolutePath()
+                                + "'. The new wallet has been kept as '" + keptWalletFilename + "'", ioe);
                     }
                 }
                 log.debug("... done saving wallet file.");
 
-                if (FastcoinWalletVersion.PROTOBUF == walletInfo.getWalletVersion()
-                        || FastcoinWalletVersion.PROTOBUF_ENCRYPTED == walletInfo.getWalletVersion()) {
-                    perWalletModelData.getWalletInfo().put(FastcoinModel.WALLET_BACKUP_FILE, newBackupFilename);
+                if (newBackupFilename != null) {
+                    walletInfo.put(FastcoinModel.WALLET_BACKUP_FILE, newBackupFilename);
+                    synchronized (lastRollingBackupTimes) {
+                        lastRollingBackupTimes.put(walletFile.getAbsolutePath(), System.currentTimeMillis());
+                    }
 
                     // Delete the oldBackupFile unless the user has manually
                     // opened it.
-                    boolean userHasOpenedBackupFile = false;
-                    List<WalletData> perWalletModelDataList = this.fastcoinController.getModel().getPerWalletModelDataList();
-                    if (perWalletModelDataList != null) {
-                        for (WalletData perWalletModelDataLoop : perWalletModelDataList) {
-                            if ((oldBackupFilename != null && oldBackupFilename.equals(perWalletModelDataLoop.getWalletFilename()))
-                                    || (newBackupFilename != null && newBackupFilename.equals(perWalletModelDataLoop
-                                            .getWalletFilename()))) {
-                                userHasOpenedBackupFile = true;
-                                break;
+                    if (oldBackupFilename != null && !"".equals(oldBackupFilename)) {
+                        boolean userHasOpenedBackupFile = false;
+                        List<WalletData> perWalletModelDataList = this.fastcoinController.getModel().getPerWalletModelDataList();
+                        if (perWalletModelDataList != null) {
+                            for (WalletData perWalletModelDataLoop : perWalletModelDataList) {
+                                if (oldBackupFilename.equals(perWalletModelDataLoop.getWalletFilename())
+                                        || newBackupFilename.equals(perWalletModelDataLoop.getWalletFilename())) {
+                                    userHasOpenedBackupFile = true;
+                                    break;
+                                }
                             }
                         }
-                    }
-                    if (!userHasOpenedBackupFile) {
-                        secureDelete(oldBackupFile);
+                        if (!userHasOpenedBackupFile) {
+                            secureDelete(new File(oldBackupFilename));
+                        }
                     }
                 }
             }
         } catch (IOException ioe) {
             throw new WalletSaveException("Cannot save wallet '" + perWalletModelData.getWalletFilename(), ioe);
         } finally {
-            if (fileOutputStream != null) {
+            if (temporaryWalletFile != null) {
+                // Either the save failed before the existing wallet was deleted, so the
+                // wallet itself is untouched, or the new wallet has been copied into place.
                 try {
-                    fileOutputStream.flush();
-                    fileOutputStream.close();
+                    secureDelete(temporaryWalletFile);
                 } catch (IOException e) {
-                    throw new WalletSaveException("Cannot save wallet '" + perWalletModelData.getWalletFilename(), e);
+                    log.error("Could not delete temporary wallet file '" + temporaryWalletFile.getAbsolutePath() + "' " + e.getMessage());
                 }
             }
         }
@@ -540,6 +630,140 @@ public class FileHandler {
         walletInfo.writeToFile(walletInfoFilename, walletInfo.getWalletVersion());
     }
 
+    /**
+     * Serialise a wallet to a temporary file in the same directory as the
+     * wallet file and sync it to disk.
+     * 
+     * The temporary file has a fixed name, <wallet file name>.tmp, so one left
+     * behind by a crash is overwritten by the next save rather than
+     * accumulating. Saves of a wallet are serialised on its wallet info.
+     * 
+     * @return The temporary file
+     */
+    private File writeWalletToTemporaryFile(WalletData perWalletModelData, File walletFile) throws IOException {
+        File temporaryWalletFile = new File(walletFile.getAbsolutePath() + TEMPORARY_FILE_SUFFIX);
+
+        boolean success = false;
+        try {
+            WalletInfoData walletInfo = perWalletModelData.getWalletInfo();
+            if (FastcoinWalletVersion.PROTOBUF == walletInfo.getWalletVersion()) {
+                // Save as a MultiBitWallet message.
+                perWalletModelData.getWallet().saveToFile(temporaryWalletFile);
+            } else {
+                FileOutputStream fileOutputStream = new FileOutputStream(temporaryWalletFile);
+                try {
+                    // Save as a MultiBitWallet message with a mandatory extension
+                    // to prevent loading by older versions of wallet.
+                    walletProtobufSerializer.writeWallet(perWalletModelData.getWallet(), fileOutputStream);
+                    fileOutputStream.flush();
+                } finally {
+                    fileOutputStream.close();
+                }
+            }
+
+            // Make sure the bytes are on disk before the rename makes them the wallet.
+            RandomAccessFile randomAccessFile = new RandomAccessFile(temporaryWalletFile, "rw");
+            try {
+                randomAccessFile.getFD().sync();
+            } finally {
+                randomAccessFile.close();
+            }
+            success = true;
+        } finally {
+            if (!success) {
+                secureDelete(temporaryWalletFile);
+            }
+        }
+        return temporaryWalletFile;
+    }
+
+    /**
+     * A rolling backup is taken on the first save of a wallet in a session and
+     * then at most every ROLLING_BACKUP_INTERVAL_IN_MILLISECONDS.
+     */
+    private boolean isRollingBackupDue(File walletFile, String oldBackupFilename) {
+        if (!walletFile.exists()) {
+            return false;
+        }
+        if (oldBackupFilename == null || "".equals(oldBackupFilename) || !(new File(oldBackupFilename)).exists()) {
+            return true;
+        }
+        Long lastRollingBackupTime;
+        synchronized (lastRollingBackupTimes) {
+            lastRollingBackupTime = lastRollingBackupTimes.get(walletFile.getAbsolutePath());
+        }
+        return lastRollingBackupTime == null
+                || System.currentTimeMillis() - lastRollingBackupTime >= ROLLING_BACKUP_INTERVAL_IN_MILLISECONDS;
+    }
+
+    /**
+     * Copy an existing wallet to a new rolling backup file.
+     * The wallet is copied rather than renamed so that it stays in place until the
+     * new wallet is renamed over it.
+     * 
+     * @param walletFile
+     * @return The name of the rolling backup file
+     * @throws IOException
+     */
+    private String copyExistingWalletToBackup(File walletFile) throws IOException {
+        String newWalletBackupFilename = BackupManager.INSTANCE.createBackupFilename(walletFile, BackupManager.ROLLING_WALLET_BACKUP_DIRECTORY_NAME, false, false, FastcoinModel.WALLET_FILE_EXTENSION);
+        File newWalletBackupFile = new File(newWalletBackupFilename);
+        if (walletFile.getAbsolutePath().equals(newWalletBackupFile.getAbsolutePath())) {
+            return newWalletBackupFilename;
+        }
+
+        if (!copyWholeFile(walletFile, newWalletBackupFile)) {
+            throw new IOException("Failed to copy the existing wallet from '" + walletFile.getAbsolutePath() + "' to '"
+                    + newWalletBackupFilename + "'");
+        }
+
+        return newWalletBackupFilename;
+    }
+
+    /**
+     * Copy a file, checking the whole of it was copied.
+     *
+     * @return true if the copy succeeded, false (with any partial copy deleted) if it did not
+     */
+    private static boolean copyWholeFile(File sourceFile, File destinationFile) {
+        try {
+            FileHandler.copyFile(sourceFile, destinationFile);
+            if (sourceFile.length() == destinationFile.length()) {
+                return true;
+            }
+            log.error("Copy of '" + sourceFile.getAbsolutePath() + "' to '" + destinationFile.getAbsolutePath() + "' is incomplete");
+        } catch (IOException ioe) {
+            log.error("Could not copy '" + sourceFile.getAbsolutePath() + "' to '" + destinationFile.getAbsolutePath() + "' "
+                    + ioe.getMessage());
+        }
+        if (destinationFile.exists() && !destinationFile.delete()) {
+            log.error("Could not delete incomplete copy '" + destinationFile.getAbsolutePath() + "'");
+        }
+        return false;
+    }
+
+    /**
+     * Rename a file over another, replacing it.
+     * 
+     * This is atomic where the platform supports it. Where it does not (e.g. on
+     * Windows a rename cannot replace an existing file) the destination is
+     * deleted first, so if an IOException is thrown the destination may be
+     * gone and the source must not be deleted.
+     */
+    private static void replaceFile(File sourceFile, File destinationFile) throws IOException {
+        if (sourceFile.renameTo(destinationFile)) {
+            return;
+        }
+
+        if (destinationFile.exists() && !destinationFile.delete()) {
+            throw new IOException("Could not delete '" + destinationFile.getAbsolutePath() + "' to replace it with '"
+                    + sourceFile.getAbsolutePath() + "'");
+        }
+        if (!sourceFile.renameTo(destinationFile)) {
+            throw new IOException("Could not rename '" + sourceFile.getAbsolutePath() + "' to '"
+                    + destinationFile.getAbsolutePath() + "'");
+        }
+    }
 
     /**
      * Backup the private keys of the active wallet to a file with name <wallet-name>-data/key-backup/<wallet
@@ -583,32 +807,6 @@ public class FileHandler {
         return privateKeysBackupFile;
     }
 
-    /**
-     * Copy an existing wallet to a backup file and delete the original.
-     * Used in rolling backups
-     * 
-     * @param walletFile
-     * @return
-     * @throws IOException
-     */
-    private String copyExistingWalletToBackupAndDeleteOriginal(File walletFile) throws IOException {
-        String newWalletBackupFilename = BackupManager.INSTANCE.createBackupFilename(walletFile, BackupManager.ROLLING_WALLET_BACKUP_DIRECTORY_NAME, false, false, FastcoinModel.WALLET_FILE_EXTENSION);
-        File newWalletBackupFile = new File(newWalletBackupFilename);
-        if (walletFile != null && walletFile.exists()) {
-            FileHandler.copyFile(walletFile, newWalletBackupFile);
-            if (walletFile.length() != newWalletBackupFile.length()) {
-                throw new IOException("Failed to copy the existing wallet from '" + walletFile.getAbsolutePath() + "' to '"
-                        + newWalletBackupFilename + "'");
-            }
-
-            if (!walletFile.getAbsolutePath().equals(newWalletBackupFile.getAbsolutePath())) {
-                secureDelete(walletFile);
-            }
-        }
-
-        return newWalletBackupFilename;
-    }
-
     /**
      * Secure delete the wallet and the wallet info file.
      * 
@@ -649,85 +847,18 @@ public class FileHandler {
         return;
     }
 
-    public boolean haveFilesChanged(WalletData perWalletModelData) {
-        if (perWalletModelData == null || perWalletModelData.getWalletFilename() == null) {
-            return false;
-        }
-
-        boolean haveFilesChanged = false;
-
-        String walletInfoFilename = WalletInfoData.createWalletInfoFilename(perWalletModelData.getWalletFilename());
-        File walletInfoFile = new File(walletInfoFilename);
-        File walletFile = new File(perWalletModelData.getWalletFilename());
-
-        WalletInfoData walletInfo = perWalletModelData.getWalletInfo();
-
-        if (walletInfo != null) {
-            synchronized (walletInfo) {
-                String walletFileSize = "" + walletFile.length();
-                String walletFileLastModified = "" + walletFile.lastModified();
-                String walletInfoFileSize = "" + walletInfoFile.length();
-                String walletInfoFileLastModified = "" + walletInfoFile.lastModified();
-
-                if (!walletFileSize.equals(walletInfo.getProperty(FastcoinModel.WALLET_FILE_SIZE))) {
-                    haveFilesChanged = true;
-                }
-
-                if (!walletFileLastModified.equals(walletInfo.getProperty(FastcoinModel.WALLET_FILE_LAST_MODIFIED))) {
-                    haveFilesChanged = true;
-                }
-
-                if (!walletInfoFileSize.equals(walletInfo.getProperty(FastcoinModel.WALLET_INFO_FILE_SIZE))) {
-                    haveFilesChanged = true;
-                }
-
-                if (haveFilesChanged) {
-                    log.debug("Result of check of whether files have changed for wallet filename "
-                            + perWalletModelData.getWalletFilename() + " was " + haveFilesChanged + ".");
-                    log.debug(FastcoinModel.WALLET_FILE_SIZE + " " + walletFileSize + " ," + FastcoinModel.WALLET_FILE_LAST_MODIFIED
-                            + " " + walletFileLastModified + " ," + FastcoinModel.WALLET_INFO_FILE_SIZE + " " + walletInfoFileSize
-                            + " ," + FastcoinModel.WALLET_INFO_FILE_LAST_MODIFIED + " " + walletInfoFileLastModified);
-                }
-            }
-        }
-
-        return haveFilesChanged;
-    }
-
     /**
-     * Keep a record of the wallet and wallet info files sizes and date last
-     * modified.
+     * See whether the wallet and wallet info files have been changed by
+     * another process since they were last written by this one.
      * 
-     * @param walletFile
-     *            The wallet file
-     * @param walletInfo
-     *            The wallet info
+     * @see WalletFileWatcher
      */
-    private void rememberFileSizesAndLastModified(File walletFile, WalletInfoData walletInfo) {
-        // Get the files' last modified data and sizes and store them in the
-        // wallet properties.
-        if (walletFile == null || walletInfo == null) {
-            return;
+    public boolean haveFilesChanged(WalletData perWalletModelData) {
+        if (perWalletModelData == null || perWalletModelData.getWalletFilename() == null) {
+            return false;
         }
 
-        long walletFileSize = walletFile.length();
-        long walletFileLastModified = walletFile.lastModified();
-
-        String walletFilename = walletFile.getAbsolutePath();
-        String walletInfoFilename = WalletInfoData.createWalletInfoFilename(walletFilename);
-        File walletInfoFile = new File(walletInfoFilename);
-        long walletInfoFileSize = walletInfoFile.length();
-        long walletInfoFileLastModified = walletInfoFile.lastModified();
-
-        walletInfo.put(FastcoinModel.WALLET_FILE_SIZE, "" + walletFileSize);
-        walletInfo.put(FastcoinModel.WALLET_FILE_LAST_MODIFIED, "" + walletFileLastModified);
-        walletInfo.put(FastcoinModel.WALLET_INFO_FILE_SIZE, "" + walletInfoFileSize);
-        walletInfo.put(FastcoinModel.WALLET_INFO_FILE_LAST_MODIFIED, "" + walletInfoFileLastModified);
-
-        log.debug("rememberFileSizesAndLastModified: MultiBitWallet filename " + walletFilename + " , " + FastcoinModel.WALLET_FILE_SIZE
-                + " " + walletFileSize + " ," + FastcoinModel.WALLET_FILE_LAST_MODIFIED + " " + walletFileLastModified + " ,"
-                + FastcoinModel.WALLET_INFO_FILE_SIZE + " " + walletInfoFileSize + " ,"
-                + FastcoinModel.WALLET_INFO_FILE_LAST_MODIFIED + " " + walletInfoFileLastModified);
+        return WalletFileWatcher.INSTANCE.haveFilesChanged(perWalletModelData.getWalletFilename());
     }
 
     public static void writeUserPreferences(FastcoinController fastcoinController) {
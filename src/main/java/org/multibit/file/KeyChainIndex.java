@@ -0,0 +1,121 @@
+/**
+ * Copyright 2013 wallet.org
+ *
+ * Licensed under the MIT license (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://opensource.org/licenses/mit-license.php
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.multibit.file;
+
+import java.nio.ByteBuffer;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+
+import com.google.fastcoin.core.ECKey;
+
+/**
+ * Hashed index of the keys in a keychain, used to detect duplicates when importing private keys.
+ *
+ * There is no equals on ECKey so keys are matched on their private key bytes (which matches
+ * the compressed and uncompressed forms of the same key) and on their pubkey hash (which works when
+ * the private key bytes are not available, for instance when the wallet is encrypted).
+ *
+ * The index holds on to the private key bytes it is given so call wipe() when it is no longer needed.
+ *
+ * @author jim
+ *
+ */
+public class KeyChainIndex {
+
+    private final Set<ByteBuffer> privateKeys;
+    private final Set<ByteBuffer> pubKeyHashes;
+
+    public KeyChainIndex() {
+        privateKeys = new HashSet<ByteBuffer>();
+        pubKeyHashes = new HashSet<ByteBuffer>();
+    }
+
+    /**
+     * Create an index of the keys in a keychain.
+     * The caller should hold the keychain lock.
+     */
+    public KeyChainIndex(Collection<ECKey> keyChain) {
+        this();
+        if (keyChain != null) {
+            for (ECKey ecKey : keyChain) {
+                add(ecKey, null);
+            }
+        }
+    }
+
+    /**
+     * Add a key to the index.
+     *
+     * @param ecKey
+     *            The key to add
+     * @param unencryptedPrivateKey
+     *            The private key bytes, if the key itself is encrypted. If null the private key bytes of
+     *            the key are used if available.
+     */
+    public void add(ECKey ecKey, byte[] unencryptedPrivateKey) {
+        if (ecKey == null) {
+            return;
+        }
+
+        byte[] privateKeyBytes = unencryptedPrivateKey;
+        if (privateKeyBytes == null && !ecKey.isEncrypted()) {
+            privateKeyBytes = ecKey.getPrivKeyBytes();
+        }
+        if (privateKeyBytes != null && privateKeyBytes.length > 0) {
+            privateKeys.add(ByteBuffer.wrap(privateKeyBytes));
+        }
+
+        byte[] pubKeyHash = ecKey.getPubKeyHash();
+        if (pubKeyHash != null) {
+            pubKeyHashes.add(ByteBuffer.wrap(pubKeyHash));
+        }
+    }
+
+    /**
+     * @return true if the key (or the other compression form of it, where the private key is known)
+     *         is in the index
+     */
+    public boolean contains(ECKey ecKey) {
+        if (ecKey == null) {
+            return false;
+        }
+
+        if (!ecKey.isEncrypted()) {
+            byte[] privateKeyBytes = ecKey.getPrivKeyBytes();
+            if (privateKeyBytes != null && privateKeys.contains(ByteBuffer.wrap(privateKeyBytes))) {
+                return true;
+            }
+        }
+
+        byte[] pubKeyHash = ecKey.getPubKeyHash();
+        return pubKeyHash != null && pubKeyHashes.contains(ByteBuffer.wrap(pubKeyHash));
+    }
+
+    /**
+     * Overwrite the private key bytes held by the index and empty it.
+     */
+    public void wipe() {
+        for (ByteBuffer privateKey : privateKeys) {
+            byte[] privateKeyBytes = privateKey.array();
+            for (int i = 0; i < privateKeyBytes.length; i++) {
+                privateKeyBytes[i] = 0;
+            }
+        }
+        privateKeys.clear();
+        pubKeyHashes.clear();
+    }
+}
@@ -0,0 +1,134 @@
+/**
+ * Copyright 2013 wallet.org
+ *
+ * Licensed under the MIT license (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://opensource.org/licenses/mit-license.php
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.multibit.file;
+
+import java.io.File;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.wallet.store.WalletVersionException;
+
+/**
+ * Reads several wallets from disk at once.
+ *
+ * Reading and deserialising the wallets is done on a small pool of worker threads as soon as the
+ * loader is created. The wallets are then collected with get() in whatever order the caller
+ * wants to add them to the model, so the order the wallets appear in is unchanged.
+ *
+ * Wallet filenames that are directories are not read - they are left to
+ * FastcoinController.addWalletFromFilename, which creates the default wallet.
+ *
+ * @author jim
+ */
+public class ParallelWalletLoader {
+
+    private static final Logger log = LoggerFactory.getLogger(ParallelWalletLoader.class);
+
+    private static final int MAXIMUM_NUMBER_OF_THREADS = 4;
+
+    private final ExecutorService executorService;
+
+    /**
+     * The read of each wallet, keyed on wallet filename.
+     */
+    private final Map<String, Future<ParsedWallet>> parsedWallets = new HashMap<String, Future<ParsedWallet>>();
+
+    public ParallelWalletLoader(final FileHandler fileHandler, List<String> walletFilenames) {
+        int numberOfThreads = Math.max(1, Math.min(MAXIMUM_NUMBER_OF_THREADS, Runtime.getRuntime().availableProcessors()));
+        executorService = Executors.newFixedThreadPool(numberOfThreads, new ThreadFactory() {
+            private int threadNumber = 0;
+
+            @Override
+            public synchronized Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "ParallelWalletLoader-" + threadNumber++);
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+
+        for (final String walletFilename : walletFilenames) {
+            if (walletFilename == null || parsedWallets.containsKey(walletFilename)) {
+                continue;
+            }
+            final File walletFile = new File(walletFilename);
+            if (walletFile.isDirectory()) {
+                continue;
+            }
+            parsedWallets.put(walletFilename, executorService.submit(new Callable<ParsedWallet>() {
+                @Override
+                public ParsedWallet call() throws Exception {
+                    long start = System.currentTimeMillis();
+                    ParsedWallet parsedWallet = fileHandler.parseFromFile(walletFile);
+                    log.debug("Read wallet '" + walletFilename + "' in " + (System.currentTimeMillis() - start) + " ms");
+                    return parsedWallet;
+                }
+            }));
+        }
+    }
+
+    /**
+     * @return true if the wallet is being read by this loader
+     */
+    public boolean isLoading(String walletFilename) {
+        return parsedWallets.containsKey(walletFilename);
+    }
+
+    /**
+     * Wait for a wallet to be read.
+     *
+     * @return The wallet read, or null if neither it nor any of its backups could be read
+     * @throws WalletLoadException
+     * @throws WalletVersionException
+     */
+    public ParsedWallet get(String walletFilename) throws WalletLoadException, WalletVersionException {
+        Future<ParsedWallet> parsedWallet = parsedWallets.get(walletFilename);
+        if (parsedWallet == null) {
+            return null;
+        }
+
+        try {
+            return parsedWallet.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new WalletLoadException("Interrupted whilst loading wallet '" + walletFilename + "'", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof WalletVersionException) {
+                throw (WalletVersionException) cause;
+            } else if (cause instanceof WalletLoadException) {
+                throw (WalletLoadException) cause;
+            } else {
+                throw new WalletLoadException(cause.getClass().getCanonicalName() + " " + cause.getMessage(), cause);
+            }
+        }
+    }
+
+    /**
+     * Stop the worker threads. Any wallets not yet read are abandoned.
+     */
+    public void shutdown() {
+        executorService.shutdownNow();
+    }
+}
@@ -0,0 +1,67 @@
+/**
+ * Copyright 2013 wallet.org
+ *
+ * Licensed under the MIT license (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://opensource.org/licenses/mit-license.php
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.multibit.file;
+
+import java.io.File;
+
+import org.multibit.model.fastcoin.WalletInfoData;
+
+import com.google.fastcoin.core.Wallet;
+
+/**
+ * A wallet and wallet info that have been read from disk but not yet added to the model.
+ *
+ * @author jim
+ *
+ */
+public class ParsedWallet {
+
+    private final File walletFile;
+    private final Wallet wallet;
+    private final WalletInfoData walletInfo;
+
+    /**
+     * The wallet was loaded from a backup because the wallet file could not be read.
+     */
+    private final boolean loadedFromBackup;
+
+    public ParsedWallet(File walletFile, Wallet wallet, WalletInfoData walletInfo, boolean loadedFromBackup) {
+        this.walletFile = walletFile;
+        this.wallet = wallet;
+        this.walletInfo = walletInfo;
+        this.loadedFromBackup = loadedFromBackup;
+    }
+
+    public File getWalletFile() {
+        return walletFile;
+    }
+
+    public String getWalletFilename() {
+        return walletFile.getAbsolutePath();
+    }
+
+    public Wallet getWallet() {
+        return wallet;
+    }
+
+    public WalletInfoData getWalletInfo() {
+        return walletInfo;
+    }
+
+    public boolean isLoadedFromBackup() {
+        return loadedFromBackup;
+    }
+}
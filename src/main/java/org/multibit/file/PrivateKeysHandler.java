@@ -22,13 +22,14 @@ import java.io.FileWriter;
 import java.io.IOException;
 import java.io.PrintWriter;
 import java.io.StringReader;
+import java.nio.ByteBuffer;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.Collection;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.Locale;
 import java.util.Scanner;
@@ -213,34 +214,49 @@ public class PrivateKeysHandler {
 
         ArrayList<PrivateKeyAndDate> parseResults = new ArrayList<PrivateKeyAndDate>();
 
-        Scanner scanner = null;
+        BufferedReader reader = null;
 
         try {
-            // Read in the file.
-            String importFileContents = readFile(importFile);
+            // Read the file a line at a time.
+            reader = new BufferedReader(new FileReader(importFile));
+            String line = reader.readLine();
+
+            if (line != null && line.startsWith(keyCrypter.getOpenSSLMagicText())) {
+                // Decryption required - this needs the whole of the file.
+                StringBuilder stringBuilder = new StringBuilder();
+                String ls = System.getProperty("line.separator");
+                while (line != null) {
+                    stringBuilder.append(line);
+                    stringBuilder.append(ls);
+                    line = reader.readLine();
+                }
 
-            if (importFileContents != null && importFileContents.startsWith(keyCrypter.getOpenSSLMagicText())) {
-                // Decryption required.
                 KeyCrypterOpenSSL keyCrypter = new KeyCrypterOpenSSL();
-                importFileContents = keyCrypter.decrypt(importFileContents, password);
-            }
+                String importFileContents = keyCrypter.decrypt(stringBuilder.toString(), password);
 
-            scanner = new Scanner(new StringReader(importFileContents));
-
-            // First use a Scanner to get each line.
-            while (scanner.hasNextLine()) {
-                processLine(scanner.nextLine(), parseResults);
+                Scanner scanner = new Scanner(new StringReader(importFileContents));
+                try {
+                    while (scanner.hasNextLine()) {
+                        processLine(scanner.nextLine(), parseResults);
+                    }
+                } finally {
+                    scanner.close();
+                }
+            } else {
+                while (line != null) {
+                    processLine(line, parseResults);
+                    line = reader.readLine();
+                }
             }
         } catch (IOException ioe) {
             throw new PrivateKeysHandlerException("Could not read import file '" + importFile.getAbsolutePath() + "'", ioe);
         } finally {
-            // Ensure the underlying stream is always closed
-            // this only has any effect if the item passed
-            // to the Scanner
-            // constructor implements Closeable (which it
-            // does in this case).
-            if (scanner != null) {
-                scanner.close();
+            if (reader != null) {
+                try {
+                    reader.close();
+                } catch (IOException ioe) {
+                    log.error("Could not close import file '" + importFile.getAbsolutePath() + "' " + ioe.getMessage());
+                }
             }
         }
         return parseResults;
@@ -278,41 +294,13 @@ public class PrivateKeysHandler {
 
             Set<Transaction> allTransactions = wallet.getTransactions(true);
             if (keychain != null) {
-                HashMap<ECKey, Date> keyToEarliestUsageDateMap = new HashMap<ECKey, Date>();
+                // Find the earliest usage of each key in a single pass over the transactions.
+                // The dates are keyed on the pubkey hash of the key.
+                HashMap<ByteBuffer, Date> pubKeyHashToEarliestUsageDateMap = new HashMap<ByteBuffer, Date>();
 
                 // The date of the last transaction in the wallet - used where
                 // there are no tx for a key.
-                Date overallLastUsageDate = null;
-
-                for (ECKey ecKey : keychain) {
-                    // Find the earliest usage of this key.
-                    Date earliestUsageDate = null;
-                    if (allTransactions != null) {
-                        for (Transaction tx : allTransactions) {
-                            if (transactionUsesKey(tx, ecKey)) {
-                                Date updateTime = tx.getUpdateTime();
-                                if (updateTime != null) {
-                                    if (updateTime != null) {
-                                        if (overallLastUsageDate == null) {
-                                            overallLastUsageDate = updateTime;
-                                        } else {
-                                            overallLastUsageDate = overallLastUsageDate.after(updateTime) ? overallLastUsageDate
-                                                    : updateTime;
-                                        }
-                                    }
-                                    if (earliestUsageDate == null) {
-                                        earliestUsageDate = updateTime;
-                                    } else {
-                                        earliestUsageDate = earliestUsageDate.before(updateTime) ? earliestUsageDate : updateTime;
-                                    }
-                                }
-                            }
-                        }
-                    }
-                    if (earliestUsageDate != null) {
-                        keyToEarliestUsageDateMap.put(ecKey, earliestUsageDate);
-                    }
-                }
+                Date overallLastUsageDate = createKeyUsageDates(keychain, allTransactions, pubKeyHashToEarliestUsageDateMap);
 
                 // If there are no transactions in the wallet
                 // overallLastUsageDate will be null.
@@ -345,7 +333,7 @@ public class PrivateKeysHandler {
                 }
                 
                 for (ECKey ecKey : keychain) {
-                    Date earliestUsageDate = keyToEarliestUsageDateMap.get(ecKey);
+                    Date earliestUsageDate = pubKeyHashToEarliestUsageDateMap.get(ByteBuffer.wrap(ecKey.getPubKeyHash()));
                     if (earliestUsageDate == null) {
                         if (overallLastUsageDate != null) {
                             // Put the last tx date for the whole wallet in for
@@ -387,16 +375,31 @@ public class PrivateKeysHandler {
     public Date calculateReplayDate(Collection<PrivateKeyAndDate> privateKeyAndDates, Wallet wallet) {
         boolean thereWereMissingDates = false;
         Date replayDate =  new Date(DateUtils.nowUtc().getMillis());
-        for (PrivateKeyAndDate loop : privateKeyAndDates) {
-            if (loop.getDate() == null) {
-                thereWereMissingDates = true;
-            } else {
-                if (loop.getKey() != null) {
-                    if (wallet != null && !keyChainContainsPrivateKey(wallet.getKeychain(), loop.getKey())) {
-                        replayDate = replayDate.before(loop.getDate()) ? replayDate : loop.getDate();
+
+        // Index the wallet keys once rather than searching the keychain for every imported key.
+        KeyChainIndex keyChainIndex = null;
+        if (wallet != null) {
+            synchronized (wallet.getKeychain()) {
+                keyChainIndex = new KeyChainIndex(wallet.getKeychain());
+            }
+        }
+
+        try {
+            for (PrivateKeyAndDate loop : privateKeyAndDates) {
+                if (loop.getDate() == null) {
+                    thereWereMissingDates = true;
+                } else {
+                    if (loop.getKey() != null) {
+                        if (keyChainIndex != null && !keyChainIndex.contains(loop.getKey())) {
+                            replayDate = replayDate.before(loop.getDate()) ? replayDate : loop.getDate();
+                        }
                     }
                 }
             }
+        } finally {
+            if (keyChainIndex != null) {
+                keyChainIndex.wipe();
+            }
         }
 
         if (thereWereMissingDates) {
@@ -407,50 +410,86 @@ public class PrivateKeysHandler {
     }
 
     /**
-     * This method is here because there is no equals on ECKey.
+     * Work out the earliest date each key is used in a transaction.
+     * 
+     * A transaction uses a key if one of its outputs pays to the key's pubkey hash or one of its inputs
+     * is signed by the key. Transactions without an update time are ignored.
+     * 
+     * @param keychain
+     *            The keys to look for
+     * @param transactions
+     *            The transactions to look in
+     * @param pubKeyHashToEarliestUsageDateMap
+     *            Filled in with the earliest usage date of each used key, keyed on its pubkey hash
+     * @return The date of the latest transaction that uses any of the keys, or null if there is none
      */
-    private boolean keyChainContainsPrivateKey(Collection<ECKey> keyChain, ECKey keyToAdd) {
-        if (keyChain == null || keyToAdd == null) {
-            return false;
-        } else {
-            for (ECKey loopKey : keyChain) {
-                if (Arrays.equals(keyToAdd.getPrivKeyBytes(), loopKey.getPrivKeyBytes())) {
-                    return true;
+    private Date createKeyUsageDates(Collection<ECKey> keychain, Collection<Transaction> transactions,
+            HashMap<ByteBuffer, Date> pubKeyHashToEarliestUsageDateMap) {
+        // Index the keys on pubkey hash (for outputs) and pubkey (for inputs).
+        Set<ByteBuffer> pubKeyHashes = new HashSet<ByteBuffer>();
+        HashMap<ByteBuffer, ByteBuffer> pubKeyToPubKeyHashMap = new HashMap<ByteBuffer, ByteBuffer>();
+        for (ECKey ecKey : keychain) {
+            ByteBuffer pubKeyHash = ByteBuffer.wrap(ecKey.getPubKeyHash());
+            pubKeyHashes.add(pubKeyHash);
+            pubKeyToPubKeyHashMap.put(ByteBuffer.wrap(ecKey.getPubKey()), pubKeyHash);
+        }
+
+        Date overallLastUsageDate = null;
+        if (transactions == null) {
+            return overallLastUsageDate;
+        }
+
+        for (Transaction tx : transactions) {
+            Date updateTime = tx.getUpdateTime();
+            if (updateTime == null) {
+                continue;
+            }
+
+            Set<ByteBuffer> usedPubKeyHashes = new HashSet<ByteBuffer>();
+            boolean couldParseScripts = true;
+            for (TransactionOutput output : tx.getOutputs()) {
+                try {
+                    ByteBuffer pubKeyHash = ByteBuffer.wrap(output.getScriptPubKey().getPubKeyHash());
+                    if (pubKeyHashes.contains(pubKeyHash)) {
+                        usedPubKeyHashes.add(pubKeyHash);
+                    }
+                } catch (ScriptException e) {
+                    log.error("Could not parse tx output script: {}", e.toString());
+                    couldParseScripts = false;
+                    break;
                 }
             }
-            return false;
-        }
-    }
 
-    private boolean transactionUsesKey(Transaction transaction, ECKey ecKey) {
-        for (TransactionOutput output : transaction.getOutputs()) {
-            // This is not thread safe as a key could be removed between the
-            // call to isMine and receive.
-            try {
-                byte[] pubkeyHash = output.getScriptPubKey().getPubKeyHash();
-                if (Arrays.equals(ecKey.getPubKeyHash(), pubkeyHash)) {
-                    return true;
+            if (couldParseScripts) {
+                for (TransactionInput input : tx.getInputs()) {
+                    try {
+                        ByteBuffer pubKeyHash = pubKeyToPubKeyHashMap.get(ByteBuffer.wrap(input.getScriptSig().getPubKey()));
+                        if (pubKeyHash != null) {
+                            usedPubKeyHashes.add(pubKeyHash);
+                        }
+                    } catch (ScriptException e) {
+                        log.error("Could not parse tx input script: {}", e.toString());
+                        break;
+                    }
                 }
-            } catch (ScriptException e) {
-                log.error("Could not parse tx output script: {}", e.toString());
-                return false;
             }
-        }
 
-        for (TransactionInput input : transaction.getInputs()) {
-            // This is not thread safe as a key could be removed between the
-            // call to isPubKeyMine and receive.
-            try {
-                byte[] pubkey = input.getScriptSig().getPubKey();
-                if (Arrays.equals(ecKey.getPubKey(), pubkey)) {
-                    return true;
+            if (usedPubKeyHashes.isEmpty()) {
+                continue;
+            }
+
+            if (overallLastUsageDate == null || updateTime.after(overallLastUsageDate)) {
+                overallLastUsageDate = updateTime;
+            }
+            for (ByteBuffer pubKeyHash : usedPubKeyHashes) {
+                Date earliestUsageDate = pubKeyHashToEarliestUsageDateMap.get(pubKeyHash);
+                if (earliestUsageDate == null || updateTime.before(earliestUsageDate)) {
+                    pubKeyHashToEarliestUsageDateMap.put(pubKeyHash, updateTime);
                 }
-            } catch (ScriptException e) {
-                log.error("Could not parse tx output script: {}", e.toString());
-                return false;
             }
         }
-        return false;
+
+        return overallLastUsageDate;
     }
 
     private void processLine(String line, ArrayList<PrivateKeyAndDate> parseResults) {
@@ -494,13 +533,17 @@ public class PrivateKeysHandler {
 
     public static String readFile(File file) throws IOException {
         BufferedReader reader = new BufferedReader(new FileReader(file));
-        String line = null;
-        StringBuilder stringBuilder = new StringBuilder();
-        String ls = System.getProperty("line.separator");
-        while ((line = reader.readLine()) != null) {
-            stringBuilder.append(line);
-            stringBuilder.append(ls);
+        try {
+            String line = null;
+            StringBuilder stringBuilder = new StringBuilder();
+            String ls = System.getProperty("line.separator");
+            while ((line = reader.readLine()) != null) {
+                stringBuilder.append(line);
+                stringBuilder.append(ls);
+            }
+            return stringBuilder.toString();
+        } finally {
+            reader.close();
         }
-        return stringBuilder.toString();
     }
 }
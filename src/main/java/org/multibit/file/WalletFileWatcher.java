@@ -0,0 +1,219 @@
+/**
+ * Copyright 2013 wallet.org
+ *
+ * Licensed under the MIT license (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://opensource.org/licenses/mit-license.php
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.multibit.file;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Timer;
+import java.util.TimerTask;
+
+import org.multibit.controller.fastcoin.FastcoinController;
+import org.multibit.model.fastcoin.WalletData;
+import org.multibit.model.fastcoin.WalletInfoData;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Watches the wallet and wallet info files of the open wallets for changes made by another process.
+ *
+ * The size and last modified time of each file is remembered in memory after every write
+ * made by this process. Writes are bracketed by beginOwnWrite and endOwnWrite so that they are never
+ * mistaken for a change by another process. The files are checked every second and when a change is
+ * seen the wallet is marked as changed by another process and the view systems are told.
+ *
+ * @author jim
+ */
+public enum WalletFileWatcher {
+    INSTANCE;
+
+    private static final Logger log = LoggerFactory.getLogger(WalletFileWatcher.class);
+
+    private static final int WATCH_DELAY_TIME = 1000; // ms
+    private static final int WATCH_REPEAT_TIME = 1000; // ms
+
+    private FastcoinController controller;
+
+    private Timer watchTimer;
+
+    /**
+     * The state of each watched wallet, keyed on wallet filename.
+     */
+    private final Map<String, WatchedWallet> watchedWallets = new HashMap<String, WatchedWallet>();
+
+    /**
+     * The last known state of the files of a wallet.
+     */
+    private static class WatchedWallet {
+        final WalletData perWalletModelData;
+        final File walletFile;
+        final File walletInfoFile;
+
+        long walletFileLength;
+        long walletFileLastModified;
+        long walletInfoFileLength;
+
+        /**
+         * The number of writes this process currently has in progress.
+         */
+        int ownWritesInProgress;
+
+        boolean changedByAnotherProcess;
+
+        WatchedWallet(WalletData perWalletModelData) {
+            this.perWalletModelData = perWalletModelData;
+            walletFile = new File(perWalletModelData.getWalletFilename());
+            walletInfoFile = new File(WalletInfoData.createWalletInfoFilename(perWalletModelData.getWalletFilename()));
+        }
+
+        void remember() {
+            walletFileLength = walletFile.length();
+            walletFileLastModified = walletFile.lastModified();
+            walletInfoFileLength = walletInfoFile.length();
+        }
+
+        boolean haveFilesChanged() {
+            return walletFileLength != walletFile.length() || walletFileLastModified != walletFile.lastModified()
+                    || walletInfoFileLength != walletInfoFile.length();
+        }
+    }
+
+    public void initialise(FastcoinController controller) {
+        synchronized (watchedWallets) {
+            this.controller = controller;
+            if (watchTimer == null) {
+                watchTimer = new Timer("WalletFileWatcher", true);
+                watchTimer.schedule(new TimerTask() {
+                    @Override
+                    public void run() {
+                        checkAllWallets();
+                    }
+                }, WATCH_DELAY_TIME, WATCH_REPEAT_TIME);
+            }
+        }
+    }
+
+    /**
+     * Start watching the files of a wallet, taking their current state as written by this process.
+     * Called for every wallet added to the model, including new wallets whose files have not been written yet.
+     */
+    public void startWatching(WalletData perWalletModelData) {
+        if (perWalletModelData == null || perWalletModelData.getWalletFilename() == null) {
+            return;
+        }
+        WatchedWallet watchedWallet = new WatchedWallet(perWalletModelData);
+        watchedWallet.remember();
+        synchronized (watchedWallets) {
+            watchedWallets.put(perWalletModelData.getWalletFilename(), watchedWallet);
+        }
+    }
+
+    public void stopWatching(String walletFilename) {
+        if (walletFilename == null) {
+            return;
+        }
+        synchronized (watchedWallets) {
+            watchedWallets.remove(walletFilename);
+        }
+    }
+
+    /**
+     * Note that this process is about to write the files of a wallet.
+     */
+    public void beginOwnWrite(String walletFilename) {
+        synchronized (watchedWallets) {
+            WatchedWallet watchedWallet = watchedWallets.get(walletFilename);
+            if (watchedWallet != null) {
+                watchedWallet.ownWritesInProgress++;
+            }
+        }
+    }
+
+    /**
+     * Note that this process has finished writing the files of a wallet.
+     * The files as they are now are taken as written by this process.
+     */
+    public void endOwnWrite(String walletFilename) {
+        synchronized (watchedWallets) {
+            WatchedWallet watchedWallet = watchedWallets.get(walletFilename);
+            if (watchedWallet != null) {
+                watchedWallet.ownWritesInProgress--;
+                watchedWallet.remember();
+
+                // Anything written by another process has now been overwritten.
+                watchedWallet.changedByAnotherProcess = false;
+            }
+        }
+    }
+
+    /**
+     * See whether the files of a wallet have been changed by another process since this process last wrote them.
+     *
+     * Wallets that are not being watched are reported as unchanged.
+     */
+    public boolean haveFilesChanged(String walletFilename) {
+        if (walletFilename == null) {
+            return false;
+        }
+        synchronized (watchedWallets) {
+            WatchedWallet watchedWallet = watchedWallets.get(walletFilename);
+            if (watchedWallet == null) {
+                return false;
+            }
+            return check(watchedWallet);
+        }
+    }
+
+    /**
+     * Check the files of all the watched wallets, firing an event the first time a wallet is seen to have changed.
+     */
+    void checkAllWallets() {
+        List<WalletData> newlyChanged = new ArrayList<WalletData>();
+        synchronized (watchedWallets) {
+            for (WatchedWallet watchedWallet : watchedWallets.values()) {
+                if (check(watchedWallet)) {
+                    newlyChanged.add(watchedWallet.perWalletModelData);
+                }
+            }
+        }
+
+        for (WalletData perWalletModelData : newlyChanged) {
+            boolean previousFilesHaveBeenChanged = perWalletModelData.isFilesHaveBeenChangedByAnotherProcess();
+            perWalletModelData.setFilesHaveBeenChangedByAnotherProcess(true);
+            if (!previousFilesHaveBeenChanged && controller != null) {
+                // Only fire once, when the change happens.
+                log.debug("Marking wallet " + perWalletModelData.getWalletFilename() + " as having been changed by another process.");
+                controller.fireFilesHaveBeenChangedByAnotherProcess(perWalletModelData);
+            }
+        }
+    }
+
+    /**
+     * Must be called holding the watchedWallets lock.
+     */
+    private boolean check(WatchedWallet watchedWallet) {
+        if (!watchedWallet.changedByAnotherProcess && watchedWallet.ownWritesInProgress == 0 && watchedWallet.haveFilesChanged()) {
+            watchedWallet.changedByAnotherProcess = true;
+            log.debug("The files of wallet " + watchedWallet.perWalletModelData.getWalletFilename()
+                    + " have changed. Size was " + watchedWallet.walletFileLength + ", now " + watchedWallet.walletFile.length()
+                    + ". Last modified was " + watchedWallet.walletFileLastModified + ", now " + watchedWallet.walletFile.lastModified()
+                    + ". Info file size was " + watchedWallet.walletInfoFileLength + ", now " + watchedWallet.walletInfoFile.length());
+        }
+        return watchedWallet.changedByAnotherProcess;
+    }
+}
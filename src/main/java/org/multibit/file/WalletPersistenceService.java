@@ -0,0 +1,249 @@
+/**
+ * Copyright 2013 wallet.org
+ *
+ * Licensed under the MIT license (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://opensource.org/licenses/mit-license.php
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.multibit.file;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import org.multibit.controller.fastcoin.FastcoinController;
+import org.multibit.message.Message;
+import org.multibit.message.MessageManager;
+import org.multibit.model.fastcoin.WalletData;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.wallet.store.WalletVersionException;
+
+/**
+ * Writes changed wallets to disk in the background.
+ *
+ * Each wallet has its own writer thread. When a wallet changes a write is
+ * scheduled after the save delay and any further changes before the write
+ * starts are picked up by it, so a burst of changes (e.g. during a replay)
+ * results in a single write. Whether a wallet needs writing is decided by the
+ * change generation on the WalletData.
+ *
+ * Until it is initialised the service does nothing and wallets are only
+ * written by explicit saves.
+ *
+ * @author jim
+ */
+public enum WalletPersistenceService {
+    INSTANCE;
+
+    private static final Logger log = LoggerFactory.getLogger(WalletPersistenceService.class);
+
+    public static final long DEFAULT_SAVE_DELAY = 5000; // milliseconds
+
+    private FastcoinController controller;
+
+    private volatile long saveDelay = DEFAULT_SAVE_DELAY;
+
+    private volatile boolean running = false;
+
+    /**
+     * The writer for each wallet, keyed on wallet filename.
+     */
+    private final Map<String, ScheduledExecutorService> writers = new HashMap<String, ScheduledExecutorService>();
+
+    /**
+     * The write that is scheduled (and not yet started) for each wallet, keyed on wallet filename.
+     */
+    private final Map<String, ScheduledFuture<?>> scheduledWrites = new HashMap<String, ScheduledFuture<?>>();
+
+    public void initialise(FastcoinController controller, long saveDelay) {
+        synchronized (writers) {
+            this.controller = controller;
+            this.saveDelay = saveDelay;
+            running = true;
+        }
+    }
+
+    public long getSaveDelay() {
+        return saveDelay;
+    }
+
+    /**
+     * Set the time between a wallet changing and it being written.
+     */
+    public void setSaveDelay(long saveDelay) {
+        this.saveDelay = saveDelay;
+    }
+
+    /**
+     * Schedule a write of a wallet that has changed, unless one is already scheduled.
+     */
+    public void walletChanged(WalletData perWalletModelData) {
+        if (!running || perWalletModelData == null || perWalletModelData.getWalletFilename() == null) {
+            return;
+        }
+
+        final String walletFilename = perWalletModelData.getWalletFilename();
+        synchronized (writers) {
+            if (!running || scheduledWrites.containsKey(walletFilename)) {
+                return;
+            }
+
+            ScheduledExecutorService writer = getWriter(walletFilename);
+            final WalletData finalPerWalletModelData = perWalletModelData;
+            ScheduledFuture<?> scheduledWrite = writer.schedule(new Runnable() {
+                @Override
+                public void run() {
+                    synchronized (writers) {
+                        scheduledWrites.remove(walletFilename);
+                    }
+                    write(finalPerWalletModelData);
+                }
+            }, saveDelay, TimeUnit.MILLISECONDS);
+            scheduledWrites.put(walletFilename, scheduledWrite);
+        }
+    }
+
+    /**
+     * Write any changed wallets now and wait for the writes to complete.
+     * Used on shutdown.
+     */
+    public void flush() {
+        List<WalletData> perWalletModelDataList = null;
+        if (controller != null && controller.getModel() != null) {
+            perWalletModelDataList = controller.getModel().getPerWalletModelDataList();
+        }
+        if (perWalletModelDataList == null) {
+            return;
+        }
+
+        List<ScheduledFuture<?>> writes = new ArrayList<ScheduledFuture<?>>();
+        synchronized (writers) {
+            for (WalletData loopPerWalletModelData : perWalletModelDataList) {
+                String walletFilename = loopPerWalletModelData.getWalletFilename();
+                if (walletFilename == null) {
+                    continue;
+                }
+                ScheduledFuture<?> scheduledWrite = scheduledWrites.remove(walletFilename);
+                if (scheduledWrite != null) {
+                    scheduledWrite.cancel(false);
+                }
+                if (scheduledWrite != null || loopPerWalletModelData.isDirty()) {
+                    // Writing on the wallet's writer thread means any write in progress finishes first.
+                    final WalletData finalPerWalletModelData = loopPerWalletModelData;
+                    writes.add(getWriter(walletFilename).schedule(new Runnable() {
+                        @Override
+                        public void run() {
+                            write(finalPerWalletModelData);
+                        }
+                    }, 0, TimeUnit.MILLISECONDS));
+                }
+            }
+        }
+
+        for (ScheduledFuture<?> write : writes) {
+            try {
+                write.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (ExecutionException e) {
+                log.error(e.getClass().getName() + " " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Flush all the wallets and stop the writer threads.
+     */
+    public void shutdown() {
+        flush();
+
+        synchronized (writers) {
+            running = false;
+            for (ScheduledFuture<?> scheduledWrite : scheduledWrites.values()) {
+                scheduledWrite.cancel(false);
+            }
+            scheduledWrites.clear();
+            for (ScheduledExecutorService writer : writers.values()) {
+                writer.shutdown();
+            }
+            writers.clear();
+        }
+    }
+
+    /**
+     * Stop the writer of a wallet that is being closed.
+     * Any write that is scheduled is abandoned so the wallet should be saved by the caller.
+     */
+    public void walletClosed(WalletData perWalletModelData) {
+        if (perWalletModelData == null || perWalletModelData.getWalletFilename() == null) {
+            return;
+        }
+        synchronized (writers) {
+            ScheduledFuture<?> scheduledWrite = scheduledWrites.remove(perWalletModelData.getWalletFilename());
+            if (scheduledWrite != null) {
+                scheduledWrite.cancel(false);
+            }
+            ScheduledExecutorService writer = writers.remove(perWalletModelData.getWalletFilename());
+            if (writer != null) {
+                writer.shutdown();
+            }
+        }
+    }
+
+    private ScheduledExecutorService getWriter(final String walletFilename) {
+        ScheduledExecutorService writer = writers.get(walletFilename);
+        if (writer == null) {
+            writer = new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable runnable) {
+                    Thread thread = new Thread(runnable, "WalletWriter-" + walletFilename);
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+            writers.put(walletFilename, writer);
+        }
+        return writer;
+    }
+
+    private void write(WalletData perWalletModelData) {
+        if (controller == null || controller.getFileHandler() == null || !perWalletModelData.isDirty()) {
+            return;
+        }
+        if (perWalletModelData.isFilesHaveBeenChangedByAnotherProcess()) {
+            // The HealthCheckTimerTask backs up wallets that have been changed by another process.
+            return;
+        }
+
+        try {
+            log.debug("Saving changed wallet '" + perWalletModelData.getWalletFilename() + "' at generation "
+                    + perWalletModelData.getChangeGeneration());
+            controller.getFileHandler().savePerWalletModelData(perWalletModelData, false);
+        } catch (WalletSaveException wse) {
+            log.error(wse.getClass().getCanonicalName() + " " + wse.getMessage());
+            MessageManager.INSTANCE.addMessage(new Message(wse.getClass().getCanonicalName() + " " + wse.getMessage()));
+        } catch (WalletVersionException wve) {
+            log.error(wve.getClass().getCanonicalName() + " " + wve.getMessage());
+            MessageManager.INSTANCE.addMessage(new Message(wve.getClass().getCanonicalName() + " " + wve.getMessage()));
+        } catch (RuntimeException e) {
+            log.error(e.getClass().getCanonicalName() + " " + e.getMessage());
+        }
+    }
+}
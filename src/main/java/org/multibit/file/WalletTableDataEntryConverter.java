@@ -4,7 +4,6 @@ import java.math.BigInteger;
 import java.text.DateFormat;
 import java.text.SimpleDateFormat;
 
-import org.joda.money.Money;
 import org.multibit.controller.fastcoin.FastcoinController;
 import org.multibit.exchange.CurrencyConverter;
 import org.multibit.model.fastcoin.WalletTableData;
@@ -55,16 +54,14 @@ public class WalletTableDataEntryConverter implements CSVEntryConverter<WalletTa
         // Amount in fiat
         String amountFiat = "";
         if (CurrencyConverter.INSTANCE.isShowingFiat()) {
+            String fiatAmount = null;
             if (walletTableData.getDebit() != null && walletTableData.getDebit().compareTo(BigInteger.ZERO) > 0) {
-                Money debitAmountFiat = CurrencyConverter.INSTANCE.convertFromFSTToFiat(walletTableData.getDebit());
-                if (debitAmountFiat != null) {
-                    amountFiat = CurrencyConverter.INSTANCE.getFiatAsLocalisedString(debitAmountFiat.negated(), false, false);
-                }
-            } else {
-                Money creditAmountFiat = CurrencyConverter.INSTANCE.convertFromFSTToFiat(walletTableData.getCredit());
-                if (creditAmountFiat != null) {
-                    amountFiat = CurrencyConverter.INSTANCE.getFiatAsLocalisedString(creditAmountFiat, false, false);
-                }
+                fiatAmount = CurrencyConverter.INSTANCE.convertFromFSTToLocalisedFiatString(-walletTableData.getDebit().longValue(), false, false);
+            } else if (walletTableData.getCredit() != null) {
+                fiatAmount = CurrencyConverter.INSTANCE.convertFromFSTToLocalisedFiatString(walletTableData.getCredit().longValue(), false, false);
+            }
+            if (fiatAmount != null) {
+                amountFiat = fiatAmount;
             }
         }
         columns[3] = amountFiat;
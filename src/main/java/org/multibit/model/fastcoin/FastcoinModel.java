@@ -20,6 +20,7 @@ import com.google.fastcoin.core.Wallet.BalanceType;
 import com.google.fastcoin.store.BlockStoreException;
 import org.multibit.controller.Controller;
 import org.multibit.controller.fastcoin.FastcoinController;
+import org.multibit.file.WalletFileWatcher;
 import org.multibit.model.AbstractModel;
 import org.multibit.model.ModelEnum;
 import org.multibit.model.core.CoreModel;
@@ -145,6 +146,9 @@ public class FastcoinModel extends AbstractModel<CoreModel> {
     // MultiBitWallet backup.
     public static final String WALLET_BACKUP_FILE = "walletBackupFile";
 
+    // Delay in milliseconds between a wallet changing and it being written to disk.
+    public static final String WALLET_SAVE_DELAY = "walletSaveDelay";
+
     // AlertManager and versions
     public static final String ALERT_MANAGER_NEW_VERSION_VALUE = "alertManagerNewVersionValue";
     public static final String ALERT_MANAGER_NEW_VERSION_SEEN_COUNT = "alertManagerNewVersionSeenCount";
@@ -159,6 +163,11 @@ public class FastcoinModel extends AbstractModel<CoreModel> {
      * The current active wallet.
      */
     private WalletData activeWalletModelData;
+
+    /**
+     * Index of the keys and outputs of all the wallets, used to route transactions to the wallets they touch.
+     */
+    private final TransactionRoutingIndex transactionRoutingIndex = new TransactionRoutingIndex();
     
 
 
@@ -305,6 +314,8 @@ public class FastcoinModel extends AbstractModel<CoreModel> {
             for (WalletData loopPerWalletModelData : perWalletModelDataList) {
                 if (perWalletModelDataToRemove.getWalletFilename().equals(loopPerWalletModelData.getWalletFilename())) {
                     perWalletModelDataList.remove(loopPerWalletModelData);
+                    WalletFileWatcher.INSTANCE.stopWatching(loopPerWalletModelData.getWalletFilename());
+                    transactionRoutingIndex.removeWallet(loopPerWalletModelData);
                     break;
                 }
             }
@@ -356,9 +367,6 @@ public class FastcoinModel extends AbstractModel<CoreModel> {
         newPerWalletModelData.setWallet(wallet);
         newPerWalletModelData.setWalletFilename(walletFilename);
 
-        // Table row data used in displaying transactions - initially empty
-        newPerWalletModelData.setWalletTableDataList(new ArrayList<WalletTableData>());
-
         // If it is the initial empty activeWalletModelData remove it.
         if (thereIsNoActiveWallet()) {
             perWalletModelDataList.remove(activeWalletModelData);
@@ -372,12 +380,21 @@ public class FastcoinModel extends AbstractModel<CoreModel> {
             wallet.addEventListener(fastcoinController);
         }
 
-        createWalletTableData(fastcoinController, walletFilename);
+        transactionRoutingIndex.addWallet(newPerWalletModelData);
+
+        // Watch the wallet files for changes by another process.
+        WalletFileWatcher.INSTANCE.startWatching(newPerWalletModelData);
+
+        // The transaction rows are built when they are first displayed.
         createAddressBookReceivingAddresses(walletFilename);
 
         return newPerWalletModelData;
     }
 
+    public TransactionRoutingIndex getTransactionRoutingIndex() {
+        return transactionRoutingIndex;
+    }
+
     /**
      * Get the active wallet filename.
      *
@@ -430,47 +447,117 @@ public class FastcoinModel extends AbstractModel<CoreModel> {
         Set<Transaction> transactions = perWalletModelData.getWallet().getTransactions(false);
 
         if (transactions != null) {
+            walletData.ensureCapacity(transactions.size());
             for (Transaction loopTransaction : transactions) {
-                WalletTableData walletDataRow = new WalletTableData(loopTransaction);
-                walletData.add(walletDataRow);
-                walletDataRow.setCredit(loopTransaction.getValueSentToMe(perWalletModelData.getWallet()));
-                try {
-                    walletDataRow.setDebit(loopTransaction.getValueSentFromMe(perWalletModelData.getWallet()));
-                } catch (ScriptException e) {
-                    log.error(e.getMessage(), e);
-
-                }
-                List<TransactionInput> transactionInputs = loopTransaction.getInputs();
-                List<TransactionOutput> transactionOutputs = loopTransaction.getOutputs();
-                if (transactionInputs != null) {
-                    TransactionInput firstInput = transactionInputs.get(0);
-                    if (firstInput != null) {
-                        walletDataRow.setDescription(createDescription(fastcoinController, perWalletModelData.getWallet(), transactionInputs,
-                                transactionOutputs, walletDataRow.getCredit(), walletDataRow.getDebit()));
-                    }
-                }
-                walletDataRow.setDate(createDate(fastcoinController, loopTransaction));
-                walletDataRow.setHeight(workOutHeight(loopTransaction));
+                walletData.add(createWalletTableDataRow(fastcoinController, perWalletModelData, loopTransaction));
             }
         }
 
-        // Run through all the walletdata to see if both credit and debit are
-        // set (this means change was received).
-        for (WalletTableData walletDataRow : walletData) {
-            if (walletDataRow.getCredit() != null && (walletDataRow.getCredit().compareTo(BigInteger.ZERO) > 0)
-                    && (walletDataRow.getDebit() != null) && walletDataRow.getDebit().compareTo(BigInteger.ZERO) > 0) {
-                BigInteger net = walletDataRow.getCredit().subtract(walletDataRow.getDebit());
-                if (net.compareTo(BigInteger.ZERO) >= 0) {
-                    walletDataRow.setCredit(net);
-                    walletDataRow.setDebit(BigInteger.ZERO);
-                } else {
-                    walletDataRow.setCredit(BigInteger.ZERO);
-                    walletDataRow.setDebit(net.negate());
-                }
+        return walletData;
+    }
+
+    /**
+     * Convert a single transaction into a walletdata record.
+     */
+    private WalletTableData createWalletTableDataRow(final FastcoinController fastcoinController, WalletData perWalletModelData, Transaction transaction) {
+        WalletTableData walletDataRow = new WalletTableData(transaction);
+        walletDataRow.setCredit(transaction.getValueSentToMe(perWalletModelData.getWallet()));
+        try {
+            walletDataRow.setDebit(transaction.getValueSentFromMe(perWalletModelData.getWallet()));
+        } catch (ScriptException e) {
+            log.error(e.getMessage(), e);
+
+        }
+        List<TransactionInput> transactionInputs = transaction.getInputs();
+        List<TransactionOutput> transactionOutputs = transaction.getOutputs();
+        if (transactionInputs != null) {
+            TransactionInput firstInput = transactionInputs.get(0);
+            if (firstInput != null) {
+                walletDataRow.setDescription(createDescription(fastcoinController, perWalletModelData.getWallet(), transactionInputs,
+                        transactionOutputs, walletDataRow.getCredit(), walletDataRow.getDebit()));
+            }
+        }
+        walletDataRow.setDate(createDate(fastcoinController, transaction));
+        walletDataRow.setHeight(workOutHeight(transaction));
+
+        // See if both credit and debit are set (this means change was received).
+        if (walletDataRow.getCredit() != null && (walletDataRow.getCredit().compareTo(BigInteger.ZERO) > 0)
+                && (walletDataRow.getDebit() != null) && walletDataRow.getDebit().compareTo(BigInteger.ZERO) > 0) {
+            BigInteger net = walletDataRow.getCredit().subtract(walletDataRow.getDebit());
+            if (net.compareTo(BigInteger.ZERO) >= 0) {
+                walletDataRow.setCredit(net);
+                walletDataRow.setDebit(BigInteger.ZERO);
+            } else {
+                walletDataRow.setCredit(BigInteger.ZERO);
+                walletDataRow.setDebit(net.negate());
             }
         }
 
-        return walletData;
+        return walletDataRow;
+    }
+
+    /**
+     * Rebuild all the transaction rows held for a wallet.
+     */
+    public void rebuildWalletTableData(final FastcoinController fastcoinController, WalletData perWalletModelData) {
+        if (perWalletModelData == null) {
+            return;
+        }
+        perWalletModelData.getWalletTableDataStore().replaceAll(createWalletTableData(fastcoinController, perWalletModelData));
+    }
+
+    /**
+     * Add or recalculate the transaction row for a transaction that has changed the balance of a wallet.
+     * Nothing is done if the rows of the wallet have not been built yet - the transaction will be picked up then.
+     */
+    public void updateWalletTableData(final FastcoinController fastcoinController, Wallet wallet, Transaction transaction) {
+        WalletData perWalletModelData = getPerWalletModelDataByWallet(wallet);
+        if (perWalletModelData == null || transaction == null || !perWalletModelData.getWalletTableDataStore().isInitialised()) {
+            return;
+        }
+        if (removeIfNotShown(perWalletModelData, wallet, transaction)) {
+            return;
+        }
+        perWalletModelData.getWalletTableDataStore().put(createWalletTableDataRow(fastcoinController, perWalletModelData, transaction));
+    }
+
+    /**
+     * Remove the transaction row for a transaction that is dead or no longer in the wallet,
+     * as a rebuild of the rows from the wallet's live transactions would.
+     *
+     * @return true if the transaction should not have a row
+     */
+    private boolean removeIfNotShown(WalletData perWalletModelData, Wallet wallet, Transaction transaction) {
+        boolean isDead = transaction.getConfidence() != null
+                && transaction.getConfidence().getConfidenceType() == TransactionConfidence.ConfidenceType.DEAD;
+        if (isDead || wallet.getTransaction(transaction.getHash()) == null) {
+            perWalletModelData.getWalletTableDataStore().remove(transaction.getHash());
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Mark the transaction row for a transaction as needing a redraw because its confidence has changed,
+     * removing it if the transaction is now dead.
+     * Credit, debit and description do not depend on the confidence so are only calculated if the row is new
+     * or does not have a date yet.
+     */
+    public void updateWalletTableDataConfidence(final FastcoinController fastcoinController, Wallet wallet, Transaction transaction) {
+        WalletData perWalletModelData = getPerWalletModelDataByWallet(wallet);
+        if (perWalletModelData == null || transaction == null || !perWalletModelData.getWalletTableDataStore().isInitialised()) {
+            return;
+        }
+        if (removeIfNotShown(perWalletModelData, wallet, transaction)) {
+            return;
+        }
+        WalletTableDataStore store = perWalletModelData.getWalletTableDataStore();
+        WalletTableData existingRow = store.getByHash(transaction.getHash());
+        if (existingRow == null || existingRow.getDate() == null) {
+            store.put(createWalletTableDataRow(fastcoinController, perWalletModelData, transaction));
+        } else {
+            store.rowChanged(transaction.getHash());
+        }
     }
 
     /**
@@ -498,10 +585,10 @@ public class FastcoinModel extends AbstractModel<CoreModel> {
                 if (networkParameters != null) {
                     if (perWalletModelData.getWalletInfo() != null) {
                         // Keep a copy of the existing receiving addresses - labels will be recycled.
-                        List<WalletAddressBookData> currentReceivingAddresses = perWalletModelData.getWalletInfo().getReceivingAddresses();
+                        WalletAddressBook currentReceivingAddresses = perWalletModelData.getWalletInfo().getReceivingAddresses();
 
                         // Clear the existing receiving addresses.
-                        ArrayList<WalletAddressBookData> newReceivingAddresses = new ArrayList<WalletAddressBookData>();
+                        WalletAddressBook newReceivingAddresses = new WalletAddressBook();
                         perWalletModelData.getWalletInfo().setReceivingAddresses(newReceivingAddresses);
 
                         // Add the new receiving addresses from the keys, checking if there is an old label.
@@ -510,12 +597,10 @@ public class FastcoinModel extends AbstractModel<CoreModel> {
                             String addressString = address.toString();
                             WalletAddressBookData addressBookData = new WalletAddressBookData(null, addressString);
 
-                            for (WalletAddressBookData loopAddressBookData : currentReceivingAddresses) {
-                                if (loopAddressBookData.getAddress().equals(addressString)) {
-                                    // Recycle label.
-                                    addressBookData.setLabel(loopAddressBookData.getLabel());
-                                    break;
-                                }
+                            WalletAddressBookData currentAddressBookData = currentReceivingAddresses.lookup(addressString);
+                            if (currentAddressBookData != null) {
+                                // Recycle label.
+                                addressBookData.setLabel(currentAddressBookData.getLabel());
                             }
                             perWalletModelData.getWalletInfo().addReceivingAddress(addressBookData, false);
                         }
@@ -674,6 +759,21 @@ public class FastcoinModel extends AbstractModel<CoreModel> {
         return perWalletModelDataList;
     }
 
+    public WalletData getPerWalletModelDataByWallet(Wallet wallet) {
+        if (wallet == null) {
+            return null;
+        }
+
+        if (perWalletModelDataList != null) {
+            for (WalletData loopPerWalletModelData : perWalletModelDataList) {
+                if (loopPerWalletModelData.getWallet() == wallet) {
+                    return loopPerWalletModelData;
+                }
+            }
+        }
+        return null;
+    }
+
     public WalletData getPerWalletModelDataByWalletFilename(String walletFilename) {
         if (walletFilename == null) {
             return null;
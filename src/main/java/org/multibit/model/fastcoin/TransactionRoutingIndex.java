@@ -0,0 +1,188 @@
+/**
+ * Copyright 2013 wallet.org
+ *
+ * Licensed under the MIT license (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://opensource.org/licenses/mit-license.php
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.multibit.model.fastcoin;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.google.fastcoin.core.ECKey;
+import com.google.fastcoin.core.ScriptException;
+import com.google.fastcoin.core.Sha256Hash;
+import com.google.fastcoin.core.Transaction;
+import com.google.fastcoin.core.TransactionInput;
+import com.google.fastcoin.core.TransactionOutput;
+import com.google.fastcoin.core.Utils;
+import com.google.fastcoin.core.Wallet;
+import com.google.fastcoin.script.Script;
+
+/**
+ * Index from public key hash and outpoint to the wallets they belong to, used to route transactions
+ * received from peers to only the wallets they touch rather than checking them against every wallet.
+ *
+ * An output touches a wallet if it pays one of the wallet's keys. An input touches a wallet if it
+ * spends an unspent output of the wallet (found by outpoint) or is signed by one of its keys.
+ * Outputs are removed from the index once a transaction spending them is indexed, so the index
+ * only grows with the wallets' unspent outputs.
+ *
+ * The routing is a prefilter - the wallets found still check the transaction themselves.
+ *
+ * @author jim
+ *
+ */
+public class TransactionRoutingIndex {
+
+    /**
+     * The wallets with a key, keyed on public key hash.
+     */
+    private final Map<ByteBuffer, List<WalletData>> pubKeyHashes = new HashMap<ByteBuffer, List<WalletData>>();
+
+    /**
+     * The wallet each unspent output belongs to, keyed on outpoint.
+     */
+    private final Map<String, WalletData> outPoints = new HashMap<String, WalletData>();
+
+    /**
+     * Index the keys and unspent outputs of a wallet.
+     */
+    public synchronized void addWallet(WalletData perWalletModelData) {
+        if (perWalletModelData == null || perWalletModelData.getWallet() == null) {
+            return;
+        }
+        Wallet wallet = perWalletModelData.getWallet();
+        addKeys(perWalletModelData, wallet.getKeychain());
+        for (Transaction transaction : wallet.getTransactions(false)) {
+            addTransaction(perWalletModelData, transaction);
+        }
+    }
+
+    public synchronized void removeWallet(WalletData perWalletModelData) {
+        if (perWalletModelData == null) {
+            return;
+        }
+        Iterator<List<WalletData>> pubKeyHashIterator = pubKeyHashes.values().iterator();
+        while (pubKeyHashIterator.hasNext()) {
+            List<WalletData> owners = pubKeyHashIterator.next();
+            owners.remove(perWalletModelData);
+            if (owners.isEmpty()) {
+                pubKeyHashIterator.remove();
+            }
+        }
+        outPoints.values().removeAll(Collections.singleton(perWalletModelData));
+    }
+
+    public synchronized void addKeys(WalletData perWalletModelData, List<ECKey> keys) {
+        if (perWalletModelData == null || keys == null) {
+            return;
+        }
+        for (ECKey key : keys) {
+            if (key == null) {
+                continue;
+            }
+            ByteBuffer pubKeyHash = ByteBuffer.wrap(key.getPubKeyHash());
+            List<WalletData> owners = pubKeyHashes.get(pubKeyHash);
+            if (owners == null) {
+                owners = new ArrayList<WalletData>(1);
+                pubKeyHashes.put(pubKeyHash, owners);
+            }
+            if (!owners.contains(perWalletModelData)) {
+                owners.add(perWalletModelData);
+            }
+        }
+    }
+
+    /**
+     * Index the unspent outputs of a transaction that belong to a wallet, so that transactions spending them are routed to it.
+     * The outputs the transaction spends are removed from the index.
+     */
+    public synchronized void addTransaction(WalletData perWalletModelData, Transaction transaction) {
+        if (perWalletModelData == null || perWalletModelData.getWallet() == null || transaction == null) {
+            return;
+        }
+        for (TransactionInput input : transaction.getInputs()) {
+            if (!input.isCoinBase()) {
+                outPoints.remove(createOutPointKey(input.getOutpoint().getHash(), input.getOutpoint().getIndex()));
+            }
+        }
+
+        Wallet wallet = perWalletModelData.getWallet();
+        List<TransactionOutput> outputs = transaction.getOutputs();
+        for (int i = 0; i < outputs.size(); i++) {
+            if (outputs.get(i).isMine(wallet) && outputs.get(i).isAvailableForSpending()) {
+                outPoints.put(createOutPointKey(transaction.getHash(), i), perWalletModelData);
+            }
+        }
+    }
+
+    /**
+     * @return The wallets a transaction touches
+     */
+    public synchronized Set<WalletData> findWalletsTouchedBy(Transaction transaction) {
+        Set<WalletData> touched = new HashSet<WalletData>();
+        if (transaction == null) {
+            return touched;
+        }
+
+        for (TransactionOutput output : transaction.getOutputs()) {
+            try {
+                Script scriptPubKey = output.getScriptPubKey();
+                if (scriptPubKey.isSentToAddress()) {
+                    addOwners(touched, scriptPubKey.getPubKeyHash());
+                } else if (scriptPubKey.isSentToRawPubKey()) {
+                    addOwners(touched, Utils.sha256hash160(scriptPubKey.getPubKey()));
+                }
+            } catch (ScriptException e) {
+                // Not a standard output - it cannot belong to a wallet.
+            }
+        }
+
+        for (TransactionInput input : transaction.getInputs()) {
+            if (input.isCoinBase()) {
+                continue;
+            }
+            WalletData owner = outPoints.get(createOutPointKey(input.getOutpoint().getHash(), input.getOutpoint().getIndex()));
+            if (owner != null) {
+                touched.add(owner);
+            }
+            try {
+                addOwners(touched, Utils.sha256hash160(input.getScriptSig().getPubKey()));
+            } catch (ScriptException e) {
+                // Not signed with a public key (e.g. spending a pay to public key output) - found by outpoint only.
+            }
+        }
+        return touched;
+    }
+
+    private void addOwners(Set<WalletData> touched, byte[] pubKeyHash) {
+        if (pubKeyHash == null) {
+            return;
+        }
+        List<WalletData> owners = pubKeyHashes.get(ByteBuffer.wrap(pubKeyHash));
+        if (owners != null) {
+            touched.addAll(owners);
+        }
+    }
+
+    private static String createOutPointKey(Sha256Hash transactionHash, long index) {
+        return transactionHash.toString() + ":" + index;
+    }
+}
@@ -0,0 +1,194 @@
+/**
+ * Copyright 2013 wallet.org
+ *
+ * Licensed under the MIT license (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://opensource.org/licenses/mit-license.php
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.multibit.model.fastcoin;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.RandomAccess;
+
+/**
+ * An insertion ordered list of WalletAddressBookData with a hash index on the address.
+ *
+ * The list order is the order the addresses are displayed in and written to the wallet info file.
+ * The index gives constant time lookup of an entry (and hence its label) by address.
+ *
+ * All structural changes (including those made through iterators and sublists) go through
+ * add(int, E), set(int, E) and remove(int) so the index is always consistent with the list.
+ * An address is expected not to change once it is in the address book (only the label is mutable).
+ *
+ * @author jim
+ *
+ */
+public class WalletAddressBook extends AbstractList<WalletAddressBookData> implements RandomAccess {
+
+    private final ArrayList<WalletAddressBookData> entries;
+
+    /**
+     * Index from address to the first entry in the list with that address.
+     */
+    private final HashMap<String, WalletAddressBookData> index;
+
+    /**
+     * The number of entries after the first for each address that is in the list more than once.
+     * Addresses in the list once are not in this map, so removing them does not need a scan of the list.
+     */
+    private final HashMap<String, Integer> duplicateCounts;
+
+    public WalletAddressBook() {
+        entries = new ArrayList<WalletAddressBookData>();
+        index = new HashMap<String, WalletAddressBookData>();
+        duplicateCounts = new HashMap<String, Integer>();
+    }
+
+    public WalletAddressBook(Collection<WalletAddressBookData> initialEntries) {
+        this();
+        if (initialEntries != null) {
+            entries.ensureCapacity(initialEntries.size());
+            for (WalletAddressBookData addressBookData : initialEntries) {
+                add(addressBookData);
+            }
+        }
+    }
+
+    @Override
+    public WalletAddressBookData get(int position) {
+        return entries.get(position);
+    }
+
+    @Override
+    public int size() {
+        return entries.size();
+    }
+
+    @Override
+    public void add(int position, WalletAddressBookData addressBookData) {
+        entries.add(position, addressBookData);
+        if (addressBookData != null) {
+            WalletAddressBookData existing = index.get(addressBookData.getAddress());
+            if (existing != null) {
+                addDuplicate(addressBookData.getAddress());
+            }
+            if (existing == null || position <= entries.indexOf(existing)) {
+                index.put(addressBookData.getAddress(), addressBookData);
+            }
+        }
+        modCount++;
+    }
+
+    @Override
+    public boolean add(WalletAddressBookData addressBookData) {
+        // Appending never changes which entry is first for an address.
+        entries.add(addressBookData);
+        if (addressBookData != null) {
+            if (index.containsKey(addressBookData.getAddress())) {
+                addDuplicate(addressBookData.getAddress());
+            } else {
+                index.put(addressBookData.getAddress(), addressBookData);
+            }
+        }
+        modCount++;
+        return true;
+    }
+
+    @Override
+    public WalletAddressBookData set(int position, WalletAddressBookData addressBookData) {
+        WalletAddressBookData previous = entries.set(position, addressBookData);
+        unindex(previous);
+        if (addressBookData != null) {
+            WalletAddressBookData existing = index.get(addressBookData.getAddress());
+            if (existing != null) {
+                addDuplicate(addressBookData.getAddress());
+            }
+            if (existing == null || position < entries.indexOf(existing)) {
+                index.put(addressBookData.getAddress(), addressBookData);
+            }
+        }
+        return previous;
+    }
+
+    @Override
+    public WalletAddressBookData remove(int position) {
+        WalletAddressBookData removed = entries.remove(position);
+        unindex(removed);
+        modCount++;
+        return removed;
+    }
+
+    @Override
+    public void clear() {
+        entries.clear();
+        index.clear();
+        duplicateCounts.clear();
+        modCount++;
+    }
+
+    /**
+     * Look up the entry with the given address.
+     *
+     * @param address
+     *            The address to look up
+     * @return The first entry with the address, or null if there is none
+     */
+    public WalletAddressBookData lookup(String address) {
+        return index.get(address);
+    }
+
+    public boolean containsAddress(String address) {
+        return index.containsKey(address);
+    }
+
+    private void addDuplicate(String address) {
+        Integer duplicateCount = duplicateCounts.get(address);
+        duplicateCounts.put(address, duplicateCount == null ? 1 : duplicateCount + 1);
+    }
+
+    /**
+     * Remove an entry from the index, promoting any later entry with the same address.
+     * The list is only scanned when the removed entry was indexed and its address is in the list more than once.
+     */
+    private void unindex(WalletAddressBookData removed) {
+        if (removed == null) {
+            return;
+        }
+        String address = removed.getAddress();
+        Integer duplicateCount = duplicateCounts.get(address);
+        if (duplicateCount == null) {
+            // The only entry with this address.
+            if (index.get(address) == removed) {
+                index.remove(address);
+            }
+            return;
+        }
+
+        if (duplicateCount == 1) {
+            duplicateCounts.remove(address);
+        } else {
+            duplicateCounts.put(address, duplicateCount - 1);
+        }
+        if (index.get(address) != removed) {
+            return;
+        }
+        index.remove(address);
+        for (WalletAddressBookData addressBookData : entries) {
+            if (addressBookData != null && (address == null ? addressBookData.getAddress() == null : address.equals(addressBookData.getAddress()))) {
+                index.put(address, addressBookData);
+                break;
+            }
+        }
+    }
+}
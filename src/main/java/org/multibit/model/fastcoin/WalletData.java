@@ -15,11 +15,17 @@
  */
 package org.multibit.model.fastcoin;
 
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 import java.util.UUID;
 
+import org.multibit.file.WalletPersistenceService;
 import org.multibit.viewsystem.swing.view.walletlist.SingleWalletPanelDownloadListener;
 
+import com.google.fastcoin.core.ECKey;
+import com.google.fastcoin.core.NetworkParameters;
 import com.google.fastcoin.core.Wallet;
 
 /**
@@ -33,7 +39,11 @@ public class WalletData {
     private Wallet wallet;
     private String walletFilename;
     private WalletInfoData walletInfo;
-    private List<WalletTableData> walletTableDataList;
+
+    /**
+     * The rows used in displaying the transactions, keyed by transaction hash.
+     */
+    private final WalletTableDataStore walletTableDataStore;
     
     /**
      * The wallet filename used for when a backup is being written to.
@@ -53,9 +63,15 @@ public class WalletData {
     private transient boolean filesHaveBeenChangedByAnotherProcess;
 
     /**
-     * The WalletData has changed since last been written to disk.
+     * Incremented every time the WalletData changes.
+     */
+    private transient long changeGeneration;
+
+    /**
+     * The changeGeneration that was last written to disk.
+     * The WalletData is dirty if this is behind the changeGeneration.
      */
-    private transient boolean isDirty;
+    private transient long savedGeneration;
     
     /**
      * This wallet is currently busy with an operation that affects the private keys.
@@ -86,9 +102,23 @@ public class WalletData {
      */
     private transient SingleWalletPanelDownloadListener singleWalletDownloadListener;
 
+    /**
+     * The Base58 addresses of the keys in the wallet.
+     * Built lazily and discarded when keys are added to the wallet.
+     */
+    private transient Set<String> keyAddresses;
+
+    /**
+     * The size of the keychain when keyAddresses was built.
+     * Keys added events are delivered asynchronously so this is used to spot a stale set.
+     */
+    private transient int keyAddressesKeychainSize;
+
     
     public WalletData() {
-        isDirty = false;
+        changeGeneration = 0;
+        savedGeneration = 0;
+        walletTableDataStore = new WalletTableDataStore();
     }
 
     public Wallet getWallet() {
@@ -97,6 +127,7 @@ public class WalletData {
 
     public void setWallet(Wallet wallet) {
         this.wallet = wallet;
+        invalidateKeyAddresses();
     }
 
     public String getWalletFilename() {
@@ -113,6 +144,9 @@ public class WalletData {
 
     public void setWalletInfo(WalletInfoData walletInfo) {
         this.walletInfo = walletInfo;
+        if (walletInfo != null) {
+            walletInfo.setPerWalletModelData(this);
+        }
         if (walletInfo != null && wallet != null) {
             if (wallet.getVersion() == null) {
                 wallet.setVersion(walletInfo.getWalletVersion());
@@ -121,11 +155,15 @@ public class WalletData {
     }
 
     public List<WalletTableData> getWalletTableDataList() {
-        return walletTableDataList;
+        return walletTableDataStore.getRows();
     }
 
     public void setWalletTableDataList(List<WalletTableData> walletTableDataList) {
-        this.walletTableDataList = walletTableDataList;
+        walletTableDataStore.replaceAll(walletTableDataList);
+    }
+
+    public WalletTableDataStore getWalletTableDataStore() {
+        return walletTableDataStore;
     }
 
     public String getWalletDescription() {
@@ -161,12 +199,41 @@ public class WalletData {
         this.filesHaveBeenChangedByAnotherProcess = filesHaveBeenChangedByAnotherProcess;
     }
 
-    public boolean isDirty() {
-        return isDirty;
+    /**
+     * @return true if the WalletData has changed since it was last written to disk
+     */
+    public synchronized boolean isDirty() {
+        return savedGeneration != changeGeneration;
     }
 
+    /**
+     * Mark the WalletData as changed (and schedule a write of it), or as written to disk.
+     * Writers should prefer getChangeGeneration() and markSaved() so that changes made during a write are not lost.
+     */
     public void setDirty(boolean isDirty) {
-        this.isDirty = isDirty;
+        if (isDirty) {
+            synchronized (this) {
+                changeGeneration++;
+            }
+            WalletPersistenceService.INSTANCE.walletChanged(this);
+        } else {
+            synchronized (this) {
+                savedGeneration = changeGeneration;
+            }
+        }
+    }
+
+    public synchronized long getChangeGeneration() {
+        return changeGeneration;
+    }
+
+    /**
+     * Record that the WalletData as it was at the given changeGeneration has been written to disk.
+     */
+    public synchronized void markSaved(long generation) {
+        if (generation > savedGeneration) {
+            savedGeneration = generation;
+        }
     }
 
     public String getWalletBackupFilename() {
@@ -224,4 +291,43 @@ public class WalletData {
     public void setReplayTaskUUID(UUID replayTaskUUID) {
         this.replayTaskUUID = replayTaskUUID;
     }
+
+    /**
+     * Get the Base58 addresses of all the keys in the wallet.
+     * 
+     * @return An unmodifiable set of the key addresses (empty if there is no wallet)
+     */
+    public synchronized Set<String> getKeyAddresses() {
+        if (wallet == null) {
+            return Collections.emptySet();
+        }
+        if (keyAddresses == null || keyAddressesKeychainSize != wallet.getKeychainSize()) {
+            keyAddressesKeychainSize = wallet.getKeychainSize();
+            keyAddresses = Collections.unmodifiableSet(createKeyAddresses(wallet));
+        }
+        return keyAddresses;
+    }
+
+    /**
+     * Discard the key addresses so that they are rebuilt on next use.
+     */
+    public synchronized void invalidateKeyAddresses() {
+        keyAddresses = null;
+    }
+
+    /**
+     * Work out the Base58 addresses of all the keys in a wallet.
+     */
+    public static Set<String> createKeyAddresses(Wallet wallet) {
+        Set<String> addresses = new HashSet<String>();
+        if (wallet != null) {
+            NetworkParameters networkParameters = wallet.getNetworkParameters();
+            for (ECKey key : wallet.getKeychain()) {
+                if (key != null) {
+                    addresses.add(key.toAddress(networkParameters).toString());
+                }
+            }
+        }
+        return addresses;
+    }
 }
@@ -16,8 +16,6 @@
 package org.multibit.model.fastcoin;
 
 import com.google.fastcoin.core.Address;
-import com.google.fastcoin.core.ECKey;
-import org.multibit.MultiBitWallet;
 import org.multibit.file.WalletLoadException;
 import org.multibit.file.WalletSaveException;
 import org.wallet.store.FastcoinWalletVersion;
@@ -47,8 +45,8 @@ public class WalletInfoData {
      * The actual receiving addresses exposed for this address book (only keys
      * that occur in this wallet).
      */
-    private ArrayList<WalletAddressBookData> receivingAddresses;
-    private ArrayList<WalletAddressBookData> sendingAddresses;
+    private WalletAddressBook receivingAddresses;
+    private WalletAddressBook sendingAddresses;
 
     private static final String INFO_FILE_EXTENSION = "info";
     private static final String RECEIVE_ADDRESS_MARKER = "receive";
@@ -69,6 +67,16 @@ public class WalletInfoData {
     private FastcoinWalletVersion walletVersion;
     private com.google.fastcoin.core.Wallet wallet;
 
+    /**
+     * The WalletData this wallet info belongs to (null until it is set on one).
+     */
+    private WalletData perWalletModelData;
+
+    /**
+     * The addresses of the wallet's keys while loadFromFile is running, so they are worked out once per load.
+     */
+    private Set<String> keyAddressesForLoad;
+
     private Properties walletPreferences;
 
     /**
@@ -86,8 +94,8 @@ public class WalletInfoData {
         this.walletVersion = walletVersion;
         this.wallet = wallet;
 
-        receivingAddresses = new ArrayList<WalletAddressBookData>();
-        sendingAddresses = new ArrayList<WalletAddressBookData>();
+        receivingAddresses = new WalletAddressBook();
+        sendingAddresses = new WalletAddressBook();
 
         walletPreferences = new Properties();
 
@@ -132,15 +140,15 @@ public class WalletInfoData {
         walletPreferences.remove(key);
     }
 
-    public ArrayList<WalletAddressBookData> getReceivingAddresses() {
+    public WalletAddressBook getReceivingAddresses() {
         return receivingAddresses;
     }
 
-    public ArrayList<WalletAddressBookData> getSendingAddresses() {
+    public WalletAddressBook getSendingAddresses() {
         return sendingAddresses;
     }
 
-    public void setReceivingAddresses(ArrayList<WalletAddressBookData> receivingAddresses) {
+    public void setReceivingAddresses(WalletAddressBook receivingAddresses) {
         this.receivingAddresses = receivingAddresses;
     }
 
@@ -160,25 +168,17 @@ public class WalletInfoData {
 
         if (checkAlreadyPresent) {
             // Check the address is not already in the set.
-            for (WalletAddressBookData addressBookData : receivingAddresses) {
-                if (addressBookData.getAddress().equals(receivingAddress.getAddress())) {
-                    // Just update label.
-                    addressBookData.setLabel(receivingAddress.getLabel());
-                    justUpdateLabel = true;
-                    break;
-                }
+            WalletAddressBookData addressBookData = receivingAddresses.lookup(receivingAddress.getAddress());
+            if (addressBookData != null) {
+                // Just update label.
+                addressBookData.setLabel(receivingAddress.getLabel());
+                justUpdateLabel = true;
             }
         }
 
         boolean addressMatchesKey = false;
-        if (wallet != null) {
-            for (ECKey key : wallet.getKeys()) {
-                if (receivingAddress.getAddress().equals(
-                        key.toAddress(MultiBitWallet.getFastcoinController().getModel().getNetworkParameters()).toString())) {
-                    addressMatchesKey = true;
-                    break;
-                }
-            }
+        if (wallet != null && !justUpdateLabel) {
+            addressMatchesKey = getKeyAddresses(wallet).contains(receivingAddress.getAddress());
         }
 
         if (!justUpdateLabel && (wallet == null || addressMatchesKey)) {
@@ -191,28 +191,32 @@ public class WalletInfoData {
      * prevent adding receiving addresses manually in the info file.
      */
     public void checkAllReceivingAddressesAppearInWallet(com.google.fastcoin.core.Wallet wallet) {
-        List<WalletAddressBookData> toRemove = new ArrayList<WalletAddressBookData>();
         if (wallet != null) {
+            Set<String> keyAddresses = getKeyAddresses(wallet);
+
             Iterator<WalletAddressBookData> iterator = receivingAddresses.iterator();
             while (iterator.hasNext()) {
-                boolean addressMatchesKey = false;
                 WalletAddressBookData walletAddressBookData = iterator.next();
-                for (ECKey key : wallet.getKeys()) {
-                    if (walletAddressBookData.getAddress().equals(
-                            key.toAddress(MultiBitWallet.getFastcoinController().getModel().getNetworkParameters()).toString())) {
-                        addressMatchesKey = true;
-                        break;
-                    }
-                }
-                
-                if (!addressMatchesKey) {
+                if (!keyAddresses.contains(walletAddressBookData.getAddress())) {
                     // Remove from receivingAddresses and log.
-                    toRemove.add(walletAddressBookData);
+                    iterator.remove();
                     log.debug("Removed receiving address " + walletAddressBookData.getAddress() + " because it did not match a key in the wallet '" + wallet.getDescription() + "'");
                 }
             }
-            
-            receivingAddresses.removeAll(toRemove);
+        }
+    }
+
+    /**
+     * Get the addresses of the keys in the wallet, using the set held by the WalletData if there is one.
+     */
+    private Set<String> getKeyAddresses(com.google.fastcoin.core.Wallet wallet) {
+        if (keyAddressesForLoad != null && wallet == this.wallet) {
+            return keyAddressesForLoad;
+        }
+        if (perWalletModelData != null && perWalletModelData.getWallet() == wallet) {
+            return perWalletModelData.getKeyAddresses();
+        } else {
+            return WalletData.createKeyAddresses(wallet);
         }
     }
 
@@ -234,17 +238,8 @@ public class WalletInfoData {
     }
 
     public boolean containsReceivingAddress(String receivingAddress) {
-        boolean toReturn = false;
         // see if the receiving address is on the current list
-        for (WalletAddressBookData addressBookData : receivingAddresses) {
-            if (addressBookData.getAddress().equals(receivingAddress.toString())) {
-                // do nothing
-                toReturn = true;
-                break;
-            }
-        }
-
-        return toReturn;
+        return receivingAddresses.containsAddress(receivingAddress);
     }
 
     public void addSendingAddress(WalletAddressBookData sendingAddress) {
@@ -252,37 +247,29 @@ public class WalletInfoData {
             return;
         }
 
-        boolean done = false;
-        // Check the address is not already in the arraylist.
-        for (WalletAddressBookData addressBookData : sendingAddresses) {
-            if (addressBookData.getAddress() != null && addressBookData.getAddress().equals(sendingAddress.getAddress())) {
-                // Just update label.
-                addressBookData.setLabel(sendingAddress.getLabel());
-                done = true;
-                break;
-            }
-        }
-
-        if (!done) {
+        // Check the address is not already in the address book.
+        WalletAddressBookData addressBookData = sendingAddress.getAddress() == null ? null : sendingAddresses.lookup(sendingAddress.getAddress());
+        if (addressBookData != null) {
+            // Just update label.
+            addressBookData.setLabel(sendingAddress.getLabel());
+        } else {
             sendingAddresses.add(sendingAddress);
         }
     }
 
     public String lookupLabelForReceivingAddress(String address) {
-        for (WalletAddressBookData addressBookData : receivingAddresses) {
-            if (addressBookData.getAddress().equals(address)) {
-                return addressBookData.getLabel();
-            }
+        WalletAddressBookData addressBookData = receivingAddresses.lookup(address);
+        if (addressBookData != null) {
+            return addressBookData.getLabel();
         }
 
         return "";
     }
 
     public String lookupLabelForSendingAddress(String address) {
-        for (WalletAddressBookData addressBookData : sendingAddresses) {
-            if (addressBookData.getAddress().equals(address)) {
-                return addressBookData.getLabel();
-            }
+        WalletAddressBookData addressBookData = sendingAddresses.lookup(address);
+        if (addressBookData != null) {
+            return addressBookData.getLabel();
         }
 
         return "";
@@ -399,6 +386,11 @@ public class WalletInfoData {
         try {
             walletPreferences = new Properties();
 
+            // Every receiving address read is checked against the keys, so work out their addresses once.
+            if (wallet != null) {
+                keyAddressesForLoad = getKeyAddresses(wallet);
+            }
+
             // Read in the wallet info data.
             walletInfoFilename = createWalletInfoFilename(walletFilename);
             FileInputStream fileInputStream = new FileInputStream(walletInfoFilename);
@@ -560,6 +552,8 @@ public class WalletInfoData {
         } catch (IOException ioe) {
             throw new WalletLoadException("Could not load walletinfo file '" + walletInfoFilename + "'", ioe);
         } finally {
+            keyAddressesForLoad = null;
+
             // Close the input stream
             if (inputStream != null) {
                 try {
@@ -678,4 +672,12 @@ public class WalletInfoData {
     public void setWalletVersion(FastcoinWalletVersion walletVersion) {
         this.walletVersion = walletVersion;
     }
+
+    public WalletData getPerWalletModelData() {
+        return perWalletModelData;
+    }
+
+    public void setPerWalletModelData(WalletData perWalletModelData) {
+        this.perWalletModelData = perWalletModelData;
+    }
 }
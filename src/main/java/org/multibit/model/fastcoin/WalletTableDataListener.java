@@ -0,0 +1,38 @@
+/**
+ * Copyright 2013 wallet.org
+ *
+ * Licensed under the MIT license (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://opensource.org/licenses/mit-license.php
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.multibit.model.fastcoin;
+
+/**
+ * Interface for listening to changes in the transaction rows of a wallet.
+ *
+ * Callbacks are made on the thread that changed the rows, which is typically not the Swing thread.
+ */
+public interface WalletTableDataListener {
+    /**
+     * Rows first to last (inclusive) have been appended.
+     */
+    public void rowsInserted(WalletTableDataStore store, int first, int last);
+
+    /**
+     * Rows first to last (inclusive) have been updated in place.
+     */
+    public void rowsUpdated(WalletTableDataStore store, int first, int last);
+
+    /**
+     * All the rows have been replaced, or a row has been removed.
+     */
+    public void allRowsChanged(WalletTableDataStore store);
+}
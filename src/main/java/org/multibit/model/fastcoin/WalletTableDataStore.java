@@ -0,0 +1,213 @@
+/**
+ * Copyright 2013 wallet.org
+ *
+ * Licensed under the MIT license (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://opensource.org/licenses/mit-license.php
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.multibit.model.fastcoin;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import com.google.fastcoin.core.Sha256Hash;
+
+/**
+ * The transaction rows of a single wallet, keyed by transaction hash.
+ *
+ * Rows are appended or replaced in place, so a row index stays valid until the whole store is
+ * replaced or a row is removed (both of which increment the generation).
+ * This lets a table model show rows [0, n) while new rows are being added on another thread.
+ * Removing a row is rare (a transaction going dead) so it is treated as a change to all the rows.
+ *
+ * @author jim
+ *
+ */
+public class WalletTableDataStore {
+
+    private final ArrayList<WalletTableData> rows;
+
+    /**
+     * Index from transaction hash to position in rows.
+     */
+    private final HashMap<Sha256Hash, Integer> positions;
+
+    /**
+     * Incremented every time the rows are replaced wholesale.
+     */
+    private int generation;
+
+    /**
+     * Whether the rows have been built from the wallet at least once.
+     */
+    private boolean initialised;
+
+    private final Collection<WalletTableDataListener> listeners;
+
+    public WalletTableDataStore() {
+        rows = new ArrayList<WalletTableData>();
+        positions = new HashMap<Sha256Hash, Integer>();
+        listeners = new CopyOnWriteArrayList<WalletTableDataListener>();
+        generation = 0;
+        initialised = false;
+    }
+
+    public void addWalletTableDataListener(WalletTableDataListener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeWalletTableDataListener(WalletTableDataListener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Replace all the rows, for instance after a reorganise or a reset of the transactions.
+     */
+    public void replaceAll(List<WalletTableData> newRows) {
+        synchronized (this) {
+            rows.clear();
+            positions.clear();
+            if (newRows != null) {
+                rows.ensureCapacity(newRows.size());
+                for (WalletTableData row : newRows) {
+                    if (row != null && row.getTransaction() != null) {
+                        positions.put(row.getTransaction().getHash(), rows.size());
+                        rows.add(row);
+                    }
+                }
+            }
+            generation++;
+            initialised = true;
+        }
+
+        for (WalletTableDataListener listener : listeners) {
+            listener.allRowsChanged(this);
+        }
+    }
+
+    /**
+     * Add a row, or replace the existing row for the same transaction.
+     *
+     * @return The position of the row
+     */
+    public int put(WalletTableData row) {
+        if (row == null || row.getTransaction() == null) {
+            return -1;
+        }
+
+        int position;
+        boolean inserted;
+        synchronized (this) {
+            Sha256Hash hash = row.getTransaction().getHash();
+            Integer existingPosition = positions.get(hash);
+            if (existingPosition == null) {
+                position = rows.size();
+                positions.put(hash, position);
+                rows.add(row);
+                inserted = true;
+            } else {
+                position = existingPosition;
+                rows.set(position, row);
+                inserted = false;
+            }
+        }
+
+        for (WalletTableDataListener listener : listeners) {
+            if (inserted) {
+                listener.rowsInserted(this, position, position);
+            } else {
+                listener.rowsUpdated(this, position, position);
+            }
+        }
+        return position;
+    }
+
+    /**
+     * Remove the row for a transaction, for instance because it is dead or no longer in the wallet.
+     *
+     * @return true if there was a row for the transaction
+     */
+    public boolean remove(Sha256Hash hash) {
+        synchronized (this) {
+            Integer position = positions.remove(hash);
+            if (position == null) {
+                return false;
+            }
+            rows.remove(position.intValue());
+            for (int i = position; i < rows.size(); i++) {
+                positions.put(rows.get(i).getTransaction().getHash(), i);
+            }
+            generation++;
+        }
+
+        for (WalletTableDataListener listener : listeners) {
+            listener.allRowsChanged(this);
+        }
+        return true;
+    }
+
+    /**
+     * Tell listeners that the row for a transaction needs redrawing (e.g. its confidence changed).
+     *
+     * @return true if there is a row for the transaction
+     */
+    public boolean rowChanged(Sha256Hash hash) {
+        Integer position;
+        synchronized (this) {
+            position = positions.get(hash);
+        }
+        if (position == null) {
+            return false;
+        }
+
+        for (WalletTableDataListener listener : listeners) {
+            listener.rowsUpdated(this, position, position);
+        }
+        return true;
+    }
+
+    public synchronized WalletTableData get(int position) {
+        if (position < 0 || position >= rows.size()) {
+            return null;
+        }
+        return rows.get(position);
+    }
+
+    public synchronized WalletTableData getByHash(Sha256Hash hash) {
+        Integer position = positions.get(hash);
+        if (position == null) {
+            return null;
+        }
+        return rows.get(position);
+    }
+
+    public synchronized int size() {
+        return rows.size();
+    }
+
+    public synchronized int getGeneration() {
+        return generation;
+    }
+
+    public synchronized boolean isInitialised() {
+        return initialised;
+    }
+
+    /**
+     * @return A copy of all the rows
+     */
+    public synchronized List<WalletTableData> getRows() {
+        return new ArrayList<WalletTableData>(rows);
+    }
+}
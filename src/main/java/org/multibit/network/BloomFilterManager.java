@@ -0,0 +1,209 @@
+/**
+ * Copyright 2013 wallet.org
+ *
+ * Licensed under the MIT license (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://opensource.org/licenses/mit-license.php
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.multibit.network;
+
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.multibit.controller.fastcoin.FastcoinController;
+import org.multibit.model.fastcoin.WalletData;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.fastcoin.core.Wallet;
+
+/**
+ * Keeps metrics on the Bloom filter sent to peers, for all the open wallets, and logs them.
+ *
+ * The PeerGroup merges the elements of all the wallets into a single filter and sizes it itself - fastcoinj
+ * clamps the filter to the BIP 37 maximum size and works out the number of hash functions from the size it
+ * actually uses. The element count of each wallet is kept up to date here as wallets and keys are added so that
+ * the false positive rate a filter of at most MAXIMUM_FILTER_SIZE_IN_BYTES can give can be worked out.
+ *
+ * The transactions received from peers are counted and every LOG_INTERVAL_IN_TRANSACTIONS transactions the
+ * actual false positive rate is logged alongside the expected one.
+ *
+ * @author jim
+ */
+public enum BloomFilterManager {
+    INSTANCE;
+
+    private static final Logger log = LoggerFactory.getLogger(BloomFilterManager.class);
+
+    /**
+     * The false positive rate the PeerGroup asks for by default.
+     */
+    public static final double PEER_GROUP_FALSE_POSITIVE_RATE = 0.0005;
+
+    /**
+     * The maximum size of a Bloom filter in BIP 37.
+     */
+    public static final int MAXIMUM_FILTER_SIZE_IN_BYTES = 36000;
+
+    /**
+     * The number of transactions received from peers between logs of the Bloom filter metrics.
+     */
+    public static final int LOG_INTERVAL_IN_TRANSACTIONS = 1000;
+
+    private static final double LN2_SQUARED = Math.log(2) * Math.log(2);
+
+    private FastcoinController controller;
+
+    /**
+     * The number of elements in the filter for each wallet, as counted by Wallet.getBloomFilterElementCount() -
+     * the keys and the unspent outpoints of the wallet.
+     */
+    private final Map<Wallet, Integer> numberOfElementsByWallet = new IdentityHashMap<Wallet, Integer>();
+
+    /**
+     * The number of elements in the filter for all the wallets.
+     */
+    private int numberOfElements = 0;
+
+    private long numberOfTransactionsReceived = 0;
+    private long numberOfIrrelevantTransactionsReceived = 0;
+
+    public synchronized void initialise(FastcoinController controller) {
+        this.controller = controller;
+        recalculate();
+    }
+
+    /**
+     * A new PeerGroup has been created, with all the open wallets in it.
+     */
+    public synchronized void peerGroupCreated() {
+        recalculate();
+    }
+
+    /**
+     * A wallet has been added to the PeerGroup.
+     */
+    public synchronized void walletAdded(Wallet wallet) {
+        countElements(wallet);
+    }
+
+    /**
+     * A wallet has been removed from the PeerGroup.
+     */
+    public synchronized void walletRemoved(Wallet wallet) {
+        Integer walletElements = numberOfElementsByWallet.remove(wallet);
+        if (walletElements != null) {
+            setNumberOfElements(numberOfElements - walletElements);
+        }
+    }
+
+    /**
+     * Keys have been added to a wallet. The wallet's outpoints may have changed too so the wallet is counted again.
+     */
+    public synchronized void keysAdded(Wallet wallet) {
+        countElements(wallet);
+    }
+
+    /**
+     * Record a transaction sent by a peer and whether it was relevant to any wallet.
+     */
+    public synchronized void transactionReceived(boolean relevant) {
+        numberOfTransactionsReceived++;
+        if (!relevant) {
+            numberOfIrrelevantTransactionsReceived++;
+        }
+        if (numberOfTransactionsReceived >= LOG_INTERVAL_IN_TRANSACTIONS) {
+            log.info("Bloom filter for " + numberOfElements + " elements is "
+                    + calculateFilterSizeInBytes(numberOfElements, PEER_GROUP_FALSE_POSITIVE_RATE) + " bytes. "
+                    + numberOfIrrelevantTransactionsReceived + " of the last " + numberOfTransactionsReceived
+                    + " transactions received were false positives, a rate of "
+                    + ((double) numberOfIrrelevantTransactionsReceived / numberOfTransactionsReceived)
+                    + ". Expected false positive rate is "
+                    + calculateAchievableFalsePositiveRate(numberOfElements, PEER_GROUP_FALSE_POSITIVE_RATE));
+            numberOfTransactionsReceived = 0;
+            numberOfIrrelevantTransactionsReceived = 0;
+        }
+    }
+
+    /**
+     * The size of the filter needed for a number of elements at a false positive rate, up to the maximum size.
+     */
+    static int calculateFilterSizeInBytes(int elements, double falsePositiveRate) {
+        if (elements <= 0) {
+            return 1;
+        }
+        double bits = -elements * Math.log(falsePositiveRate) / LN2_SQUARED;
+        return (int) Math.max(1, Math.min(Math.ceil(bits / 8), MAXIMUM_FILTER_SIZE_IN_BYTES));
+    }
+
+    /**
+     * The best false positive rate a filter of at most the maximum size can give for a number of elements,
+     * or the requested rate if that can be met.
+     */
+    static double calculateAchievableFalsePositiveRate(int elements, double falsePositiveRate) {
+        if (elements <= 0) {
+            return falsePositiveRate;
+        }
+        double maximumBits = MAXIMUM_FILTER_SIZE_IN_BYTES * 8.0;
+        double bestFalsePositiveRate = Math.exp(-maximumBits * LN2_SQUARED / elements);
+        return Math.max(falsePositiveRate, bestFalsePositiveRate);
+    }
+
+    /**
+     * Count the elements in all the open wallets.
+     * Must be called holding the BloomFilterManager lock.
+     */
+    private void recalculate() {
+        numberOfElementsByWallet.clear();
+        int elements = 0;
+        if (controller != null && controller.getModel() != null) {
+            List<WalletData> perWalletModelDataList = controller.getModel().getPerWalletModelDataList();
+            if (perWalletModelDataList != null) {
+                for (WalletData perWalletModelData : perWalletModelDataList) {
+                    Wallet wallet = perWalletModelData.getWallet();
+                    if (wallet != null) {
+                        int walletElements = wallet.getBloomFilterElementCount();
+                        numberOfElementsByWallet.put(wallet, walletElements);
+                        elements += walletElements;
+                    }
+                }
+            }
+        }
+        setNumberOfElements(elements);
+    }
+
+    /**
+     * Count the elements in one wallet, replacing its previous count.
+     * Must be called holding the BloomFilterManager lock.
+     */
+    private void countElements(Wallet wallet) {
+        if (wallet == null) {
+            return;
+        }
+        int walletElements = wallet.getBloomFilterElementCount();
+        Integer previousWalletElements = numberOfElementsByWallet.put(wallet, walletElements);
+        setNumberOfElements(numberOfElements + walletElements - (previousWalletElements == null ? 0 : previousWalletElements));
+    }
+
+    /**
+     * Must be called holding the BloomFilterManager lock.
+     */
+    private void setNumberOfElements(int elements) {
+        boolean wasFull = calculateAchievableFalsePositiveRate(numberOfElements, PEER_GROUP_FALSE_POSITIVE_RATE) > PEER_GROUP_FALSE_POSITIVE_RATE;
+        numberOfElements = Math.max(0, elements);
+        double expectedFalsePositiveRate = calculateAchievableFalsePositiveRate(numberOfElements, PEER_GROUP_FALSE_POSITIVE_RATE);
+        if (!wasFull && expectedFalsePositiveRate > PEER_GROUP_FALSE_POSITIVE_RATE) {
+            log.info("Bloom filter for " + numberOfElements + " elements is full. Expected false positive rate is "
+                    + expectedFalsePositiveRate + " rather than " + PEER_GROUP_FALSE_POSITIVE_RATE);
+        }
+    }
+}
@@ -0,0 +1,209 @@
+/**
+ * Copyright 2013 wallet.org
+ *
+ * Licensed under the MIT license (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://opensource.org/licenses/mit-license.php
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.multibit.network;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Map;
+import java.util.Timer;
+import java.util.TimerTask;
+import java.util.TreeMap;
+
+import org.multibit.controller.fastcoin.FastcoinController;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.fastcoin.core.StoredBlock;
+import com.google.fastcoin.store.BlockStore;
+import com.google.fastcoin.store.BlockStoreException;
+
+/**
+ * Adds checkpoints from the local block store to the checkpoints file, so that new wallets and replays start
+ * from a checkpoint close to today even when the installed checkpoints file is old.
+ *
+ * Every CHECKPOINT_INTERVAL blocks, as with the installed checkpoints, the block is remembered once it is
+ * MINIMUM_CHECKPOINT_DEPTH blocks deep. The SPV block store only keeps the most recent blocks so the chain is
+ * walked regularly, and whenever a chain download completes. When there are new checkpoints the checkpoints file
+ * in the user's application data directory is rewritten and the FastcoinWalletService switches to it.
+ *
+ * @author jim
+ */
+public enum CheckpointGenerator {
+    INSTANCE;
+
+    private static final Logger log = LoggerFactory.getLogger(CheckpointGenerator.class);
+
+    /**
+     * The number of blocks between checkpoints, as in the installed checkpoints file.
+     */
+    public static final int CHECKPOINT_INTERVAL = 50000;
+
+    /**
+     * How deep a block must be in the chain before it is used as a checkpoint, so that it will not be reorganised away.
+     */
+    public static final int MINIMUM_CHECKPOINT_DEPTH = 1000;
+
+    private static final String CHECKPOINTS_MAGIC = "CHECKPOINTS 1";
+
+    private static final int GENERATE_DELAY_TIME = 60 * 1000; // ms
+    private static final int GENERATE_REPEAT_TIME = 60 * 60 * 1000; // ms
+
+    private FastcoinController controller;
+
+    private Timer generateTimer;
+
+    /**
+     * Checkpoints found in the block store but not yet written, keyed on height.
+     */
+    private final TreeMap<Integer, StoredBlock> newCheckpoints = new TreeMap<Integer, StoredBlock>();
+
+    public synchronized void initialise(FastcoinController controller) {
+        this.controller = controller;
+        if (generateTimer == null) {
+            generateTimer = new Timer("CheckpointGenerator", true);
+            generateTimer.schedule(new TimerTask() {
+                @Override
+                public void run() {
+                    generateCheckpoints();
+                }
+            }, GENERATE_DELAY_TIME, GENERATE_REPEAT_TIME);
+        }
+    }
+
+    /**
+     * The chain has finished downloading - look for new checkpoints in the background.
+     */
+    public synchronized void downloadHasCompleted() {
+        if (generateTimer == null) {
+            return;
+        }
+        generateTimer.schedule(new TimerTask() {
+            @Override
+            public void run() {
+                generateCheckpoints();
+            }
+        }, 0);
+    }
+
+    /**
+     * Find the new checkpoints in the block store and write them to the checkpoints file.
+     */
+    synchronized void generateCheckpoints() {
+        if (controller == null || controller.getFastcoinWalletService() == null) {
+            return;
+        }
+        FastcoinWalletService fastcoinWalletService = controller.getFastcoinWalletService();
+        FastcoinWalletCheckpointManager checkpointManager = fastcoinWalletService.getCheckpointManager();
+        BlockStore blockStore = fastcoinWalletService.getBlockStore();
+        if (checkpointManager == null || blockStore == null) {
+            return;
+        }
+
+        try {
+            findNewCheckpoints(blockStore, checkpointManager.getLastCheckpointHeight());
+        } catch (BlockStoreException e) {
+            log.error("Could not read the block store to find checkpoints " + e.getClass().getName() + " " + e.getMessage());
+            return;
+        }
+        if (newCheckpoints.isEmpty()) {
+            return;
+        }
+
+        File checkpointsFile = new File(fastcoinWalletService.getUserDataCheckpointsFilename());
+        if (writeCheckpoints(checkpointsFile, checkpointManager)) {
+            log.debug("Wrote " + newCheckpoints.size() + " new checkpoints to '" + checkpointsFile.getAbsolutePath() + "'");
+            newCheckpoints.clear();
+            fastcoinWalletService.useCheckpointsFile(checkpointsFile);
+        }
+    }
+
+    /**
+     * Walk back from the chain head to the last checkpoint, or as far as the block store goes, remembering the
+     * blocks deep enough to be checkpoints. Must be called holding the CheckpointGenerator lock.
+     */
+    private void findNewCheckpoints(BlockStore blockStore, int lastCheckpointHeight) throws BlockStoreException {
+        StoredBlock cursor = blockStore.getChainHead();
+        if (cursor == null) {
+            return;
+        }
+        int maximumCheckpointHeight = cursor.getHeight() - MINIMUM_CHECKPOINT_DEPTH;
+
+        // Checkpoints already written are no longer new.
+        newCheckpoints.headMap(lastCheckpointHeight + 1).clear();
+
+        while (cursor != null && cursor.getHeight() > lastCheckpointHeight) {
+            int height = cursor.getHeight();
+            if (height <= maximumCheckpointHeight && height % CHECKPOINT_INTERVAL == 0) {
+                newCheckpoints.put(height, cursor);
+            }
+            cursor = cursor.getPrev(blockStore);
+        }
+    }
+
+    /**
+     * Write the existing and new checkpoints to a temporary file and rename it over the checkpoints file,
+     * so a partly written checkpoints file is never read.
+     * Must be called holding the CheckpointGenerator lock.
+     */
+    private boolean writeCheckpoints(File checkpointsFile, FastcoinWalletCheckpointManager checkpointManager) {
+        Map<Integer, StoredBlock> checkpoints = new TreeMap<Integer, StoredBlock>();
+        for (StoredBlock checkpoint : checkpointManager.getCheckpoints()) {
+            checkpoints.put(checkpoint.getHeight(), checkpoint);
+        }
+        checkpoints.putAll(newCheckpoints);
+
+        File temporaryFile = new File(checkpointsFile.getAbsolutePath() + ".tmp");
+        DataOutputStream outputStream = null;
+        try {
+            outputStream = new DataOutputStream(new FileOutputStream(temporaryFile));
+            outputStream.writeBytes(CHECKPOINTS_MAGIC);
+            // No signatures - as with the installed checkpoints file.
+            outputStream.writeInt(0);
+            outputStream.writeInt(checkpoints.size());
+            ByteBuffer buffer = ByteBuffer.allocate(StoredBlock.COMPACT_SERIALIZED_SIZE);
+            for (StoredBlock checkpoint : checkpoints.values()) {
+                buffer.clear();
+                checkpoint.serializeCompact(buffer);
+                outputStream.write(buffer.array());
+            }
+            outputStream.close();
+            outputStream = null;
+
+            if (!temporaryFile.renameTo(checkpointsFile)) {
+                checkpointsFile.delete();
+                if (!temporaryFile.renameTo(checkpointsFile)) {
+                    log.error("Could not write checkpoints file '" + checkpointsFile.getAbsolutePath() + "'");
+                    return false;
+                }
+            }
+            return true;
+        } catch (IOException e) {
+            log.error("Could not write checkpoints file " + e.getClass().getName() + " " + e.getMessage());
+            return false;
+        } finally {
+            if (outputStream != null) {
+                try {
+                    outputStream.close();
+                } catch (IOException e) {
+                    log.error(e.getClass().getName() + " " + e.getMessage());
+                }
+            }
+        }
+    }
+}
@@ -2,47 +2,146 @@ package org.multibit.network;
 
 import java.io.IOException;
 import java.io.InputStream;
-import java.util.Map;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
 
 import com.google.fastcoin.core.CheckpointManager;
 import com.google.fastcoin.core.NetworkParameters;
 import com.google.fastcoin.core.StoredBlock;
 import com.google.fastcoin.core.VerificationException;
+import com.google.fastcoin.store.BlockStore;
+import com.google.fastcoin.store.BlockStoreException;
 
+/**
+ * The checkpoints, read once from the checkpoints file and kept in memory.
+ *
+ * The checkpoints are held in arrays sorted by time and by height so that a date or a height
+ * is looked up with a binary search rather than by reading the checkpoints file again.
+ */
 public class FastcoinWalletCheckpointManager extends CheckpointManager {
 
+    /**
+     * The CheckpointManager removes a week from a date to cater for block header drift.
+     */
+    public static final long BLOCK_HEADER_DRIFT_IN_SECONDS = 86400 * 7;
+
+    private final long[] times;
+    private final StoredBlock[] checkpointsByTime;
+
+    private final long[] heights;
+    private final StoredBlock[] checkpointsByHeight;
+
     public FastcoinWalletCheckpointManager(NetworkParameters params, InputStream inputStream) throws IOException {
         super(params, inputStream);
+
+        List<StoredBlock> sortedCheckpoints = new ArrayList<StoredBlock>(checkpoints.values());
+        Collections.sort(sortedCheckpoints, new Comparator<StoredBlock>() {
+            @Override
+            public int compare(StoredBlock first, StoredBlock second) {
+                long firstTime = first.getHeader().getTimeSeconds();
+                long secondTime = second.getHeader().getTimeSeconds();
+                return firstTime < secondTime ? -1 : (firstTime == secondTime ? 0 : 1);
+            }
+        });
+        checkpointsByTime = sortedCheckpoints.toArray(new StoredBlock[sortedCheckpoints.size()]);
+        times = new long[checkpointsByTime.length];
+        for (int i = 0; i < checkpointsByTime.length; i++) {
+            times[i] = checkpointsByTime[i].getHeader().getTimeSeconds();
+        }
+
+        Collections.sort(sortedCheckpoints, new Comparator<StoredBlock>() {
+            @Override
+            public int compare(StoredBlock first, StoredBlock second) {
+                return first.getHeight() < second.getHeight() ? -1 : (first.getHeight() == second.getHeight() ? 0 : 1);
+            }
+        });
+        checkpointsByHeight = sortedCheckpoints.toArray(new StoredBlock[sortedCheckpoints.size()]);
+        heights = new long[checkpointsByHeight.length];
+        for (int i = 0; i < checkpointsByHeight.length; i++) {
+            heights[i] = checkpointsByHeight[i].getHeight();
+        }
     }
-    
+
+    /**
+     * Returns a {@link StoredBlock} representing the last checkpoint at or before the given time, or the genesis block
+     * if there is no checkpoint before it.
+     *
+     * @param time The time in seconds since the epoch
+     */
+    @Override
+    public StoredBlock getCheckpointBefore(long time) {
+        int index = findLastIndexAtOrBefore(times, time);
+        if (index < 0) {
+            return createGenesisBlock();
+        }
+        return checkpointsByTime[index];
+    }
+
     /**
      * Returns a {@link StoredBlock} representing the last checkpoint before the given block height, for example, normally
      * you would want to know the checkpoint before the last block the wallet had seen.
      */
     public StoredBlock getCheckpointBeforeOrAtHeight(int height) {
-        Map.Entry<Long, StoredBlock> highestCheckpointBeforeHeight = null;
-        
-        for (Map.Entry<Long, StoredBlock> loop : checkpoints.entrySet()) {
-            if (loop.getValue().getHeight() < height) {
-                // This checkpoint is before the specified height.
-                if (highestCheckpointBeforeHeight == null) {
-                    highestCheckpointBeforeHeight = loop;
-                } else {
-                    if (highestCheckpointBeforeHeight.getValue().getHeight() < loop.getValue().getHeight()) {
-                        // This entry is later.
-                        highestCheckpointBeforeHeight = loop;
-                    }
-                }
-            }
+        int index = findLastIndexAtOrBefore(heights, height - 1);
+        if (index < 0) {
+            return createGenesisBlock();
         }
-        
-        if (highestCheckpointBeforeHeight == null) {
-            try {
-                return new StoredBlock(params.getGenesisBlock(), params.getGenesisBlock().getWork(), 0);
-            } catch (VerificationException e) {
-                e.printStackTrace();
-            }
+        return checkpointsByHeight[index];
+    }
+
+    /**
+     * Put the last checkpoint a week before the given time into the block store and make it the chain head.
+     * This is the equivalent of CheckpointManager.checkpoint without reading the checkpoints file again.
+     *
+     * @param time The time in seconds since the epoch
+     */
+    public void checkpoint(BlockStore store, long time) throws BlockStoreException {
+        StoredBlock checkpoint = getCheckpointBefore(time - BLOCK_HEADER_DRIFT_IN_SECONDS);
+        store.put(checkpoint);
+        store.setChainHead(checkpoint);
+    }
+
+    /**
+     * @return The checkpoints, lowest first
+     */
+    public List<StoredBlock> getCheckpoints() {
+        return Collections.unmodifiableList(Arrays.asList(checkpointsByHeight));
+    }
+
+    /**
+     * @return The height of the highest checkpoint, or 0 if there are none
+     */
+    public int getLastCheckpointHeight() {
+        return checkpointsByHeight.length == 0 ? 0 : checkpointsByHeight[checkpointsByHeight.length - 1].getHeight();
+    }
+
+    public int getNumberOfCheckpoints() {
+        return checkpointsByTime.length;
+    }
+
+    /**
+     * @return The index of the last of the sorted values that is at or before the value, or -1 if there is none
+     */
+    private static int findLastIndexAtOrBefore(long[] sortedValues, long value) {
+        int index = Arrays.binarySearch(sortedValues, value);
+        if (index < 0) {
+            return -index - 2;
+        }
+        while (index + 1 < sortedValues.length && sortedValues[index + 1] == value) {
+            index++;
+        }
+        return index;
+    }
+
+    private StoredBlock createGenesisBlock() {
+        try {
+            return new StoredBlock(params.getGenesisBlock(), params.getGenesisBlock().getWork(), 0);
+        } catch (VerificationException e) {
+            e.printStackTrace();
+            return null;
         }
-        return highestCheckpointBeforeHeight.getValue();
     }
-}
\ No newline at end of file
+}
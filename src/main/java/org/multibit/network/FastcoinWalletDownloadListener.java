@@ -16,11 +16,14 @@
 
 package org.multibit.network;
 
+import com.google.fastcoin.core.Block;
 import com.google.fastcoin.core.DownloadListener;
+import com.google.fastcoin.core.Peer;
 import org.multibit.controller.Controller;
 import org.multibit.controller.fastcoin.FastcoinController;
 import org.multibit.message.Message;
 import org.multibit.message.MessageManager;
+import org.multibit.model.fastcoin.WalletData;
 import org.multibit.viewsystem.swing.view.walletlist.SingleWalletPanelDownloadListener;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -74,6 +77,14 @@ public class FastcoinWalletDownloadListener extends DownloadListener {
         singleWalletPanelDownloadListeners.remove(downloadListener);
     }
     
+    @Override
+    public void onBlocksDownloaded(Peer peer, Block block, int blocksLeft) {
+        super.onBlocksDownloaded(peer, block, blocksLeft);
+
+        // The block has been added to the chain.
+        ReplayJournal.INSTANCE.blockProcessed();
+    }
+
     /**
      * Called when download progress is made.
      * 
@@ -120,13 +131,34 @@ public class FastcoinWalletDownloadListener extends DownloadListener {
                 }
                 
                 for (SingleWalletPanelDownloadListener singleWalletPanelDownloadListener : singleWalletPanelDownloadListeners) {
-                    singleWalletPanelDownloadListener.progress(pct, blocksSoFar, date);
+                    singleWalletPanelDownloadListener.progress(calculateWalletPercent(currentReplayTask,
+                            singleWalletPanelDownloadListener.getPerWalletModelData(), pct, blocksSoFar), blocksSoFar, date);
                 }
             }
             this.fastcoinController.fireBlockDownloaded();
         }
     }
 
+    /**
+     * Work out the percent complete of a wallet in a replay task.
+     * Where several replays are merged the wallets can start at different heights so a wallet
+     * shows no progress until the replay reaches its own start height.
+     */
+    private double calculateWalletPercent(ReplayTask currentReplayTask, WalletData perWalletModelData, double pct, int blocksSoFar) {
+        if (currentReplayTask == null || perWalletModelData == null) {
+            return pct;
+        }
+        int walletStartHeight = currentReplayTask.getStartHeight(perWalletModelData);
+        if (walletStartHeight == ReplayTask.UNKNOWN_START_HEIGHT || walletStartHeight == currentReplayTask.getStartHeight()) {
+            return pct;
+        }
+        int blocksToReplayForWallet = ReplayManager.INSTANCE.getActualLastChainHeight() - walletStartHeight;
+        if (blocksToReplayForWallet <= 0) {
+            return pct;
+        }
+        return Math.max(0, (int)(100 * ( 1.0 - (double)blocksSoFar/blocksToReplayForWallet)));
+    }
+
     /**
      * Called when download is initiated.
      * 
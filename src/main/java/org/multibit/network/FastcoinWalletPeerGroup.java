@@ -15,24 +15,50 @@
  */
 package org.multibit.network;
 
+import java.util.List;
+import java.util.Timer;
+import java.util.TimerTask;
+
 import org.multibit.controller.Controller;
 import org.multibit.controller.fastcoin.FastcoinController;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import com.google.fastcoin.core.BlockChain;
 import com.google.fastcoin.core.NetworkParameters;
+import com.google.fastcoin.core.Peer;
 import com.google.fastcoin.core.PeerGroup;
 
 
 public class FastcoinWalletPeerGroup extends PeerGroup {
+    private static final Logger log = LoggerFactory.getLogger(FastcoinWalletPeerGroup.class);
+
     private final Controller controller;
     private final FastcoinController fastcoinController;
     FastcoinWalletDownloadListener fastcoinWalletDownloadListener = null;
 
     public static final int MAXIMUM_NUMBER_OF_PEERS = 6;
 
-        
+    /**
+     * How often the download is checked for a stalled download peer.
+     */
+    private static final int STALL_CHECK_TIME = 5000; // ms
+
+    /**
+     * How long the chain can go without growing, whilst behind the download peer, before the download is moved to another peer.
+     */
+    private static final long STALL_TIMEOUT = 20000; // ms
+
+    private final BlockChain chain;
+
+    private Timer stallCheckTimer;
+
+    private int lastChainHeight = -1;
+    private long lastProgressTime;
+
     public FastcoinWalletPeerGroup(FastcoinController fastcoinController, NetworkParameters params, BlockChain chain) {
         super(params, chain);
+        this.chain = chain;
         this.fastcoinController = fastcoinController;
         this.controller = this.fastcoinController;
         fastcoinWalletDownloadListener = new FastcoinWalletDownloadListener(this.fastcoinController);
@@ -49,6 +75,119 @@ public class FastcoinWalletPeerGroup extends PeerGroup {
     @Override
     public void downloadBlockChain() {
         startBlockChainDownload(fastcoinWalletDownloadListener);
+        startStallCheck();
+    }
+
+    /**
+     * Stop downloading the blockchain, for instance whilst it is rewound for a replay.
+     * The peers stay connected. Blocks that were requested before the download stopped are
+     * ignored when they arrive, and downloadBlockChain() starts the download again.
+     */
+    public void stopBlockChainDownload() {
+        stopStallCheck();
+        List<Peer> connectedPeers = getConnectedPeers();
+        if (connectedPeers != null) {
+            for (Peer peer : connectedPeers) {
+                peer.setDownloadData(false);
+            }
+        }
+    }
+
+    /**
+     * Of the peers the PeerGroup would download from, prefer the one with the lowest ping time
+     * measured by the PeerHealthService.
+     */
+    @Override
+    protected Peer selectDownloadPeer(List<Peer> peers) {
+        Peer selectedPeer = super.selectDownloadPeer(peers);
+        if (selectedPeer == null || peers == null) {
+            return selectedPeer;
+        }
+
+        long selectedRoundTripTime = PeerHealthService.INSTANCE.getAverageRoundTripTime(selectedPeer);
+        for (Peer peer : peers) {
+            if (peer.getBestHeight() < selectedPeer.getBestHeight()) {
+                continue;
+            }
+            long roundTripTime = PeerHealthService.INSTANCE.getAverageRoundTripTime(peer);
+            if (roundTripTime < selectedRoundTripTime) {
+                selectedPeer = peer;
+                selectedRoundTripTime = roundTripTime;
+            }
+        }
+        return selectedPeer;
+    }
+
+    /**
+     * Check the download regularly and move it to another peer if the download peer stalls.
+     */
+    private synchronized void startStallCheck() {
+        lastChainHeight = -1;
+        lastProgressTime = System.currentTimeMillis();
+        if (stallCheckTimer == null) {
+            stallCheckTimer = new Timer("FastcoinWalletPeerGroup stall check", true);
+            stallCheckTimer.schedule(new TimerTask() {
+                @Override
+                public void run() {
+                    if (isRunning()) {
+                        checkForStalledDownload();
+                    } else {
+                        stopStallCheck();
+                    }
+                }
+            }, STALL_CHECK_TIME, STALL_CHECK_TIME);
+        }
+    }
+
+    private synchronized void stopStallCheck() {
+        if (stallCheckTimer != null) {
+            stallCheckTimer.cancel();
+            stallCheckTimer = null;
+        }
+    }
+
+    /**
+     * If the chain has not grown for a while and another connected peer has blocks the chain does not,
+     * disconnect the download peer. The PeerGroup then carries on the download from another peer.
+     */
+    synchronized void checkForStalledDownload() {
+        Peer downloadPeer = getDownloadPeer();
+        if (downloadPeer == null || chain == null) {
+            lastProgressTime = System.currentTimeMillis();
+            return;
+        }
+
+        int chainHeight = chain.getBestChainHeight();
+        long now = System.currentTimeMillis();
+        if (chainHeight != lastChainHeight || chainHeight >= downloadPeer.getBestHeight()) {
+            // Making progress or up to date.
+            lastChainHeight = chainHeight;
+            lastProgressTime = now;
+            return;
+        }
+
+        if (now - lastProgressTime < STALL_TIMEOUT) {
+            return;
+        }
+
+        // Only move the download if there is a peer to move it to.
+        Peer bestOtherPeer = null;
+        List<Peer> connectedPeers = getConnectedPeers();
+        if (connectedPeers != null) {
+            for (Peer peer : connectedPeers) {
+                if (peer != downloadPeer && peer.getBestHeight() > chainHeight
+                        && (bestOtherPeer == null || PeerHealthService.INSTANCE.getAverageRoundTripTime(peer)
+                                < PeerHealthService.INSTANCE.getAverageRoundTripTime(bestOtherPeer))) {
+                    bestOtherPeer = peer;
+                }
+            }
+        }
+        if (bestOtherPeer != null) {
+            log.debug("Download peer " + downloadPeer + " has stalled at height " + chainHeight + " for " + (now - lastProgressTime)
+                    + " ms. Disconnecting it so the download continues from another peer such as " + bestOtherPeer);
+            lastProgressTime = now;
+            downloadPeer.close();
+        }
     }
 
     public FastcoinWalletDownloadListener getFastcoinWalletDownloadListener() {
@@ -22,7 +22,7 @@ import com.google.fastcoin.net.discovery.DnsDiscovery;
 import com.google.fastcoin.net.discovery.IrcDiscovery;
 import com.google.fastcoin.store.BlockStore;
 import com.google.fastcoin.store.BlockStoreException;
-import com.google.fastcoin.store.SPVBlockStore;
+import com.google.fastcoin.store.FastcoinWalletSPVBlockStore;
 import com.google.common.util.concurrent.ListenableFuture;
 import org.multibit.MultiBitWallet;
 import org.multibit.controller.fastcoin.FastcoinController;
@@ -32,6 +32,7 @@ import org.multibit.ApplicationDataDirectoryLocator;
 import org.multibit.controller.Controller;
 import org.multibit.file.BackupManager;
 import org.multibit.file.FileHandlerException;
+import org.multibit.file.ParsedWallet;
 import org.multibit.file.WalletSaveException;
 import org.multibit.message.Message;
 import org.multibit.message.MessageManager;
@@ -54,9 +55,6 @@ import java.security.SecureRandom;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.util.*;
-import java.util.concurrent.ExecutionException;
-import java.util.concurrent.TimeUnit;
-import java.util.concurrent.TimeoutException;
 
 
 /**
@@ -105,8 +103,12 @@ public class FastcoinWalletService {
 
   private SecureRandom secureRandom = new SecureRandom();
 
-  private FastcoinWalletCheckpointManager checkpointManager;
+  private volatile FastcoinWalletCheckpointManager checkpointManager;
   private String checkpointsFilename;
+  private String loadedCheckpointsFilename;
+  private long loadedCheckpointsFileLength;
+
+  private PeerAddressBook peerAddressBook;
 
   public static Date genesisBlockCreationDate;
 
@@ -173,22 +175,6 @@ public class FastcoinWalletService {
     } catch (Exception e) {
       handleError(e);
     }
-
-    FileInputStream stream = null;
-    try {
-      stream = new FileInputStream(checkpointsFilename);
-      checkpointManager = new FastcoinWalletCheckpointManager(networkParameters, stream);
-    } catch (IOException e) {
-      log.error("Error creating checkpointManager " + e.getClass().getName() + " " + e.getMessage());
-    } finally {
-      if (stream != null) {
-        try {
-          stream.close();
-        } catch (IOException e) {
-          log.error("Error tidying up checkpointManager creation" + e.getClass().getName() + " " + e.getMessage());
-        }
-      }
-    }
   }
 
   private void handleError(Exception e) {
@@ -242,6 +228,9 @@ public class FastcoinWalletService {
       log.debug("Using user data checkpoints file as it is longer/same size as installed checkpoints - " + sizeOfUserDataCheckpointsFile + " bytes versus " + installedCheckpointsFile.length() + " bytes.");
     }
 
+    // Read the checkpoints into memory once, and again only if a longer checkpoints file has been chosen.
+    loadCheckpointManager(checkpointsFile);
+
     // Fastcoin-Mulitbit includes a preloaded/checkpointed ready to go spv blockchain.
     File blockStoreFile = new File(blockchainFilename);
     boolean blockStoreCreatedNew = !blockStoreFile.exists();
@@ -265,7 +254,7 @@ public class FastcoinWalletService {
 
     log.debug("Opening / Creating SPV block store '{}' from disk", blockchainFilename);
     try {
-      blockStore = new SPVBlockStore(networkParameters, blockStoreFile);
+      blockStore = new FastcoinWalletSPVBlockStore(networkParameters, blockStoreFile);
     } catch (BlockStoreException bse) {
       try {
         log.error("Failed to open/ create SPV block store '{}' from disk", blockchainFilename);
@@ -278,7 +267,7 @@ public class FastcoinWalletService {
         log.debug("Deleting SPV block store '{}' from disk.2", blockchainFilename + ", deletedOk = " + deletedOk);
         blockStoreCreatedNew = true;
 
-        blockStore = new SPVBlockStore(networkParameters, blockStoreFile);
+        blockStore = new FastcoinWalletSPVBlockStore(networkParameters, blockStoreFile);
       } catch (BlockStoreException bse2) {
         bse2.printStackTrace();
         log.error("Unrecoverable failure in opening block store. This is bad.");
@@ -287,29 +276,74 @@ public class FastcoinWalletService {
       }
     }
 
-    // Load the existing checkpoint file and checkpoint from today.
-    if (blockStore != null && checkpointsFile.exists()) {
-      FileInputStream stream = null;
-      try {
-        stream = new FileInputStream(checkpointsFile);
-        if (checkpointDate == null) {
-          if (blockStoreCreatedNew) {
-            // Brand new block store - checkpoint from today. This
-            // will go back to the last checkpoint.
-            CheckpointManager.checkpoint(networkParameters, stream, blockStore, (new Date()).getTime() / 1000);
-          }
-        } else {
-          // Use checkpoint date (block replay).
-          CheckpointManager.checkpoint(networkParameters, stream, blockStore, checkpointDate.getTime() / 1000);
+    // Checkpoint from the checkpoints in memory.
+    if (blockStore != null && checkpointManager != null) {
+      if (checkpointDate == null) {
+        if (blockStoreCreatedNew) {
+          // Brand new block store - checkpoint from today. This
+          // will go back to the last checkpoint.
+          checkpointManager.checkpoint(blockStore, (new Date()).getTime() / 1000);
         }
-      } finally {
-        if (stream != null) {
+      } else {
+        // Use checkpoint date (block replay).
+        checkpointManager.checkpoint(blockStore, checkpointDate.getTime() / 1000);
+      }
+    }
+    return blockStore;
+  }
+
+  /**
+   * Read the checkpoints file into the checkpoint manager, unless it has already been read.
+   */
+  private synchronized void loadCheckpointManager(File checkpointsFile) {
+    if (!checkpointsFile.exists()) {
+      return;
+    }
+    if (checkpointManager != null && checkpointsFile.getAbsolutePath().equals(loadedCheckpointsFilename)
+            && checkpointsFile.length() == loadedCheckpointsFileLength) {
+      return;
+    }
+
+    FileInputStream stream = null;
+    try {
+      stream = new FileInputStream(checkpointsFile);
+      checkpointManager = new FastcoinWalletCheckpointManager(networkParameters, stream);
+      loadedCheckpointsFilename = checkpointsFile.getAbsolutePath();
+      loadedCheckpointsFileLength = checkpointsFile.length();
+      log.debug("Read " + checkpointManager.getNumberOfCheckpoints() + " checkpoints from '" + loadedCheckpointsFilename + "'");
+    } catch (IOException e) {
+      log.error("Error creating checkpointManager " + e.getClass().getName() + " " + e.getMessage());
+    } finally {
+      if (stream != null) {
+        try {
           stream.close();
-          stream = null;
+        } catch (IOException e) {
+          log.error("Error tidying up checkpointManager creation" + e.getClass().getName() + " " + e.getMessage());
         }
       }
     }
-    return blockStore;
+  }
+
+  /**
+   * Switch to a newer checkpoints file, such as one written by the CheckpointGenerator.
+   */
+  public void useCheckpointsFile(File checkpointsFile) {
+    loadCheckpointManager(checkpointsFile);
+    if (checkpointsFile.getAbsolutePath().equals(loadedCheckpointsFilename)) {
+      checkpointsFilename = loadedCheckpointsFilename;
+    }
+  }
+
+  /**
+   * @return The name of the checkpoints file in the user's application data directory
+   */
+  public String getUserDataCheckpointsFilename() {
+    String applicationDataDirectory = controller.getApplicationDataDirectoryLocator().getApplicationDataDirectory();
+    if ("".equals(applicationDataDirectory)) {
+      return getFilePrefix() + CHECKPOINTS_SUFFIX;
+    } else {
+      return applicationDataDirectory + File.separator + getFilePrefix() + CHECKPOINTS_SUFFIX;
+    }
   }
 
   public void createNewPeerGroup() {
@@ -348,6 +382,11 @@ public class FastcoinWalletService {
     }
 
     if (!peersSpecified) {
+      // Try the peers connected to before first so there is no wait for discovery.
+      for (PeerAddress peerAddress : getPeerAddressBook().getBestAddresses(FastcoinWalletPeerGroup.MAXIMUM_NUMBER_OF_PEERS * 2)) {
+        peerGroup.addAddress(peerAddress);
+      }
+
       // Use DNS for production, IRC for test.
       if (TESTNET3_GENESIS_HASH.equals(fastcoinController.getModel().getNetworkParameters().getGenesisBlock().getHashAsString())) {
         peerGroup.addPeerDiscovery(new IrcDiscovery(IRC_CHANNEL_TESTNET3));
@@ -381,6 +420,9 @@ public class FastcoinWalletService {
         }
       }
     }
+
+    // Count the Bloom filter elements of the wallets in the new PeerGroup.
+    BloomFilterManager.INSTANCE.peerGroupCreated();
   }
 
   public static String getFilePrefix() {
@@ -476,45 +518,135 @@ public class FastcoinWalletService {
     }
 
     if (wallet != null) {
-      // Add the keys for this wallet to the address book as receiving
-      // addresses.
-      List<ECKey> keys = wallet.getKeychain();
-      if (keys != null) {
-        if (!newWalletCreated) {
-          perWalletModelDataToReturn = fastcoinController.getModel().getPerWalletModelDataByWalletFilename(walletFilename);
-        }
-        if (perWalletModelDataToReturn != null) {
-          WalletInfoData walletInfo = perWalletModelDataToReturn.getWalletInfo();
-          if (walletInfo != null) {
-            for (ECKey key : keys) {
-              if (key != null) {
-                Address address = key.toAddress(networkParameters);
-                walletInfo.addReceivingAddressOfKey(address);
-              }
-            }
+      if (!newWalletCreated && wallet.getKeychain() != null) {
+        perWalletModelDataToReturn = fastcoinController.getModel().getPerWalletModelDataByWalletFilename(walletFilename);
+      }
+      connectWallet(perWalletModelDataToReturn, wallet, walletFilename);
+    }
+
+    return perWalletModelDataToReturn;
+  }
+
+  /**
+   * Add a wallet that has already been read from disk (see ParallelWalletLoader) to the model, blockchain and peergroup.
+   *
+   * @param parsedWallet
+   * @return perWalletModelData
+   */
+  public WalletData addParsedWallet(ParsedWallet parsedWallet) {
+    WalletData perWalletModelDataToReturn = fastcoinController.getFileHandler().addParsedWallet(parsedWallet);
+    if (perWalletModelDataToReturn != null) {
+      connectWallet(perWalletModelDataToReturn, perWalletModelDataToReturn.getWallet(), perWalletModelDataToReturn.getWalletFilename());
+    }
+    return perWalletModelDataToReturn;
+  }
+
+  private void connectWallet(WalletData perWalletModelData, com.google.fastcoin.core.Wallet wallet, String walletFilename) {
+    // Add the keys for this wallet to the address book as receiving
+    // addresses.
+    List<ECKey> keys = wallet.getKeychain();
+    if (keys != null && perWalletModelData != null) {
+      WalletInfoData walletInfo = perWalletModelData.getWalletInfo();
+      if (walletInfo != null) {
+        for (ECKey key : keys) {
+          if (key != null) {
+            Address address = key.toAddress(networkParameters);
+            walletInfo.addReceivingAddressOfKey(address);
           }
         }
       }
+    }
 
-      // Add wallet to blockchain.
-      if (blockChain != null) {
-        blockChain.addWallet(wallet);
-      } else {
-        log.error("Could not add wallet '" + walletFilename + "' to the blockChain as the blockChain is missing.\n"
-                + "This is bad. MultiBitWallet is currently looking for a blockChain at '" + blockchainFilename + "'");
+    // Add wallet to blockchain.
+    if (blockChain != null) {
+      blockChain.addWallet(wallet);
+    } else {
+      log.error("Could not add wallet '" + walletFilename + "' to the blockChain as the blockChain is missing.\n"
+              + "This is bad. MultiBitWallet is currently looking for a blockChain at '" + blockchainFilename + "'");
+    }
+
+    // Add wallet to peergroup.
+    if (peerGroup != null) {
+      peerGroup.addWallet(wallet);
+      peerGroup.addEventListener(fastcoinController.getPeerEventListener());
+      BloomFilterManager.INSTANCE.walletAdded(wallet);
+    } else {
+      log.error("Could not add wallet '" + walletFilename + "' to the peerGroup as the peerGroup is null. This is bad. ");
+    }
+  }
+
+  /**
+   * Rewind the blockchain in place to the start block, or if there is none the checkpoint before the replay date.
+   * The block store is truncated to the new chain head but the blockchain and peergroup are kept,
+   * so a replay does not need to reconnect to peers. The blockchain download is stopped whilst the
+   * blockchain is rewound - the caller starts it again.
+   * If there are no checkpoints, or the block store cannot be truncated, a new block store and peergroup are created instead.
+   *
+   * @param dateToReplayFrom The date to start the replay task from
+   * @param startBlock The block to start the replay task from, or null to use the replay date
+   * @return height of the block chain after the rewind.
+   * @throws IOException
+   * @throws BlockStoreException
+   */
+  public int rewindBlockChainForReplay(Date dateToReplayFrom, StoredBlock startBlock) throws IOException, BlockStoreException {
+    if (blockChain == null || blockStore == null || checkpointManager == null) {
+      log.debug("Cannot rewind the blockchain in place - creating a new block store and peergroup.");
+      if (peerGroup != null) {
+        peerGroup.stopAndWait();
       }
+      int newChainHeight = createNewBlockStoreForReplay(dateToReplayFrom);
+      createNewPeerGroup();
+      return newChainHeight;
+    }
 
-      // Add wallet to peergroup.
+    if (peerGroup != null) {
+      peerGroup.stopBlockChainDownload();
+    }
+    try {
+      return rewindBlockChain(blockChain, checkpointManager, dateToReplayFrom, startBlock);
+    } catch (BlockStoreException bse) {
+      log.error("Could not truncate the block store - creating a new block store and peergroup. " + bse.getMessage());
       if (peerGroup != null) {
-        peerGroup.addWallet(wallet);
-        peerGroup.addEventListener(fastcoinController.getPeerEventListener());
-      } else {
-        log.error("Could not add wallet '" + walletFilename + "' to the peerGroup as the peerGroup is null. This is bad. ");
+        peerGroup.stopAndWait();
       }
+      int newChainHeight = createNewBlockStoreForReplay(dateToReplayFrom);
+      createNewPeerGroup();
+      return newChainHeight;
+    }
+  }
 
+  /**
+   * Rewind a blockchain to the start block, or if there is none the checkpoint before the replay date,
+   * truncating its block store. A blockchain already before the checkpoint is not rewound.
+   *
+   * @param blockChain The blockchain to rewind
+   * @param checkpointManager The checkpoints to rewind to
+   * @param dateToReplayFrom The date to start the replay task from
+   * @param startBlock The block to start the replay task from, or null to use the replay date
+   * @return height of the block chain after the rewind.
+   * @throws BlockStoreException If the block store cannot be truncated
+   */
+  static int rewindBlockChain(FastcoinWalletBlockChain blockChain, FastcoinWalletCheckpointManager checkpointManager,
+          Date dateToReplayFrom, StoredBlock startBlock) throws BlockStoreException {
+    Date genesisPlusOnwWeekAndASecond = new Date(FastcoinWalletService.genesisBlockCreationDate.getTime() + (86400 * 7 + 1) * 1000);
+    if (dateToReplayFrom == null || dateToReplayFrom.getTime() < genesisPlusOnwWeekAndASecond.getTime()) {
+      dateToReplayFrom = genesisPlusOnwWeekAndASecond;
     }
 
-    return perWalletModelDataToReturn;
+    StoredBlock checkpoint = startBlock;
+    if (checkpoint == null) {
+      // Remove a week to cater for block header drift, as the CheckpointManager does.
+      checkpoint = checkpointManager.getCheckpointBefore(dateToReplayFrom.getTime() / 1000
+              - FastcoinWalletCheckpointManager.BLOCK_HEADER_DRIFT_IN_SECONDS);
+    }
+    if (checkpoint.getHeight() < blockChain.getBestChainHeight()) {
+      log.debug("Rewinding blockchain from height " + blockChain.getBestChainHeight() + " to checkpoint at height " + checkpoint.getHeight());
+      blockChain.setChainHeadAndTruncateBlockStore(checkpoint);
+    } else {
+      log.debug("Blockchain at height " + blockChain.getBestChainHeight() + " is before the checkpoint at height "
+              + checkpoint.getHeight() + " so is not rewound.");
+    }
+    return blockChain.getBestChainHeight();
   }
 
   /**
@@ -579,33 +711,8 @@ public class FastcoinWalletService {
   public Transaction sendCoins(WalletData perWalletModelData, SendRequest sendRequest,
                                CharSequence password) throws java.io.IOException, AddressFormatException, KeyCrypterException {
 
-    // Ping the peers to check the fastcoin network connection
-    List<Peer> connectedPeers = peerGroup.getConnectedPeers();
-    boolean atLeastOnePingWorked = false;
-    if (connectedPeers != null) {
-      for (Peer peer : connectedPeers) {
-
-        log.debug("Ping: {}", peer.getAddress().toString());
-
-        try {
-
-          ListenableFuture<Long> result = peer.ping();
-          result.get(4, TimeUnit.SECONDS);
-          atLeastOnePingWorked = true;
-          break;
-        } catch (ProtocolException e) {
-          log.warn("Peer '" + peer.getAddress().toString() + "' failed ping test. Message was " + e.getMessage());
-        } catch (InterruptedException e) {
-          log.warn("Peer '" + peer.getAddress().toString() + "' failed ping test. Message was " + e.getMessage());
-        } catch (ExecutionException e) {
-          log.warn("Peer '" + peer.getAddress().toString() + "' failed ping test. Message was " + e.getMessage());
-        } catch (TimeoutException e) {
-          log.warn("Peer '" + peer.getAddress().toString() + "' failed ping test. Message was " + e.getMessage());
-        }
-      }
-    }
-
-    if (!atLeastOnePingWorked) {
+    // Check the fastcoin network connection from the pings made in the background by the PeerHealthService
+    if (!PeerHealthService.INSTANCE.isNetworkReachable()) {
       throw new IllegalStateException("All peers failed ping test (check network)");
     }
 
@@ -633,7 +740,8 @@ public class FastcoinWalletService {
       // count of seen peers, the memory pool will update the transaction confidence object, that will invoke the
       // txConfidenceListener which will in turn invoke the wallets event listener onTransactionConfidenceChanged
       // method.
-      peerGroup.broadcastTransaction(sendRequest.tx);
+      ListenableFuture<Transaction> broadcast = peerGroup.broadcastTransaction(sendRequest.tx);
+      PeerHealthService.INSTANCE.recordBroadcast(broadcast, sendRequest.tx);
 
       log.debug("Sending transaction '" + Utils.bytesToHexString(sendRequest.tx.fastcoinSerialize()) + "'");
     } catch (VerificationException e1) {
@@ -658,23 +766,19 @@ public class FastcoinWalletService {
         log.debug("Cannot add fastcoinController as listener to tx = " + sendTransaction.getHashAsString() + " no transactionConfidence");
       }
 
-      try {
-        fastcoinController.getFileHandler().savePerWalletModelData(perWalletModelData, false);
-      } catch (WalletSaveException wse) {
-        log.error(wse.getClass().getCanonicalName() + " " + wse.getMessage());
-        MessageManager.INSTANCE.addMessage(new Message(wse.getClass().getCanonicalName() + " " + wse.getMessage()));
-      } catch (WalletVersionException wse) {
-        log.error(wse.getClass().getCanonicalName() + " " + wse.getMessage());
-        MessageManager.INSTANCE.addMessage(new Message(wse.getClass().getCanonicalName() + " " + wse.getMessage()));
-      }
+      // The wallet is written in the background so the send does not wait for the disk.
+      perWalletModelData.setDirty(true);
 
       try {
         // Notify other wallets of the send (it might be a send to or from them).
         List<WalletData> perWalletModelDataList = fastcoinController.getModel().getPerWalletModelDataList();
 
         if (perWalletModelDataList != null) {
+          // Only the wallets the send touches need to check it.
+          Set<WalletData> touchedWallets = fastcoinController.getModel().getTransactionRoutingIndex().findWalletsTouchedBy(sendTransaction);
           for (WalletData loopPerWalletModelData : perWalletModelDataList) {
-            if (!perWalletModelData.getWalletFilename().equals(loopPerWalletModelData.getWalletFilename())) {
+            if (touchedWallets.contains(loopPerWalletModelData)
+                    && !perWalletModelData.getWalletFilename().equals(loopPerWalletModelData.getWalletFilename())) {
               com.google.fastcoin.core.Wallet loopWallet = loopPerWalletModelData.getWallet();
               if (loopWallet.isPendingTransactionRelevant(sendTransaction)) {
                 // The loopPerWalletModelData is marked as dirty.
@@ -721,6 +825,10 @@ public class FastcoinWalletService {
 
   ;
 
+  public String getBlockchainFilename() {
+    return blockchainFilename;
+  }
+
   public String getCheckpointsFilename() {
     return checkpointsFilename;
   }
@@ -728,4 +836,22 @@ public class FastcoinWalletService {
   public FastcoinWalletCheckpointManager getCheckpointManager() {
     return checkpointManager;
   }
+
+  /**
+   * @return The address book of the peers connected to, kept next to the block store
+   */
+  public synchronized PeerAddressBook getPeerAddressBook() {
+    if (peerAddressBook == null) {
+      String peerAddressBookFilename = blockchainFilename;
+      if (peerAddressBookFilename != null && peerAddressBookFilename.endsWith(SPV_BLOCKCHAIN_SUFFIX)) {
+        peerAddressBookFilename = peerAddressBookFilename.substring(0, peerAddressBookFilename.length() - SPV_BLOCKCHAIN_SUFFIX.length());
+      }
+      if (peerAddressBookFilename == null) {
+        peerAddressBookFilename = getFilePrefix();
+      }
+      peerAddressBook = new PeerAddressBook(new File(peerAddressBookFilename + PeerAddressBook.PEER_ADDRESS_BOOK_SUFFIX),
+              networkParameters.getPort());
+    }
+    return peerAddressBook;
+  }
 }
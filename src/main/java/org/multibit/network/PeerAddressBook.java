@@ -0,0 +1,353 @@
+/**
+ * Copyright 2013 wallet.org
+ *
+ * Licensed under the MIT license (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://opensource.org/licenses/mit-license.php
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.multibit.network;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Timer;
+import java.util.TimerTask;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.fastcoin.core.PeerAddress;
+
+/**
+ * An on-disk address book of the peers that have been connected to, used to reconnect quickly at startup
+ * rather than waiting for peer discovery.
+ *
+ * For each peer the time it was last connected to and its mean ping time are kept. The peers seen most
+ * recently, and then the fastest, are tried first. Peers not seen for a fortnight are forgotten.
+ *
+ * The address book is written by a background timer once a minute if it has changed, and when save() is called,
+ * so recording a peer never writes to disk on the network thread.
+ *
+ * @author jim
+ */
+public class PeerAddressBook {
+
+    private static final Logger log = LoggerFactory.getLogger(PeerAddressBook.class);
+
+    public static final String PEER_ADDRESS_BOOK_SUFFIX = ".peers";
+
+    /**
+     * The number of peers remembered.
+     */
+    public static final int MAXIMUM_NUMBER_OF_ADDRESSES = 100;
+
+    private static final long MAXIMUM_AGE = 14L * 24 * 60 * 60 * 1000; // ms
+
+    private static final long DEFAULT_SAVE_INTERVAL = 60 * 1000; // ms
+
+    /**
+     * Peers last seen within this time of each other are ordered by ping time rather than by last seen time.
+     */
+    private static final long LAST_SEEN_GRANULARITY = 60 * 60 * 1000; // ms
+
+    private static final long UNKNOWN_ROUND_TRIP_TIME = Long.MAX_VALUE;
+
+    private final File addressBookFile;
+
+    private final int defaultPort;
+
+    /**
+     * The peers known, keyed on host and port.
+     */
+    private final Map<String, Entry> entries = new HashMap<String, Entry>();
+
+    private boolean dirty;
+
+    /**
+     * Held whilst the address book is written, so that only one save writes the file at a time.
+     */
+    private final Object saveLock = new Object();
+
+    private final Timer saveTimer;
+
+    private static class Entry {
+        final String host;
+        final int port;
+        long lastSeenTime;
+        long roundTripTime = UNKNOWN_ROUND_TRIP_TIME;
+
+        Entry(String host, int port) {
+            this.host = host;
+            this.port = port;
+        }
+    }
+
+    private static final Comparator<Entry> BEST_FIRST = new Comparator<Entry>() {
+        @Override
+        public int compare(Entry first, Entry second) {
+            long firstSeen = first.lastSeenTime / LAST_SEEN_GRANULARITY;
+            long secondSeen = second.lastSeenTime / LAST_SEEN_GRANULARITY;
+            if (firstSeen != secondSeen) {
+                return firstSeen > secondSeen ? -1 : 1;
+            }
+            if (first.roundTripTime != second.roundTripTime) {
+                return first.roundTripTime < second.roundTripTime ? -1 : 1;
+            }
+            return 0;
+        }
+    };
+
+    /**
+     * @param addressBookFile The file the address book is kept in. It is read if it exists.
+     * @param defaultPort The port used for an address stored without one
+     */
+    public PeerAddressBook(File addressBookFile, int defaultPort) {
+        this(addressBookFile, defaultPort, DEFAULT_SAVE_INTERVAL);
+    }
+
+    /**
+     * @param saveInterval How often the address book is written if it has changed, in milliseconds
+     */
+    PeerAddressBook(File addressBookFile, int defaultPort, long saveInterval) {
+        this.addressBookFile = addressBookFile;
+        this.defaultPort = defaultPort;
+        load();
+
+        saveTimer = new Timer("PeerAddressBook save", true);
+        saveTimer.schedule(new TimerTask() {
+            @Override
+            public void run() {
+                save();
+            }
+        }, saveInterval, saveInterval);
+    }
+
+    /**
+     * @return The best peers to connect to, best first
+     */
+    public synchronized List<PeerAddress> getBestAddresses(int maximumNumberOfAddresses) {
+        List<Entry> sortedEntries = new ArrayList<Entry>(entries.values());
+        Collections.sort(sortedEntries, BEST_FIRST);
+
+        List<PeerAddress> bestAddresses = new ArrayList<PeerAddress>();
+        for (Entry entry : sortedEntries) {
+            if (bestAddresses.size() >= maximumNumberOfAddresses) {
+                break;
+            }
+            try {
+                bestAddresses.add(new PeerAddress(InetAddress.getByName(entry.host), entry.port));
+            } catch (UnknownHostException e) {
+                log.debug("Could not resolve peer address '" + entry.host + "'. " + e.getMessage());
+            }
+        }
+        return bestAddresses;
+    }
+
+    /**
+     * A peer has been connected to.
+     */
+    public synchronized void peerConnected(PeerAddress peerAddress) {
+        Entry entry = getOrCreateEntry(peerAddress);
+        if (entry == null) {
+            return;
+        }
+        entry.lastSeenTime = System.currentTimeMillis();
+        dirty = true;
+    }
+
+    /**
+     * A peer has answered a ping.
+     */
+    public synchronized void recordRoundTripTime(PeerAddress peerAddress, long roundTripTime) {
+        Entry entry = getOrCreateEntry(peerAddress);
+        if (entry == null) {
+            return;
+        }
+        entry.lastSeenTime = System.currentTimeMillis();
+        entry.roundTripTime = roundTripTime;
+        dirty = true;
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * Write the address book if it has changed.
+     * The peers are copied under the address book lock but written outside it, so peers can be recorded
+     * whilst the address book is being written.
+     */
+    public void save() {
+        synchronized (saveLock) {
+            Properties properties;
+            synchronized (this) {
+                if (!dirty || addressBookFile == null) {
+                    return;
+                }
+                removeOldEntries();
+
+                properties = new Properties();
+                for (Entry entry : entries.values()) {
+                    String roundTripTime = entry.roundTripTime == UNKNOWN_ROUND_TRIP_TIME ? "" : "" + entry.roundTripTime;
+                    properties.setProperty(entry.host + ":" + entry.port, entry.lastSeenTime + "," + roundTripTime);
+                }
+                dirty = false;
+            }
+
+            if (!write(properties)) {
+                synchronized (this) {
+                    dirty = true;
+                }
+            }
+        }
+    }
+
+    /**
+     * Stop the background saves and write the address book if it has changed.
+     */
+    public void close() {
+        saveTimer.cancel();
+        save();
+    }
+
+    /**
+     * Write to a temporary file and rename it over the address book so a partly written address book is never read.
+     * @return true if the address book was written
+     */
+    private boolean write(Properties properties) {
+        File temporaryFile = new File(addressBookFile.getAbsolutePath() + ".tmp");
+        OutputStream outputStream = null;
+        try {
+            outputStream = new FileOutputStream(temporaryFile);
+            properties.store(outputStream, "Peer address book");
+            outputStream.close();
+            outputStream = null;
+
+            if (!temporaryFile.renameTo(addressBookFile)) {
+                addressBookFile.delete();
+                if (!temporaryFile.renameTo(addressBookFile)) {
+                    log.error("Could not write peer address book '" + addressBookFile.getAbsolutePath() + "'");
+                    return false;
+                }
+            }
+            return true;
+        } catch (IOException e) {
+            log.error("Could not write peer address book " + e.getClass().getName() + " " + e.getMessage());
+            return false;
+        } finally {
+            if (outputStream != null) {
+                try {
+                    outputStream.close();
+                } catch (IOException e) {
+                    log.error(e.getClass().getName() + " " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    private synchronized void load() {
+        if (addressBookFile == null || !addressBookFile.exists()) {
+            return;
+        }
+
+        Properties properties = new Properties();
+        InputStream inputStream = null;
+        try {
+            inputStream = new FileInputStream(addressBookFile);
+            properties.load(inputStream);
+        } catch (IOException e) {
+            log.error("Could not read peer address book " + e.getClass().getName() + " " + e.getMessage());
+            return;
+        } finally {
+            if (inputStream != null) {
+                try {
+                    inputStream.close();
+                } catch (IOException e) {
+                    log.error(e.getClass().getName() + " " + e.getMessage());
+                }
+            }
+        }
+
+        for (String key : properties.stringPropertyNames()) {
+            try {
+                // The host may be an IPv6 address so split on the last colon.
+                int separator = key.lastIndexOf(':');
+                String host = separator > 0 ? key.substring(0, separator) : key;
+                int port = separator > 0 ? Integer.parseInt(key.substring(separator + 1)) : defaultPort;
+
+                String[] values = properties.getProperty(key).split(",", -1);
+                Entry entry = new Entry(host, port);
+                entry.lastSeenTime = Long.parseLong(values[0]);
+                if (values.length > 1 && values[1].length() > 0) {
+                    entry.roundTripTime = Long.parseLong(values[1]);
+                }
+                entries.put(host + ":" + port, entry);
+            } catch (NumberFormatException e) {
+                log.debug("Ignoring peer address book entry '" + key + "'. " + e.getMessage());
+            }
+        }
+        removeOldEntries();
+        log.debug("Read " + entries.size() + " peers from peer address book '" + addressBookFile.getAbsolutePath() + "'");
+    }
+
+    /**
+     * Must be called holding the PeerAddressBook lock.
+     */
+    private Entry getOrCreateEntry(PeerAddress peerAddress) {
+        if (peerAddress == null || peerAddress.getAddr() == null) {
+            return null;
+        }
+        String host = peerAddress.getAddr().getHostAddress();
+        int port = peerAddress.getPort();
+        String key = host + ":" + port;
+        Entry entry = entries.get(key);
+        if (entry == null) {
+            entry = new Entry(host, port);
+            entries.put(key, entry);
+        }
+        return entry;
+    }
+
+    /**
+     * Forget peers not seen recently and the worst peers over the maximum number.
+     * Must be called holding the PeerAddressBook lock.
+     */
+    private void removeOldEntries() {
+        long oldestLastSeenTime = System.currentTimeMillis() - MAXIMUM_AGE;
+        Iterator<Entry> iterator = entries.values().iterator();
+        while (iterator.hasNext()) {
+            if (iterator.next().lastSeenTime < oldestLastSeenTime) {
+                iterator.remove();
+            }
+        }
+
+        if (entries.size() > MAXIMUM_NUMBER_OF_ADDRESSES) {
+            List<Entry> sortedEntries = new ArrayList<Entry>(entries.values());
+            Collections.sort(sortedEntries, BEST_FIRST);
+            for (Entry entry : sortedEntries.subList(MAXIMUM_NUMBER_OF_ADDRESSES, sortedEntries.size())) {
+                entries.remove(entry.host + ":" + entry.port);
+            }
+        }
+    }
+}
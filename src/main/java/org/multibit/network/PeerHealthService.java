@@ -0,0 +1,371 @@
+/**
+ * Copyright 2013 wallet.org
+ *
+ * Licensed under the MIT license (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://opensource.org/licenses/mit-license.php
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.multibit.network;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.ListIterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.Timer;
+import java.util.TimerTask;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+import org.multibit.controller.fastcoin.FastcoinController;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.fastcoin.core.Peer;
+import com.google.fastcoin.core.PeerAddress;
+import com.google.fastcoin.core.PeerGroup;
+import com.google.fastcoin.core.Transaction;
+
+/**
+ * Measures the health of the connected peers in the background so that sending does not have to
+ * ping the peers first.
+ *
+ * Every connected peer is pinged every few seconds without waiting for the reply. The round trip time of
+ * each ping (or its failure) is kept in a ring buffer per peer. Whether each peer announces the transactions
+ * that are broadcast is also counted.
+ *
+ * @author jim
+ */
+public enum PeerHealthService {
+    INSTANCE;
+
+    private static final Logger log = LoggerFactory.getLogger(PeerHealthService.class);
+
+    private static final int PING_DELAY_TIME = 1000; // ms
+    private static final int PING_REPEAT_TIME = 5000; // ms
+
+    /**
+     * A ping not answered in this time counts as a failure.
+     */
+    private static final long PING_TIMEOUT = 4000; // ms
+
+    /**
+     * The network is taken as working if a peer has answered a ping in this time.
+     */
+    private static final long HEALTHY_WINDOW = PING_REPEAT_TIME * 3 + PING_TIMEOUT; // ms
+
+    /**
+     * The number of pings remembered for each peer.
+     */
+    public static final int HISTORY_SIZE = 16;
+
+    private static final long FAILED = -1;
+
+    private FastcoinController controller;
+
+    private Timer pingTimer;
+
+    private ExecutorService pingResultExecutor;
+
+    /**
+     * The health of each peer, keyed on peer address.
+     */
+    private final Map<String, PeerHealth> peerHealths = new HashMap<String, PeerHealth>();
+
+    /**
+     * The ping history and broadcast counts of a peer.
+     */
+    public static class PeerHealth {
+        private final long[] roundTripTimes = new long[HISTORY_SIZE];
+        private int numberOfPings;
+        private int nextPing;
+
+        private long pingStartTime;
+        private boolean pingInProgress;
+
+        /**
+         * Incremented for each ping so that a reply to a ping that has timed out is not taken as the reply to a later one.
+         */
+        private long pingSequenceNumber;
+
+        private long lastSuccessfulPingTime;
+        private boolean lastPingFailed;
+
+        private int numberOfBroadcastsAnnounced;
+        private int numberOfBroadcastsNotAnnounced;
+
+        synchronized void recordPing(long roundTripTime) {
+            roundTripTimes[nextPing] = roundTripTime;
+            nextPing = (nextPing + 1) % HISTORY_SIZE;
+            numberOfPings = Math.min(numberOfPings + 1, HISTORY_SIZE);
+            pingInProgress = false;
+            lastPingFailed = roundTripTime == FAILED;
+            if (!lastPingFailed) {
+                lastSuccessfulPingTime = System.currentTimeMillis();
+            }
+        }
+
+        /**
+         * @return The mean round trip time of the successful pings in the history, or Long.MAX_VALUE if there are none
+         */
+        public synchronized long getAverageRoundTripTime() {
+            long total = 0;
+            int count = 0;
+            for (int i = 0; i < numberOfPings; i++) {
+                if (roundTripTimes[i] != FAILED) {
+                    total += roundTripTimes[i];
+                    count++;
+                }
+            }
+            return count == 0 ? Long.MAX_VALUE : total / count;
+        }
+
+        /**
+         * @return The proportion of the pings in the history that were answered
+         */
+        public synchronized double getPingSuccessRate() {
+            if (numberOfPings == 0) {
+                return 0;
+            }
+            int successes = 0;
+            for (int i = 0; i < numberOfPings; i++) {
+                if (roundTripTimes[i] != FAILED) {
+                    successes++;
+                }
+            }
+            return (double) successes / numberOfPings;
+        }
+
+        public synchronized long getLastSuccessfulPingTime() {
+            return lastSuccessfulPingTime;
+        }
+
+        public synchronized boolean isLastPingFailed() {
+            return lastPingFailed;
+        }
+
+        public synchronized int getNumberOfBroadcastsAnnounced() {
+            return numberOfBroadcastsAnnounced;
+        }
+
+        public synchronized int getNumberOfBroadcastsNotAnnounced() {
+            return numberOfBroadcastsNotAnnounced;
+        }
+    }
+
+    public synchronized void initialise(FastcoinController controller) {
+        this.controller = controller;
+        if (pingResultExecutor == null) {
+            pingResultExecutor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable runnable) {
+                    Thread thread = new Thread(runnable, "PeerHealthService");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+        if (pingTimer == null) {
+            pingTimer = new Timer("PeerHealthService ping", true);
+            pingTimer.schedule(new TimerTask() {
+                @Override
+                public void run() {
+                    pingConnectedPeers();
+                }
+            }, PING_DELAY_TIME, PING_REPEAT_TIME);
+        }
+    }
+
+    /**
+     * @return The health of a peer, or null if it has not been measured
+     */
+    public PeerHealth getPeerHealth(Peer peer) {
+        if (peer == null || peer.getAddress() == null) {
+            return null;
+        }
+        synchronized (peerHealths) {
+            return peerHealths.get(peer.getAddress().toString());
+        }
+    }
+
+    /**
+     * @return The mean round trip time of a peer, or Long.MAX_VALUE if it has not answered a ping
+     */
+    public long getAverageRoundTripTime(Peer peer) {
+        PeerHealth peerHealth = getPeerHealth(peer);
+        return peerHealth == null ? Long.MAX_VALUE : peerHealth.getAverageRoundTripTime();
+    }
+
+    /**
+     * See if the fastcoin network can be reached, from the pings already made.
+     * A peer that has only just connected and has not been pinged yet is given the benefit of the doubt.
+     */
+    public boolean isNetworkReachable() {
+        PeerGroup peerGroup = getPeerGroup();
+        if (peerGroup == null) {
+            return false;
+        }
+        List<Peer> connectedPeers = peerGroup.getConnectedPeers();
+        if (connectedPeers == null) {
+            return false;
+        }
+        long now = System.currentTimeMillis();
+        for (Peer peer : connectedPeers) {
+            PeerHealth peerHealth = getPeerHealth(peer);
+            if (peerHealth == null) {
+                return true;
+            }
+            synchronized (peerHealth) {
+                if (peerHealth.numberOfPings == 0 || now - peerHealth.lastSuccessfulPingTime <= HEALTHY_WINDOW) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Count which of the connected peers announce a broadcast transaction back once the broadcast completes.
+     */
+    public void recordBroadcast(final ListenableFuture<Transaction> broadcast, final Transaction transaction) {
+        if (broadcast == null || transaction == null || pingResultExecutor == null) {
+            return;
+        }
+        broadcast.addListener(new Runnable() {
+            @Override
+            public void run() {
+                PeerGroup peerGroup = getPeerGroup();
+                if (peerGroup == null || transaction.getConfidence() == null) {
+                    return;
+                }
+                Set<String> announcedBy = new HashSet<String>();
+                ListIterator<PeerAddress> iterator = transaction.getConfidence().getBroadcastBy();
+                while (iterator.hasNext()) {
+                    announcedBy.add(iterator.next().toString());
+                }
+                for (Peer peer : peerGroup.getConnectedPeers()) {
+                    PeerHealth peerHealth = getOrCreatePeerHealth(peer);
+                    synchronized (peerHealth) {
+                        if (announcedBy.contains(peer.getAddress().toString())) {
+                            peerHealth.numberOfBroadcastsAnnounced++;
+                        } else {
+                            peerHealth.numberOfBroadcastsNotAnnounced++;
+                        }
+                    }
+                }
+            }
+        }, pingResultExecutor);
+    }
+
+    void pingConnectedPeers() {
+        PeerGroup peerGroup = getPeerGroup();
+        if (peerGroup == null) {
+            return;
+        }
+        List<Peer> connectedPeers = peerGroup.getConnectedPeers();
+        if (connectedPeers == null) {
+            return;
+        }
+
+        long now = System.currentTimeMillis();
+        for (final Peer peer : connectedPeers) {
+            final PeerHealth peerHealth = getOrCreatePeerHealth(peer);
+            final long pingSequenceNumber;
+            final long pingStartTime = now;
+            synchronized (peerHealth) {
+                if (peerHealth.pingInProgress) {
+                    if (now - peerHealth.pingStartTime > PING_TIMEOUT) {
+                        log.debug("Peer '" + peer.getAddress() + "' did not answer a ping within " + PING_TIMEOUT + " ms");
+                        peerHealth.recordPing(FAILED);
+                    } else {
+                        continue;
+                    }
+                }
+                peerHealth.pingInProgress = true;
+                peerHealth.pingStartTime = pingStartTime;
+                pingSequenceNumber = ++peerHealth.pingSequenceNumber;
+            }
+
+            try {
+                final ListenableFuture<Long> ping = peer.ping();
+                ping.addListener(new Runnable() {
+                    @Override
+                    public void run() {
+                        long roundTripTime = FAILED;
+                        synchronized (peerHealth) {
+                            if (!peerHealth.pingInProgress || peerHealth.pingSequenceNumber != pingSequenceNumber) {
+                                // This ping has timed out, possibly with a later ping now in progress.
+                                return;
+                            }
+                            try {
+                                ping.get();
+                                roundTripTime = System.currentTimeMillis() - pingStartTime;
+                            } catch (Exception e) {
+                                roundTripTime = FAILED;
+                            }
+                            peerHealth.recordPing(roundTripTime);
+                        }
+                        if (roundTripTime != FAILED) {
+                            recordRoundTripTime(peer, roundTripTime);
+                        }
+                    }
+                }, pingResultExecutor);
+            } catch (Exception e) {
+                log.debug("Peer '" + peer.getAddress() + "' could not be pinged. " + e.getClass().getName() + " " + e.getMessage());
+                synchronized (peerHealth) {
+                    if (peerHealth.pingSequenceNumber == pingSequenceNumber) {
+                        peerHealth.recordPing(FAILED);
+                    }
+                }
+            }
+        }
+
+        // Forget peers that are no longer connected.
+        Set<String> connectedAddresses = new HashSet<String>();
+        for (Peer peer : connectedPeers) {
+            connectedAddresses.add(peer.getAddress().toString());
+        }
+        synchronized (peerHealths) {
+            peerHealths.keySet().retainAll(connectedAddresses);
+        }
+    }
+
+    /**
+     * Keep the ping time in the peer address book so the fastest peers are connected to first at the next startup.
+     */
+    private void recordRoundTripTime(Peer peer, long roundTripTime) {
+        if (controller != null && controller.getFastcoinWalletService() != null) {
+            controller.getFastcoinWalletService().getPeerAddressBook().recordRoundTripTime(peer.getAddress(), roundTripTime);
+        }
+    }
+
+    private PeerHealth getOrCreatePeerHealth(Peer peer) {
+        String address = peer.getAddress().toString();
+        synchronized (peerHealths) {
+            PeerHealth peerHealth = peerHealths.get(address);
+            if (peerHealth == null) {
+                peerHealth = new PeerHealth();
+                peerHealths.put(address, peerHealth);
+            }
+            return peerHealth;
+        }
+    }
+
+    private PeerGroup getPeerGroup() {
+        if (controller == null || controller.getFastcoinWalletService() == null) {
+            return null;
+        }
+        return controller.getFastcoinWalletService().getPeerGroup();
+    }
+}
@@ -0,0 +1,339 @@
+/**
+ * Copyright 2013 wallet.org
+ *
+ * Licensed under the MIT license (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://opensource.org/licenses/mit-license.php
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.multibit.network;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+import org.multibit.controller.fastcoin.FastcoinController;
+import org.multibit.file.WalletSaveException;
+import org.multibit.model.fastcoin.WalletData;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.wallet.store.WalletVersionException;
+
+import com.google.fastcoin.core.Sha256Hash;
+import com.google.fastcoin.core.StoredBlock;
+import com.google.fastcoin.store.BlockStore;
+import com.google.fastcoin.store.BlockStoreException;
+
+/**
+ * Records the progress of the current replay in a small journal next to the block store so that
+ * a replay interrupted by the application closing resumes from where it got to rather than from its original start.
+ *
+ * While a replay runs, the wallets being replayed are saved every minute and then the chain head is written to the
+ * journal as the last completed block, so the journal is never ahead of the wallets on disk.
+ * The journal is deleted when the replay completes.
+ *
+ * @author jim
+ */
+public enum ReplayJournal {
+    INSTANCE;
+
+    private static final Logger log = LoggerFactory.getLogger(ReplayJournal.class);
+
+    public static final String REPLAY_JOURNAL_SUFFIX = ".replay";
+
+    private static final long JOURNAL_INTERVAL_IN_MILLISECONDS = 60 * 1000;
+
+    private static final String WALLET_COUNT = "walletCount";
+    private static final String WALLET_FILENAME_PREFIX = "wallet.";
+    private static final String START_HEIGHT = "startHeight";
+    private static final String TARGET_HEIGHT = "targetHeight";
+    private static final String LAST_BLOCK_HEIGHT = "lastBlockHeight";
+    private static final String LAST_BLOCK_HASH = "lastBlockHash";
+
+    private FastcoinController controller;
+
+    /**
+     * The replay currently being journalled, or null if there is none.
+     */
+    private ReplayTask currentReplayTask;
+
+    private long lastJournalTime;
+
+    private boolean journalWriteInProgress;
+
+    private ExecutorService journalWriter;
+
+    public synchronized void initialise(FastcoinController controller) {
+        this.controller = controller;
+        if (journalWriter == null) {
+            journalWriter = Executors.newSingleThreadExecutor(new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable runnable) {
+                    Thread thread = new Thread(runnable, "ReplayJournal");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+    }
+
+    /**
+     * Start journalling a replay. The chain has been rewound to the start of the replay.
+     */
+    public synchronized void replayStarted(ReplayTask replayTask, int targetHeight) {
+        if (controller == null || replayTask == null) {
+            return;
+        }
+        currentReplayTask = replayTask;
+        lastJournalTime = System.currentTimeMillis();
+
+        StoredBlock chainHead = getChainHead();
+        writeJournal(replayTask, targetHeight, chainHead);
+    }
+
+    /**
+     * Called as each block is added to the chain during a replay.
+     * Every minute the replayed wallets are saved and the chain head recorded in the journal.
+     */
+    public void blockProcessed() {
+        final ReplayTask replayTask;
+        synchronized (this) {
+            if (currentReplayTask == null || journalWriteInProgress || journalWriter == null
+                    || System.currentTimeMillis() - lastJournalTime < JOURNAL_INTERVAL_IN_MILLISECONDS) {
+                return;
+            }
+            replayTask = currentReplayTask;
+            journalWriteInProgress = true;
+            lastJournalTime = System.currentTimeMillis();
+        }
+
+        final StoredBlock chainHead = getChainHead();
+        final int targetHeight = ReplayManager.INSTANCE.getActualLastChainHeight();
+        journalWriter.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    // The wallets have seen at least up to the chain head once they are saved.
+                    if (saveWallets(replayTask)) {
+                        synchronized (ReplayJournal.this) {
+                            if (currentReplayTask == replayTask) {
+                                writeJournal(replayTask, targetHeight, chainHead);
+                            }
+                        }
+                    }
+                } finally {
+                    synchronized (ReplayJournal.this) {
+                        journalWriteInProgress = false;
+                    }
+                }
+            }
+        });
+    }
+
+    /**
+     * The current replay has completed - delete the journal.
+     */
+    public synchronized void replayCompleted() {
+        currentReplayTask = null;
+        File journalFile = getJournalFile();
+        if (journalFile != null && journalFile.exists()) {
+            if (!journalFile.delete()) {
+                log.error("Could not delete replay journal '" + journalFile.getAbsolutePath() + "'");
+            }
+        }
+    }
+
+    /**
+     * Create a replay task that resumes the replay recorded in the journal, if there is one.
+     * Only the wallets in the journal that are open are replayed.
+     *
+     * @return The replay task, or null if there is no replay to resume.
+     */
+    public synchronized ReplayTask createResumeReplayTask() {
+        File journalFile = getJournalFile();
+        if (controller == null || journalFile == null || !journalFile.exists()) {
+            return null;
+        }
+
+        Properties journal = new Properties();
+        InputStream inputStream = null;
+        try {
+            inputStream = new FileInputStream(journalFile);
+            journal.load(inputStream);
+
+            List<WalletData> perWalletModelDataToReplay = new ArrayList<WalletData>();
+            int walletCount = Integer.parseInt(journal.getProperty(WALLET_COUNT, "0"));
+            for (int i = 0; i < walletCount; i++) {
+                String walletFilename = journal.getProperty(WALLET_FILENAME_PREFIX + i);
+                WalletData perWalletModelData = controller.getModel().getPerWalletModelDataByWalletFilename(walletFilename);
+                if (perWalletModelData != null && perWalletModelData.getWallet() != null) {
+                    perWalletModelDataToReplay.add(perWalletModelData);
+                }
+            }
+            if (perWalletModelDataToReplay.isEmpty()) {
+                return null;
+            }
+
+            // Resume from the last completed block if it is still in the block store, otherwise from the checkpoint before it.
+            int lastBlockHeight = Integer.parseInt(journal.getProperty(LAST_BLOCK_HEIGHT, "0"));
+            String lastBlockHash = journal.getProperty(LAST_BLOCK_HASH, "");
+            StoredBlock resumeBlock = null;
+            BlockStore blockStore = controller.getFastcoinWalletService().getBlockStore();
+            if (blockStore != null && lastBlockHash.length() > 0) {
+                resumeBlock = blockStore.get(new Sha256Hash(lastBlockHash));
+            }
+            if (resumeBlock == null && controller.getFastcoinWalletService().getCheckpointManager() != null) {
+                resumeBlock = controller.getFastcoinWalletService().getCheckpointManager().getCheckpointBeforeOrAtHeight(lastBlockHeight);
+            }
+            if (resumeBlock == null) {
+                return null;
+            }
+
+            log.debug("Resuming replay of " + perWalletModelDataToReplay.size() + " wallets from height " + resumeBlock.getHeight()
+                    + " (the replay originally started at height " + journal.getProperty(START_HEIGHT) + ")");
+            Date resumeDate = null;
+            if (resumeBlock.getHeader() != null) {
+                resumeDate = new Date(resumeBlock.getHeader().getTimeSeconds() * 1000);
+            }
+            ReplayTask replayTask = new ReplayTask(perWalletModelDataToReplay, resumeDate, resumeBlock.getHeight());
+            replayTask.setStartBlock(resumeBlock);
+            return replayTask;
+        } catch (IOException e) {
+            log.error("Could not read replay journal " + e.getClass().getName() + " " + e.getMessage());
+        } catch (NumberFormatException e) {
+            log.error("Could not read replay journal " + e.getClass().getName() + " " + e.getMessage());
+        } catch (IllegalArgumentException e) {
+            log.error("Could not read replay journal " + e.getClass().getName() + " " + e.getMessage());
+        } catch (BlockStoreException e) {
+            log.error("Could not read replay journal " + e.getClass().getName() + " " + e.getMessage());
+        } finally {
+            if (inputStream != null) {
+                try {
+                    inputStream.close();
+                } catch (IOException e) {
+                    log.error(e.getClass().getName() + " " + e.getMessage());
+                }
+            }
+        }
+        return null;
+    }
+
+    private boolean saveWallets(ReplayTask replayTask) {
+        if (replayTask.getPerWalletModelDataToReplay() == null) {
+            return true;
+        }
+        for (WalletData perWalletModelData : replayTask.getPerWalletModelDataToReplay()) {
+            try {
+                perWalletModelData.setDirty(true);
+                controller.getFileHandler().savePerWalletModelData(perWalletModelData, false);
+                if (perWalletModelData.isFilesHaveBeenChangedByAnotherProcess()) {
+                    // Only the backups were written.
+                    return false;
+                }
+            } catch (WalletSaveException wse) {
+                log.error(wse.getClass().getCanonicalName() + " " + wse.getMessage());
+                return false;
+            } catch (WalletVersionException wve) {
+                log.error(wve.getClass().getCanonicalName() + " " + wve.getMessage());
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Must be called holding the ReplayJournal lock.
+     */
+    private void writeJournal(ReplayTask replayTask, int targetHeight, StoredBlock lastBlock) {
+        File journalFile = getJournalFile();
+        if (journalFile == null) {
+            return;
+        }
+
+        Properties journal = new Properties();
+        List<WalletData> perWalletModelDataToReplay = replayTask.getPerWalletModelDataToReplay();
+        int walletCount = 0;
+        if (perWalletModelDataToReplay != null) {
+            for (WalletData perWalletModelData : perWalletModelDataToReplay) {
+                if (perWalletModelData.getWalletFilename() != null) {
+                    journal.setProperty(WALLET_FILENAME_PREFIX + walletCount, perWalletModelData.getWalletFilename());
+                    walletCount++;
+                }
+            }
+        }
+        journal.setProperty(WALLET_COUNT, "" + walletCount);
+        journal.setProperty(START_HEIGHT, "" + replayTask.getStartHeight());
+        journal.setProperty(TARGET_HEIGHT, "" + targetHeight);
+        if (lastBlock != null) {
+            journal.setProperty(LAST_BLOCK_HEIGHT, "" + lastBlock.getHeight());
+            journal.setProperty(LAST_BLOCK_HASH, lastBlock.getHeader().getHashAsString());
+        } else {
+            journal.setProperty(LAST_BLOCK_HEIGHT, "" + replayTask.getStartHeight());
+        }
+
+        // Write to a temporary file and rename it over the journal so a partly written journal is never read.
+        File temporaryFile = new File(journalFile.getAbsolutePath() + ".tmp");
+        OutputStream outputStream = null;
+        try {
+            outputStream = new FileOutputStream(temporaryFile);
+            journal.store(outputStream, "Replay journal");
+            outputStream.close();
+            outputStream = null;
+
+            if (!temporaryFile.renameTo(journalFile)) {
+                journalFile.delete();
+                if (!temporaryFile.renameTo(journalFile)) {
+                    log.error("Could not write replay journal '" + journalFile.getAbsolutePath() + "'");
+                }
+            }
+        } catch (IOException e) {
+            log.error("Could not write replay journal " + e.getClass().getName() + " " + e.getMessage());
+        } finally {
+            if (outputStream != null) {
+                try {
+                    outputStream.close();
+                } catch (IOException e) {
+                    log.error(e.getClass().getName() + " " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    private StoredBlock getChainHead() {
+        if (controller == null || controller.getFastcoinWalletService() == null || controller.getFastcoinWalletService().getChain() == null) {
+            return null;
+        }
+        return controller.getFastcoinWalletService().getChain().getChainHead();
+    }
+
+    private File getJournalFile() {
+        if (controller == null || controller.getFastcoinWalletService() == null) {
+            return null;
+        }
+        String blockchainFilename = controller.getFastcoinWalletService().getBlockchainFilename();
+        if (blockchainFilename == null) {
+            return null;
+        }
+        if (blockchainFilename.endsWith(FastcoinWalletService.SPV_BLOCKCHAIN_SUFFIX)) {
+            blockchainFilename = blockchainFilename.substring(0, blockchainFilename.length() - FastcoinWalletService.SPV_BLOCKCHAIN_SUFFIX.length());
+        }
+        return new File(blockchainFilename + REPLAY_JOURNAL_SUFFIX);
+    }
+}
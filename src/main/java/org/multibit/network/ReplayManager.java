@@ -16,7 +16,6 @@
 
 package org.multibit.network;
 
-import com.google.fastcoin.core.CheckpointManager;
 import com.google.fastcoin.core.PeerGroup;
 import com.google.fastcoin.core.StoredBlock;
 import com.google.fastcoin.store.BlockStoreException;
@@ -29,8 +28,6 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.swing.*;
-import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
 import java.text.DateFormat;
 import java.util.*;
@@ -110,10 +107,7 @@ public enum ReplayManager {
 
     log.debug("Starting replay of blockchain from date = '" + dateToReplayFrom);
 
-    // Reset UI to zero peers.
-    controller.getPeerEventListener().onPeerDisconnected(null, 0);
-
-    // Restart peerGroup and download rest of blockchain.
+    // Download rest of blockchain.
     Message message;
     if (dateToReplayFrom != null) {
       message = new Message(controller.getLocaliser().getString(
@@ -128,36 +122,25 @@ public enum ReplayManager {
     }
     MessageManager.INSTANCE.addMessage(message);
 
-    log.debug("About to restart PeerGroup.");
-    message = new Message(controller.getLocaliser().getString("fastcoinWalletService.stoppingFastcoinNetworkConnection"),
-            false, 0);
-    MessageManager.INSTANCE.addMessage(message);
-
-    controller.getFastcoinWalletService().getPeerGroup().stopAndWait();
-    log.debug("PeerGroup is now stopped.");
-
-    // Reset UI to zero peers.
-    controller.getPeerEventListener().onPeerDisconnected(null, 0);
-
-    // Close the blockstore and recreate a new one.
-    int newChainHeightAfterTruncate = controller.getFastcoinWalletService().createNewBlockStoreForReplay(dateToReplayFrom);
+    // Rewind the blockchain in place, keeping the peergroup connected.
+    int newChainHeightAfterTruncate = controller.getFastcoinWalletService().rewindBlockChainForReplay(dateToReplayFrom, replayTask.getStartBlock());
     log.debug("dateToReplayFrom = " + dateToReplayFrom + ", newChainHeightAfterTruncate = " + newChainHeightAfterTruncate);
     replayTask.setStartHeight(newChainHeightAfterTruncate);
 
-    // Create a new PeerGroup.
-    controller.getFastcoinWalletService().createNewPeerGroup();
-    log.debug("Recreated PeerGroup.");
+    // Record the replay so that it can be resumed if MultiBitWallet is closed before it completes.
+    ReplayJournal.INSTANCE.replayStarted(replayTask, actualLastChainHeight);
 
     // Hook up the download listeners.
     addDownloadListeners(perWalletModelDataList);
 
-    // Start up the PeerGroup.
     PeerGroup peerGroup = controller.getFastcoinWalletService().getPeerGroup();
-    peerGroup.start();
-    log.debug("Restarted PeerGroup = " + peerGroup.toString());
+    if (!peerGroup.isRunning()) {
+      peerGroup.start();
+      log.debug("Started PeerGroup = " + peerGroup.toString());
+    }
 
     log.debug("About to start  blockchain download.");
-    controller.getFastcoinWalletService().getPeerGroup().downloadBlockChain();
+    peerGroup.downloadBlockChain();
     log.debug("Blockchain download started.");
   }
 
@@ -204,34 +187,15 @@ public enum ReplayManager {
     // Work out for this replay task where the blockchain will be truncated to.
     int startHeight = replayTask.getStartHeight();
     if (startHeight == ReplayTask.UNKNOWN_START_HEIGHT) {
-      File checkpointsFile = new File(controller.getFastcoinWalletService().getCheckpointsFilename());
-      System.out.println("ReplayManager#offerReplayTask checkpointsFile = " + checkpointsFile.getAbsolutePath());
-      if (checkpointsFile.exists() && replayTask.getStartDate() != null) {
-        FileInputStream stream = null;
-        try {
-          stream = new FileInputStream(checkpointsFile);
-          CheckpointManager checkpointManager = new CheckpointManager(controller.getModel().getNetworkParameters(), stream);
-          StoredBlock checkpoint = checkpointManager.getCheckpointBefore(replayTask.getStartDate().getTime() / 1000);
-          System.out.println("ReplayManager#offerReplayTask checkpoint = " + checkpoint);
-          if (checkpoint != null) {
-            startHeight = checkpoint.getHeight();
-            System.out.println("ReplayManager#offerReplayTask startHeight = " + startHeight);
-
-            // Store it in the replay task as it will be used for percents.
-            replayTask.setStartHeight(startHeight);
-          }
-        } catch (IOException e) {
-          log.error(e.getClass().getName() + " " + e.getMessage());
-        } finally {
-          if (stream != null) {
-            try {
-              stream.close();
-            } catch (IOException e) {
-              e.printStackTrace();
-            }
-          }
+      FastcoinWalletCheckpointManager checkpointManager = controller.getFastcoinWalletService().getCheckpointManager();
+      if (checkpointManager != null && replayTask.getStartDate() != null) {
+        StoredBlock checkpoint = checkpointManager.getCheckpointBefore(replayTask.getStartDate().getTime() / 1000);
+        if (checkpoint != null) {
+          startHeight = checkpoint.getHeight();
+
+          // Store it in the replay task as it will be used for percents.
+          replayTask.setStartHeight(startHeight);
         }
-
       }
     }
     log.debug("Actual replayTask offered = " + replayTask.toString());
@@ -279,6 +243,8 @@ public enum ReplayManager {
     // Tell the ReplayTimerTask that we are cleaning up.
     replayManagerTimerTask.currentTaskIsTidyingUp(true);
 
+    ReplayJournal.INSTANCE.replayCompleted();
+
     try {
       if (currentTask != null) {
         // This task is complete. Inform the UI.
@@ -372,6 +338,9 @@ public enum ReplayManager {
     regularDownloadIsRunning = false;
     SendFastcoinPanel.setEnableSendButton(true);
     log.debug("Download has completed (in ReplayManager) - regularDownloadIsRunning = " + regularDownloadIsRunning);
+
+    // Look for new checkpoints in the blocks downloaded.
+    CheckpointGenerator.INSTANCE.downloadHasCompleted();
   }
 
   /**
@@ -7,6 +7,8 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Queue;
 import java.util.TimerTask;
 
@@ -55,6 +57,15 @@ public class ReplayManagerTimerTask extends TimerTask {
             if (!currentlyRunningATask && !currentTaskIsTidyingUp && replayTaskQueue.peek() != null) {
                 try {
                     currentlyRunningATask = true;
+
+                    // Replay all the waiting tasks in a single pass.
+                    if (replayTaskQueue.size() > 1) {
+                        List<ReplayTask> waitingReplayTasks = new ArrayList<ReplayTask>(replayTaskQueue);
+                        ReplayTask mergedReplayTask = ReplayTask.merge(waitingReplayTasks);
+                        log.debug("Merged " + waitingReplayTasks.size() + " replay tasks into " + mergedReplayTask.toString());
+                        replayTaskQueue.clear();
+                        replayTaskQueue.offer(mergedReplayTask);
+                    }
                     ReplayManager.INSTANCE.syncWallet(replayTaskQueue.peek());
                 } catch (IOException ioe) {
                     log.error(ioe.getClass().getCanonicalName() + " " + ioe.getMessage());
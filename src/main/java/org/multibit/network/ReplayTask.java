@@ -1,12 +1,17 @@
 package org.multibit.network;
 
+import java.util.ArrayList;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 
 import org.multibit.message.Message;
 import org.multibit.model.fastcoin.WalletData;
 
+import com.google.fastcoin.core.StoredBlock;
+
 /**
  * A class encapsulating a request on one or more wallets to perform a
  * blockchain replay
@@ -27,6 +32,17 @@ public class ReplayTask {
      */
     private int startHeight;
   
+    /**
+     * The block to replay from, if the replay resumes from a block in the block store rather than a checkpoint.
+     */
+    private StoredBlock startBlock;
+
+    /**
+     * The start height of each wallet, where it is different from the start height of the task.
+     * Used when several replay tasks are merged.
+     */
+    private final Map<WalletData, Integer> walletStartHeights = new HashMap<WalletData, Integer>();
+
     /**
      * A UUID identifying this replay task.
      */
@@ -45,6 +61,75 @@ public class ReplayTask {
         this.uuid = UUID.randomUUID();
     }
 
+    /**
+     * Merge several replay tasks into a single task that replays the wallets of all of them in one pass
+     * from the earliest start.
+     * Each wallet remembers its own start height so that its progress can be shown separately.
+     */
+    public static ReplayTask merge(List<ReplayTask> replayTasks) {
+        List<WalletData> mergedPerWalletModelData = new ArrayList<WalletData>();
+        Date mergedStartDate = null;
+        int mergedStartHeight = Integer.MAX_VALUE;
+        boolean replayFromGenesis = false;
+
+        for (ReplayTask replayTask : replayTasks) {
+            if (replayTask.getStartDate() == null) {
+                replayFromGenesis = true;
+            } else if (mergedStartDate == null || replayTask.getStartDate().before(mergedStartDate)) {
+                mergedStartDate = replayTask.getStartDate();
+            }
+            if (replayTask.getStartHeight() != UNKNOWN_START_HEIGHT) {
+                mergedStartHeight = Math.min(mergedStartHeight, replayTask.getStartHeight());
+            }
+        }
+        if (replayFromGenesis) {
+            mergedStartDate = null;
+        }
+        if (replayFromGenesis || mergedStartHeight == Integer.MAX_VALUE) {
+            mergedStartHeight = UNKNOWN_START_HEIGHT;
+        }
+
+        ReplayTask mergedReplayTask = new ReplayTask(mergedPerWalletModelData, mergedStartDate, mergedStartHeight);
+        for (ReplayTask replayTask : replayTasks) {
+            if (replayTask.getStartBlock() != null && replayTask.getStartBlock().getHeight() == mergedStartHeight) {
+                mergedReplayTask.setStartBlock(replayTask.getStartBlock());
+            }
+        }
+        for (ReplayTask replayTask : replayTasks) {
+            if (replayTask.getPerWalletModelDataToReplay() == null) {
+                continue;
+            }
+            for (WalletData perWalletModelData : replayTask.getPerWalletModelDataToReplay()) {
+                int walletStartHeight = replayTask.getStartHeight(perWalletModelData);
+                if (!mergedPerWalletModelData.contains(perWalletModelData)) {
+                    mergedPerWalletModelData.add(perWalletModelData);
+                    mergedReplayTask.walletStartHeights.put(perWalletModelData, walletStartHeight);
+                } else {
+                    // The wallet is in more than one task - it starts at the earliest of them.
+                    Integer previousStartHeight = mergedReplayTask.walletStartHeights.get(perWalletModelData);
+                    if (walletStartHeight == UNKNOWN_START_HEIGHT || previousStartHeight == null
+                            || (previousStartHeight != UNKNOWN_START_HEIGHT && walletStartHeight < previousStartHeight)) {
+                        mergedReplayTask.walletStartHeights.put(perWalletModelData, walletStartHeight);
+                    }
+                }
+            }
+        }
+        return mergedReplayTask;
+    }
+
+    /**
+     * @return The height the replay of a wallet starts at - this is the start height of the task unless
+     *         the task was merged from several tasks with different start heights.
+     */
+    public int getStartHeight(WalletData perWalletModelData) {
+        Integer walletStartHeight = walletStartHeights.get(perWalletModelData);
+        if (walletStartHeight == null || walletStartHeight == UNKNOWN_START_HEIGHT) {
+            return startHeight;
+        } else {
+            return walletStartHeight;
+        }
+    }
+
     public List<WalletData> getPerWalletModelDataToReplay() {
         return perWalletModelDataToReplay;
     }
@@ -109,6 +194,14 @@ public class ReplayTask {
         this.percentComplete = percentComplete;
     }
 
+    public StoredBlock getStartBlock() {
+        return startBlock;
+    }
+
+    public void setStartBlock(StoredBlock startBlock) {
+        this.startBlock = startBlock;
+    }
+
     public int getStartHeight() {
         return startHeight;
     }
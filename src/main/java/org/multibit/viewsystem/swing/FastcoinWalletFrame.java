@@ -30,6 +30,7 @@ import org.multibit.controller.exchange.ExchangeController;
 import org.multibit.exchange.CurrencyConverter;
 import org.multibit.exchange.CurrencyConverterListener;
 import org.multibit.exchange.ExchangeRate;
+import org.multibit.exchange.ExchangeRateFetcher;
 import org.multibit.exchange.TickerTimerTask;
 import org.multibit.message.Message;
 import org.multibit.message.MessageManager;
@@ -178,8 +179,6 @@ public class FastcoinWalletFrame extends JFrame implements ViewSystem, Applicati
     private Timer fileChangeTimer;
     private HealthCheckTimerTask healthCheckTimerTask;
 
-    private Timer tickerTimer1;
-    private Timer tickerTimer2;
     private TickerTimerTask tickerTimerTask1;
     private TickerTimerTask tickerTimerTask2;
 
@@ -270,13 +269,7 @@ public class FastcoinWalletFrame extends JFrame implements ViewSystem, Applicati
         fileChangeTimer.schedule(healthCheckTimerTask, HealthCheckTimerTask.INITIAL_DELAY, HealthCheckTimerTask.DEFAULT_REPEAT_RATE);
 
          // Initialise the tickers.
-        tickerTimer1 = new Timer();
-        tickerTimerTask1 = new TickerTimerTask(this.exchangeController, this, true);
-        tickerTimer1.schedule(tickerTimerTask1, TickerTimerTask.INITIAL_DELAY, TickerTimerTask.DEFAULT_REPEAT_RATE);
-        
-        tickerTimer2 = new Timer();
-        tickerTimerTask2 = new TickerTimerTask(this.exchangeController, this, false);
-        tickerTimer2.schedule(tickerTimerTask2, TickerTimerTask.INITIAL_DELAY + TickerTimerTask.TASK_SEPARATION, TickerTimerTask.DEFAULT_REPEAT_RATE);
+        restartTickerTimerTasks(TickerTimerTask.INITIAL_DELAY);
 
         // Initialise status bar.
         statusBar.initialise();
@@ -969,7 +962,6 @@ public class FastcoinWalletFrame extends JFrame implements ViewSystem, Applicati
             tickerTablePanel.setVisible(isTickerVisible);
         }
         
-        final FastcoinWalletFrame thisFrame = this;
 
         showTicker.addActionListener(new ActionListener() {
             @Override
@@ -983,24 +975,8 @@ public class FastcoinWalletFrame extends JFrame implements ViewSystem, Applicati
                         tickerTablePanel.setVisible(true);
                         controller.getModel().setUserPreference(ExchangeModel.TICKER_SHOW, Boolean.TRUE.toString());
                         showTicker.setText(controller.getLocaliser().getString("fastcoinWalletFrame.ticker.hide.text"));
-                        // Cancel any existing timer.
-                        if (tickerTimer1 != null) {
-                            tickerTimer1.cancel();
-                        }                        
-                        if (tickerTimer2 != null) {
-                            tickerTimer2.cancel();
-                        }
-                        // Start ticker timer.
-                        tickerTimer1 = new Timer();
-                        tickerTimer1.schedule(new TickerTimerTask(exchangeController, thisFrame, true), 0, TickerTimerTask.DEFAULT_REPEAT_RATE);
-                        
-                        boolean showSecondRow = Boolean.TRUE.toString().equals(
-                                controller.getModel().getUserPreference(ExchangeModel.TICKER_SHOW_SECOND_ROW));
-                        
-                        if (showSecondRow) {
-                            tickerTimer2 = new Timer();
-                            tickerTimer2.schedule(new TickerTimerTask(exchangeController, thisFrame, false), TickerTimerTask.TASK_SEPARATION, TickerTimerTask.DEFAULT_REPEAT_RATE);
-                        }
+                        // Restart the tickers.
+                        restartTickerTimerTasks(0);
                     }
                 }
             }
@@ -1543,7 +1519,11 @@ public class FastcoinWalletFrame extends JFrame implements ViewSystem, Applicati
                 estimatedBalanceFiatLabel.setToolTipText(controller.getLocaliser().getString("fastcoinWalletFrame.balanceLabel.tooltip"));
                 if (CurrencyConverter.INSTANCE.getRate() != null && CurrencyConverter.INSTANCE.isShowingFiat()) {
                     Money fiat = CurrencyConverter.INSTANCE.convertFromFSTToFiat(estimatedBalance);
-                    estimatedBalanceFiatLabel.setText("(" + CurrencyConverter.INSTANCE.getFiatAsLocalisedString(fiat) + ")");
+                    estimatedBalanceFiatLabel.setText("("
+                            + CurrencyConverter.INSTANCE.addStaleRateMarker(CurrencyConverter.INSTANCE.getFiatAsLocalisedString(fiat)) + ")");
+                    if (CurrencyConverter.INSTANCE.isRateStale()) {
+                        estimatedBalanceFiatLabel.setToolTipText(CurrencyConverter.INSTANCE.getStaleRateToolTip());
+                    }
                 } else {
                     estimatedBalanceFiatLabel.setText(" ");
                 }
@@ -1563,8 +1543,8 @@ public class FastcoinWalletFrame extends JFrame implements ViewSystem, Applicati
                     if (CurrencyConverter.INSTANCE.getRate() != null && CurrencyConverter.INSTANCE.isShowingFiat()) {
                         Money fiat = CurrencyConverter.INSTANCE.convertFromFSTToFiat(availableToSpend);
                         if (fiat != null) {
-                            availableBalanceFiatButton.setText("(" + CurrencyConverter.INSTANCE.getFiatAsLocalisedString(fiat)
-                                    + ")");
+                            availableBalanceFiatButton.setText("("
+                                    + CurrencyConverter.INSTANCE.addStaleRateMarker(CurrencyConverter.INSTANCE.getFiatAsLocalisedString(fiat)) + ")");
                         }
                     } else {
                         availableBalanceFiatButton.setText(" ");
@@ -1714,22 +1694,26 @@ public class FastcoinWalletFrame extends JFrame implements ViewSystem, Applicati
         updateHeader();
     }
 
-    public Timer getTickerTimer1() {
-        return tickerTimer1;
-    }
+    /**
+     * Cancel the ticker tasks and start new ones on the shared ExchangeRateFetcher scheduler.
+     * The second row task does nothing while the second row is not shown.
+     */
+    public void restartTickerTimerTasks(long initialDelay) {
+        if (tickerTimerTask1 != null) {
+            tickerTimerTask1.cancel();
+        }
+        if (tickerTimerTask2 != null) {
+            tickerTimerTask2.cancel();
+        }
 
-    public void setTickerTimer1(Timer tickerTimer1) {
-        this.tickerTimer1 = tickerTimer1;
-    }
-    
-    public Timer getTickerTimer2() {
-        return tickerTimer2;
-    }
+        tickerTimerTask1 = new TickerTimerTask(this.exchangeController, this, true);
+        ExchangeRateFetcher.INSTANCE.schedule(tickerTimerTask1, initialDelay, TickerTimerTask.DEFAULT_REPEAT_RATE);
 
-    public void setTickerTimer2(Timer tickerTimer2) {
-        this.tickerTimer2 = tickerTimer2;
+        tickerTimerTask2 = new TickerTimerTask(this.exchangeController, this, false);
+        ExchangeRateFetcher.INSTANCE.schedule(tickerTimerTask2, initialDelay + TickerTimerTask.TASK_SEPARATION,
+                TickerTimerTask.DEFAULT_REPEAT_RATE);
     }
-    
+
     public TickerTimerTask getTickerTimerTask1() {
         return tickerTimerTask1;
     }
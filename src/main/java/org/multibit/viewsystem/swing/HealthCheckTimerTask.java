@@ -29,7 +29,7 @@ import java.util.*;
 
 /**
  * TimerTask to regularly check the 'health' of MultiBitWallet.
- * It detects whether wallet files have been changed by some external process and to save dirty files.
+ * It saves dirty files.
  * It checks the ping times of the peers to see if they are up.
  *
  * @see java.util.Timer
@@ -83,19 +83,8 @@ public class HealthCheckTimerTask extends TimerTask {
           while (iterator.hasNext()) {
             WalletData loopModelData = iterator.next();
             if (fastcoinController.getFileHandler() != null) {
-              // See if the files have been changed by another
-              // process (non MultiBitWallet).
-              boolean haveFilesChanged = fastcoinController.getFileHandler().haveFilesChanged(loopModelData);
-              if (haveFilesChanged) {
-                boolean previousFilesHaveBeenChanged = loopModelData.isFilesHaveBeenChangedByAnotherProcess();
-                loopModelData.setFilesHaveBeenChangedByAnotherProcess(true);
-                if (!previousFilesHaveBeenChanged) {
-                  // only fire once, when change happens
-                  fastcoinController.fireFilesHaveBeenChangedByAnotherProcess(loopModelData);
-                  log.debug("Marking wallet " + loopModelData.getWalletFilename()
-                          + " as having been changed by another process.");
-                }
-              }
+              // Changes to the files by another process (non MultiBitWallet)
+              // are picked up by the WalletFileWatcher.
 
               // See if they are dirty - write out if so.
               if (loopModelData.isDirty()) {
@@ -17,22 +17,27 @@ package org.multibit.viewsystem.swing;
 
 import java.math.BigInteger;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Date;
+import java.util.Locale;
 
+import javax.swing.SwingUtilities;
 import javax.swing.table.AbstractTableModel;
 
-import org.joda.money.Money;
 import org.multibit.controller.Controller;
 import org.multibit.controller.fastcoin.FastcoinController;
 import org.multibit.exchange.CurrencyConverter;
 import org.multibit.exchange.CurrencyInfo;
+import org.multibit.model.fastcoin.WalletData;
 import org.multibit.model.fastcoin.WalletTableData;
+import org.multibit.model.fastcoin.WalletTableDataListener;
+import org.multibit.model.fastcoin.WalletTableDataStore;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 
 
-public class WalletTableModel extends AbstractTableModel {
+public class WalletTableModel extends AbstractTableModel implements WalletTableDataListener {
 
     private static final long serialVersionUID = -937886012854496208L;
 
@@ -40,7 +45,53 @@ public class WalletTableModel extends AbstractTableModel {
 
     private ArrayList<String> headers;
 
-    private ArrayList<WalletTableData> walletData;
+    /**
+     * The transaction rows of the wallet being displayed.
+     */
+    private WalletTableDataStore walletData;
+
+    /**
+     * The number of rows the JTable has been told about (Swing thread only).
+     */
+    private int rowCount;
+
+    /**
+     * The store generation the JTable has been told about (Swing thread only).
+     */
+    private int generation;
+
+    /**
+     * Primitive sort keys for the date and amount columns, by model row (Swing thread only).
+     * A missing date or amount has the largest key, as the comparators this replaced sorted those last.
+     */
+    private long[] dateSortKeys = new long[0];
+    private long[] amountSortKeys = new long[0];
+
+    /**
+     * The formatted amounts of the rows that have been displayed, by model row (Swing thread only).
+     * Rows are only formatted when JTable asks for them, i.e. when they are visible.
+     */
+    private String[] formattedFastcoinAmounts = new String[0];
+    private String[] formattedFiatAmounts = new String[0];
+
+    /**
+     * The locale the amounts were formatted in.
+     */
+    private Locale formattedLocale;
+
+    /**
+     * Set (on any thread) when the exchange rate changes so that the fiat amounts are reformatted.
+     */
+    private volatile boolean formattedFiatAmountsAreStale = false;
+
+    /**
+     * Changes reported by the store that have not yet been passed on to the JTable.
+     * Guarded by pendingChangesLock.
+     */
+    private final Object pendingChangesLock = new Object();
+    private int pendingFirstUpdatedRow = Integer.MAX_VALUE;
+    private int pendingLastUpdatedRow = -1;
+    private boolean pendingChangesScheduled = false;
 
     private final Controller controller;
     private final FastcoinController fastcoinController;
@@ -51,7 +102,7 @@ public class WalletTableModel extends AbstractTableModel {
 
         createHeaders();
 
-        walletData = this.fastcoinController.getModel().createWalletTableData(this.fastcoinController, this.fastcoinController.getModel().getActiveWalletFilename());
+        attachToActiveWallet(true);
     }
     
     @Override
@@ -70,10 +121,13 @@ public class WalletTableModel extends AbstractTableModel {
 
     @Override
     public int getRowCount() {
-        return walletData.size();
+        return rowCount;
     }
 
     public WalletTableData getRow(int row) {
+        if (walletData == null || row < 0 || row >= rowCount) {
+            return null;
+        }
         return walletData.get(row);
     }
 
@@ -84,10 +138,7 @@ public class WalletTableModel extends AbstractTableModel {
 
     @Override
     public Object getValueAt(int row, int column) {
-        WalletTableData walletDataRow = null;
-        if (row >= 0 && row < walletData.size()) {
-            walletDataRow = walletData.get(row);
-        }
+        WalletTableData walletDataRow = getRow(row);
         if (walletDataRow == null) {
             return null;
         }
@@ -109,39 +160,155 @@ public class WalletTableModel extends AbstractTableModel {
         }
         case 2:
             return walletDataRow.getDescription();
-        case 3:
+        case 3: {
             // Amount in FST
-            BigInteger debitAmount = walletDataRow.getDebit();
-            if (debitAmount != null && debitAmount.compareTo(BigInteger.ZERO) > 0) {
-                return controller.getLocaliser().fastcoinValueToString(debitAmount.negate(), false, true);
-            }
-
-            BigInteger creditAmount = walletDataRow.getCredit();
-            if (creditAmount != null) {
-                return controller.getLocaliser().fastcoinValueToString(creditAmount, false, true);
+            checkFormattedAmountsAreCurrent();
+            String formattedAmount = row < formattedFastcoinAmounts.length ? formattedFastcoinAmounts[row] : null;
+            if (formattedAmount == null) {
+                formattedAmount = formatFastcoinAmount(walletDataRow);
+                if (row < formattedFastcoinAmounts.length) {
+                    formattedFastcoinAmounts[row] = formattedAmount;
+                }
             }
-            
-            return null;         
-        case 4:
+            return formattedAmount;
+        }
+        case 4: {
             // Amount in fiat
-            if (walletDataRow.getDebit() != null  && walletDataRow.getDebit().compareTo(BigInteger.ZERO) > 0) {
-                Money debitAmountFiat = CurrencyConverter.INSTANCE.convertFromFSTToFiat(walletDataRow.getDebit());
-                if (debitAmountFiat != null) {
-                    return CurrencyConverter.INSTANCE.getFiatAsLocalisedString(debitAmountFiat.negated(), false, false);
+            checkFormattedAmountsAreCurrent();
+            String formattedAmount = row < formattedFiatAmounts.length ? formattedFiatAmounts[row] : null;
+            if (formattedAmount == null) {
+                formattedAmount = formatFiatAmount(walletDataRow);
+                if (row < formattedFiatAmounts.length) {
+                    formattedFiatAmounts[row] = formattedAmount;
                 }
             }
-
-            Money creditAmountFiat = CurrencyConverter.INSTANCE.convertFromFSTToFiat(walletDataRow.getCredit());
-            if (creditAmountFiat != null) {
-                return CurrencyConverter.INSTANCE.getFiatAsLocalisedString(creditAmountFiat, false, false);
-            }
-            
-            return "";
+            return formattedAmount;
+        }
         default:
             return null;
         }
     }
 
+    private String formatFastcoinAmount(WalletTableData walletDataRow) {
+        BigInteger debitAmount = walletDataRow.getDebit();
+        if (debitAmount != null && debitAmount.compareTo(BigInteger.ZERO) > 0) {
+            return controller.getLocaliser().fastcoinValueToString(debitAmount.negate(), false, true);
+        }
+
+        BigInteger creditAmount = walletDataRow.getCredit();
+        if (creditAmount != null) {
+            return controller.getLocaliser().fastcoinValueToString(creditAmount, false, true);
+        }
+
+        return null;
+    }
+
+    private String formatFiatAmount(WalletTableData walletDataRow) {
+        String fiatAmount = null;
+        if (walletDataRow.getDebit() != null  && walletDataRow.getDebit().compareTo(BigInteger.ZERO) > 0) {
+            fiatAmount = CurrencyConverter.INSTANCE.convertFromFSTToLocalisedFiatString(-walletDataRow.getDebit().longValue(), false, false);
+        } else if (walletDataRow.getCredit() != null) {
+            fiatAmount = CurrencyConverter.INSTANCE.convertFromFSTToLocalisedFiatString(walletDataRow.getCredit().longValue(), false, false);
+        }
+
+        return fiatAmount == null ? "" : fiatAmount;
+    }
+
+    /**
+     * Throw away formatted amounts made with an old locale or exchange rate.
+     */
+    private void checkFormattedAmountsAreCurrent() {
+        Locale locale = controller.getLocaliser().getLocale();
+        if (formattedLocale == null || !formattedLocale.equals(locale)) {
+            formattedLocale = locale;
+            Arrays.fill(formattedFastcoinAmounts, null);
+            Arrays.fill(formattedFiatAmounts, null);
+        }
+        if (formattedFiatAmountsAreStale) {
+            formattedFiatAmountsAreStale = false;
+            Arrays.fill(formattedFiatAmounts, null);
+        }
+    }
+
+    /**
+     * The exchange rate has changed so the fiat amounts need reformatting.
+     * Can be called on any thread.
+     */
+    public void exchangeRateChanged() {
+        formattedFiatAmountsAreStale = true;
+    }
+
+    /**
+     * @return true if the column is sorted using getSortKey
+     */
+    public boolean hasSortKey(int column) {
+        return column == 1 || column == 3 || column == 4;
+    }
+
+    /**
+     * Get the primitive sort key of a cell.
+     * The fiat amount is sorted on the FST amount as they are in the same order.
+     */
+    public long getSortKey(int row, int column) {
+        if (row < 0 || row >= dateSortKeys.length) {
+            return Long.MAX_VALUE;
+        }
+        if (column == 1) {
+            return dateSortKeys[row];
+        } else {
+            return amountSortKeys[row];
+        }
+    }
+
+    /**
+     * Resize the per row arrays, keeping rows below keepRows and clearing the rest.
+     */
+    private void resizeRowArrays(int newRowCount, int keepRows) {
+        keepRows = Math.min(keepRows, Math.min(newRowCount, dateSortKeys.length));
+        long[] newDateSortKeys = new long[newRowCount];
+        long[] newAmountSortKeys = new long[newRowCount];
+        String[] newFormattedFastcoinAmounts = new String[newRowCount];
+        String[] newFormattedFiatAmounts = new String[newRowCount];
+        System.arraycopy(dateSortKeys, 0, newDateSortKeys, 0, keepRows);
+        System.arraycopy(amountSortKeys, 0, newAmountSortKeys, 0, keepRows);
+        System.arraycopy(formattedFastcoinAmounts, 0, newFormattedFastcoinAmounts, 0, keepRows);
+        System.arraycopy(formattedFiatAmounts, 0, newFormattedFiatAmounts, 0, keepRows);
+        dateSortKeys = newDateSortKeys;
+        amountSortKeys = newAmountSortKeys;
+        formattedFastcoinAmounts = newFormattedFastcoinAmounts;
+        formattedFiatAmounts = newFormattedFiatAmounts;
+    }
+
+    /**
+     * Work out the sort keys of rows first to last and forget their formatted amounts.
+     */
+    private void rowsChanged(int first, int last) {
+        for (int row = first; row <= last && row < dateSortKeys.length; row++) {
+            formattedFastcoinAmounts[row] = null;
+            formattedFiatAmounts[row] = null;
+
+            WalletTableData walletDataRow = walletData == null ? null : walletData.get(row);
+            if (walletDataRow == null) {
+                dateSortKeys[row] = Long.MAX_VALUE;
+                amountSortKeys[row] = Long.MAX_VALUE;
+                continue;
+            }
+
+            Date date = walletDataRow.getDate();
+            dateSortKeys[row] = (date == null || date.getTime() == 0) ? Long.MAX_VALUE : date.getTime();
+
+            BigInteger debitAmount = walletDataRow.getDebit();
+            BigInteger creditAmount = walletDataRow.getCredit();
+            if (debitAmount != null && debitAmount.compareTo(BigInteger.ZERO) > 0) {
+                amountSortKeys[row] = -debitAmount.longValue();
+            } else if (creditAmount != null) {
+                amountSortKeys[row] = creditAmount.longValue();
+            } else {
+                amountSortKeys[row] = Long.MAX_VALUE;
+            }
+        }
+    }
+
     /**
      * Table model is read only.
      */
@@ -152,8 +319,136 @@ public class WalletTableModel extends AbstractTableModel {
 
     public void recreateWalletData() {
         // Recreate the wallet data as the underlying wallet has changed.
-        walletData = this.fastcoinController.getModel().createActiveWalletData(this.fastcoinController);
-        fireTableDataChanged();
+        attachToActiveWallet(true);
+    }
+
+    /**
+     * Pass on any changes to the transaction rows of the active wallet, only rebuilding them
+     * if they have never been built or the active wallet has changed.
+     */
+    public void refreshWalletData() {
+        attachToActiveWallet(false);
+    }
+
+    private void attachToActiveWallet(boolean rebuild) {
+        WalletData activePerWalletModelData = this.fastcoinController.getModel().getActivePerWalletModelData();
+        WalletTableDataStore activeWalletData = activePerWalletModelData == null ? null : activePerWalletModelData.getWalletTableDataStore();
+
+        if (activeWalletData != walletData) {
+            if (walletData != null) {
+                walletData.removeWalletTableDataListener(this);
+            }
+            walletData = activeWalletData;
+            if (walletData != null) {
+                walletData.addWalletTableDataListener(this);
+            }
+            rebuild = rebuild || walletData == null || !walletData.isInitialised();
+            // Make sure the JTable is told everything has changed.
+            generation = -1;
+        }
+
+        if (walletData != null && (rebuild || !walletData.isInitialised())) {
+            this.fastcoinController.getModel().rebuildWalletTableData(this.fastcoinController, activePerWalletModelData);
+        }
+
+        firePendingChanges();
+    }
+
+    @Override
+    public void rowsInserted(WalletTableDataStore store, int first, int last) {
+        // The row count is picked up from the store when the changes are fired.
+        schedulePendingChanges(store);
+    }
+
+    @Override
+    public void rowsUpdated(WalletTableDataStore store, int first, int last) {
+        synchronized (pendingChangesLock) {
+            pendingFirstUpdatedRow = Math.min(pendingFirstUpdatedRow, first);
+            pendingLastUpdatedRow = Math.max(pendingLastUpdatedRow, last);
+        }
+        schedulePendingChanges(store);
+    }
+
+    @Override
+    public void allRowsChanged(WalletTableDataStore store) {
+        schedulePendingChanges(store);
+    }
+
+    /**
+     * Coalesce store changes into a single update of the JTable on the Swing thread.
+     */
+    private void schedulePendingChanges(WalletTableDataStore store) {
+        if (store != walletData) {
+            return;
+        }
+        synchronized (pendingChangesLock) {
+            if (pendingChangesScheduled) {
+                return;
+            }
+            pendingChangesScheduled = true;
+        }
+        SwingUtilities.invokeLater(new Runnable() {
+            @Override
+            public void run() {
+                firePendingChanges();
+            }
+        });
+    }
+
+    /**
+     * Tell the JTable about the rows that have been added or updated since the last time.
+     * Swing thread.
+     */
+    private void firePendingChanges() {
+        int firstUpdatedRow;
+        int lastUpdatedRow;
+        synchronized (pendingChangesLock) {
+            firstUpdatedRow = pendingFirstUpdatedRow;
+            lastUpdatedRow = pendingLastUpdatedRow;
+            pendingFirstUpdatedRow = Integer.MAX_VALUE;
+            pendingLastUpdatedRow = -1;
+            pendingChangesScheduled = false;
+        }
+
+        if (walletData == null) {
+            if (rowCount != 0 || generation != -1) {
+                rowCount = 0;
+                generation = -1;
+                resizeRowArrays(0, 0);
+                fireTableDataChanged();
+            }
+            return;
+        }
+
+        int storeGeneration;
+        int storeRowCount;
+        synchronized (walletData) {
+            storeGeneration = walletData.getGeneration();
+            storeRowCount = walletData.size();
+        }
+
+        if (storeGeneration != generation) {
+            generation = storeGeneration;
+            rowCount = storeRowCount;
+            resizeRowArrays(rowCount, 0);
+            rowsChanged(0, rowCount - 1);
+            fireTableDataChanged();
+            return;
+        }
+
+        lastUpdatedRow = Math.min(lastUpdatedRow, rowCount - 1);
+        if (firstUpdatedRow <= lastUpdatedRow) {
+            rowsChanged(firstUpdatedRow, lastUpdatedRow);
+            fireTableRowsUpdated(firstUpdatedRow, lastUpdatedRow);
+        }
+
+        if (storeRowCount > rowCount) {
+            int firstInsertedRow = rowCount;
+            rowCount = storeRowCount;
+            resizeRowArrays(rowCount, firstInsertedRow);
+            rowsChanged(firstInsertedRow, rowCount - 1);
+            fireTableRowsInserted(firstInsertedRow, storeRowCount - 1);
+        }
     }
 
     public void createHeaders() {
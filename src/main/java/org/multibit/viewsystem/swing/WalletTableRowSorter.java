@@ -0,0 +1,115 @@
+/**
+ * Copyright 2013 wallet.org
+ *
+ * Licensed under the MIT license (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://opensource.org/licenses/mit-license.php
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.multibit.viewsystem.swing;
+
+import java.util.Comparator;
+
+import javax.swing.table.TableModel;
+import javax.swing.table.TableRowSorter;
+
+/**
+ * Row sorter for the transactions table.
+ *
+ * The date and amount columns are sorted on the primitive sort keys held by the WalletTableModel
+ * rather than by comparing Dates or parsing the formatted amount strings.
+ * For those columns the sorter sees the model row index as the cell value.
+ */
+public class WalletTableRowSorter extends TableRowSorter<TableModel> {
+
+    private final WalletTableModel walletTableModel;
+
+    public WalletTableRowSorter(final WalletTableModel walletTableModel) {
+        super(walletTableModel);
+        this.walletTableModel = walletTableModel;
+
+        final ModelWrapper<TableModel, Integer> tableModelWrapper = getModelWrapper();
+        setModelWrapper(new ModelWrapper<TableModel, Integer>() {
+            @Override
+            public TableModel getModel() {
+                return tableModelWrapper.getModel();
+            }
+
+            @Override
+            public int getColumnCount() {
+                return tableModelWrapper.getColumnCount();
+            }
+
+            @Override
+            public int getRowCount() {
+                return tableModelWrapper.getRowCount();
+            }
+
+            @Override
+            public Object getValueAt(int row, int column) {
+                if (walletTableModel.hasSortKey(column)) {
+                    return Integer.valueOf(row);
+                }
+                return tableModelWrapper.getValueAt(row, column);
+            }
+
+            @Override
+            public String getStringValueAt(int row, int column) {
+                if (walletTableModel.hasSortKey(column)) {
+                    return Integer.toString(row);
+                }
+                return tableModelWrapper.getStringValueAt(row, column);
+            }
+
+            @Override
+            public Integer getIdentifier(int row) {
+                return tableModelWrapper.getIdentifier(row);
+            }
+        });
+
+        for (int column = 0; column < walletTableModel.getColumnCount(); column++) {
+            if (walletTableModel.hasSortKey(column)) {
+                setComparator(column, new SortKeyComparator(column));
+            }
+        }
+    }
+
+    @Override
+    protected boolean useToString(int column) {
+        if (walletTableModel.hasSortKey(column)) {
+            return false;
+        }
+        return super.useToString(column);
+    }
+
+    /**
+     * Compares two model rows on the sort key of a column.
+     */
+    private class SortKeyComparator implements Comparator<Integer> {
+        private final int column;
+
+        SortKeyComparator(int column) {
+            this.column = column;
+        }
+
+        @Override
+        public int compare(Integer row1, Integer row2) {
+            long key1 = walletTableModel.getSortKey(row1, column);
+            long key2 = walletTableModel.getSortKey(row2, column);
+            if (key1 < key2) {
+                return -1;
+            } else if (key1 > key2) {
+                return 1;
+            } else {
+                return 0;
+            }
+        }
+    }
+}
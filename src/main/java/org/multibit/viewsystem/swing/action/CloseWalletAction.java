@@ -17,9 +17,11 @@ package org.multibit.viewsystem.swing.action;
 
 import org.multibit.controller.fastcoin.FastcoinController;
 import org.multibit.file.FileHandler;
+import org.multibit.file.WalletPersistenceService;
 import org.multibit.message.Message;
 import org.multibit.message.MessageManager;
 import org.multibit.model.fastcoin.WalletData;
+import org.multibit.network.BloomFilterManager;
 import org.multibit.viewsystem.swing.FastcoinWalletFrame;
 import org.multibit.viewsystem.swing.view.panels.HelpContentsPanel;
 import org.slf4j.Logger;
@@ -83,9 +85,11 @@ public class CloseWalletAction extends FastcoinWalletSubmitAction {
 
       // Unhook it from the PeerGroup.
       super.fastcoinController.getFastcoinWalletService().getPeerGroup().removeWallet(perWalletModelData.getWallet());
+      BloomFilterManager.INSTANCE.walletRemoved(perWalletModelData.getWallet());
 
       // Save it.
       FileHandler fileHandler = new FileHandler(super.fastcoinController);
+      WalletPersistenceService.INSTANCE.walletClosed(perWalletModelData);
       fileHandler.savePerWalletModelData(perWalletModelData, true);
 
       // Work out which wallet to select after the wallet is removed.
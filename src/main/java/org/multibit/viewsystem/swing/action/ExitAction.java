@@ -23,6 +23,7 @@ import org.multibit.controller.fastcoin.FastcoinController;
 import org.multibit.controller.core.CoreController;
 import org.multibit.file.BackupManager;
 import org.multibit.file.FileHandler;
+import org.multibit.file.WalletPersistenceService;
 import org.multibit.file.WalletSaveException;
 import org.multibit.message.Message;
 import org.multibit.message.MessageManager;
@@ -119,6 +120,9 @@ public class ExitAction extends AbstractExitAction {
                 log.debug("PeerGroup is now stopped.");
             }
 
+            // Remember the peers connected to for the next startup.
+            fastcoinController.getFastcoinWalletService().getPeerAddressBook().close();
+
             // Close down the blockstore.
             BlockStore blockStore = fastcoinController.getFastcoinWalletService().getBlockStore();
             if (blockStore != null) {
@@ -136,6 +140,9 @@ public class ExitAction extends AbstractExitAction {
         }
 
         if (fastcoinController != null) {
+            // Finish any background wallet writes.
+            WalletPersistenceService.INSTANCE.shutdown();
+
             // Save all the wallets and put their filenames in the user preferences.
             List<WalletData> perWalletModelDataList = fastcoinController.getModel().getPerWalletModelDataList();
             if (perWalletModelDataList != null) {
@@ -21,7 +21,6 @@ import java.io.File;
 import java.io.IOException;
 import java.nio.CharBuffer;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.Collection;
 import java.util.Date;
 import java.util.List;
@@ -34,6 +33,7 @@ import javax.swing.SwingWorker;
 import org.multibit.controller.fastcoin.FastcoinController;
 import org.fastcoinj.wallet.Protos.Wallet.EncryptionType;
 import org.multibit.file.BackupManager;
+import org.multibit.file.KeyChainIndex;
 import org.multibit.file.PrivateKeyAndDate;
 import org.multibit.file.PrivateKeysHandler;
 import org.multibit.file.PrivateKeysHandlerException;
@@ -287,7 +287,8 @@ public class ImportPrivateKeysSubmitAction extends FastcoinWalletSubmitAction im
                 try {
                     Wallet walletToAddKeysTo = finalPerWalletModelData.getWallet();
 
-                    Collection<byte[]> unencryptedWalletPrivateKeys = new ArrayList<byte[]>();
+                    // Index of the keys already in the wallet, used to skip duplicates.
+                    KeyChainIndex walletKeyChainIndex = new KeyChainIndex();
                     Date earliestTransactionDate = new Date(DateUtils.nowUtc().getMillis());
 
                     if (walletToAddKeysTo.getEncryptionType() != EncryptionType.UNENCRYPTED) {
@@ -318,12 +319,12 @@ public class ImportPrivateKeysSubmitAction extends FastcoinWalletSubmitAction im
                                         } else {
                                             byte[] decryptedPrivateKey = ecKey.getKeyCrypter().decrypt(
                                                     ecKey.getEncryptedPrivateKey(), aesKey);
-                                            unencryptedWalletPrivateKeys.add(decryptedPrivateKey);
+                                            walletKeyChainIndex.add(ecKey, decryptedPrivateKey);
                                         }
 
                                     } else {
                                         // MultiBitWallet is not encrypted.
-                                        unencryptedWalletPrivateKeys.add(ecKey.getPrivKeyBytes());
+                                        walletKeyChainIndex.add(ecKey, null);
                                     }
                                 }
 
@@ -337,7 +338,7 @@ public class ImportPrivateKeysSubmitAction extends FastcoinWalletSubmitAction im
                                                         / NUMBER_OF_MILLISECONDS_IN_A_SECOND);
                                             }
 
-                                            if (!keyChainContainsPrivateKey(unencryptedWalletPrivateKeys, keyToAdd, walletPassword)) {
+                                            if (!walletKeyChainIndex.contains(keyToAdd)) {
                                                 if (keyEncryptionRequired) {
                                                     ECKey encryptedKey = new ECKey(walletKeyCrypter.encrypt(
                                                             keyToAdd.getPrivKeyBytes(), aesKey), keyToAdd.getPubKey(),
@@ -346,6 +347,7 @@ public class ImportPrivateKeysSubmitAction extends FastcoinWalletSubmitAction im
                                                 } else {
                                                     walletToAddKeysTo.addKey(keyToAdd);
                                                 }
+                                                walletKeyChainIndex.add(keyToAdd, null);
 
                                                 // Update earliest transaction date.
                                                 if (privateKeyAndDate.getDate() == null) {
@@ -364,14 +366,8 @@ public class ImportPrivateKeysSubmitAction extends FastcoinWalletSubmitAction im
                             }
                         }
                     } finally {
-                        // Wipe the work collection of private key bytes to remove it from memory.
-                        for (byte[] privateKeyBytes : unencryptedWalletPrivateKeys) {
-                            if (privateKeyBytes != null) {
-                                for (int i = 0; i < privateKeyBytes.length; i++) {
-                                    privateKeyBytes[i] = 0;
-                                }
-                            }
-                        }
+                        // Wipe the work index of private key bytes to remove it from memory.
+                        walletKeyChainIndex.wipe();
                     }
 
                     log.debug(walletToAddKeysTo.toString());
@@ -463,27 +459,6 @@ public class ImportPrivateKeysSubmitAction extends FastcoinWalletSubmitAction im
         worker.execute();
     }
 
-    /**
-     * Determine whether the key is already in the wallet.
-     * @throws KeyCrypterException
-     */
-    private boolean keyChainContainsPrivateKey(Collection<byte[]> unencryptedPrivateKeys, ECKey keyToAdd, CharSequence walletPassword) throws KeyCrypterException {
-        if (unencryptedPrivateKeys == null || keyToAdd == null) {
-            return false;
-        } else {
-            byte[] unencryptedKeyToAdd = new byte[0];
-            if (keyToAdd.isEncrypted()) {
-                unencryptedKeyToAdd = keyToAdd.getKeyCrypter().decrypt(keyToAdd.getEncryptedPrivateKey(), keyToAdd.getKeyCrypter().deriveKey(walletPassword));
-            }
-            for (byte[] loopEncryptedPrivateKey : unencryptedPrivateKeys) { 
-                if (Arrays.equals(unencryptedKeyToAdd, loopEncryptedPrivateKey)) {
-                    return true;
-                }
-            }
-            return false;
-        }
-    }
-
     // Used in testing.
     public void setPerformReplay(boolean performReplay) {
         this.performReplay = performReplay;
@@ -107,7 +107,7 @@ public class ResetTransactionsSubmitAction extends FastcoinWalletSubmitAction {
         try {
             super.fastcoinController.getFileHandler().savePerWalletModelData(activePerWalletModelData, true);
 
-            super.fastcoinController.getModel().createWalletTableData(super.fastcoinController, super.fastcoinController.getModel().getActiveWalletFilename());
+            super.fastcoinController.getModel().rebuildWalletTableData(super.fastcoinController, activePerWalletModelData);
             controller.fireRecreateAllViews(false);
         } catch (WalletSaveException wse) {
             log.error(wse.getClass().getCanonicalName() + " " + wse.getMessage());
@@ -218,13 +218,8 @@ public class SendFastcoinNowAction extends AbstractAction implements WalletBusyL
       log.error(e.getMessage(), e);
       message = e.getMessage();
     } finally {
-      // Save the wallet.
-      try {
-        this.fastcoinController.getFileHandler().savePerWalletModelData(perWalletModelData, false);
-      } catch (WalletSaveException e) {
-        log.error(e.getMessage(), e);
-        message = e.getMessage();
-      }
+      // Save the wallet (in the background).
+      perWalletModelData.setDirty(true);
 
       if (sendWasSuccessful) {
         String successMessage = controller.getLocaliser().getString("sendFastcoinNowAction.fastcoinSentOk");
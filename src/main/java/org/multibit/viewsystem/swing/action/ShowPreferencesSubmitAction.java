@@ -22,7 +22,7 @@ import org.multibit.controller.Controller;
 import org.multibit.controller.fastcoin.FastcoinController;
 import org.multibit.controller.exchange.ExchangeController;
 import org.multibit.exchange.CurrencyConverter;
-import org.multibit.exchange.TickerTimerTask;
+import org.multibit.exchange.ExchangeRateCache;
 import org.multibit.model.fastcoin.FastcoinModel;
 import org.multibit.model.core.CoreModel;
 import org.multibit.model.exchange.ExchangeData;
@@ -38,7 +38,6 @@ import javax.swing.*;
 import javax.swing.UIManager.LookAndFeelInfo;
 import java.awt.*;
 import java.awt.event.ActionEvent;
-import java.util.Timer;
 
 /**
  * This {@link Action} applies changes to the preferences panel.
@@ -366,37 +365,10 @@ public class ShowPreferencesSubmitAction extends AbstractAction {
             if (restartTickerTimer) {
                 // Reinitialise the currency converter.
                 CurrencyConverter.INSTANCE.initialise(controller);
+                ExchangeRateCache.INSTANCE.applyToCurrencyConverter();
 
-                // Cancel any existing timer.
-                if (mainFrame.getTickerTimer1() != null) {
-                    mainFrame.getTickerTimer1().cancel();
-                }
-                if (mainFrame.getTickerTimer2() != null) {
-                    mainFrame.getTickerTimer2().cancel();
-                }                // Start ticker timer.
-                Timer tickerTimer1 = new Timer();
-                mainFrame.setTickerTimer1(tickerTimer1);
-                
-                TickerTimerTask tickerTimerTask1 = new TickerTimerTask(this.exchangeController, mainFrame, true);
-                tickerTimerTask1.createExchangeObjects(controller.getModel().getUserPreference(ExchangeModel.TICKER_FIRST_ROW_EXCHANGE));
-                mainFrame.setTickerTimerTask1(tickerTimerTask1);
-
-                tickerTimer1.schedule(tickerTimerTask1, 0, TickerTimerTask.DEFAULT_REPEAT_RATE);
-                
-                boolean showSecondRow = Boolean.TRUE.toString().equals(
-                        controller.getModel().getUserPreference(ExchangeModel.TICKER_SHOW_SECOND_ROW));
-                
-                if (showSecondRow) {
-                    Timer tickerTimer2 = new Timer();
-                    mainFrame.setTickerTimer2(tickerTimer2);
-
-                    TickerTimerTask tickerTimerTask2 = new TickerTimerTask(this.exchangeController, mainFrame, false);
-                    tickerTimerTask2.createExchangeObjects(controller.getModel().getUserPreference(
-                            ExchangeModel.TICKER_SECOND_ROW_EXCHANGE));
-                    mainFrame.setTickerTimerTask2(tickerTimerTask2);
-
-                    tickerTimer2.schedule(tickerTimerTask2, TickerTimerTask.TASK_SEPARATION, TickerTimerTask.DEFAULT_REPEAT_RATE);
-                }
+                // Restart the tickers.
+                mainFrame.restartTickerTimerTasks(0);
             }
 
             if (fontHasChanged) {
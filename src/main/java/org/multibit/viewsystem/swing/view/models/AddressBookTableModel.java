@@ -21,6 +21,7 @@ import javax.swing.table.DefaultTableModel;
 
 import org.multibit.controller.Controller;
 import org.multibit.controller.fastcoin.FastcoinController;
+import org.multibit.model.fastcoin.WalletAddressBook;
 import org.multibit.model.fastcoin.WalletAddressBookData;
 import org.multibit.model.fastcoin.WalletInfoData;
 
@@ -88,17 +89,16 @@ public class AddressBookTableModel extends DefaultTableModel {
             return null;
         }
 
-        ArrayList<WalletAddressBookData> addresses;
+        WalletAddressBook addresses;
         if (isReceiving) {
             addresses = walletInfo.getReceivingAddresses();
         } else {
             addresses = walletInfo.getSendingAddresses();
         }
 
-        WalletAddressBookData[] addressesArray = addresses.toArray(new WalletAddressBookData[addresses.size()]);
         WalletAddressBookData addressBookData = null;
         if (row >= 0 && row < addresses.size()) {
-            addressBookData = addressesArray[row];
+            addressBookData = addresses.get(row);
         }
 
         if (addressBookData == null) {
@@ -141,7 +141,7 @@ public class AddressBookTableModel extends DefaultTableModel {
             return -1;
         }
 
-        ArrayList<WalletAddressBookData> addresses;
+        WalletAddressBook addresses;
         if (isReceiving) {
             addresses = walletInfo.getReceivingAddresses();
         } else {
@@ -172,7 +172,7 @@ public class AddressBookTableModel extends DefaultTableModel {
             return null;
         }
 
-        ArrayList<WalletAddressBookData> addresses;
+        WalletAddressBook addresses;
         if (isReceiving) {
             addresses = walletInfo.getReceivingAddresses();
         } else {
@@ -194,7 +194,7 @@ public class AddressBookTableModel extends DefaultTableModel {
             return;
         }
 
-        ArrayList<WalletAddressBookData> addresses;
+        WalletAddressBook addresses;
         if (isReceiving) {
             addresses = walletInfo.getReceivingAddresses();
         } else {
@@ -19,6 +19,7 @@ import org.multibit.controller.fastcoin.FastcoinController;
 import org.multibit.exchange.CurrencyConverter;
 import org.multibit.exchange.CurrencyConverterResult;
 import org.multibit.model.fastcoin.FastcoinModel;
+import org.multibit.model.fastcoin.WalletAddressBook;
 import org.multibit.model.fastcoin.WalletAddressBookData;
 import org.multibit.model.fastcoin.WalletInfoData;
 import org.multibit.model.core.CoreModel;
@@ -37,7 +38,6 @@ import javax.swing.*;
 import javax.swing.event.ChangeEvent;
 import javax.swing.event.ChangeListener;
 import java.awt.*;
-import java.util.ArrayList;
 
 public class ReceiveFastcoinPanel extends AbstractTradePanel implements Viewable {
 
@@ -393,7 +393,7 @@ public class ReceiveFastcoinPanel extends AbstractTradePanel implements Viewable
         if (pickFirstReceivingAddress) {
             WalletInfoData addressBook = this.fastcoinController.getModel().getActiveWalletInfo();
             if (addressBook != null) {
-                ArrayList<WalletAddressBookData> receivingAddresses = addressBook.getReceivingAddresses();
+                WalletAddressBook receivingAddresses = addressBook.getReceivingAddresses();
                 if (receivingAddresses != null) {
                     if (receivingAddresses.iterator().hasNext()) {
                         WalletAddressBookData addressBookData = receivingAddresses.iterator().next();
@@ -35,6 +35,7 @@ import org.multibit.viewsystem.swing.ColorAndFontConstants;
 import org.multibit.viewsystem.swing.FastcoinWalletFrame;
 import org.multibit.viewsystem.swing.UpdateTransactionsTimerTask;
 import org.multibit.viewsystem.swing.WalletTableModel;
+import org.multibit.viewsystem.swing.WalletTableRowSorter;
 import org.multibit.viewsystem.swing.action.ExportTransactionsSubmitAction;
 import org.multibit.viewsystem.swing.action.HelpContextAction;
 import org.multibit.viewsystem.swing.action.ShowTransactionDetailsAction;
@@ -50,10 +51,7 @@ import javax.swing.event.ListSelectionListener;
 import javax.swing.table.*;
 import javax.swing.text.*;
 import java.awt.*;
-import java.math.BigDecimal;
 import java.math.BigInteger;
-import java.text.DecimalFormat;
-import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.util.*;
 import java.util.List;
@@ -227,85 +225,14 @@ public class ShowTransactionsPanel extends JPanel implements Viewable, CurrencyC
             table.getColumnModel().getColumn(4).setCellRenderer(new TrailingJustifiedNumericRenderer());
         }
 
-        // Row sorter.
-        rowSorter = new TableRowSorter<TableModel>(table.getModel());
+        // Row sorter - dates and amounts are sorted on the primitive sort keys in the table model.
+        rowSorter = new WalletTableRowSorter(walletTableModel);
         table.setRowSorter(rowSorter);
 
         // Sort by date descending.
         List<TableRowSorter.SortKey> sortKeys = new ArrayList<TableRowSorter.SortKey>();
         sortKeys.add(new TableRowSorter.SortKey(1, SortOrder.DESCENDING));
         rowSorter.setSortKeys(sortKeys);
-        Comparator<Date> comparator = new Comparator<Date>() {
-            @Override
-            public int compare(Date o1, Date o2) {
-                if (o1 == null) {
-                    if (o2 == null) {
-                        return 0;
-                    } else {
-                        return 1;
-                    }
-                } else {
-                    if (o2 == null) {
-                        return -1;
-                    }
-                }
-                long n1 = o1.getTime();
-                long n2 = o2.getTime();
-                if (n1 == 0) {
-                    // Object 1 has missing date.
-                    return 1;
-                }
-                if (n2 == 0) {
-                    // Object 2 has missing date.
-                    return -1;
-                }
-                if (n1 < n2) {
-                    return -1;
-                } else if (n1 > n2) {
-                    return 1;
-                } else {
-                    return 0;
-                }
-            }
-        };
-        rowSorter.setComparator(1, comparator);
-
-        Comparator<String> comparatorNumber = new Comparator<String>() {
-            @Override
-            public int compare(String o1, String o2) {
-                try {
-                    if (o1 == null) {
-                        if (o2 == null) {
-                            return 0;
-                        } else {
-                            return 1;
-                        }
-                    } else {
-                        if (o2 == null) {
-                            return -1;
-                        }
-                    }
-                    DecimalFormat formatter = (DecimalFormat) DecimalFormat.getInstance(controller.getLocaliser().getLocale());
-                    formatter.setParseBigDecimal(true);
-
-                    // Convert spaces to non breakable space.
-                    o1 = o1.replaceAll(" ", "\u00A0");
-                    o2 = o2.replaceAll(" ", "\u00A0");
-
-                    BigDecimal parsedO1 = (BigDecimal) formatter.parse(o1);
-                    BigDecimal parsedO2 = (BigDecimal) formatter.parse(o2);
-                    return parsedO1.compareTo(parsedO2);
-                } catch (NumberFormatException nfe) {
-                    return o1.compareTo(o2);
-                } catch (ParseException e) {
-                    return o1.compareTo(o2);
-                }
-            }
-        };
-        rowSorter.setComparator(3, comparatorNumber);
-        if (CurrencyConverter.INSTANCE.isShowingFiat()) {
-            rowSorter.setComparator(4, comparatorNumber);
-        }
         
         scrollPane = new JScrollPane(table, JScrollPane.VERTICAL_SCROLLBAR_ALWAYS,
                 JScrollPane.HORIZONTAL_SCROLLBAR_NEVER);
@@ -433,7 +360,12 @@ public class ShowTransactionsPanel extends JPanel implements Viewable, CurrencyC
         DecimalAlignRenderer decimalAlignRenderer = new DecimalAlignRenderer();
         table.getColumnModel().getColumn(3).setCellRenderer(decimalAlignRenderer);
 
-        walletTableModel.recreateWalletData();
+        if (displayHint == DisplayHint.WALLET_TRANSACTIONS_HAVE_CHANGED) {
+            // The transaction rows are kept up to date as the wallet changes.
+            walletTableModel.refreshWalletData();
+        } else {
+            walletTableModel.recreateWalletData();
+        }
 
         if (selectedRow > -1 && selectedRow < table.getRowCount()) {
             table.setRowSelectionInterval(selectedRow, selectedRow);
@@ -1133,6 +1065,9 @@ public class ShowTransactionsPanel extends JPanel implements Viewable, CurrencyC
 
     @Override
     public void lostExchangeRate(ExchangeRate exchangeRate) {  
+        if (walletTableModel != null) {
+            walletTableModel.exchangeRateChanged();
+        }
     }
 
     @Override
@@ -1142,6 +1077,9 @@ public class ShowTransactionsPanel extends JPanel implements Viewable, CurrencyC
 
     @Override
     public void updatedExchangeRate(ExchangeRate exchangeRate) {
+        if (walletTableModel != null) {
+            walletTableModel.exchangeRateChanged();
+        }
         ShowTransactionsPanel.updateTransactions();
     }
 }
@@ -17,9 +17,13 @@ package org.multibit.viewsystem.swing.view.ticker;
 
 import org.multibit.controller.Controller;
 import org.multibit.controller.exchange.ExchangeController;
+import org.multibit.exchange.CurrencyConverter;
+import org.multibit.exchange.ExchangeRateCache;
 import org.multibit.model.exchange.ExchangeData;
 import org.multibit.model.exchange.ExchangeModel;
 
+import java.util.Date;
+
 import javax.swing.table.AbstractTableModel;
 
 /**
@@ -169,6 +173,12 @@ public class TickerTableModel extends AbstractTableModel {
 
         String variable = columnVariables[column];
 
+        // Rates read from the exchange rate cache and not fetched since are marked.
+        String staleRateMarker = "";
+        if (ExchangeRateCache.INSTANCE.getStaleFetchDate(exchange, currency) != null) {
+            staleRateMarker = CurrencyConverter.STALE_RATE_MARKER;
+        }
+
         if (TICKER_COLUMN_CURRENCY.equals(variable)) {
             // currency
             return currency;
@@ -177,21 +187,21 @@ public class TickerTableModel extends AbstractTableModel {
             if (exchangeData == null || exchangeData.getLastPrice(currency) == null) {
                 return " ";
             } else {
-                return controller.getLocaliser().bigMoneyValueToString(exchangeData.getLastPrice(currency));
+                return controller.getLocaliser().bigMoneyValueToString(exchangeData.getLastPrice(currency)) + staleRateMarker;
             }
         } else if (TICKER_COLUMN_BID.equals(variable)) {
             // bid
             if (exchangeData == null || exchangeData.getLastBid(currency) == null) {
                 return " ";
             } else {
-                return controller.getLocaliser().bigMoneyValueToString(exchangeData.getLastBid(currency));
+                return controller.getLocaliser().bigMoneyValueToString(exchangeData.getLastBid(currency)) + staleRateMarker;
             }
         } else if (TICKER_COLUMN_ASK.equals(variable)) {
             // ask
             if (exchangeData == null || exchangeData.getLastAsk(currency) == null) {
                 return " ";
             } else {
-                 return controller.getLocaliser().bigMoneyValueToString(exchangeData.getLastAsk(currency));
+                 return controller.getLocaliser().bigMoneyValueToString(exchangeData.getLastAsk(currency)) + staleRateMarker;
             }
         } else if (TICKER_COLUMN_EXCHANGE.equals(variable)) {
             // exchange
@@ -202,6 +212,19 @@ public class TickerTableModel extends AbstractTableModel {
         }
     }
 
+    /**
+     * @return A tooltip saying when the rates in the row were fetched if they are from the exchange rate cache, or null
+     */
+    public String getStaleRateToolTip(int row) {
+        String exchange = row == 0 ? exchange1 : exchange2;
+        String currency = row == 0 ? currency1 : currency2;
+        Date fetchDate = ExchangeRateCache.INSTANCE.getStaleFetchDate(exchange, currency);
+        if (fetchDate == null) {
+            return null;
+        }
+        return CurrencyConverter.getStaleRateToolTip(controller, fetchDate);
+    }
+
     /**
      * Table model is read only.
      */
@@ -277,6 +277,7 @@ public class TickerTablePanel extends JPanel {
             label.setBackground(ColorAndFontConstants.BACKGROUND_COLOR);
             label.setOpaque(true);
             label.setText((String) value);
+            label.setToolTipText(tickerTableModel.getStaleRateToolTip(row));
             label.setFont(font);
 
             Color backgroundColor = (row % 2 == moduloRow ? ColorAndFontConstants.VERY_LIGHT_BACKGROUND_COLOR
@@ -300,6 +301,7 @@ public class TickerTablePanel extends JPanel {
             label.setBackground(ColorAndFontConstants.BACKGROUND_COLOR);
             label.setOpaque(true);
             label.setText((String) value);
+            label.setToolTipText(tickerTableModel.getStaleRateToolTip(row));
             label.setFont(font);
 
             Color backgroundColor = (row % 2 == moduloRow ? ColorAndFontConstants.VERY_LIGHT_BACKGROUND_COLOR
@@ -588,8 +588,9 @@ public class SingleWalletPanel extends JPanel implements ActionListener, FocusLi
     String balanceTextToShowFiat = "";
     if (CurrencyConverter.INSTANCE.getRate() != null && CurrencyConverter.INSTANCE.isShowingFiat()) {
       Money fiat = CurrencyConverter.INSTANCE.convertFromFSTToFiat(estimatedBalance);
-      balanceTextToShowFiat = "(" + CurrencyConverter.INSTANCE.getFiatAsLocalisedString(fiat) + ")";
+      balanceTextToShowFiat = "(" + CurrencyConverter.INSTANCE.addStaleRateMarker(CurrencyConverter.INSTANCE.getFiatAsLocalisedString(fiat)) + ")";
     }
+    amountLabelFiat.setToolTipText(CurrencyConverter.INSTANCE.getStaleRateToolTip());
 
     if (useBusyStatus && perWalletModelData.isBusy()) {
       if (lastSyncPercent > 0) {
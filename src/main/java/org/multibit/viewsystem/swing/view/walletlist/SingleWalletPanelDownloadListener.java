@@ -61,6 +61,10 @@ public class SingleWalletPanelDownloadListener extends DownloadListener {
         this.singleWalletPanel = singleWalletPanel;
     }
 
+    public WalletData getPerWalletModelData() {
+        return singleWalletPanel.getPerWalletModelData();
+    }
+
     /**
      * Called when download progress is made.
      * 
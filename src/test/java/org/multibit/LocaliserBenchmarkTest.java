@@ -0,0 +1,117 @@
+/**
+ * Copyright 2013 wallet.org
+ *
+ * Licensed under the MIT license (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://opensource.org/licenses/mit-license.php
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.multibit;
+
+import static org.junit.Assert.assertEquals;
+
+import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Times 8 threads formatting messages with Localiser.getString at once, as the views and the network threads do,
+ * against each call parsing a new MessageFormat. Every hundredth message is checked against MessageFormat.
+ */
+public class LocaliserBenchmarkTest {
+
+    private static final int NUMBER_OF_THREADS = 8;
+
+    private static final int NUMBER_OF_MESSAGES_PER_THREAD = 50000;
+
+    private static final int NUMBER_OF_WARM_UP_ROUNDS = 2;
+
+    private static final String KEY = "fastcoinWalletDownloadListener.progressText";
+
+    private Localiser localiser;
+
+    private String pattern;
+
+    private ExecutorService executorService;
+
+    @Before
+    public void setUp() {
+        localiser = new Localiser(Locale.ENGLISH);
+        pattern = localiser.getString(KEY).replace('\'', '\u2032');
+        executorService = Executors.newFixedThreadPool(NUMBER_OF_THREADS);
+    }
+
+    @After
+    public void tearDown() {
+        executorService.shutdownNow();
+    }
+
+    @Test
+    public void testConcurrentFormattingTime() throws Exception {
+        for (int i = 0; i < NUMBER_OF_WARM_UP_ROUNDS; i++) {
+            formatConcurrently(true);
+            formatConcurrently(false);
+        }
+
+        long time = formatConcurrently(true);
+        long messageFormatTime = formatConcurrently(false);
+        System.out.println(NUMBER_OF_THREADS + " threads formatted " + NUMBER_OF_THREADS * NUMBER_OF_MESSAGES_PER_THREAD
+                + " messages with Localiser.getString in " + time + " ms, or " + messageFormatTime
+                + " ms with a new MessageFormat for each message");
+    }
+
+    /**
+     * Format messages on all the threads at once, checking every hundredth one.
+     * @param useLocaliser true to format with Localiser.getString, false with a new MessageFormat for each message
+     * @return The time taken, in milliseconds
+     */
+    private long formatConcurrently(final boolean useLocaliser) throws Exception {
+        List<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+        for (int thread = 0; thread < NUMBER_OF_THREADS; thread++) {
+            final int threadNumber = thread;
+            tasks.add(new Callable<Void>() {
+                @Override
+                public Void call() {
+                    for (int i = 0; i < NUMBER_OF_MESSAGES_PER_THREAD; i++) {
+                        Object[] parameters = new Object[] { (i + threadNumber) % 101,
+                                new Date(1370000000000L + i * 60000L) };
+                        String message;
+                        if (useLocaliser) {
+                            message = localiser.getString(KEY, parameters);
+                        } else {
+                            message = new MessageFormat(pattern, Locale.ENGLISH).format(parameters);
+                        }
+                        if (i % 100 == 0) {
+                            assertEquals(new MessageFormat(pattern, Locale.ENGLISH).format(parameters), message);
+                        }
+                    }
+                    return null;
+                }
+            });
+        }
+
+        long start = System.currentTimeMillis();
+        for (Future<Void> future : executorService.invokeAll(tasks)) {
+            // Rethrows any assertion failure.
+            future.get();
+        }
+        return System.currentTimeMillis() - start;
+    }
+}
@@ -0,0 +1,96 @@
+/**
+ * Copyright 2013 wallet.org
+ *
+ * Licensed under the MIT license (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://opensource.org/licenses/mit-license.php
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.multibit;
+
+import static org.junit.Assert.assertEquals;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.text.MessageFormat;
+import java.util.Date;
+import java.util.Locale;
+
+import org.junit.Test;
+
+/**
+ * Patterns with only plain arguments, e.g. {0}, are formatted by MessageTemplate itself. The text must be the
+ * same as MessageFormat gives.
+ */
+public class MessageTemplateTest {
+
+    private static final Locale[] LOCALES = { Locale.ENGLISH, Locale.GERMANY, Locale.FRANCE, Locale.JAPAN, new Locale("ar") };
+
+    private static final String[] PATTERNS = { "{0}", "Value {0}.", "first = {0}, second = {1}", "{1} then {0} then {1}",
+            "No arguments", "", "Missing {3}" };
+
+    private static final Date DATE = new Date(1370000000000L);
+
+    @Test
+    public void testNumberArguments() {
+        Object[][] argumentSets = { { 0, 1 }, { 1234567, -1234567 }, { 1234567890123L, -42L }, { 1234.5678, -0.5 },
+                { 0.0001f, Double.NaN }, { new BigDecimal("12345.678901234"), new BigInteger("-123456789012345678901234567890") },
+                { (byte) 7, (short) -7 } };
+        for (Object[] arguments : argumentSets) {
+            assertSameAsMessageFormat(arguments);
+        }
+    }
+
+    @Test
+    public void testDateArguments() {
+        assertSameAsMessageFormat(new Object[] { DATE, new Date(0) });
+        assertSameAsMessageFormat(new Object[] { new java.sql.Timestamp(DATE.getTime()), DATE });
+    }
+
+    @Test
+    public void testNullArguments() {
+        assertSameAsMessageFormat(new Object[] { null, null });
+        assertSameAsMessageFormat(new Object[] { null, "text" });
+        assertSameAsMessageFormat(new Object[] {});
+        assertSameAsMessageFormat(null);
+    }
+
+    @Test
+    public void testOtherArguments() {
+        assertSameAsMessageFormat(new Object[] { "text", Boolean.TRUE });
+        assertSameAsMessageFormat(new Object[] { 'c', new StringBuilder("builder") });
+        assertSameAsMessageFormat(new Object[] { 42, DATE, null, "text" });
+    }
+
+    @Test
+    public void testFormatTypes() {
+        // Patterns with format types are formatted by MessageFormat.
+        String[] patterns = { "{0,number,#.##} and {1}", "{0,date,long}", "{1,number,integer} of {0}" };
+        for (String pattern : patterns) {
+            for (Locale locale : LOCALES) {
+                Object[] arguments = { 1234.5678, 42 };
+                if (pattern.contains("date")) {
+                    arguments = new Object[] { DATE };
+                }
+                assertEquals(new MessageFormat(pattern, locale).format(arguments),
+                        new MessageTemplate(pattern, locale).format(arguments));
+            }
+        }
+    }
+
+    private void assertSameAsMessageFormat(Object[] arguments) {
+        for (String pattern : PATTERNS) {
+            for (Locale locale : LOCALES) {
+                assertEquals("Pattern '" + pattern + "' in " + locale, new MessageFormat(pattern, locale).format(arguments),
+                        new MessageTemplate(pattern, locale).format(arguments));
+            }
+        }
+    }
+}
@@ -0,0 +1,96 @@
+/**
+ * Copyright 2013 wallet.org
+ *
+ * Licensed under the MIT license (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://opensource.org/licenses/mit-license.php
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.multibit.exchange;
+
+import static org.junit.Assert.assertEquals;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.Locale;
+import java.util.Random;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.multibit.Localiser;
+import org.multibit.controller.core.CoreController;
+
+/**
+ * Times formatting 100k fiat amounts with convertFromFSTToLocalisedFiatString, as the wallet table does for
+ * every row, against converting each amount to Money and formatting that.
+ */
+public class CurrencyConverterBenchmarkTest {
+
+    private static final int NUMBER_OF_AMOUNTS = 100000;
+
+    private static final int NUMBER_OF_WARM_UP_ROUNDS = 3;
+
+    private CurrencyConverter currencyConverter;
+
+    private long[] amounts;
+
+    @Before
+    public void setUp() {
+        CoreController controller = new CoreController();
+        controller.setLocaliser(new Localiser(Locale.ENGLISH));
+        currencyConverter = CurrencyConverter.INSTANCE;
+        currencyConverter.initialise(controller, "USD");
+        currencyConverter.setRate(new BigDecimal("123.45"));
+
+        Random random = new Random(42);
+        amounts = new long[NUMBER_OF_AMOUNTS];
+        for (int i = 0; i < NUMBER_OF_AMOUNTS; i++) {
+            amounts[i] = random.nextLong() >> 20;
+        }
+    }
+
+    @Test
+    public void testFormattingTime() {
+        String[] formattedAmounts = new String[NUMBER_OF_AMOUNTS];
+        String[] formattedMoneyAmounts = new String[NUMBER_OF_AMOUNTS];
+        for (int i = 0; i < NUMBER_OF_WARM_UP_ROUNDS; i++) {
+            formatAmounts(formattedAmounts);
+            formatMoneyAmounts(formattedMoneyAmounts);
+        }
+
+        long start = System.currentTimeMillis();
+        formatAmounts(formattedAmounts);
+        long time = System.currentTimeMillis() - start;
+
+        start = System.currentTimeMillis();
+        formatMoneyAmounts(formattedMoneyAmounts);
+        long moneyTime = System.currentTimeMillis() - start;
+
+        System.out.println("Formatted " + NUMBER_OF_AMOUNTS + " fiat amounts in " + time + " ms, or " + moneyTime
+                + " ms converting to Money");
+
+        for (int i = 0; i < NUMBER_OF_AMOUNTS; i++) {
+            assertEquals(formattedMoneyAmounts[i], formattedAmounts[i]);
+        }
+    }
+
+    private void formatAmounts(String[] formattedAmounts) {
+        for (int i = 0; i < NUMBER_OF_AMOUNTS; i++) {
+            formattedAmounts[i] = currencyConverter.convertFromFSTToLocalisedFiatString(amounts[i], true, false);
+        }
+    }
+
+    private void formatMoneyAmounts(String[] formattedAmounts) {
+        for (int i = 0; i < NUMBER_OF_AMOUNTS; i++) {
+            formattedAmounts[i] = currencyConverter.getFiatAsLocalisedString(
+                    currencyConverter.convertFromFSTToFiat(BigInteger.valueOf(amounts[i])), true, false);
+        }
+    }
+}
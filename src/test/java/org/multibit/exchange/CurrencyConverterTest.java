@@ -0,0 +1,151 @@
+/**
+ * Copyright 2013 wallet.org
+ *
+ * Licensed under the MIT license (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://opensource.org/licenses/mit-license.php
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.multibit.exchange;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.Locale;
+import java.util.Random;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.multibit.Localiser;
+import org.multibit.controller.core.CoreController;
+
+/**
+ * convertFromFSTToLocalisedFiatString works in longs where it can. It must give the same text as converting
+ * to Money and formatting that, which it falls back to for amounts and rates too big for longs.
+ */
+public class CurrencyConverterTest {
+
+    private static final Locale[] LOCALES = { Locale.ENGLISH, Locale.GERMANY, Locale.FRANCE };
+
+    private static final int NUMBER_OF_RANDOM_AMOUNTS = 10000;
+
+    private CoreController controller;
+
+    private CurrencyConverter currencyConverter;
+
+    @Before
+    public void setUp() {
+        controller = new CoreController();
+        currencyConverter = CurrencyConverter.INSTANCE;
+    }
+
+    @Test
+    public void testNoRate() {
+        useCurrency("USD", null, Locale.ENGLISH);
+        assertNull(currencyConverter.convertFromFSTToLocalisedFiatString(100000000, true, false));
+    }
+
+    @Test
+    public void testAmounts() {
+        long[] amounts = { 0, 1, -1, 49, 50, 51, -50, 99999999, 100000000, -100000000, 123456789012L, -123456789012L,
+                2100000000000000L, -2100000000000000L };
+        Random random = new Random(42);
+        for (Locale locale : LOCALES) {
+            for (String currencyCode : new String[] { "USD", "EUR", "JPY", "CHF" }) {
+                useCurrency(currencyCode, "123.45", locale);
+                for (long amount : amounts) {
+                    assertSameAsMoney(amount);
+                }
+                for (int i = 0; i < NUMBER_OF_RANDOM_AMOUNTS; i++) {
+                    // Up to about 88 thousand FST, positive and negative.
+                    assertSameAsMoney(random.nextLong() >> 20);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testHalfEvenTies() {
+        // At a rate of 1 a million satoshi is one cent, so half a million satoshi is a tie.
+        useCurrency("USD", "1", Locale.ENGLISH);
+        long[] ties = { 500000, 1500000, 2500000, 3500000, 100500000 };
+        for (long tie : ties) {
+            assertSameAsMoney(tie);
+            assertSameAsMoney(-tie);
+        }
+        assertEquals("0.00", currencyConverter.convertFromFSTToLocalisedFiatString(500000, false, false));
+        assertEquals("0.02", currencyConverter.convertFromFSTToLocalisedFiatString(1500000, false, false));
+        assertEquals("0.02", currencyConverter.convertFromFSTToLocalisedFiatString(2500000, false, false));
+        assertEquals("-0.02", currencyConverter.convertFromFSTToLocalisedFiatString(-2500000, false, false));
+        assertEquals("-0.04", currencyConverter.convertFromFSTToLocalisedFiatString(-3500000, false, false));
+        assertEquals("1.00", currencyConverter.convertFromFSTToLocalisedFiatString(100500000, false, false));
+
+        // Either side of a tie.
+        assertSameAsMoney(499999);
+        assertSameAsMoney(500001);
+        assertSameAsMoney(-499999);
+        assertSameAsMoney(-500001);
+    }
+
+    @Test
+    public void testAmountFallbackLimit() {
+        // The rate multiplier is 12345, so amounts over Long.MAX_VALUE / 12345 use Money.
+        useCurrency("USD", "123.45", Locale.ENGLISH);
+        long limit = Long.MAX_VALUE / 12345;
+        long[] amounts = { limit - 1, limit, limit + 1, -(limit - 1), -limit, -(limit + 1), Long.MAX_VALUE, Long.MIN_VALUE + 1,
+                Long.MIN_VALUE };
+        for (long amount : amounts) {
+            assertSameAsMoney(amount);
+        }
+    }
+
+    @Test
+    public void testRateFallbackLimit() {
+        // Too many digits in the rate for the multiplier and divisor to fit in longs - Money is used.
+        for (String rate : new String[] { "123.4567890123456789012345", "12345678901234567890.5", "0.000000000000000000001" }) {
+            useCurrency("USD", rate, Locale.ENGLISH);
+            assertSameAsMoney(1);
+            assertSameAsMoney(123456789);
+            assertSameAsMoney(-123456789);
+            assertSameAsMoney(2100000000000000L);
+        }
+    }
+
+    @Test
+    public void testCurrencyFallbackLimit() {
+        // Three decimal places are grouped differently, so Money is used.
+        useCurrency("BHD", "12.345", Locale.ENGLISH);
+        assertSameAsMoney(123456789);
+        assertSameAsMoney(-123456789);
+        assertSameAsMoney(100000000000L);
+    }
+
+    private void useCurrency(String currencyCode, String rate, Locale locale) {
+        controller.setLocaliser(new Localiser(locale));
+        currencyConverter.initialise(controller, currencyCode);
+        if (rate != null) {
+            currencyConverter.setRate(new BigDecimal(rate));
+        }
+    }
+
+    private void assertSameAsMoney(long amount) {
+        for (boolean addCurrencySymbol : new boolean[] { false, true }) {
+            for (boolean addParenthesis : new boolean[] { false, true }) {
+                String expected = currencyConverter.getFiatAsLocalisedString(
+                        currencyConverter.convertFromFSTToFiat(BigInteger.valueOf(amount)), addCurrencySymbol, addParenthesis);
+                assertEquals("Amount " + amount + " in " + currencyConverter.getCurrencyUnit() + " at "
+                        + currencyConverter.getRate() + " for " + controller.getLocaliser().getLocale(), expected,
+                        currencyConverter.convertFromFSTToLocalisedFiatString(amount, addCurrencySymbol, addParenthesis));
+            }
+        }
+    }
+}
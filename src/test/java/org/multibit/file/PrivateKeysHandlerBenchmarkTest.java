@@ -0,0 +1,155 @@
+/**
+ * Copyright 2013 wallet.org
+ *
+ * Licensed under the MIT license (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://opensource.org/licenses/mit-license.php
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.multibit.file;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.math.BigInteger;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+import java.util.TimeZone;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.fastcoin.core.ECKey;
+import com.google.fastcoin.core.NetworkParameters;
+import com.google.fastcoin.core.Transaction;
+import com.google.fastcoin.core.TransactionInput;
+import com.google.fastcoin.core.Wallet;
+import com.google.fastcoin.wallet.WalletTransaction;
+
+/**
+ * Times exporting the private keys of a synthetic 10k key, 50k transaction wallet.
+ *
+ * Each transaction pays one key and spends from another, so the earliest usage date of every key
+ * comes from both outputs and inputs.
+ */
+public class PrivateKeysHandlerBenchmarkTest {
+
+    private static final int NUMBER_OF_KEYS = 10000;
+
+    private static final int NUMBER_OF_TRANSACTIONS = 50000;
+
+    /**
+     * The spending key of a transaction is this many keys on from the key it pays.
+     */
+    private static final int INPUT_KEY_OFFSET = 7;
+
+    private static final long START_TIME = 1370000000000L; // ms
+
+    private static final long TIME_BETWEEN_TRANSACTIONS = 60 * 1000; // ms
+
+    private NetworkParameters networkParameters;
+
+    private File exportFile;
+
+    @Before
+    public void setUp() throws Exception {
+        networkParameters = NetworkParameters.prodNet();
+        exportFile = File.createTempFile("PrivateKeysHandlerBenchmarkTest", ".key");
+    }
+
+    @After
+    public void tearDown() {
+        exportFile.delete();
+    }
+
+    @Test
+    public void testExportPrivateKeys() throws Exception {
+        List<ECKey> keys = new ArrayList<ECKey>(NUMBER_OF_KEYS);
+        Wallet wallet = new Wallet(networkParameters);
+        for (int i = 0; i < NUMBER_OF_KEYS; i++) {
+            ECKey key = new ECKey();
+            keys.add(key);
+            wallet.addKey(key);
+        }
+
+        // The transactions are added latest first so the earliest usage is not simply the first seen.
+        Date[] expectedEarliestUsageDates = new Date[NUMBER_OF_KEYS];
+        for (int i = NUMBER_OF_TRANSACTIONS - 1; i >= 0; i--) {
+            ECKey outputKey = keys.get(i % NUMBER_OF_KEYS);
+            ECKey inputKey = keys.get((i + INPUT_KEY_OFFSET) % NUMBER_OF_KEYS);
+            Date updateTime = new Date(START_TIME + i * TIME_BETWEEN_TRANSACTIONS);
+
+            Transaction transaction = new Transaction(networkParameters);
+            transaction.addInput(new TransactionInput(networkParameters, transaction, createInputScript(inputKey)));
+            transaction.addOutput(BigInteger.valueOf(100000 + i), outputKey.toAddress(networkParameters));
+            transaction.setUpdateTime(updateTime);
+            wallet.addWalletTransaction(new WalletTransaction(WalletTransaction.Pool.SPENT, transaction));
+
+            expectedEarliestUsageDates[i % NUMBER_OF_KEYS] = updateTime;
+            expectedEarliestUsageDates[(i + INPUT_KEY_OFFSET) % NUMBER_OF_KEYS] = updateTime;
+        }
+
+        PrivateKeysHandler privateKeysHandler = new PrivateKeysHandler(networkParameters);
+        long start = System.currentTimeMillis();
+        privateKeysHandler.exportPrivateKeys(exportFile, wallet, null, false, null, null);
+        long time = System.currentTimeMillis() - start;
+        System.out.println("Exported the private keys of a " + NUMBER_OF_KEYS + " key, " + NUMBER_OF_TRANSACTIONS
+                + " transaction wallet in " + time + " ms");
+
+        // Check the earliest usage date written for every key.
+        SimpleDateFormat formatter = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss'Z'", Locale.ENGLISH);
+        formatter.setTimeZone(TimeZone.getTimeZone("UTC"));
+        List<String> keyLines = readKeyLines();
+        assertEquals(NUMBER_OF_KEYS, keyLines.size());
+        for (int i = 0; i < NUMBER_OF_KEYS; i++) {
+            String[] columns = keyLines.get(i).split(" ");
+            assertEquals(keys.get(i).getPrivateKeyEncoded(networkParameters).toString(), columns[0]);
+            assertEquals(formatter.format(expectedEarliestUsageDates[i]), columns[1]);
+        }
+    }
+
+    /**
+     * A script sig of a dummy signature and the public key of the key.
+     */
+    private byte[] createInputScript(ECKey key) {
+        byte[] signature = new byte[71];
+        signature[0] = 0x30;
+        byte[] pubKey = key.getPubKey();
+
+        byte[] script = new byte[1 + signature.length + 1 + pubKey.length];
+        script[0] = (byte) signature.length;
+        System.arraycopy(signature, 0, script, 1, signature.length);
+        script[1 + signature.length] = (byte) pubKey.length;
+        System.arraycopy(pubKey, 0, script, 2 + signature.length, pubKey.length);
+        return script;
+    }
+
+    private List<String> readKeyLines() throws Exception {
+        List<String> keyLines = new ArrayList<String>();
+        BufferedReader reader = new BufferedReader(new FileReader(exportFile));
+        try {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.trim().length() > 0 && !line.startsWith("#")) {
+                    keyLines.add(line);
+                }
+            }
+        } finally {
+            reader.close();
+        }
+        return keyLines;
+    }
+}
@@ -0,0 +1,107 @@
+/**
+ * Copyright 2013 wallet.org
+ *
+ * Licensed under the MIT license (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://opensource.org/licenses/mit-license.php
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.multibit.model.fastcoin;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.fastcoin.core.Address;
+import com.google.fastcoin.core.NetworkParameters;
+
+/**
+ * Times opening the wallet info of 1k, 10k and 100k key wallets - reading the info file and then adding
+ * the address of every key, as FastcoinWalletService.addWalletFromFilename does.
+ */
+public class WalletInfoDataBenchmarkTest {
+
+    private static final int[] NUMBERS_OF_KEYS = { 1000, 10000, 100000 };
+
+    private static final int NUMBER_OF_WARM_UP_KEYS = 1000;
+
+    private File directory;
+
+    @Before
+    public void setUp() throws Exception {
+        directory = File.createTempFile("WalletInfoDataBenchmarkTest", "");
+        directory.delete();
+        directory.mkdir();
+    }
+
+    @After
+    public void tearDown() {
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        directory.delete();
+    }
+
+    @Test
+    public void testOpenTime() throws Exception {
+        openWalletInfo(NUMBER_OF_WARM_UP_KEYS);
+
+        for (int numberOfKeys : NUMBERS_OF_KEYS) {
+            long time = openWalletInfo(numberOfKeys);
+            System.out.println("Opened the wallet info of a " + numberOfKeys + " key wallet in " + time + " ms");
+        }
+    }
+
+    /**
+     * Write the wallet info of a wallet with a labelled receiving address for each key, then open it.
+     * @return The time taken to open the wallet info, in milliseconds
+     */
+    private long openWalletInfo(int numberOfKeys) throws Exception {
+        NetworkParameters networkParameters = NetworkParameters.prodNet();
+        List<Address> keyAddresses = new ArrayList<Address>(numberOfKeys);
+        for (int i = 0; i < numberOfKeys; i++) {
+            byte[] hash160 = new byte[20];
+            hash160[0] = (byte) (i >> 24);
+            hash160[1] = (byte) (i >> 16);
+            hash160[2] = (byte) (i >> 8);
+            hash160[3] = (byte) i;
+            keyAddresses.add(new Address(networkParameters, hash160));
+        }
+
+        String walletFilename = new File(directory, numberOfKeys + "." + FastcoinModel.WALLET_FILE_EXTENSION).getAbsolutePath();
+        WalletInfoData walletInfo = new WalletInfoData(walletFilename, null, FastcoinWalletVersion.PROTOBUF);
+        for (int i = 0; i < numberOfKeys; i++) {
+            walletInfo.addReceivingAddress(new WalletAddressBookData("Key " + i, keyAddresses.get(i).toString()), false);
+        }
+        walletInfo.writeToFile(WalletInfoData.createWalletInfoFilename(walletFilename), FastcoinWalletVersion.PROTOBUF);
+
+        long start = System.currentTimeMillis();
+        WalletInfoData openedWalletInfo = new WalletInfoData(walletFilename, null, FastcoinWalletVersion.PROTOBUF);
+        for (Address keyAddress : keyAddresses) {
+            openedWalletInfo.addReceivingAddressOfKey(keyAddress);
+        }
+        long time = System.currentTimeMillis() - start;
+
+        assertEquals(numberOfKeys, openedWalletInfo.getReceivingAddresses().size());
+        assertEquals("Key 0", openedWalletInfo.lookupLabelForReceivingAddress(keyAddresses.get(0).toString()));
+        assertEquals("Key " + (numberOfKeys - 1),
+                openedWalletInfo.lookupLabelForReceivingAddress(keyAddresses.get(numberOfKeys - 1).toString()));
+        return time;
+    }
+}
@@ -0,0 +1,120 @@
+/**
+ * Copyright 2013 wallet.org
+ *
+ * Licensed under the MIT license (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://opensource.org/licenses/mit-license.php
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.multibit.network;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.fastcoin.core.Block;
+import com.google.fastcoin.core.NetworkParameters;
+import com.google.fastcoin.core.StoredBlock;
+
+public class FastcoinWalletCheckpointManagerTest {
+
+    private static final int FIRST_HEIGHT = 2016;
+    private static final int SECOND_HEIGHT = 4032;
+    private static final int THIRD_HEIGHT = 6048;
+
+    private static final long FIRST_TIME = 1370000000L; // seconds
+    private static final long SECOND_TIME = 1371000000L; // seconds
+    private static final long THIRD_TIME = 1372000000L; // seconds
+
+    private NetworkParameters networkParameters;
+
+    private FastcoinWalletCheckpointManager checkpointManager;
+
+    @Before
+    public void setUp() throws Exception {
+        networkParameters = NetworkParameters.prodNet();
+
+        // The checkpoints are written out of order to check that they are sorted.
+        ByteArrayOutputStream checkpoints = new ByteArrayOutputStream();
+        DataOutputStream outputStream = new DataOutputStream(checkpoints);
+        outputStream.write("CHECKPOINTS 1".getBytes("US-ASCII"));
+        // No signatures.
+        outputStream.writeInt(0);
+        outputStream.writeInt(3);
+        writeCheckpoint(outputStream, SECOND_HEIGHT, SECOND_TIME);
+        writeCheckpoint(outputStream, THIRD_HEIGHT, THIRD_TIME);
+        writeCheckpoint(outputStream, FIRST_HEIGHT, FIRST_TIME);
+        outputStream.close();
+
+        checkpointManager = new FastcoinWalletCheckpointManager(networkParameters, new ByteArrayInputStream(checkpoints.toByteArray()));
+    }
+
+    @Test
+    public void testCheckpoints() {
+        assertEquals(3, checkpointManager.getNumberOfCheckpoints());
+    }
+
+    @Test
+    public void testGetCheckpointBefore() {
+        // Before the first checkpoint - the genesis block.
+        StoredBlock checkpoint = checkpointManager.getCheckpointBefore(FIRST_TIME - 1);
+        assertEquals(0, checkpoint.getHeight());
+        assertEquals(networkParameters.getGenesisBlock().getHash(), checkpoint.getHeader().getHash());
+
+        // Exactly on a checkpoint.
+        assertEquals(FIRST_HEIGHT, checkpointManager.getCheckpointBefore(FIRST_TIME).getHeight());
+        assertEquals(SECOND_HEIGHT, checkpointManager.getCheckpointBefore(SECOND_TIME).getHeight());
+
+        // Between two checkpoints.
+        assertEquals(FIRST_HEIGHT, checkpointManager.getCheckpointBefore(FIRST_TIME + 1).getHeight());
+        assertEquals(SECOND_HEIGHT, checkpointManager.getCheckpointBefore(THIRD_TIME - 1).getHeight());
+
+        // After the last checkpoint.
+        assertEquals(THIRD_HEIGHT, checkpointManager.getCheckpointBefore(THIRD_TIME).getHeight());
+        assertEquals(THIRD_HEIGHT, checkpointManager.getCheckpointBefore(THIRD_TIME + 86400).getHeight());
+    }
+
+    @Test
+    public void testGetCheckpointBeforeOrAtHeight() {
+        // Before the first checkpoint - the genesis block.
+        StoredBlock checkpoint = checkpointManager.getCheckpointBeforeOrAtHeight(FIRST_HEIGHT - 1);
+        assertEquals(0, checkpoint.getHeight());
+        assertEquals(networkParameters.getGenesisBlock().getHash(), checkpoint.getHeader().getHash());
+
+        // Exactly on a checkpoint - the previous one, as only checkpoints below the height are returned.
+        assertEquals(0, checkpointManager.getCheckpointBeforeOrAtHeight(FIRST_HEIGHT).getHeight());
+        assertEquals(FIRST_HEIGHT, checkpointManager.getCheckpointBeforeOrAtHeight(SECOND_HEIGHT).getHeight());
+
+        // Between two checkpoints.
+        assertEquals(FIRST_HEIGHT, checkpointManager.getCheckpointBeforeOrAtHeight(FIRST_HEIGHT + 1).getHeight());
+        assertEquals(SECOND_HEIGHT, checkpointManager.getCheckpointBeforeOrAtHeight(THIRD_HEIGHT - 1).getHeight());
+
+        // After the last checkpoint.
+        assertEquals(THIRD_HEIGHT, checkpointManager.getCheckpointBeforeOrAtHeight(THIRD_HEIGHT + 1).getHeight());
+        assertEquals(THIRD_HEIGHT, checkpointManager.getCheckpointBeforeOrAtHeight(THIRD_HEIGHT + 10000).getHeight());
+    }
+
+    private void writeCheckpoint(DataOutputStream outputStream, int height, long time) throws Exception {
+        Block header = networkParameters.getGenesisBlock().cloneAsHeader();
+        header.setTime(time);
+        StoredBlock storedBlock = new StoredBlock(header, BigInteger.valueOf(height), height);
+
+        ByteBuffer buffer = ByteBuffer.allocate(StoredBlock.COMPACT_SERIALIZED_SIZE);
+        storedBlock.serializeCompact(buffer);
+        outputStream.write(buffer.array());
+    }
+}
@@ -0,0 +1,159 @@
+/**
+ * Copyright 2013 wallet.org
+ *
+ * Licensed under the MIT license (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://opensource.org/licenses/mit-license.php
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.multibit.network;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.util.Date;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.fastcoin.core.Block;
+import com.google.fastcoin.core.FastcoinWalletBlockChain;
+import com.google.fastcoin.core.NetworkParameters;
+import com.google.fastcoin.core.StoredBlock;
+import com.google.fastcoin.store.FastcoinWalletSPVBlockStore;
+
+/**
+ * Replays from a date or a start block rewind the blockchain to the right block and truncate the block store,
+ * so the blocks downloaded before the replay can no longer be found.
+ */
+public class FastcoinWalletServiceTest {
+
+    private static final int FIRST_HEIGHT = 2016;
+    private static final int SECOND_HEIGHT = 4032;
+    private static final int THIRD_HEIGHT = 6048;
+    private static final int TIP_HEIGHT = 6148;
+
+    private static final long FIRST_TIME = 1370000000L; // seconds
+    private static final long SECOND_TIME = 1371000000L; // seconds
+    private static final long THIRD_TIME = 1372000000L; // seconds
+    private static final long TIP_TIME = 1372060000L; // seconds
+
+    private static final long ONE_DAY = 86400; // seconds
+
+    private NetworkParameters networkParameters;
+
+    private FastcoinWalletCheckpointManager checkpointManager;
+
+    private File blockStoreFile;
+
+    private FastcoinWalletSPVBlockStore blockStore;
+
+    private FastcoinWalletBlockChain blockChain;
+
+    private StoredBlock tip;
+
+    @Before
+    public void setUp() throws Exception {
+        networkParameters = NetworkParameters.prodNet();
+
+        ByteArrayOutputStream checkpoints = new ByteArrayOutputStream();
+        DataOutputStream outputStream = new DataOutputStream(checkpoints);
+        outputStream.write("CHECKPOINTS 1".getBytes("US-ASCII"));
+        // No signatures.
+        outputStream.writeInt(0);
+        outputStream.writeInt(3);
+        writeCheckpoint(outputStream, createStoredBlock(FIRST_HEIGHT, FIRST_TIME));
+        writeCheckpoint(outputStream, createStoredBlock(SECOND_HEIGHT, SECOND_TIME));
+        writeCheckpoint(outputStream, createStoredBlock(THIRD_HEIGHT, THIRD_TIME));
+        outputStream.close();
+        checkpointManager = new FastcoinWalletCheckpointManager(networkParameters, new ByteArrayInputStream(checkpoints.toByteArray()));
+
+        // A block store that has downloaded up to the tip.
+        blockStoreFile = File.createTempFile("FastcoinWalletServiceTest", FastcoinWalletService.SPV_BLOCKCHAIN_SUFFIX);
+        blockStoreFile.delete();
+        blockStore = new FastcoinWalletSPVBlockStore(networkParameters, blockStoreFile);
+        for (StoredBlock checkpoint : checkpointManager.getCheckpoints()) {
+            blockStore.put(checkpoint);
+        }
+        tip = createStoredBlock(TIP_HEIGHT, TIP_TIME);
+        blockStore.put(tip);
+        blockStore.setChainHead(tip);
+
+        blockChain = new FastcoinWalletBlockChain(networkParameters, blockStore);
+        assertEquals(TIP_HEIGHT, blockChain.getBestChainHeight());
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        blockStore.close();
+        blockStoreFile.delete();
+    }
+
+    @Test
+    public void testRewindFromDate() throws Exception {
+        // Block header drift is allowed for, so the replay starts at the checkpoint a week before the one before the date.
+        Date dateToReplayFrom = new Date((THIRD_TIME + ONE_DAY) * 1000);
+        int height = FastcoinWalletService.rewindBlockChain(blockChain, checkpointManager, dateToReplayFrom, null);
+        assertEquals(SECOND_HEIGHT, height);
+        assertRewoundTo(SECOND_HEIGHT);
+
+        // The chain is now before the checkpoint before the date, so it is not rewound again.
+        dateToReplayFrom = new Date((THIRD_TIME + FastcoinWalletCheckpointManager.BLOCK_HEADER_DRIFT_IN_SECONDS + ONE_DAY) * 1000);
+        height = FastcoinWalletService.rewindBlockChain(blockChain, checkpointManager, dateToReplayFrom, null);
+        assertEquals(SECOND_HEIGHT, height);
+        assertEquals(SECOND_HEIGHT, blockChain.getBestChainHeight());
+    }
+
+    @Test
+    public void testRewindFromStartBlock() throws Exception {
+        StoredBlock startBlock = checkpointManager.getCheckpointBefore(FIRST_TIME);
+        int height = FastcoinWalletService.rewindBlockChain(blockChain, checkpointManager, null, startBlock);
+        assertEquals(FIRST_HEIGHT, height);
+        assertRewoundTo(FIRST_HEIGHT);
+    }
+
+    @Test
+    public void testRewindFromBeforeTheFirstCheckpoint() throws Exception {
+        // No date, or a date before the first checkpoint, replays from the genesis block.
+        int height = FastcoinWalletService.rewindBlockChain(blockChain, checkpointManager, null, null);
+        assertEquals(0, height);
+        assertRewoundTo(0);
+        assertEquals(networkParameters.getGenesisBlock().getHash(), blockChain.getChainHead().getHeader().getHash());
+    }
+
+    private void assertRewoundTo(int height) throws Exception {
+        assertEquals(height, blockChain.getBestChainHeight());
+        assertEquals(height, blockStore.getChainHead().getHeight());
+        assertNotNull(blockStore.get(blockChain.getChainHead().getHeader().getHash()));
+
+        // The blocks downloaded before the replay are gone, so blocks built on them cannot reconnect to them.
+        assertNull(blockStore.get(tip.getHeader().getHash()));
+    }
+
+    private StoredBlock createStoredBlock(int height, long time) {
+        Block header = networkParameters.getGenesisBlock().cloneAsHeader();
+        header.setTime(time);
+        return new StoredBlock(header, BigInteger.valueOf(height), height);
+    }
+
+    private void writeCheckpoint(DataOutputStream outputStream, StoredBlock storedBlock) throws Exception {
+        ByteBuffer buffer = ByteBuffer.allocate(StoredBlock.COMPACT_SERIALIZED_SIZE);
+        storedBlock.serializeCompact(buffer);
+        outputStream.write(buffer.array());
+    }
+}
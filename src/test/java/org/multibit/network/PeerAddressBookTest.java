@@ -0,0 +1,201 @@
+/**
+ * Copyright 2013 wallet.org
+ *
+ * Licensed under the MIT license (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://opensource.org/licenses/mit-license.php
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.multibit.network;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.List;
+import java.util.Properties;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.fastcoin.core.PeerAddress;
+
+public class PeerAddressBookTest {
+
+    private static final int DEFAULT_PORT = 9526;
+
+    private static final long ONE_HOUR = 60 * 60 * 1000; // ms
+
+    private static final long ONE_DAY = 24 * ONE_HOUR; // ms
+
+    private static final long SAVE_INTERVAL = 500; // ms
+
+    private static final long SAVE_TIMEOUT = 10000; // ms
+
+    private File addressBookFile;
+
+    @Before
+    public void setUp() throws IOException {
+        addressBookFile = File.createTempFile("PeerAddressBookTest", PeerAddressBook.PEER_ADDRESS_BOOK_SUFFIX);
+        addressBookFile.delete();
+    }
+
+    @After
+    public void tearDown() {
+        addressBookFile.delete();
+        new File(addressBookFile.getAbsolutePath() + ".tmp").delete();
+    }
+
+    @Test
+    public void testSaveAndLoad() throws Exception {
+        PeerAddressBook addressBook = new PeerAddressBook(addressBookFile, DEFAULT_PORT);
+        assertEquals(0, addressBook.size());
+
+        addressBook.peerConnected(new PeerAddress(InetAddress.getByName("127.0.0.2"), DEFAULT_PORT));
+        PeerAddress localhost = new PeerAddress(InetAddress.getByName("127.0.0.1"), 1234);
+        addressBook.peerConnected(localhost);
+        addressBook.recordRoundTripTime(localhost, 42);
+        addressBook.save();
+        assertTrue(addressBookFile.exists());
+        assertFalse(new File(addressBookFile.getAbsolutePath() + ".tmp").exists());
+
+        PeerAddressBook reloadedAddressBook = new PeerAddressBook(addressBookFile, DEFAULT_PORT);
+        assertEquals(2, reloadedAddressBook.size());
+
+        // The peer seen last, with a known ping time, comes first.
+        List<PeerAddress> bestAddresses = reloadedAddressBook.getBestAddresses(10);
+        assertEquals(2, bestAddresses.size());
+        assertEquals(InetAddress.getByName("127.0.0.1"), bestAddresses.get(0).getAddr());
+        assertEquals(1234, bestAddresses.get(0).getPort());
+        assertEquals(InetAddress.getByName("127.0.0.2"), bestAddresses.get(1).getAddr());
+        assertEquals(DEFAULT_PORT, bestAddresses.get(1).getPort());
+    }
+
+    @Test
+    public void testOldPeersAreForgotten() throws Exception {
+        long now = System.currentTimeMillis();
+        Properties properties = new Properties();
+        properties.setProperty("127.0.0.1:1001", (now - ONE_DAY) + ",100");
+        properties.setProperty("127.0.0.1:1002", (now - 13 * ONE_DAY) + ",100");
+        properties.setProperty("127.0.0.1:1003", (now - 15 * ONE_DAY) + ",100");
+        writeAddressBook(properties);
+
+        PeerAddressBook addressBook = new PeerAddressBook(addressBookFile, DEFAULT_PORT);
+        assertEquals(2, addressBook.size());
+
+        List<PeerAddress> bestAddresses = addressBook.getBestAddresses(10);
+        assertEquals(2, bestAddresses.size());
+        assertEquals(1001, bestAddresses.get(0).getPort());
+        assertEquals(1002, bestAddresses.get(1).getPort());
+    }
+
+    @Test
+    public void testOrdering() throws Exception {
+        // The start of the current hour, so that peers seen within it are in the same hour.
+        long startOfHour = System.currentTimeMillis() / ONE_HOUR * ONE_HOUR;
+        Properties properties = new Properties();
+        // Seen in an earlier hour - last, however fast.
+        properties.setProperty("127.0.0.1:2001", (startOfHour - 2 * ONE_HOUR) + ",1");
+        // Seen in the current hour - ordered by ping time, with an unknown ping time last.
+        properties.setProperty("127.0.0.1:2002", (startOfHour + 1000) + ",300");
+        properties.setProperty("127.0.0.1:2003", (startOfHour + 2000) + ",20");
+        properties.setProperty("127.0.0.1:2004", startOfHour + ",");
+        // Stored without a port.
+        properties.setProperty("127.0.0.1", (startOfHour - 3 * ONE_HOUR) + ",");
+        writeAddressBook(properties);
+
+        PeerAddressBook addressBook = new PeerAddressBook(addressBookFile, DEFAULT_PORT);
+        List<PeerAddress> bestAddresses = addressBook.getBestAddresses(10);
+        assertEquals(5, bestAddresses.size());
+        assertEquals(2003, bestAddresses.get(0).getPort());
+        assertEquals(2002, bestAddresses.get(1).getPort());
+        assertEquals(2004, bestAddresses.get(2).getPort());
+        assertEquals(2001, bestAddresses.get(3).getPort());
+        assertEquals(DEFAULT_PORT, bestAddresses.get(4).getPort());
+
+        // Only the best are returned.
+        bestAddresses = addressBook.getBestAddresses(2);
+        assertEquals(2, bestAddresses.size());
+        assertEquals(2003, bestAddresses.get(0).getPort());
+        assertEquals(2002, bestAddresses.get(1).getPort());
+    }
+
+    @Test
+    public void testGetBestAddressesWithLocalhost() throws Exception {
+        PeerAddressBook addressBook = new PeerAddressBook(addressBookFile, DEFAULT_PORT);
+        InetAddress localhost = InetAddress.getByName("localhost");
+        addressBook.peerConnected(new PeerAddress(localhost, DEFAULT_PORT));
+
+        List<PeerAddress> bestAddresses = addressBook.getBestAddresses(10);
+        assertEquals(1, bestAddresses.size());
+        assertEquals(localhost, bestAddresses.get(0).getAddr());
+        assertEquals(DEFAULT_PORT, bestAddresses.get(0).getPort());
+
+        assertEquals(0, addressBook.getBestAddresses(0).size());
+    }
+
+    @Test
+    public void testBackgroundSaveOfLocalPeer() throws Exception {
+        // A stand-in peer listening on localhost.
+        ServerSocket localPeer = new ServerSocket(0, 1, InetAddress.getByName("127.0.0.1"));
+        try {
+            PeerAddressBook addressBook = new PeerAddressBook(addressBookFile, DEFAULT_PORT, SAVE_INTERVAL);
+            try {
+                PeerAddress localPeerAddress = new PeerAddress(localPeer.getInetAddress(), localPeer.getLocalPort());
+                addressBook.peerConnected(localPeerAddress);
+                addressBook.recordRoundTripTime(localPeerAddress, 5);
+
+                // Recording the peer does not write the address book - the background timer does.
+                assertFalse(addressBookFile.exists());
+                long timeout = System.currentTimeMillis() + SAVE_TIMEOUT;
+                while (!addressBookFile.exists() && System.currentTimeMillis() < timeout) {
+                    Thread.sleep(10);
+                }
+                assertTrue(addressBookFile.exists());
+            } finally {
+                addressBook.close();
+            }
+
+            // The address read back at the next startup connects to the peer.
+            List<PeerAddress> bestAddresses = new PeerAddressBook(addressBookFile, DEFAULT_PORT).getBestAddresses(10);
+            assertEquals(1, bestAddresses.size());
+            Socket socket = new Socket(bestAddresses.get(0).getAddr(), bestAddresses.get(0).getPort());
+            try {
+                Socket acceptedSocket = localPeer.accept();
+                try {
+                    assertEquals(socket.getLocalPort(), acceptedSocket.getPort());
+                } finally {
+                    acceptedSocket.close();
+                }
+            } finally {
+                socket.close();
+            }
+        } finally {
+            localPeer.close();
+        }
+    }
+
+    private void writeAddressBook(Properties properties) throws IOException {
+        OutputStream outputStream = new FileOutputStream(addressBookFile);
+        try {
+            properties.store(outputStream, "Peer address book");
+        } finally {
+            outputStream.close();
+        }
+    }
+}